@@ -0,0 +1,82 @@
+package fr.eseo.tauri.security;
+
+import fr.eseo.tauri.model.enumeration.PermissionType;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the authentication of a request by its access token.
+ * parseTwicePerRequest is the former filter, which checked the signature and parsed the token twice per request
+ * (validateAccessToken then createUserDetails), filterWithVerifiedTokens is JwtTokenFilter with the cache of JwtTokenVerifier.
+ * Run with ./gradlew jmh, the results are written to build/results/jmh/results.txt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JwtTokenFilterBenchmark {
+
+    private static final String SECRET = "dGF1cmktYmVuY2htYXJrLXNlY3JldC1rZXktZm9yLXRoZS10b2tlbi1maWx0ZXI=";
+
+    private JwtTokenUtil jwtTokenUtil;
+    private JwtTokenFilter jwtTokenFilter;
+    private MockHttpServletRequest request;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtTokenUtil = new JwtTokenUtil();
+        ReflectionTestUtils.setField(jwtTokenUtil, "secretKey", SECRET);
+        ReflectionTestUtils.setField(jwtTokenUtil, "issuer", "TAURI");
+        ReflectionTestUtils.setField(jwtTokenUtil, "accessExpireDuration", TimeUnit.HOURS.toMillis(1));
+        JwtTokenVerifier jwtTokenVerifier = new JwtTokenVerifier();
+        ReflectionTestUtils.setField(jwtTokenVerifier, "secretKey", SECRET);
+        RoleVersions roleVersions = new RoleVersions();
+        jwtTokenFilter = new JwtTokenFilter(jwtTokenUtil, jwtTokenVerifier, roleVersions);
+
+        token = jwtTokenUtil.generateAccessToken(new TokenPrincipal(1, "user@reseau.eseo.fr", Set.of(RoleType.SUPERVISING_STAFF),
+                EnumSet.of(PermissionType.IMPORT), roleVersions.current(1)));
+        request = new MockHttpServletRequest("GET", "/api/teams");
+        request.addHeader("Authorization", "Bearer " + token);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public Object parseTwicePerRequest() throws ServletException, IOException {
+        String requestToken = jwtTokenUtil.extractToken(request);
+        Jwts.parser().setSigningKey(SECRET).parseClaimsJws(requestToken);
+        Claims claims = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(requestToken).getBody();
+        UserDetails userDetails = new User(claims.getSubject(), "", List.of());
+        jwtTokenUtil.setAuthenticationContext(userDetails);
+        MockFilterChain filterChain = new MockFilterChain();
+        filterChain.doFilter(request, new MockHttpServletResponse());
+        return filterChain.getRequest();
+    }
+
+    @Benchmark
+    public Object filterWithVerifiedTokens() throws ServletException, IOException {
+        MockFilterChain filterChain = new MockFilterChain();
+        jwtTokenFilter.doFilter(request, new MockHttpServletResponse(), filterChain);
+        return filterChain.getRequest();
+    }
+
+}
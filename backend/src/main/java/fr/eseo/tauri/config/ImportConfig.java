@@ -0,0 +1,32 @@
+package fr.eseo.tauri.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ImportConfig {
+
+    @Value("${app.import.threads:2}")
+    private int threads;
+
+    @Value("${app.import.queue-capacity:10}")
+    private int queueCapacity;
+
+    /**
+     * Bounded executor running the student imports, the uploads are rejected when its queue is full.
+     */
+    @Bean
+    public TaskExecutor importExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("import-");
+        executor.initialize();
+        return executor;
+    }
+
+}
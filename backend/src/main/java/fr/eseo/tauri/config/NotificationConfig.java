@@ -0,0 +1,32 @@
+package fr.eseo.tauri.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class NotificationConfig {
+
+    @Value("${app.notification.threads:4}")
+    private int threads;
+
+    @Value("${app.notification.queue-capacity:1000}")
+    private int queueCapacity;
+
+    /**
+     * Bounded executor writing the notifications to the connected streams, so a slow client never blocks the publisher.
+     */
+    @Bean
+    public TaskExecutor notificationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("notification-");
+        executor.initialize();
+        return executor;
+    }
+
+}
@@ -3,11 +3,14 @@ package fr.eseo.tauri.controller;
 import fr.eseo.tauri.model.User;
 import fr.eseo.tauri.security.AuthRequest;
 import fr.eseo.tauri.security.AuthResponse;
+import fr.eseo.tauri.security.JwtTokenVerifier;
+import fr.eseo.tauri.security.RefreshRequest;
 import fr.eseo.tauri.service.AuthService;
 import fr.eseo.tauri.util.CustomLogger;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -19,6 +22,7 @@ import org.springframework.web.bind.annotation.RestController;
 @Tag(name = "auth")
 public class AuthController {
     private final AuthService authService;
+    private final JwtTokenVerifier jwtTokenVerifier;
 
     @PostMapping("/login")
     public ResponseEntity<AuthResponse> login(@RequestBody AuthRequest request) {
@@ -26,6 +30,17 @@ public class AuthController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> refresh(@RequestBody RefreshRequest request) {
+        AuthResponse response = authService.refresh(request.refreshToken());
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/token-cache")
+    public ResponseEntity<JwtTokenVerifier.Stats> getTokenCacheStats() {
+        return ResponseEntity.ok(jwtTokenVerifier.stats());
+    }
+
     @PostMapping("/logon")
     public Boolean logon(@RequestBody User user) {
         CustomLogger.info(user.email() + " is trying to log on");
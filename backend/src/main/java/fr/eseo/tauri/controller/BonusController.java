@@ -97,8 +97,8 @@ public class BonusController {
 
 
     @GetMapping("/teams/{teamId}")
-    public ResponseEntity<List<ValidationBonus>> getValidationBonusesByTeam(@PathVariable Integer teamId) {
-        List<ValidationBonus> bonuses = bonusService.getValidationBonusesByTeam(teamId);
+    public ResponseEntity<List<ValidationBonus>> getValidationBonusesByTeam(@PathVariable Integer teamId, @RequestParam(value = "sprintId", required = false) Integer sprintId) {
+        List<ValidationBonus> bonuses = bonusService.getValidationBonusesByTeam(teamId, sprintId);
         return ResponseEntity.ok(bonuses);
     }
 
@@ -1,6 +1,7 @@
 package fr.eseo.tauri.controller;
 
 import fr.eseo.tauri.model.Flag;
+import fr.eseo.tauri.model.ValidationSummary;
 import fr.eseo.tauri.model.enumeration.FlagType;
 import fr.eseo.tauri.service.FlagService;
 import fr.eseo.tauri.util.CustomLogger;
@@ -30,6 +31,12 @@ public class FlagController {
         return ResponseEntity.ok(flag);
     }
 
+    @GetMapping("/{id}/validation-summary")
+    public ResponseEntity<ValidationSummary> getValidationSummary(@PathVariable Integer id) {
+        ValidationSummary summary = flagService.getValidationSummary(id);
+        return ResponseEntity.ok(summary);
+    }
+
     @GetMapping
     public ResponseEntity<List<Flag>> getAllFlagsByProject(@RequestParam("projectId") Integer projectId) {
         List<Flag> flags = flagService.getAllFlagsByProject(projectId);
@@ -8,15 +8,16 @@ import fr.eseo.tauri.service.GradeService;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import fr.eseo.tauri.util.CustomLogger;
 import fr.eseo.tauri.util.ResponseMessage;
 import fr.eseo.tauri.util.valid.Create;
 import fr.eseo.tauri.util.valid.Update;
 import org.springframework.validation.annotation.Validated;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -111,9 +112,9 @@ public class GradeController {
     }
 
     @GetMapping("/download")
-    public ResponseEntity<byte[]> downloadStudentGrades(@RequestParam("projectId") Integer projectId) throws IOException {
-        byte[] gradesCSV = gradeService.createStudentIndividualGradesCSVReport(projectId);
-        return ResponseEntity.ok(gradesCSV);
+    public ResponseEntity<StreamingResponseBody> downloadStudentGrades(@RequestParam("projectId") Integer projectId) {
+        StreamingResponseBody gradesCSV = outputStream -> gradeService.writeStudentIndividualGradesCSVReport(projectId, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("text/csv")).body(gradesCSV);
     }
 
     @GetMapping("/average/{id}")
@@ -0,0 +1,32 @@
+package fr.eseo.tauri.controller;
+
+import fr.eseo.tauri.model.ImportJob;
+import fr.eseo.tauri.service.ImportJobService;
+import fr.eseo.tauri.util.CustomLogger;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/imports")
+@Tag(name = "imports")
+public class ImportController {
+
+    private final ImportJobService importJobService;
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ImportJob> getImportJob(@PathVariable Integer jobId) {
+        ImportJob job = importJobService.getJob(jobId);
+        return ResponseEntity.ok(job);
+    }
+
+    @PostMapping("/{jobId}/resume")
+    public ResponseEntity<ImportJob> resumeImportJob(@PathVariable Integer jobId) {
+        ImportJob job = importJobService.resume(jobId);
+        CustomLogger.info("The import job " + jobId + " has been resumed");
+        return ResponseEntity.accepted().body(job);
+    }
+
+}
@@ -1,6 +1,7 @@
 package fr.eseo.tauri.controller;
 
 import fr.eseo.tauri.model.Notification;
+import fr.eseo.tauri.model.NotificationBroadcast;
 import fr.eseo.tauri.service.NotificationService;
 import fr.eseo.tauri.util.CustomLogger;
 import fr.eseo.tauri.util.ResponseMessage;
@@ -57,6 +58,18 @@ public class NotificationController {
         return ResponseEntity.ok(responseMessage.create());
     }
 
+    /**
+     * Send one notification to every user of a project, of a role type or of a team
+     * @param broadcast the notification and the filters of its recipients
+     * @return a message, the notifications being written in the background
+     */
+    @PostMapping("/broadcast")
+    public ResponseEntity<String> broadcastNotification(@Validated(Create.class) @RequestBody NotificationBroadcast broadcast) {
+        notificationService.broadcastNotification(broadcast);
+        CustomLogger.info(responseMessage.create());
+        return ResponseEntity.accepted().body(responseMessage.create());
+    }
+
     /**
      * Update a notification
      * @param id the id of the notification
@@ -82,6 +95,18 @@ public class NotificationController {
         return ResponseEntity.ok(responseMessage.update());
     }
 
+    /**
+     * Check all the notifications of a user with one update
+     * @param userId the id of the user who receive the notifications
+     * @return a message
+     */
+    @PatchMapping("/check-all")
+    public ResponseEntity<String> checkAllNotifications(@RequestParam("userId") Integer userId) {
+        notificationService.checkAllNotifications(userId);
+        CustomLogger.info(responseMessage.update());
+        return ResponseEntity.ok(responseMessage.update());
+    }
+
     /**
      * Delete a notification by its id
      * @param id the id of the notification
@@ -13,6 +13,7 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequiredArgsConstructor
@@ -49,6 +50,19 @@ public class PresentationOrderController {
         return ResponseEntity.ok(responseMessage.update());
     }
 
+    /**
+     * Publish the running order of every team of a sprint.
+     *
+     * @param studentIdsByTeamId the ids of the students of each team, in their presentation order
+     * @return a response entity with the number of updated presentation orders
+     */
+    @PatchMapping("/sprint/{sprintId}")
+    public ResponseEntity<Integer> publishPresentationOrders(@PathVariable Integer sprintId, @RequestBody Map<Integer, List<Integer>> studentIdsByTeamId) {
+        int updated = presentationOrderService.publishPresentationOrders(sprintId, studentIdsByTeamId);
+        CustomLogger.info(responseMessage.update());
+        return ResponseEntity.ok(updated);
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<String> deletePresentationOrder(@PathVariable Integer id) {
         presentationOrderService.deletePresentationOrder(id);
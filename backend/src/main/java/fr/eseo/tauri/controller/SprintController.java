@@ -2,6 +2,7 @@ package fr.eseo.tauri.controller;
 
 import fr.eseo.tauri.model.Comment;
 import fr.eseo.tauri.model.Sprint;
+import fr.eseo.tauri.service.SprintGradeResultService;
 import fr.eseo.tauri.service.SprintService;
 import fr.eseo.tauri.util.CustomLogger;
 import fr.eseo.tauri.util.ResponseMessage;
@@ -22,6 +23,7 @@ import java.util.List;
 public class SprintController {
 
     private final SprintService sprintService;
+    private final SprintGradeResultService sprintGradeResultService;
     private final ResponseMessage responseMessage = new ResponseMessage("sprint");
 
     @GetMapping("/{id}")
@@ -43,6 +45,18 @@ public class SprintController {
         return ResponseEntity.ok(responseMessage.create());
     }
 
+    /**
+     * Create all the sprints of a project at once.
+     *
+     * @return a response entity with the created sprints
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<List<Sprint>> createSprints(@RequestBody List<Sprint> sprints, @RequestParam Integer projectId) {
+        List<Sprint> createdSprints = sprintService.createSprints(sprints, projectId);
+        CustomLogger.info(responseMessage.create());
+        return ResponseEntity.ok(createdSprints);
+    }
+
     @PatchMapping("/{id}")
     public ResponseEntity<String> updateSprint(@PathVariable Integer id, @Validated(Update.class) @RequestBody Sprint updatedSprint) {
         sprintService.updateSprint(id, updatedSprint);
@@ -70,6 +84,13 @@ public class SprintController {
         return ResponseEntity.ok(sprint);
     }
 
+    @PostMapping("/grades/rebuild")
+    public ResponseEntity<Integer> rebuildSprintGrades(@RequestParam("projectId") Integer projectId) {
+        int staleResults = sprintGradeResultService.rebuild(projectId);
+        CustomLogger.info("Rebuilt the sprint grades of the project " + projectId);
+        return ResponseEntity.ok(staleResults);
+    }
+
     @GetMapping("/{sprintId}/author/{authorId}/student-comments")
     public ResponseEntity<List<Comment>> getTeamStudentsComments(@PathVariable Integer sprintId, @PathVariable Integer authorId, @RequestParam("teamId") Integer teamId){
         List<Comment> teamStudentComments = sprintService.getTeamStudentsComments(sprintId, authorId, teamId);
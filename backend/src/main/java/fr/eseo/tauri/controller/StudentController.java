@@ -1,19 +1,21 @@
 package fr.eseo.tauri.controller;
 
-import com.opencsv.exceptions.CsvValidationException;
 import fr.eseo.tauri.model.Bonus;
 import fr.eseo.tauri.model.Comment;
 import fr.eseo.tauri.model.Grade;
+import fr.eseo.tauri.model.ImportJob;
 import fr.eseo.tauri.model.Student;
 import fr.eseo.tauri.service.StudentService;
 import fr.eseo.tauri.util.CustomLogger;
 import fr.eseo.tauri.util.ResponseMessage;
 import fr.eseo.tauri.util.valid.Update;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import fr.eseo.tauri.util.valid.Create;
 import lombok.RequiredArgsConstructor;
 
@@ -74,21 +76,20 @@ public class StudentController {
 	 * It is mapped to the "/uploadCSV" endpoint and only responds to HTTP POST requests.
 	 *
 	 * @param file This is the file that is uploaded by the client. It is expected to be a CSV file.
-	 * @return ResponseEntity<String> This returns a response entity with a message indicating the result of the operation.
+	 * @return ResponseEntity<ImportJob> This returns an accepted response with the import job, whose progress is reported by "/api/imports/{jobId}".
 	 * If the file is empty, it returns a bad request response with a message "Uploaded file is empty".
-	 * If the file is processed successfully, it returns an OK response with a message "File uploaded successfully".
-	 * If an error occurs during the processing of the file, it returns an internal server error response with a message indicating the error.
+	 * If too many imports are already waiting, it returns a service unavailable response.
 	 */
 	@PostMapping("/upload")
-	public ResponseEntity<String> handleFileUpload(@RequestParam("file-upload") MultipartFile file, @RequestParam("projectId") Integer projectId) throws IOException, CsvValidationException {
-		studentService.populateDatabaseFromCSV(file, projectId);
-		return ResponseEntity.ok("File uploaded successfully");
+	public ResponseEntity<ImportJob> handleFileUpload(@RequestParam("file-upload") MultipartFile file, @RequestParam("projectId") Integer projectId) throws IOException {
+		ImportJob job = studentService.populateDatabaseFromCSV(file, projectId);
+		return ResponseEntity.accepted().body(job);
 	}
 
 	@GetMapping("/download")
-	public ResponseEntity<byte[]> downloadStudentsCSV(@RequestParam("projectId") Integer projectId) throws IOException {
-		byte[] studentsCSV = studentService.createStudentsCSV(projectId);
-		return ResponseEntity.ok(studentsCSV);
+	public ResponseEntity<StreamingResponseBody> downloadStudentsCSV(@RequestParam("projectId") Integer projectId) {
+		StreamingResponseBody studentsCSV = outputStream -> studentService.writeStudentsCSV(projectId, outputStream);
+		return ResponseEntity.ok().contentType(MediaType.parseMediaType("text/csv")).body(studentsCSV);
 	}
 
 	@GetMapping("/{id}/bonus")
@@ -2,6 +2,7 @@ package fr.eseo.tauri.controller;
 
 import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.service.PresentationOrderService;
+import fr.eseo.tauri.service.TeamGenerationService;
 import fr.eseo.tauri.service.TeamService;
 import fr.eseo.tauri.util.CustomLogger;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -15,6 +16,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.validation.annotation.Validated;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Controller class for managing teams.
@@ -61,6 +63,12 @@ public class TeamController {
         return ResponseEntity.ok(students);
     }
 
+    @GetMapping("/criteria")
+    public ResponseEntity<Map<Integer, Criteria>> getCriteriaByProject(@RequestParam("projectId") Integer projectId) {
+        Map<Integer, Criteria> criteria = teamService.getCriteriaByProject(projectId);
+        return ResponseEntity.ok(criteria);
+    }
+
     @GetMapping("/{id}/criteria")
     public ResponseEntity<Criteria> getCriteriaByTeamId(@PathVariable Integer id, @RequestParam("projectId") Integer projectId) {
         Criteria criteria = teamService.getCriteriaByTeamId(id, projectId);
@@ -75,12 +83,36 @@ public class TeamController {
 
     /**
      * Create teams.
+     * When a time budget is given, the greedy composition is improved by a local search during this number of milliseconds.
      *
-     * @return a response entity with a success message if the update was successful, otherwise an error message
+     * @return a response entity with the objective score of the composition, lower is better
      */
     @PostMapping
-    public ResponseEntity<String> generateTeams(@RequestParam("projectId") Integer projectId, @RequestParam("autoWomenRatio") Boolean autoWomenRatio, @Validated(Create.class) @RequestBody Project projectDetails) {
-        teamService.generateTeams(projectId, projectDetails, autoWomenRatio);
+    public ResponseEntity<TeamGenerationService.Composition> generateTeams(@RequestParam("projectId") Integer projectId, @RequestParam("autoWomenRatio") Boolean autoWomenRatio, @RequestParam(value = "timeBudget", required = false) Integer timeBudget, @Validated(Create.class) @RequestBody Project projectDetails) {
+        TeamGenerationService.Composition composition = teamService.generateTeams(projectId, projectDetails, autoWomenRatio, timeBudget);
+        CustomLogger.info(responseMessage.create());
+        return ResponseEntity.ok(composition);
+    }
+
+    /**
+     * Preview teams without writing anything.
+     *
+     * @return a response entity with the composed teams, their criteria and the objective score of the composition
+     */
+    @PostMapping("/preview")
+    public ResponseEntity<TeamPreview> previewTeams(@RequestParam("projectId") Integer projectId, @RequestParam("autoWomenRatio") Boolean autoWomenRatio, @RequestParam(value = "timeBudget", required = false) Integer timeBudget, @Validated(Create.class) @RequestBody Project projectDetails) {
+        TeamPreview preview = teamService.previewTeams(projectId, projectDetails, autoWomenRatio, timeBudget);
+        return ResponseEntity.ok(preview);
+    }
+
+    /**
+     * Write the teams of a preview.
+     *
+     * @return a response entity with a success message, or a conflict response if the students changed since the preview was composed
+     */
+    @PostMapping("/preview/{previewId}/commit")
+    public ResponseEntity<String> commitTeamPreview(@PathVariable Integer previewId) {
+        teamService.commitPreview(previewId);
         CustomLogger.info(responseMessage.create());
         return ResponseEntity.ok(responseMessage.create());
     }
@@ -2,6 +2,7 @@ package fr.eseo.tauri.controller;
 
 import fr.eseo.tauri.model.Grade;
 import fr.eseo.tauri.model.Notification;
+import fr.eseo.tauri.model.NotificationItem;
 import fr.eseo.tauri.model.Team;
 import fr.eseo.tauri.model.User;
 import fr.eseo.tauri.model.enumeration.PermissionType;
@@ -13,9 +14,11 @@ import fr.eseo.tauri.util.valid.Create;
 import fr.eseo.tauri.util.valid.Update;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -76,6 +79,12 @@ public class UserController {
 		return ResponseEntity.ok(responseMessage.deleteAll());
 	}
 
+	@GetMapping(path = "/{id}/permissions/bitmap")
+	public ResponseEntity<String> getPermissionBitmap(@PathVariable Integer id) {
+		var bitmap = userService.getPermissionBitmapByUser(id);
+		return ResponseEntity.ok(bitmap);
+	}
+
 	@GetMapping(path = "/{id}/permissions/{permissionType}")
 	public ResponseEntity<Boolean> hasPermission(@PathVariable Integer id, @PathVariable PermissionType permissionType) {
 		var hasPermission = userService.hasPermission(id, permissionType);
@@ -107,6 +116,23 @@ public class UserController {
 		return ResponseEntity.ok(notifications);
 	}
 
+	@GetMapping("/{userId}/notifications/page")
+	public ResponseEntity<List<NotificationItem>> getNotificationPageUser(@PathVariable Integer userId, @RequestParam(value = "beforeId", required = false) Integer beforeId, @RequestParam(value = "size", required = false) Integer size) {
+		List<NotificationItem> notifications = notificationService.getNotificationPageByUser(userId, beforeId, size);
+		return ResponseEntity.ok(notifications);
+	}
+
+	@GetMapping("/{userId}/notifications/unread-count")
+	public ResponseEntity<Long> countUncheckedNotificationsUser(@PathVariable Integer userId) {
+		long count = notificationService.countUncheckedNotifications(userId);
+		return ResponseEntity.ok(count);
+	}
+
+	@GetMapping(path = "/{userId}/notifications/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter streamNotificationsUser(@PathVariable Integer userId, @RequestHeader(value = "Last-Event-ID", required = false) Integer lastEventId) {
+		return notificationService.subscribe(userId, lastEventId);
+	}
+
 	@GetMapping("/{authorId}/rated-grades")
 	public ResponseEntity<List<Grade>> getRatedGradesByAuthorId(@PathVariable Integer authorId) {
 		var grades = gradeService.getRatedGradesByAuthorId(authorId);
@@ -3,9 +3,11 @@ package fr.eseo.tauri.exception;
 import fr.eseo.tauri.util.CustomLogger;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.TypeMismatchException;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.method.annotation.HandlerMethodValidationException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -48,12 +50,24 @@ public class GlobalExceptionHandler {
 		return handleException(exception, request, HttpStatus.NOT_FOUND);
 	}
 
+	// Handle the exceptions related to outdated resources
+	@ExceptionHandler(value = {ResourceConflictException.class})
+	public ResponseEntity<ExceptionResponse> handleConflictException(Exception exception, HttpServletRequest request) {
+		return handleException(exception, request, HttpStatus.CONFLICT);
+	}
+
 	// Handle the exceptions related to unauthorized actions
 	@ExceptionHandler(value = {SecurityException.class})
 	public ResponseEntity<ExceptionResponse> handleUnauthorizedException(Exception exception, HttpServletRequest request) {
 		return handleException(exception, request, HttpStatus.UNAUTHORIZED);
 	}
 
+	// Handle the exceptions related to a full task queue or an unavailable directory
+	@ExceptionHandler(value = {TaskRejectedException.class, AuthenticationServiceException.class})
+	public ResponseEntity<ExceptionResponse> handleServiceUnavailableException(Exception exception, HttpServletRequest request) {
+		return handleException(exception, request, HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
 	// Handle all other exceptions
 	@ExceptionHandler(value = Exception.class)
 	public ResponseEntity<ExceptionResponse> handleUnhandledExceptions(Exception exception, HttpServletRequest request) {
@@ -0,0 +1,9 @@
+package fr.eseo.tauri.exception;
+
+public class ResourceConflictException extends RuntimeException {
+
+    public ResourceConflictException(String resource, Integer id, String reason) {
+        super("The " + resource + " with id " + id + " " + reason + ".");
+    }
+
+}
@@ -0,0 +1,113 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fr.eseo.tauri.model.enumeration.ImportJobStatus;
+import lombok.Data;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Progress of an asynchronous student import.
+ * The jobs are kept in memory, they are written by the import thread and read by the status requests.
+ */
+@Data
+public class ImportJob {
+
+    @JsonProperty
+    private final Integer id;
+
+    @JsonProperty
+    private final Integer projectId;
+
+    @JsonProperty
+    private volatile ImportJobStatus status = ImportJobStatus.PENDING;
+
+    // Student rows read from the file, including the rejected ones
+    @JsonProperty
+    private volatile int processedRows;
+
+    @JsonProperty
+    private volatile int importedStudents;
+
+    @JsonProperty
+    private final List<RejectedRow> rejectedRows = new CopyOnWriteArrayList<>();
+
+    // Last line of the file whose students are committed, a resumed job starts after it
+    @JsonProperty
+    private volatile int committedLines;
+
+    @JsonProperty
+    private volatile String error;
+
+    @JsonProperty
+    private volatile Instant startedAt;
+
+    @JsonProperty
+    private volatile Instant finishedAt;
+
+    @JsonIgnore
+    private volatile int committedRows;
+
+    @JsonIgnore
+    private volatile byte[] content;
+
+    // Grade types created from the headers, reused when the job is resumed
+    @JsonIgnore
+    private volatile List<GradeType> gradeTypes;
+
+    /**
+     * Count a student row read from the file.
+     */
+    public void processRow() {
+        processedRows++;
+    }
+
+    /**
+     * Reject a row of the file.
+     * @param line the line of the row in the file
+     * @param reason the reason of the rejection
+     */
+    public void reject(int line, String reason) {
+        rejectedRows.add(new RejectedRow(line, reason));
+    }
+
+    /**
+     * Record a committed chunk.
+     * @param line the last line of the chunk in the file
+     * @param students the number of students written by the chunk
+     */
+    public void commit(int line, int students) {
+        importedStudents += students;
+        committedLines = line;
+        committedRows = processedRows;
+    }
+
+    /**
+     * Roll the progress back to the last committed chunk, before resuming a failed job.
+     */
+    public void restart() {
+        processedRows = committedRows;
+        rejectedRows.removeIf(rejectedRow -> rejectedRow.line() > committedLines);
+        error = null;
+        finishedAt = null;
+        status = ImportJobStatus.PENDING;
+    }
+
+    /**
+     * @return the number of student rows processed per second
+     */
+    @JsonProperty("throughput")
+    public double throughput() {
+        if (startedAt == null) return 0;
+        long elapsedMillis = Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now()).toMillis();
+        return elapsedMillis > 0 ? processedRows * 1000.0 / elapsedMillis : processedRows;
+    }
+
+    public record RejectedRow(int line, String reason) {
+    }
+
+}
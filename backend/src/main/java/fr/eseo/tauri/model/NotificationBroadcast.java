@@ -0,0 +1,37 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fr.eseo.tauri.model.enumeration.NotificationType;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import fr.eseo.tauri.util.valid.Create;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+/**
+ * One notification sent to every user matching the given filters: a project, a role type and a team.
+ */
+@Data
+public class NotificationBroadcast {
+
+    @NotNull(groups = { Create.class }, message = "The message field is required")
+    @JsonProperty
+    private String message;
+
+    @NotNull(groups = { Create.class }, message = "The type field is required")
+    @JsonProperty
+    private NotificationType type;
+
+    @NotNull(groups = { Create.class }, message = "The userFromId field is required")
+    @JsonProperty
+    private Integer userFromId;
+
+    @JsonProperty
+    private Integer projectId;
+
+    @JsonProperty
+    private RoleType roleType;
+
+    @JsonProperty
+    private Integer teamId;
+
+}
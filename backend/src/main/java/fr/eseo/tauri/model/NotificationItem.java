@@ -0,0 +1,39 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fr.eseo.tauri.model.enumeration.NotificationType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A notification as listed to its recipient, without the users graphs.
+ */
+@Data
+@AllArgsConstructor
+public class NotificationItem {
+
+    @JsonProperty
+    private Integer id;
+
+    @JsonProperty
+    private String message;
+
+    @JsonProperty
+    private Boolean checked;
+
+    @JsonProperty
+    private NotificationType type;
+
+    @JsonProperty
+    private Integer userFromId;
+
+    @JsonProperty
+    private String userFromName;
+
+    public static NotificationItem from(Notification notification) {
+        User userFrom = notification.userFrom();
+        return new NotificationItem(notification.id(), notification.message(), notification.checked(), notification.type(),
+                userFrom != null ? userFrom.id() : null, userFrom != null ? userFrom.name() : null);
+    }
+
+}
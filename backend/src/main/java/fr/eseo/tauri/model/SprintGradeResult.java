@@ -0,0 +1,51 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fr.eseo.tauri.model.id_class.SprintGradeResultId;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Materialized sprint grade of a student, kept up to date by {@link fr.eseo.tauri.service.SprintGradeResultService}.
+ */
+@Entity
+@Table(name = "sprint_grade_results", indexes = @Index(columnList = "team_id, sprint_id"))
+@IdClass(SprintGradeResultId.class)
+@Data
+public class SprintGradeResult {
+
+    @Id
+    @ManyToOne
+    @JoinColumn(name = "student_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JsonProperty
+    private Student student;
+
+    @Id
+    @ManyToOne
+    @JoinColumn(name = "sprint_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JsonProperty
+    private Sprint sprint;
+
+    @ManyToOne
+    @JoinColumn(name = "team_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JsonProperty
+    private Team team;
+
+    /**
+     * Sprint grade as shown in the team grades (rounded), null if it cannot be computed yet.
+     */
+    @JsonProperty
+    private Double sprintGrade;
+
+    /**
+     * Sprint grade as returned for the student alone (not rounded), null if it cannot be computed yet.
+     */
+    @JsonProperty
+    private Double studentSprintGrade;
+
+}
@@ -0,0 +1,59 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A composition of teams computed without being written, it can be committed later.
+ */
+@Data
+public class TeamPreview {
+
+    @JsonProperty
+    private final Integer id;
+
+    @JsonProperty
+    private final Integer projectId;
+
+    @JsonProperty
+    private final Integer nbTeams;
+
+    @JsonProperty
+    private final Integer nbWomen;
+
+    @JsonProperty
+    private final Boolean autoWomenRatio;
+
+    // Objective score of the composition, lower is better
+    @JsonProperty
+    private final Double score;
+
+    // Gap between the best and the worst team average
+    @JsonProperty
+    private final Double averageSpread;
+
+    @JsonProperty
+    private final List<PreviewTeam> teams;
+
+    // The student ids of each team, in the order of the teams to create
+    @JsonIgnore
+    private final List<List<Integer>> studentIds;
+
+    // The project settings written with the teams
+    @JsonIgnore
+    private final Project projectDetails;
+
+    // Version of the student snapshot the teams are composed from, the preview is stale once the snapshots are invalidated
+    @JsonIgnore
+    private final long snapshotVersion;
+
+    public record PreviewTeam(String name, Double average, Criteria criteria, List<PreviewMember> members) {
+    }
+
+    public record PreviewMember(Integer id, String name, Double average) {
+    }
+
+}
@@ -0,0 +1,46 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fr.eseo.tauri.model.id_class.TeamSprintGradeResultId;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Materialized sprint grades of a team, kept up to date by {@link fr.eseo.tauri.service.SprintGradeResultService}.
+ */
+@Entity
+@Table(name = "team_sprint_grade_results")
+@IdClass(TeamSprintGradeResultId.class)
+@Data
+public class TeamSprintGradeResult {
+
+    @Id
+    @ManyToOne
+    @JoinColumn(name = "team_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JsonProperty
+    private Team team;
+
+    @Id
+    @ManyToOne
+    @JoinColumn(name = "sprint_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JsonProperty
+    private Sprint sprint;
+
+    /**
+     * Sprint grades of the members, in the same order as the team members, separated by ';'.
+     */
+    @Column(columnDefinition = "TEXT")
+    @JsonProperty
+    private String sprintGrades;
+
+    /**
+     * False when the grades of the team cannot be computed (missing grades), the reads then fall back to the live computation.
+     */
+    @JsonProperty
+    private Boolean computed;
+
+}
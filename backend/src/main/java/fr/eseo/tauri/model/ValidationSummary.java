@@ -0,0 +1,22 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import lombok.NonNull;
+
+@Data
+public class ValidationSummary {
+
+    @NonNull
+    @JsonProperty
+    private Long confirmed;
+
+    @NonNull
+    @JsonProperty
+    private Long rejected;
+
+    @NonNull
+    @JsonProperty
+    private Long pending;
+
+}
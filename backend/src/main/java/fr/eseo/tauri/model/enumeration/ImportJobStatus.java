@@ -0,0 +1,10 @@
+package fr.eseo.tauri.model.enumeration;
+
+public enum ImportJobStatus {
+
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED;
+
+}
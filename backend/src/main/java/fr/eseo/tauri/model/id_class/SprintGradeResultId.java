@@ -0,0 +1,19 @@
+package fr.eseo.tauri.model.id_class;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fr.eseo.tauri.model.Sprint;
+import fr.eseo.tauri.model.Student;
+import lombok.EqualsAndHashCode;
+
+import java.io.Serializable;
+
+@EqualsAndHashCode
+public class SprintGradeResultId implements Serializable {
+
+    @JsonProperty
+    private Student student;
+
+    @JsonProperty
+    private Sprint sprint;
+
+}
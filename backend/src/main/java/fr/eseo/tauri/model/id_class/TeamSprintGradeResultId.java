@@ -0,0 +1,19 @@
+package fr.eseo.tauri.model.id_class;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fr.eseo.tauri.model.Sprint;
+import fr.eseo.tauri.model.Team;
+import lombok.EqualsAndHashCode;
+
+import java.io.Serializable;
+
+@EqualsAndHashCode
+public class TeamSprintGradeResultId implements Serializable {
+
+    @JsonProperty
+    private Team team;
+
+    @JsonProperty
+    private Sprint sprint;
+
+}
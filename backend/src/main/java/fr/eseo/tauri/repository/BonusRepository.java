@@ -18,12 +18,24 @@ public interface BonusRepository extends JpaRepository<Bonus, Integer> {
     @Query(value = "DELETE FROM bonuses WHERE sprint_id IN (SELECT id FROM sprints WHERE project_id = :projectId)", nativeQuery = true)
     void deleteAllByProject(Integer projectId);
 
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM bonuses WHERE sprint_id = :sprintId", nativeQuery = true)
+    void deleteAllBySprint(Integer sprintId);
+
     @Query("SELECT b FROM Bonus b WHERE b.student.id = :studentId AND b.sprint.id = :sprintId ORDER BY b.limited ASC")
     List<Bonus> findAllStudentBonuses(Integer studentId, Integer sprintId);
 
     @Query("SELECT b FROM Bonus b WHERE b.student.id = :studentId AND b.limited = :limited AND b.sprint.id = :sprintId")
     Bonus findStudentBonus(Integer studentId, Boolean limited, Integer sprintId);
 
+    /**
+     * Sum of the bonuses of a sprint, for every member of the teams.
+     * @return rows of [studentId, sum]
+     */
+    @Query("SELECT b.student.id, SUM(b.value) FROM Bonus b WHERE b.student.team.id IN :teamIds AND b.sprint.id = :sprintId GROUP BY b.student.id")
+    List<Object[]> sumBonusesByTeams(List<Integer> teamIds, Integer sprintId);
+
 
     @Query("SELECT b FROM Bonus b WHERE b.student.id = :id AND b.sprint.id = :sprintId")
     Bonus findAllByAuthorId(Integer id, Integer sprintId);
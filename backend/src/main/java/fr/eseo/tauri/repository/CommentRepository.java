@@ -18,6 +18,11 @@ public interface CommentRepository extends JpaRepository<Comment, Integer> {
     @Query(value = "DELETE FROM comments WHERE sprint_id IN (SELECT id FROM sprints WHERE project_id = :projectId)", nativeQuery = true)
     void deleteAllByProject(Integer projectId);
 
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM comments WHERE sprint_id = :sprintId", nativeQuery = true)
+    void deleteAllBySprint(Integer sprintId);
+
     @Query("SELECT c FROM Comment c WHERE c.team.id = :teamId AND c.sprint.id = :sprintId")
     List<Comment> findAllByTeamIdAndSprintId(Integer teamId, Integer sprintId);
 
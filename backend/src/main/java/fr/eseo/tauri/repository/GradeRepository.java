@@ -5,12 +5,17 @@ import fr.eseo.tauri.model.GradeType;
 import fr.eseo.tauri.model.Student;
 import fr.eseo.tauri.model.Team;
 import fr.eseo.tauri.model.enumeration.RoleType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 public interface GradeRepository extends JpaRepository<Grade, Integer> {
 
@@ -25,6 +30,11 @@ public interface GradeRepository extends JpaRepository<Grade, Integer> {
 	@Query(value = "DELETE FROM grades WHERE sprint_id IN (SELECT id FROM sprints WHERE project_id = :projectId)", nativeQuery = true)
 	void deleteAllByProject(Integer projectId);
 
+	@Transactional
+	@Modifying
+	@Query(value = "DELETE FROM grades WHERE sprint_id = :sprintId", nativeQuery = true)
+	void deleteAllBySprint(Integer sprintId);
+
 	@Query("SELECT g FROM Grade g WHERE g.team.id = :teamId")
 	List<Grade> findAllByTeamId(Long teamId);
 
@@ -47,18 +57,59 @@ public interface GradeRepository extends JpaRepository<Grade, Integer> {
 	@Query("SELECT AVG(g.value) FROM Grade g WHERE g.team.id = :teamId AND g.gradeType.name = :gradeTypeName AND g.sprint.id = :sprintId")
 	Double findAverageByGradeTypeForTeam(Integer teamId, Integer sprintId, String gradeTypeName);
 
+	/**
+	 * Average of the team grades of a sprint, for every team and grade type.
+	 * @return rows of [teamId, gradeTypeName, average]
+	 */
+	@Query("SELECT g.team.id, g.gradeType.name, AVG(g.value) FROM Grade g WHERE g.team.id IN :teamIds AND g.sprint.id = :sprintId GROUP BY g.team.id, g.gradeType.name")
+	List<Object[]> findAveragesByGradeTypeForTeams(List<Integer> teamIds, Integer sprintId);
+
+	/**
+	 * Average of the individual grades of a sprint, for every member of the teams.
+	 * @return rows of [studentId, average]
+	 */
+	@Query("SELECT g.student.id, AVG(g.value) FROM Grade g WHERE g.student.team.id IN :teamIds AND g.gradeType.name = :gradeTypeName AND g.sprint.id = :sprintId GROUP BY g.student.id")
+	List<Object[]> findAveragesByGradeTypeForTeamsStudents(List<Integer> teamIds, Integer sprintId, String gradeTypeName);
+
 	@Modifying
 	@Transactional
 	@Query("UPDATE Grade g SET g.value = :value WHERE g.student.id = :studentId AND g.gradeType.imported AND g.gradeType.name = 'Moyenne'")
 	void updateImportedMeanByStudentId(Float value, Integer studentId);
 
+	/**
+	 * Set the imported "Moyenne" grade of every non bachelor student of a project to the weighted mean of its other imported grades.
+	 * The means are computed by a single grouped sub-query and written by the same statement.
+	 * @return the number of updated grades
+	 */
+	@Modifying
+	@Transactional
+	@Query(value = "UPDATE grades g JOIN grade_types gt ON gt.id = g.grade_type_id JOIN students s ON s.user_id = g.student_id " +
+			"LEFT JOIN (SELECT ig.student_id, SUM(ig.value * igt.factor) AS total, SUM(igt.factor) AS factors FROM grades ig " +
+			"JOIN grade_types igt ON igt.id = ig.grade_type_id JOIN students ist ON ist.user_id = ig.student_id " +
+			"WHERE ist.project_id = :projectId AND igt.imported = TRUE AND igt.name <> 'Moyenne' GROUP BY ig.student_id) m ON m.student_id = g.student_id " +
+			"SET g.value = IF(m.factors IS NULL OR m.factors = 0, 0, m.total / m.factors) " +
+			"WHERE s.project_id = :projectId AND (s.bachelor IS NULL OR s.bachelor = FALSE) AND gt.imported = TRUE AND gt.name = 'Moyenne'", nativeQuery = true)
+	int updateImportedMeansByProject(Integer projectId);
+
 	@Query("SELECT g.value FROM Grade g WHERE g.student = :student AND g.gradeType = :gradeType")
 	Float findValueByStudentAndGradeType(Student student, GradeType gradeType);
 
 
-	@Query("SELECT g.gradeType FROM Grade g WHERE g.gradeType.imported = false and g.student.project.id = :projectId")
+	@Query("SELECT gt FROM GradeType gt WHERE gt.imported = false AND EXISTS (SELECT g FROM Grade g WHERE g.gradeType = gt AND g.student.project.id = :projectId) ORDER BY gt.id")
 	List<GradeType> findAllUnimportedGradeTypesByProjectId(int projectId);
 
+	/**
+	 * Every student of a project with its imported or unimported grades, one row per grade (or a single row without grade), ordered by student.
+	 * The rows are streamed from the server (MySQL fetch size of Integer.MIN_VALUE), no other query can run on the connection until the stream is closed.
+	 * @return rows of [studentId, name, gender, bachelor, gradeTypeId, value]
+	 */
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+	@Query("SELECT s.id, s.name, s.gender, s.bachelor, gt.id, g.value FROM Student s " +
+			"LEFT JOIN Grade g ON g.student.id = s.id " +
+			"LEFT JOIN GradeType gt ON gt.id = g.gradeType.id AND gt.imported = :imported " +
+			"WHERE s.project.id = :projectId ORDER BY s.id")
+	Stream<Object[]> streamGradesByProject(Integer projectId, Boolean imported);
+
 
 	@Query("SELECT g FROM Grade g WHERE g.sprint.id = :sprintId AND g.student.id = :studentId AND g.gradeType.id = :gradeType")
 	Grade findIsConfirmedBySprindAndStudent(Integer sprintId, Integer studentId, Integer gradeType);
@@ -0,0 +1,83 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.enumeration.NotificationType;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC writes of the notifications sent to a whole set of users.
+ */
+@Repository
+@RequiredArgsConstructor
+public class NotificationBroadcastRepository {
+
+    private static final String RECIPIENTS_QUERY = "SELECT u.id FROM users u WHERE " +
+            "(:teamId IS NULL OR u.id IN (SELECT s.user_id FROM students s WHERE s.team_id = :teamId) " +
+            "OR u.id IN (SELECT t.leader_id FROM teams t WHERE t.id = :teamId)) " +
+            "AND (:projectId IS NULL OR u.id IN (SELECT s.user_id FROM students s WHERE s.project_id = :projectId) " +
+            "OR u.id IN (SELECT t.leader_id FROM teams t WHERE t.project_id = :projectId)) " +
+            "AND (:roleType IS NULL OR u.id IN (SELECT r.user_id FROM roles r WHERE r.type = :roleType)) " +
+            "ORDER BY u.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    /**
+     * The users matching every given filter: the students and team leaders of a project or of a team, the users having a role.
+     * @return the ids of the users
+     */
+    public List<Integer> findRecipientIds(Integer projectId, RoleType roleType, Integer teamId) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("projectId", projectId)
+                .addValue("roleType", roleType != null ? roleType.name() : null)
+                .addValue("teamId", teamId);
+        return namedParameterJdbcTemplate.queryForList(RECIPIENTS_QUERY, parameters, Integer.class);
+    }
+
+    /**
+     * Insert the same notification for every recipient with one batch.
+     * @return the ids of the notifications, in the order of the recipients
+     */
+    public List<Integer> insertNotifications(List<Integer> recipientIds, String message, NotificationType type, Integer userFromId) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement("INSERT INTO notifications (message, checked, type, user_to, user_from) VALUES (?, FALSE, ?, ?, ?)",
+                        Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        statement.setString(1, message);
+                        statement.setString(2, type.name());
+                        statement.setInt(3, recipientIds.get(i));
+                        statement.setInt(4, userFromId);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return recipientIds.size();
+                    }
+                },
+                keyHolder);
+
+        List<Integer> ids = new ArrayList<>();
+        for (Map<String, Object> keys : keyHolder.getKeyList()) {
+            ids.add(((Number) keys.values().iterator().next()).intValue());
+        }
+        return ids;
+    }
+
+}
@@ -1,9 +1,13 @@
 package fr.eseo.tauri.repository;
 
 import fr.eseo.tauri.model.Notification;
+import fr.eseo.tauri.model.NotificationItem;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -12,4 +16,25 @@ public interface NotificationRepository extends JpaRepository<Notification, Inte
     @Query("SELECT n FROM Notification n WHERE n.userTo.id= :user")
     List<Notification> findByUser(@Param("user") int id);
 
+    /**
+     * The notifications received by a user after a notification, the newest first.
+     */
+    @Query("SELECT n FROM Notification n WHERE n.userTo.id = :userId AND n.id > :lastId ORDER BY n.id DESC")
+    List<Notification> findByUserAfter(Integer userId, Integer lastId, Pageable pageable);
+
+    /**
+     * A page of the notifications received by a user, the newest first, starting before a notification id when it is not null.
+     */
+    @Query("SELECT new fr.eseo.tauri.model.NotificationItem(n.id, n.message, n.checked, n.type, uf.id, uf.name) " +
+            "FROM Notification n LEFT JOIN n.userFrom uf WHERE n.userTo.id = :userId AND (:beforeId IS NULL OR n.id < :beforeId) ORDER BY n.id DESC")
+    List<NotificationItem> findPageByUser(Integer userId, Integer beforeId, Pageable pageable);
+
+    @Query("SELECT COUNT(n) FROM Notification n WHERE n.userTo.id = :userId AND n.checked = false")
+    long countUncheckedByUser(Integer userId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Notification n SET n.checked = true WHERE n.userTo.id = :userId AND n.checked = false")
+    int checkAllByUser(Integer userId);
+
 }
@@ -4,7 +4,9 @@ import fr.eseo.tauri.model.User;
 import fr.eseo.tauri.model.enumeration.RoleType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import fr.eseo.tauri.model.Role;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -22,4 +24,14 @@ public interface RoleRepository extends JpaRepository<Role, Integer> {
     @Query("SELECT r FROM Role r WHERE r.user = :user AND r.type = :roleType")
     Role findFirstByUserAndType(User user, RoleType roleType);
 
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE r FROM roles r JOIN students s ON s.user_id = r.user_id WHERE s.project_id = :projectId AND r.type = 'TEAM_MEMBER'", nativeQuery = true)
+    void deleteAllTeamMembersByProject(Integer projectId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO roles (type, user_id) SELECT 'TEAM_MEMBER', s.user_id FROM students s WHERE s.project_id = :projectId AND s.team_id IS NOT NULL", nativeQuery = true)
+    void insertTeamMembersByProject(Integer projectId);
+
 }
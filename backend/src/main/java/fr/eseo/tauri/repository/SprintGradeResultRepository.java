@@ -0,0 +1,40 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.SprintGradeResult;
+import fr.eseo.tauri.model.id_class.SprintGradeResultId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface SprintGradeResultRepository extends JpaRepository<SprintGradeResult, SprintGradeResultId> {
+
+    @Query("SELECT r.studentSprintGrade FROM SprintGradeResult r WHERE r.student.id = :studentId AND r.sprint.id = :sprintId")
+    Double findStudentSprintGrade(Integer studentId, Integer sprintId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO sprint_grade_results (student_id, sprint_id, team_id, sprint_grade, student_sprint_grade) VALUES (:studentId, :sprintId, :teamId, :sprintGrade, :studentSprintGrade) " +
+            "ON DUPLICATE KEY UPDATE team_id = VALUES(team_id), sprint_grade = VALUES(sprint_grade), student_sprint_grade = VALUES(student_sprint_grade)", nativeQuery = true)
+    void upsert(Integer studentId, Integer sprintId, Integer teamId, Double sprintGrade, Double studentSprintGrade);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM sprint_grade_results WHERE team_id = :teamId AND sprint_id = :sprintId", nativeQuery = true)
+    void deleteAllByTeamAndSprint(Integer teamId, Integer sprintId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM sprint_grade_results WHERE team_id = :teamId", nativeQuery = true)
+    void deleteAllByTeam(Integer teamId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM sprint_grade_results WHERE sprint_id IN (SELECT id FROM sprints WHERE project_id = :projectId)", nativeQuery = true)
+    void deleteAllByProject(Integer projectId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM sprint_grade_results WHERE sprint_id = :sprintId", nativeQuery = true)
+    void deleteAllBySprint(Integer sprintId);
+}
@@ -0,0 +1,85 @@
+package fr.eseo.tauri.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC batch writes of the rows every student has for every sprint, used by the sprint creation, the student CSV import
+ * and the presentation order updates.
+ * The bonuses use IDENTITY keys, which disables the Hibernate insert batching.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SprintProvisioningRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert the limited and unlimited bonuses of every student for every sprint.
+     */
+    public void insertBonuses(List<Integer> studentIds, List<Integer> sprintIds) {
+        List<Object[]> bonuses = new ArrayList<>();
+        for (Integer studentId : studentIds) {
+            for (Integer sprintId : sprintIds) {
+                bonuses.add(new Object[]{studentId, sprintId, true});
+                bonuses.add(new Object[]{studentId, sprintId, false});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO bonuses (value, limited, sprint_id, student_id) VALUES (0, ?, ?, ?)", bonuses, bonuses.size(), (statement, bonus) -> {
+            statement.setBoolean(1, (Boolean) bonus[2]);
+            statement.setInt(2, (Integer) bonus[1]);
+            statement.setInt(3, (Integer) bonus[0]);
+        });
+    }
+
+    /**
+     * Insert the presentation order of every student for every sprint, without position since the students have no team yet.
+     */
+    public void insertPresentationOrders(List<Integer> studentIds, List<Integer> sprintIds) {
+        List<Integer[]> presentationOrders = new ArrayList<>();
+        for (Integer studentId : studentIds) {
+            for (Integer sprintId : sprintIds) {
+                presentationOrders.add(new Integer[]{studentId, sprintId, null});
+            }
+        }
+        insertPresentationOrders(presentationOrders);
+    }
+
+    /**
+     * @param presentationOrders rows of [studentId, sprintId, value], the value being null for the students without team
+     */
+    public void insertPresentationOrders(List<Integer[]> presentationOrders) {
+        jdbcTemplate.batchUpdate("INSERT INTO presentation_orders (student_id, sprint_id, value) VALUES (?, ?, ?)", presentationOrders, presentationOrders.size(), (statement, presentationOrder) -> {
+            statement.setInt(1, presentationOrder[0]);
+            statement.setInt(2, presentationOrder[1]);
+            if (presentationOrder[2] == null) statement.setNull(3, Types.INTEGER);
+            else statement.setInt(3, presentationOrder[2]);
+        });
+    }
+
+    /**
+     * Set the positions of presentation orders with one batch, only for the students that are still in the given team.
+     * @param positions rows of [studentId, sprintId, value, teamId]
+     * @return the number of updated presentation orders
+     */
+    public int updatePresentationOrders(List<Integer[]> positions) {
+        int[][] updated = jdbcTemplate.batchUpdate("UPDATE presentation_orders SET value = ? WHERE student_id = ? AND sprint_id = ? " +
+                "AND student_id IN (SELECT user_id FROM students WHERE team_id = ?)", positions, positions.size(), (statement, position) -> {
+            statement.setInt(1, position[2]);
+            statement.setInt(2, position[0]);
+            statement.setInt(3, position[1]);
+            statement.setInt(4, position[3]);
+        });
+        int count = 0;
+        for (int[] batch : updated) {
+            for (int rows : batch) count += Math.max(rows, 0);
+        }
+        return count;
+    }
+
+}
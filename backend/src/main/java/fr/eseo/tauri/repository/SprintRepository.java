@@ -18,4 +18,21 @@ public interface SprintRepository extends JpaRepository<Sprint, Integer> {
     @Query(value = "DELETE FROM sprints WHERE project_id = :projectId", nativeQuery = true)
     void deleteAllByProject(Integer projectId);
 
+    /**
+     * First phase of the renumbering after a deletion: the later sprints of the project get negative orders,
+     * so the second phase never collides with an existing (project_id, sprint_order) pair.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Sprint s SET s.sprintOrder = -s.sprintOrder WHERE s.project.id = :projectId AND s.sprintOrder > :sprintOrder")
+    int offsetOrdersAfter(Integer projectId, Integer sprintOrder);
+
+    /**
+     * Second phase of the renumbering: the offset sprints take back a positive order, one less than before.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Sprint s SET s.sprintOrder = -s.sprintOrder - 1 WHERE s.project.id = :projectId AND s.sprintOrder < 0")
+    int shiftOffsetOrders(Integer projectId);
+
 }
@@ -0,0 +1,68 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC batch writes used by the student CSV import.
+ * The imported entities use IDENTITY keys, which disables the Hibernate insert batching.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StudentImportRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public void insertUsers(List<Student> students) {
+        jdbcTemplate.batchUpdate("INSERT INTO users (name, email, private_key) VALUES (?, ?, ?)", students, students.size(), (statement, student) -> {
+            statement.setString(1, student.name());
+            statement.setString(2, student.email());
+            statement.setString(3, student.privateKey());
+        });
+    }
+
+    public Map<String, Integer> findUserIdsByEmails(List<String> emails) {
+        Map<String, Integer> userIds = new HashMap<>();
+        namedParameterJdbcTemplate.query("SELECT id, email FROM users WHERE email IN (:emails)", Map.of("emails", emails),
+                resultSet -> { userIds.put(resultSet.getString("email"), resultSet.getInt("id")); });
+        return userIds;
+    }
+
+    public void insertStudents(List<Student> students, Integer projectId) {
+        jdbcTemplate.batchUpdate("INSERT INTO students (user_id, gender, bachelor, team_role, project_id) VALUES (?, ?, ?, ?, ?)", students, students.size(), (statement, student) -> {
+            statement.setInt(1, student.id());
+            statement.setString(2, student.gender().name());
+            statement.setBoolean(3, Boolean.TRUE.equals(student.bachelor()));
+            statement.setString(4, student.teamRole());
+            statement.setInt(5, projectId);
+        });
+    }
+
+    public void insertRoles(List<Integer> userIds, RoleType roleType) {
+        jdbcTemplate.batchUpdate("INSERT INTO roles (type, user_id) VALUES (?, ?)", userIds, userIds.size(), (statement, userId) -> {
+            statement.setString(1, roleType.name());
+            statement.setInt(2, userId);
+        });
+    }
+
+    /**
+     * @param grades rows of [value, studentId, gradeTypeId]
+     */
+    public void insertGrades(List<Object[]> grades) {
+        jdbcTemplate.batchUpdate("INSERT INTO grades (value, student_id, grade_type_id, confirmed) VALUES (?, ?, ?, FALSE)", grades, grades.size(), (statement, grade) -> {
+            statement.setFloat(1, (Float) grade[0]);
+            statement.setInt(2, (Integer) grade[1]);
+            statement.setInt(3, (Integer) grade[2]);
+        });
+    }
+
+}
@@ -14,6 +14,9 @@ public interface StudentRepository extends JpaRepository<Student, Integer> {
     @Query("SELECT s FROM Student s WHERE s.project.id = :projectId")
     List<Student> findAllByProject(Integer projectId);
 
+    @Query("SELECT s.id FROM Student s WHERE s.project.id = :projectId")
+    List<Integer> findIdsByProject(Integer projectId);
+
     @Transactional
     @Modifying
     @Query(value = "DELETE FROM students WHERE project_id = :projectId", nativeQuery = true)
@@ -23,31 +26,36 @@ public interface StudentRepository extends JpaRepository<Student, Integer> {
 
     Student findByName(String studentName);
 
-    @Query("SELECT s FROM Student s WHERE s.team.id = :teamId")
+    @Query("SELECT s FROM Student s WHERE s.team.id = :teamId ORDER BY s.id")
     List<Student> findByTeam(Integer teamId);
 
+    /**
+     * The students of teams ordered by id, the order of the materialized sprint grades of a team.
+     */
+    @Query("SELECT s FROM Student s WHERE s.team.id IN :teamIds ORDER BY s.id")
+    List<Student> findByTeams(List<Integer> teamIds);
+
+    /**
+     * The students of a team ordered by their presentation order of a sprint, the students without order last.
+     */
+    @Query("SELECT s FROM Student s LEFT JOIN PresentationOrder po ON po.student = s AND po.sprint.id = :sprintId " +
+            "WHERE s.team.id = :teamId ORDER BY CASE WHEN po.value IS NULL THEN 1 ELSE 0 END, po.value, s.id")
+    List<Student> findByTeamOrderedByPresentation(Integer teamId, Integer sprintId);
+
     List<Student> findByGender(Gender gender);
-    @Query("SELECT s FROM Student s WHERE s.gender = :gender AND s.project.id = :projectId")
-    List<Student> findByGenderAndProjectId(Gender gender, Integer projectId);
 
     List<Student> findByGenderOrderByBachelor(Gender gender);
 
-
-    @Query("SELECT s FROM Grade gr JOIN gr.student s JOIN gr.gradeType gt WHERE (gt.name = 'Moyenne' AND (s.gender = :gender OR s.gender IS NULL) AND s.project.id = :projectId) ORDER BY s.bachelor, gr.value DESC")
-    List<Student> findByGenderOrderByBachelorAndImportedAvgDesc(Gender gender, Integer projectId);
+    /**
+     * The students of a project with their imported average grade, null if they have none.
+     * @return rows of [student, average]
+     */
+    @Query("SELECT s, gr.value FROM Student s LEFT JOIN GradeType gt ON gt.name = 'Moyenne' AND gt.project.id = :projectId LEFT JOIN Grade gr ON gr.student.id = s.id AND gr.gradeType.id = gt.id WHERE s.project.id = :projectId ORDER BY s.id")
+    List<Object[]> findAllWithImportedAverageByProject(Integer projectId);
 
     @Transactional
     @Modifying
     @Query("UPDATE Student s SET s.team = null WHERE s.project.id = :projectId")
     void removeAllStudentsFromTeams(Integer projectId);
 
-	@Query("SELECT COUNT(s) FROM Student s WHERE s.gender = 'WOMAN'")
-	int countWomen();
-
-	@Query("SELECT COUNT(s) FROM Student s")
-	int countTotal();
-
-	@Query("SELECT COUNT(s) FROM Student s WHERE s.bachelor = true")
-	int countBachelor();
-
 }
@@ -0,0 +1,32 @@
+package fr.eseo.tauri.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC batch writes used by the team generation.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TeamAssignmentRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Assign their team to students with one batch.
+     * @param teamIdsByStudentId the id of the team of each student
+     */
+    public void assignTeams(Map<Integer, Integer> teamIdsByStudentId) {
+        List<Map.Entry<Integer, Integer>> assignments = new ArrayList<>(teamIdsByStudentId.entrySet());
+        jdbcTemplate.batchUpdate("UPDATE students SET team_id = ? WHERE user_id = ?", assignments, assignments.size(), (statement, assignment) -> {
+            statement.setInt(1, assignment.getValue());
+            statement.setInt(2, assignment.getKey());
+        });
+    }
+
+}
@@ -25,6 +25,14 @@ public interface TeamRepository extends JpaRepository<Team, Integer> {
     @Query("SELECT COUNT(s) FROM Student s WHERE s.team.id = :teamId AND s.bachelor = true")
     Integer countBachelorInTeam(Integer teamId);
 
+    /**
+     * Count the women and the bachelors of every team of a project, the teams without students included.
+     * @return rows of [teamId, nbWomen, nbBachelors]
+     */
+    @Query("SELECT t.id, SUM(CASE WHEN s.gender = 'WOMAN' THEN 1 ELSE 0 END), SUM(CASE WHEN s.bachelor = true THEN 1 ELSE 0 END) " +
+            "FROM Team t LEFT JOIN Student s ON s.team = t WHERE t.project.id = :projectId GROUP BY t.id ORDER BY t.id")
+    List<Object[]> countCriteriaByProject(Integer projectId);
+
     @Query("SELECT t FROM Team t WHERE t.leader.id = :leaderId AND t.project.id = :projectId")
     Team findByLeaderId(Integer leaderId, Integer projectId);
 
@@ -40,9 +48,6 @@ public interface TeamRepository extends JpaRepository<Team, Integer> {
     @Query("SELECT t.name FROM Team t")
     List<String> findAllTeamNames();
 
-    @Query("SELECT s.team FROM Grade gr JOIN gr.student s JOIN gr.gradeType gt WHERE gr.gradeType.project.id = :projectId AND gt.name = 'Moyenne' AND s.team IS NOT NULL GROUP BY s.team ORDER BY AVG(gr.value) ASC")
-    List<Team> findAllOrderByAvgGradeOrderByAsc(Integer projectId);
-
     @Query("SELECT AVG(gr.value) FROM Grade gr JOIN gr.student s JOIN gr.gradeType gt WHERE s.team = ?1 AND gt.name = 'Moyenne'")
     Double findAvgGradeByTeam(Team team);
 
@@ -0,0 +1,40 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.TeamSprintGradeResult;
+import fr.eseo.tauri.model.id_class.TeamSprintGradeResultId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface TeamSprintGradeResultRepository extends JpaRepository<TeamSprintGradeResult, TeamSprintGradeResultId> {
+
+    @Query("SELECT r FROM TeamSprintGradeResult r WHERE r.team.id = :teamId AND r.sprint.id = :sprintId")
+    TeamSprintGradeResult findByTeamAndSprint(Integer teamId, Integer sprintId);
+
+    @Query("SELECT r FROM TeamSprintGradeResult r WHERE r.sprint.project.id = :projectId")
+    List<TeamSprintGradeResult> findAllByProject(Integer projectId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO team_sprint_grade_results (team_id, sprint_id, sprint_grades, computed) VALUES (:teamId, :sprintId, :sprintGrades, :computed) " +
+            "ON DUPLICATE KEY UPDATE sprint_grades = VALUES(sprint_grades), computed = VALUES(computed)", nativeQuery = true)
+    void upsert(Integer teamId, Integer sprintId, String sprintGrades, Boolean computed);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM team_sprint_grade_results WHERE team_id = :teamId", nativeQuery = true)
+    void deleteAllByTeam(Integer teamId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM team_sprint_grade_results WHERE sprint_id IN (SELECT id FROM sprints WHERE project_id = :projectId)", nativeQuery = true)
+    void deleteAllByProject(Integer projectId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM team_sprint_grade_results WHERE sprint_id = :sprintId", nativeQuery = true)
+    void deleteAllBySprint(Integer sprintId);
+}
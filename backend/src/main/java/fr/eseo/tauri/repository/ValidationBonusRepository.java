@@ -24,4 +24,26 @@ public interface ValidationBonusRepository extends JpaRepository<ValidationBonus
     @Transactional
     @Query("DELETE FROM ValidationBonus vb WHERE vb.bonus.id = :bonusId")
     void deleteAllByBonusId(Integer bonusId);
+
+    /**
+     * The validations of the limited bonuses of the students of a team, for one sprint or for every sprint when it is null.
+     */
+    @Query("SELECT vb FROM ValidationBonus vb WHERE vb.bonus.student.team.id = :teamId AND vb.bonus.limited = true " +
+            "AND (:sprintId IS NULL OR vb.bonus.sprint.id = :sprintId)")
+    List<ValidationBonus> findAllByTeamAndSprint(Integer teamId, Integer sprintId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ValidationBonus vb WHERE vb.bonus.id IN " +
+            "(SELECT b.id FROM Bonus b WHERE b.student.team.id = :teamId AND b.sprint.id = :sprintId AND b.limited = true)")
+    int deleteAllByTeamAndSprint(Integer teamId, Integer sprintId);
+
+    /**
+     * Validate the limited bonuses of every student of a team for a sprint, the existing validations being kept.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO validation_bonuses (author_id, bonus_id) SELECT :authorId, b.id FROM bonuses b JOIN students s ON s.user_id = b.student_id " +
+            "WHERE s.team_id = :teamId AND b.sprint_id = :sprintId AND b.limited = TRUE ON DUPLICATE KEY UPDATE bonus_id = bonus_id", nativeQuery = true)
+    int insertAllByTeamAndSprint(Integer teamId, Integer sprintId, Integer authorId);
 }
@@ -1,8 +1,11 @@
 package fr.eseo.tauri.repository;
 
+import fr.eseo.tauri.model.ValidationSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
 import fr.eseo.tauri.model.ValidationFlag;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -14,4 +17,18 @@ public interface ValidationFlagRepository extends JpaRepository<ValidationFlag,
     @Query("SELECT vf FROM ValidationFlag vf WHERE vf.flag.id = :flagId")
     List<ValidationFlag> findAllByFlag(Integer flagId);
 
+    /**
+     * Ask every student of the teams to validate a flag, the existing validations being kept.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO validation_flags (author_id, flag_id, confirmed) SELECT s.user_id, :flagId, NULL FROM students s " +
+            "WHERE s.team_id IN (:teamIds) ON DUPLICATE KEY UPDATE flag_id = flag_id", nativeQuery = true)
+    int insertAllByTeams(Integer flagId, List<Integer> teamIds);
+
+    @Query("SELECT new fr.eseo.tauri.model.ValidationSummary(COUNT(CASE WHEN vf.confirmed = true THEN 1 END), " +
+            "COUNT(CASE WHEN vf.confirmed = false THEN 1 END), COUNT(CASE WHEN vf.confirmed IS NULL THEN 1 END)) " +
+            "FROM ValidationFlag vf WHERE vf.flag.id = :flagId")
+    ValidationSummary summarizeByFlag(Integer flagId);
+
 }
@@ -1,12 +1,14 @@
 package fr.eseo.tauri.security;
 
 import fr.eseo.tauri.repository.UserRepository;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.ldap.core.support.BaseLdapPathContextSource;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.config.Customizer;
-import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
@@ -14,7 +16,10 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.LdapShaPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.ldap.DefaultSpringSecurityContextSource;
+import org.springframework.security.ldap.authentication.LdapAuthenticationProvider;
+import org.springframework.security.ldap.authentication.PasswordComparisonAuthenticator;
+import org.springframework.security.ldap.search.FilterBasedLdapUserSearch;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -48,6 +53,15 @@ public class ApplicationSecurity {
     @Value("${spring.ldap.password}")
     private String ldapPassword;
 
+    @Value("${app.ldap.max-concurrent-authentications}")
+    private int ldapMaxConcurrentAuthentications;
+
+    @Value("${app.ldap.acquire-timeout}")
+    private long ldapAcquireTimeout;
+
+    @Value("${app.ldap.pool.idle-timeout}")
+    private long ldapPoolIdleTimeout;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -59,29 +73,53 @@ public class ApplicationSecurity {
                 .cors(Customizer.withDefaults())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/api/auth/login", "/tauri/api/auth/login").permitAll()
+                        // The JWT filter runs once per request, the async dispatches of the notification streams carry no authentication
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                        .requestMatchers("/api/auth/login", "/tauri/api/auth/login", "/api/auth/refresh", "/tauri/api/auth/refresh").permitAll()
                         .anyRequest().authenticated())
                 .addFilterBefore(jwtTokenFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
 
+    /**
+     * The directory connections, bound with the manager account and pooled by JNDI.
+     * The pool holds as many connections as the authentications allowed at the same time,
+     * and closes the connections idle for longer than the idle timeout.
+     */
+    @Bean
+    public DefaultSpringSecurityContextSource ldapContextSource() {
+        // Read by JNDI when the first pooled connection is opened, the JVM options keep precedence
+        setDefaultProperty("com.sun.jndi.ldap.connect.pool.maxsize", String.valueOf(ldapMaxConcurrentAuthentications));
+        setDefaultProperty("com.sun.jndi.ldap.connect.pool.prefsize", String.valueOf(ldapMaxConcurrentAuthentications));
+        setDefaultProperty("com.sun.jndi.ldap.connect.pool.timeout", String.valueOf(ldapPoolIdleTimeout));
+
+        DefaultSpringSecurityContextSource contextSource = new DefaultSpringSecurityContextSource(ldapUrl + ldapBaseDn);
+        contextSource.setUserDn(ldapUsername);
+        contextSource.setPassword(ldapPassword);
+        contextSource.setPooled(true);
+        return contextSource;
+    }
+
+    /**
+     * The user is searched by its email and its password compared, with the pooled manager connections.
+     * The password is checked locally against the userPassword read with the user, a compare request
+     * being sent to the directory only when the attribute can not be read.
+     * The authorities are not read from the directory, the roles being stored in the database.
+     */
     @Bean
-    public AuthenticationManager authenticationManager(HttpSecurity http) throws Exception {
-        AuthenticationManagerBuilder auth = http.getSharedObject(AuthenticationManagerBuilder.class);
-        PasswordEncoder passwordEncoder = new LdapShaPasswordEncoder();
-
-        auth
-            .ldapAuthentication()
-                .contextSource()
-                    .url(ldapUrl + ldapBaseDn)
-                    .managerDn(ldapUsername)
-                    .managerPassword(ldapPassword)
-                .and()
-                .userSearchFilter(ldapUserSearchFilter)
-                .passwordEncoder(passwordEncoder);
-
-        return auth.build();
+    public AuthenticationManager authenticationManager(BaseLdapPathContextSource ldapContextSource) {
+        PasswordComparisonAuthenticator authenticator = new PasswordComparisonAuthenticator(ldapContextSource);
+        authenticator.setUserSearch(new FilterBasedLdapUserSearch("", ldapUserSearchFilter, ldapContextSource));
+        authenticator.setPasswordEncoder(new LdapShaPasswordEncoder());
+        authenticator.setUsePasswordAttrCompare(true);
+
+        ProviderManager providerManager = new ProviderManager(new LdapAuthenticationProvider(authenticator));
+        return new BoundedAuthenticationManager(providerManager, ldapMaxConcurrentAuthentications, ldapAcquireTimeout);
+    }
+
+    private static void setDefaultProperty(String key, String value) {
+        if (System.getProperty(key) == null) System.setProperty(key, value);
     }
 
 
@@ -13,6 +13,9 @@ public class AuthResponse {
     @JsonProperty
     private String accessToken;
 
+    @JsonProperty
+    private String refreshToken;
+
     @JsonProperty
     private Integer idProject;
 }
@@ -0,0 +1,48 @@
+package fr.eseo.tauri.security;
+
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.core.Authentication;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of authentications running at the same time against the directory.
+ * The logins beyond the bound wait for their turn, and are refused as a busy directory when they wait too long,
+ * so a rush of logins does not open more connections than the directory pool holds.
+ */
+public class BoundedAuthenticationManager implements AuthenticationManager {
+
+    private final AuthenticationManager delegate;
+    private final Semaphore permits;
+    private final long acquireTimeout;
+
+    /**
+     * @param maxConcurrentAuthentications the number of authentications running at the same time
+     * @param acquireTimeout the time a login waits for its turn, in milliseconds
+     */
+    public BoundedAuthenticationManager(AuthenticationManager delegate, int maxConcurrentAuthentications, long acquireTimeout) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrentAuthentications, true);
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        try {
+            if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+                throw new AuthenticationServiceException("The directory is busy, try again later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Interrupted while waiting for the directory", e);
+        }
+        try {
+            return delegate.authenticate(authentication);
+        } finally {
+            permits.release();
+        }
+    }
+
+}
@@ -7,32 +7,41 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import org.jetbrains.annotations.NotNull;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Set;
 
 @Component
 @AllArgsConstructor
 public class JwtTokenFilter extends OncePerRequestFilter {
 
+    private static final Set<String> PUBLIC_URIS = Set.of("/api/auth/login", "/tauri/api/auth/login", "/api/auth/refresh", "/tauri/api/auth/refresh");
+    // Sent with the 401 responses to an access token issued before a change of the roles of its user
+    private static final String STALE_ROLES_CHALLENGE = "Bearer error=\"invalid_token\", error_description=\"The roles have changed, the token must be refreshed\"";
+
     private final JwtTokenUtil jwtTokenUtil;
+    private final JwtTokenVerifier jwtTokenVerifier;
+    private final RoleVersions roleVersions;
     @Override
     protected void doFilterInternal(@NotNull HttpServletRequest request, @NotNull HttpServletResponse response, @NotNull FilterChain filterChain) throws ServletException, IOException {
         String token = jwtTokenUtil.extractToken(request);
 
-        CustomLogger.info(request.getRequestURI());
+        CustomLogger.debug(request.getRequestURI());
 
-        if (token != null && jwtTokenUtil.validateAccessToken(token)) {
-            UserDetails userDetails = jwtTokenUtil.createUserDetails(token);
-            jwtTokenUtil.setAuthenticationContext(userDetails, request);
+        TokenPrincipal principal = token != null ? jwtTokenVerifier.verify(token) : null;
+        boolean stale = principal != null && principal.roleVersion() < roleVersions.current(principal.id());
+        if (principal != null && !stale) {
+            jwtTokenUtil.setAuthenticationContext(principal);
             filterChain.doFilter(request, response);
 
-        } else if (request.getRequestURI().equals("/api/auth/login") || request.getRequestURI().equals("/tauri/api/auth/login")) {
+        } else if (PUBLIC_URIS.contains(request.getRequestURI())) {
             filterChain.doFilter(request, response);
 
         } else if (request.getRequestURI().contains(("/api/")) || request.getRequestURI().contains("/tauri/api/")) {
+            if (stale) response.setHeader(HttpHeaders.WWW_AUTHENTICATE, STALE_ROLES_CHALLENGE);
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
 
         } else {
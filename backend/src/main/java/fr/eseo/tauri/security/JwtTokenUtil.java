@@ -1,6 +1,8 @@
 package fr.eseo.tauri.security;
 
 import fr.eseo.tauri.model.User;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import fr.eseo.tauri.service.PermissionService;
 import fr.eseo.tauri.util.CustomLogger;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
@@ -10,21 +12,36 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
 import java.util.Date;
 
+/**
+ * Generation of the tokens.
+ * The access tokens are short-lived and carry the roles and permissions of their user, the refresh tokens only
+ * identify their user and are exchanged for a new pair of tokens.
+ */
 @Component
 public class JwtTokenUtil {
 
+    public static final String CLAIM_TYPE = "typ";
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_PERMISSIONS = "perms";
+    public static final String CLAIM_ROLE_VERSION = "rv";
+    public static final String TYPE_ACCESS = "access";
+    public static final String TYPE_REFRESH = "refresh";
+
     @Value("${app.jwt.secret}")
     private String secretKey;
 
     @Value("${app.jwt.issuer}")
     private String issuer;
 
+    @Value("${app.jwt.access-expiration}")
+    private long accessExpireDuration;
+
     @Value("${app.jwt.expiration}")
     private long expireDuration;
 
@@ -33,36 +50,50 @@ public class JwtTokenUtil {
         return (header != null && header.startsWith("Bearer ")) ? header.substring(7) : null;
     }
 
-    public boolean validateAccessToken(String token) {
-        try {
-            Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token);
-            return true;
-        } catch (Exception e) {
-            CustomLogger.error("Validate token : " + e);
-            return false;
-        }
-    }
-
-    public UserDetails createUserDetails(String token) {
-        User userDetails = new User();
-        Claims claims = Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody();
-        userDetails.email(claims.getSubject().split(",")[0]);
-        return userDetails;
-    }
-
-    public void setAuthenticationContext(UserDetails userDetails, HttpServletRequest request) {
+    public void setAuthenticationContext(UserDetails userDetails) {
         UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
         SecurityContextHolder.getContext().setAuthentication(authentication);
     }
 
-    public String generateAccessToken(User user) {
+    public String generateAccessToken(TokenPrincipal principal) {
+        return Jwts.builder()
+                .setSubject(String.format("%s", principal.email()))
+                .claim(CLAIM_TYPE, TYPE_ACCESS)
+                .claim(CLAIM_USER_ID, principal.id())
+                .claim(CLAIM_ROLES, principal.roles().stream().map(RoleType::name).toList())
+                .claim(CLAIM_PERMISSIONS, PermissionService.toBitmap(principal.permissions()))
+                .claim(CLAIM_ROLE_VERSION, principal.roleVersion())
+                .setIssuer(issuer)
+                .setIssuedAt(new Date())
+                .setExpiration(Date.from(Instant.now().plusMillis(accessExpireDuration)))
+                .signWith(SignatureAlgorithm.HS256, secretKey)
+                .compact();
+    }
+
+    public String generateRefreshToken(User user) {
         return Jwts.builder()
                 .setSubject(String.format("%s", user.email()))
+                .claim(CLAIM_TYPE, TYPE_REFRESH)
+                .claim(CLAIM_USER_ID, user.id())
                 .setIssuer(issuer)
                 .setIssuedAt(new Date())
                 .setExpiration(Date.from(Instant.now().plusMillis(expireDuration)))
                 .signWith(SignatureAlgorithm.HS256, secretKey)
                 .compact();
     }
+
+    /**
+     * Verify a refresh token.
+     * @return the id of the user the token was issued to, null if the token is invalid, expired or not a refresh token
+     */
+    public Integer verifyRefreshToken(String token) {
+        try {
+            Claims claims = Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody();
+            if (!TYPE_REFRESH.equals(claims.get(CLAIM_TYPE))) return null;
+            return ((Number) claims.get(CLAIM_USER_ID)).intValue();
+        } catch (Exception e) {
+            CustomLogger.error("Validate refresh token : " + e);
+            return null;
+        }
+    }
 }
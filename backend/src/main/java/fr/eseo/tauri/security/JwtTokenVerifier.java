@@ -0,0 +1,118 @@
+package fr.eseo.tauri.security;
+
+import fr.eseo.tauri.model.enumeration.PermissionType;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import fr.eseo.tauri.service.PermissionService;
+import fr.eseo.tauri.util.CustomLogger;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verification of the access tokens.
+ * A token is parsed and its signature checked once, then its claims are cached until the token expires,
+ * so the next requests with the same token are authenticated without parsing nor crypto.
+ * The cache is keyed by a SHA-256 digest of the token, the tokens themselves are not kept in memory.
+ * Only the access tokens are accepted, a refresh token can not authenticate a request.
+ */
+@Component
+public class JwtTokenVerifier {
+
+    public static final int MAX_ENTRIES = 10_000;
+
+    @Value("${app.jwt.secret}")
+    private String secretKey;
+
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Verify an access token.
+     * @param token the encoded token
+     * @return the user the token was issued to, with its roles and permissions, null if the token is invalid or expired
+     */
+    public TokenPrincipal verify(String token) {
+        String digest = digest(token);
+        long now = System.currentTimeMillis();
+        VerifiedToken verifiedToken = verifiedTokens.get(digest);
+        if (verifiedToken != null) {
+            if (verifiedToken.expiresAt() > now) {
+                hits.incrementAndGet();
+                return verifiedToken.principal();
+            }
+            verifiedTokens.remove(digest);
+            return null;
+        }
+
+        misses.incrementAndGet();
+        Claims claims;
+        TokenPrincipal principal;
+        try {
+            claims = Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody();
+            if (!JwtTokenUtil.TYPE_ACCESS.equals(claims.get(JwtTokenUtil.CLAIM_TYPE))) return null;
+            principal = principal(claims);
+        } catch (Exception e) {
+            CustomLogger.error("Validate token : " + e);
+            return null;
+        }
+
+        if (claims.getExpiration() != null) {
+            if (verifiedTokens.size() >= MAX_ENTRIES) evict(now);
+            if (verifiedTokens.size() < MAX_ENTRIES) {
+                verifiedTokens.put(digest, new VerifiedToken(principal, claims.getExpiration().getTime()));
+            }
+        }
+        return principal;
+    }
+
+    public Stats stats() {
+        return new Stats(hits.get(), misses.get(), verifiedTokens.size());
+    }
+
+    /**
+     * Remove the expired tokens, or every token when none is expired, so the cache stays bounded.
+     */
+    private void evict(long now) {
+        verifiedTokens.values().removeIf(verifiedToken -> verifiedToken.expiresAt() <= now);
+        if (verifiedTokens.size() >= MAX_ENTRIES) verifiedTokens.clear();
+    }
+
+    private static TokenPrincipal principal(Claims claims) {
+        EnumSet<RoleType> roles = EnumSet.noneOf(RoleType.class);
+        for (Object role : (List<?>) claims.get(JwtTokenUtil.CLAIM_ROLES)) {
+            roles.add(RoleType.valueOf((String) role));
+        }
+        EnumSet<PermissionType> permissions = PermissionService.fromBitmap((String) claims.get(JwtTokenUtil.CLAIM_PERMISSIONS));
+        return new TokenPrincipal(((Number) claims.get(JwtTokenUtil.CLAIM_USER_ID)).intValue(), claims.getSubject(),
+                Collections.unmodifiableSet(roles), Collections.unmodifiableSet(permissions), ((Number) claims.get(JwtTokenUtil.CLAIM_ROLE_VERSION)).longValue());
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record VerifiedToken(TokenPrincipal principal, long expiresAt) {
+    }
+
+    public record Stats(long hits, long misses, int size) {
+    }
+
+}
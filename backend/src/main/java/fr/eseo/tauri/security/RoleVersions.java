@@ -0,0 +1,42 @@
+package fr.eseo.tauri.security;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The version of the roles and permissions of every user, carried by the access tokens.
+ * A token issued before a change of the roles of its user has an older version, and is refused until it is refreshed.
+ * The versions start at the boot time, so the tokens issued before a restart are refreshed too.
+ */
+@Component
+public class RoleVersions {
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+    private final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+    // The version of every user, after a change of the roles or permissions of all the users
+    private volatile long baseVersion = clock.get();
+
+    public long current(Integer userId) {
+        Long version = versions.get(userId);
+        return version == null ? baseVersion : Math.max(version, baseVersion);
+    }
+
+    /**
+     * Record a change of the roles of a user.
+     */
+    public void bump(Integer userId) {
+        versions.put(userId, clock.incrementAndGet());
+    }
+
+    /**
+     * Record a change of the roles or permissions of all the users.
+     */
+    public synchronized void bumpAll() {
+        baseVersion = clock.incrementAndGet();
+        versions.clear();
+    }
+
+}
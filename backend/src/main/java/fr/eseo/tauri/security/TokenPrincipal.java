@@ -0,0 +1,63 @@
+package fr.eseo.tauri.security;
+
+import fr.eseo.tauri.model.enumeration.PermissionType;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The authenticated user of a request, built from the claims of its access token.
+ * @param roleVersion the version of the roles when the token was issued, see {@link RoleVersions}
+ */
+public record TokenPrincipal(Integer id, String email, Set<RoleType> roles, Set<PermissionType> permissions, long roleVersion) implements UserDetails {
+
+    /**
+     * @return the principal of the current request, null when the request is not authenticated with an access token
+     */
+    public static TokenPrincipal current() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof TokenPrincipal principal ? principal : null;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+}
@@ -1,11 +1,12 @@
 package fr.eseo.tauri.service;
 
-import fr.eseo.tauri.model.Project;
 import fr.eseo.tauri.model.User;
-import fr.eseo.tauri.repository.ProjectRepository;
-import fr.eseo.tauri.repository.UserRepository;
+import fr.eseo.tauri.model.enumeration.PermissionType;
+import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.security.AuthResponse;
 import fr.eseo.tauri.security.JwtTokenUtil;
+import fr.eseo.tauri.security.RoleVersions;
+import fr.eseo.tauri.security.TokenPrincipal;
 import fr.eseo.tauri.util.CustomLogger;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -13,19 +14,24 @@ import lombok.Setter;
 import org.apache.commons.text.StringEscapeUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.util.EnumSet;
+
 @Service
 @RequiredArgsConstructor
 public class AuthService {
 
     private final JwtTokenUtil jwtTokenUtil;
     private final AuthenticationManager authenticationManager;
-    private final UserRepository userRepository;
-    private final ProjectRepository projectRepository;
+    private final UserService userService;
+    private final ProjectService projectService;
+    private final PermissionService permissionService;
+    private final RoleVersions roleVersions;
 
     @Getter
     @Setter
@@ -33,6 +39,7 @@ public class AuthService {
     private String prodProperty;
 
     private static final String WRONG_CREDENTIALS = "Wrong credentials";
+    private static final String INVALID_REFRESH_TOKEN = "Invalid refresh token";
 
     public AuthResponse login(String email, String password) {
         try {
@@ -42,22 +49,49 @@ public class AuthService {
                 Authentication authentication = authenticate(email, password);
                 UserDetails userDetails = (UserDetails) authentication.getPrincipal();
 
-                user = userRepository.findByEmail(userDetails.getUsername())
+                user = userService.findUserByEmail(userDetails.getUsername())
                         .orElseThrow(() -> new SecurityException(WRONG_CREDENTIALS));
             } else {                               // Auth without LDAP for dev mode
-                user = userRepository.findByEmail(email)
+                user = userService.findUserByEmail(email)
                         .orElseThrow(() -> new SecurityException(WRONG_CREDENTIALS));
             }
 
-            String accessToken = jwtTokenUtil.generateAccessToken(user);
-            CustomLogger.info("Access token generated for user " + user.id() + " : " + accessToken);
-            Integer idProject = projectRepository.findFirstByActualTrue().map(Project::id).orElse(0);
-            return new AuthResponse(user.id(), accessToken, idProject);
+            return generateTokens(user);
+        } catch (AuthenticationServiceException e) {
+            // The directory is busy or unavailable, the credentials were not checked
+            throw e;
         } catch (Exception e){
             throw new SecurityException(WRONG_CREDENTIALS + e.getMessage());
         }
     }
 
+    /**
+     * Exchange a refresh token for a new pair of tokens, carrying the current roles and permissions of the user.
+     */
+    public AuthResponse refresh(String refreshToken) {
+        Integer userId = refreshToken != null ? jwtTokenUtil.verifyRefreshToken(refreshToken) : null;
+        if (userId == null) throw new SecurityException(INVALID_REFRESH_TOKEN);
+        try {
+            return generateTokens(userService.getUserById(userId));
+        } catch (Exception e) {
+            throw new SecurityException(INVALID_REFRESH_TOKEN + e.getMessage());
+        }
+    }
+
+    private AuthResponse generateTokens(User user) {
+        // The version is read before the roles, so a change in between makes the token outdated rather than wrong
+        long roleVersion = roleVersions.current(user.id());
+        EnumSet<RoleType> roles = EnumSet.noneOf(RoleType.class);
+        roles.addAll(userService.getRolesByUserId(user.id()));
+        EnumSet<PermissionType> permissions = permissionService.getPermissionsByRoles(roles);
+
+        String accessToken = jwtTokenUtil.generateAccessToken(new TokenPrincipal(user.id(), user.email(), roles, permissions, roleVersion));
+        String refreshToken = jwtTokenUtil.generateRefreshToken(user);
+        CustomLogger.info("Access token generated for user " + user.id() + " : " + accessToken);
+        Integer idProject = projectService.getActualProjectId();
+        return new AuthResponse(user.id(), accessToken, refreshToken, idProject);
+    }
+
     public Authentication authenticate(String email, String password) {
         String safeEmail = StringEscapeUtils.escapeHtml4(email);
         String safePassword = StringEscapeUtils.escapeHtml4(password);
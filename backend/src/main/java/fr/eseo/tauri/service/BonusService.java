@@ -3,13 +3,11 @@ package fr.eseo.tauri.service;
 import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.repository.BonusRepository;
-import fr.eseo.tauri.repository.StudentRepository;
 import fr.eseo.tauri.repository.TeamRepository;
 import fr.eseo.tauri.util.CustomLogger;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -19,8 +17,8 @@ public class BonusService {
     private final BonusRepository bonusRepository;
     private final ValidationBonusService validationBonusService;
     private final UserService userService;
-    private final StudentRepository studentRepository;
     private final TeamRepository teamRepository;
+    private final SprintGradeResultService sprintGradeResultService;
 
     /**
      * Get a bonus by its id
@@ -67,22 +65,12 @@ public class BonusService {
         if (updatedBonus.comment() != null) bonus.comment(updatedBonus.comment());
 
         bonusRepository.save(bonus);
+        sprintGradeResultService.refresh(bonus);
 
         if(isLimited) {
+            // The validations of the limited bonuses of the team are dropped, the distribution has to be validated again
             Team team = teamRepository.findTeamByStudentId(bonus.student().id());
-            List <ValidationBonus> validationBonuses = getValidationBonusesByTeam(team.id());
-
-            for (ValidationBonus validationBonus : validationBonuses){
-                validationBonusService.deleteAllValidationBonuses(validationBonus.bonus().id());
-            }
-
-            User leader = teamRepository.findLeaderByTeamId(team.id());
-            CustomLogger.info("ss id : " + leader);
-            List<ValidationBonus> validationBonusSs = validationBonusService.getValidationByAuthorId(leader.id());
-            for (ValidationBonus validationBonus : validationBonusSs){
-                CustomLogger.info("ouai "+ validationBonus);
-                validationBonusService.deleteAllValidationBonuses(validationBonus.bonus().id());
-            }
+            if (team != null) validationBonusService.deleteValidationBonusesByTeam(team.id(), bonus.sprint().id());
         }
     }
 
@@ -91,8 +79,9 @@ public class BonusService {
      * @param id the id of the bonus
      */
     public void deleteBonus(Integer id) {
-        getBonusById(id);
+        Bonus bonus = getBonusById(id);
         bonusRepository.deleteById(id);
+        sprintGradeResultService.refresh(bonus);
     }
 
     /**
@@ -104,36 +93,25 @@ public class BonusService {
     }
 
 
-    public List<ValidationBonus> getValidationBonusesByTeam(Integer teamId) {
-        List <ValidationBonus> validationBonuses = new ArrayList<>();
-        List <Student> students = studentRepository.findByTeam(teamId);
-        // Students bonuses
-        for(Student student : students) {
-            List<ValidationBonus> validationBonus = validationBonusService.getValidationByAuthorId(student.id());
-            validationBonuses.addAll(validationBonus);
-        }
-
-        // SS bonus
-        User leader = teamRepository.findLeaderByTeamId(teamId);
-        List<ValidationBonus> validationBonusSs = validationBonusService.getValidationByAuthorId(leader.id());
-        validationBonuses.addAll(validationBonusSs);
-
-        return validationBonuses;
+    /**
+     * Get the validations of the limited bonuses of a team
+     * @param teamId the id of the team
+     * @param sprintId the id of the sprint, null for every sprint
+     * @return the list of validations
+     */
+    public List<ValidationBonus> getValidationBonusesByTeam(Integer teamId, Integer sprintId) {
+        return validationBonusService.getValidationBonusesByTeam(teamId, sprintId);
     }
 
-
+    /**
+     * Validate the limited bonuses of every student of a team for a sprint
+     * @param teamId the id of the team
+     * @param sprintId the id of the sprint
+     * @param userId the id of the user validating the bonuses
+     */
     public void setValidationBonusesByTeam(Integer teamId, Integer sprintId, Integer userId) {
-        List <Student> students = studentRepository.findByTeam(teamId);
-
-        for(Student student : students) {
-            Bonus bonus = bonusRepository.findStudentBonus(student.id(), true, sprintId);
-
-            ValidationBonus validationBonus = new ValidationBonus();
-            validationBonus.bonusId(bonus.id());
-            validationBonus.authorId(userId);
-
-            validationBonusService.createValidationBonus(validationBonus);
-        }
+        int validations = validationBonusService.createValidationBonusesByTeam(teamId, sprintId, userId);
+        CustomLogger.info("Validated " + validations + " limited bonuses of the team " + teamId);
     }
 
 }
@@ -2,6 +2,7 @@ package fr.eseo.tauri.service;
 
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.Flag;
+import fr.eseo.tauri.model.ValidationSummary;
 import fr.eseo.tauri.model.enumeration.FlagType;
 import fr.eseo.tauri.repository.FlagRepository;
 import lombok.RequiredArgsConstructor;
@@ -27,6 +28,11 @@ public class FlagService {
         return flagRepository.findAllByProject(projectId);
     }
 
+    public ValidationSummary getValidationSummary(Integer id) {
+        getFlagById(id);
+        return validationFlagService.getValidationSummary(id);
+    }
+
     public void createFlag(Flag flag) {
         flag.author(userService.getUserById(flag.authorId()));
         flag.project(projectService.getProjectById(flag.projectId()));
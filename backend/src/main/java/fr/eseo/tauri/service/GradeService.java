@@ -10,16 +10,16 @@ import fr.eseo.tauri.util.CustomLogger;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import fr.eseo.tauri.model.Grade;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.repository.GradeRepository;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.*;
-
-import static fr.eseo.tauri.util.ListUtil.filter;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -37,6 +37,8 @@ public class GradeService {
     @Lazy
     private final GradeTypeService gradeTypeService;
     private final TeamService teamService;
+    private final SprintGradeResultService sprintGradeResultService;
+    private final TeamGenerationService teamGenerationService;
 
     public Grade getGradeById(Integer id) {
         return gradeRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("grade", id));
@@ -54,6 +56,8 @@ public class GradeService {
         setGradeAttributes(grade);
         validateGrade(grade);
         gradeRepository.save(grade);
+        sprintGradeResultService.refresh(grade);
+        if (isImportedAverage(grade)) teamGenerationService.invalidateSnapshots();
     }
 
     public void checkForExistingGrade(Grade grade) {
@@ -93,6 +97,7 @@ public class GradeService {
 
     public void updateGrade(Integer id, Grade updatedGrade) {
         Grade grade = getGradeById(id);
+        Grade previousGrade = new Grade().sprint(grade.sprint()).student(grade.student()).team(grade.team());
         grade.value(updatedGrade.value());
         grade.comment(updatedGrade.comment());
         if (updatedGrade.sprintId() != null) grade.sprint(sprintService.getSprintById(updatedGrade.sprintId()));
@@ -105,30 +110,44 @@ public class GradeService {
         }
 
         gradeRepository.save(grade);
+        sprintGradeResultService.refresh(grade);
+        if (!isSameTeamAndSprint(previousGrade, grade)) sprintGradeResultService.refresh(previousGrade);
+        if (isImportedAverage(grade)) teamGenerationService.invalidateSnapshots();
+    }
+
+    /**
+     * The imported average is the grade the teams are composed from, the snapshots of the students are outdated when it changes.
+     */
+    private static boolean isImportedAverage(Grade grade) {
+        return grade.gradeType() != null && GradeTypeName.AVERAGE.displayName().equals(grade.gradeType().name());
+    }
+
+    private boolean isSameTeamAndSprint(Grade previousGrade, Grade grade) {
+        return Objects.equals(previousGrade.sprint(), grade.sprint())
+                && Objects.equals(previousGrade.team(), grade.team())
+                && Objects.equals(previousGrade.student(), grade.student());
     }
 
     public void deleteGrade(Integer id) {
-        getGradeById(id);
+        Grade grade = getGradeById(id);
         gradeRepository.deleteById(id);
+        sprintGradeResultService.refresh(grade);
+        if (isImportedAverage(grade)) teamGenerationService.invalidateSnapshots();
     }
 
     public void deleteAllGradesByProject(Integer projectId) {
         gradeRepository.deleteAllByProject(projectId);
+        sprintGradeResultService.invalidateProject(projectId);
     }
 
     /**
-     * This method is used to update the mean of imported grades for each student.
+     * This method is used to update the mean of imported grades for each student of a project.
+     * The weighted means are computed and written by a single set-based update, bachelor students are skipped.
      */
     public void updateImportedMean(Integer projectId) {
-        var students = studentRepository.findAllByProject(projectId);
-        var grades = filter(gradeRepository.findAll(), grade -> grade.student() != null);
-        for (var student : students) {
-            if (Boolean.TRUE.equals(student.bachelor())) continue;
-            var studentGrades = filter(grades, grade -> grade.student().id().equals(student.id()) && grade.gradeType().imported() && /*!grade.gradeType().name().equalsIgnoreCase("mean") && !grade.gradeType().name().equalsIgnoreCase("average")*/!grade.gradeType().name().equals(GradeTypeName.AVERAGE.displayName()));
-            var mean = mean(studentGrades);
-            updateImportedMeanByStudentId(mean, student.id());
-        }
-        CustomLogger.info("Updated imported mean for all students.");
+        int updatedGrades = gradeRepository.updateImportedMeansByProject(projectId);
+        teamGenerationService.invalidateSnapshots();
+        CustomLogger.info("Updated imported mean for all students of project " + projectId + " (" + updatedGrades + " grades).");
     }
 
     /**
@@ -178,60 +197,61 @@ public class GradeService {
     }
 
     /**
-     * This method generates a CSV report of a student's individual grades.
+     * This method streams a CSV report of the students' individual grades.
+     * Every cell is read by one ordered query and the rows are pivoted on the fly, so memory use does not depend on the cohort size.
      *
      * @param projectId The ID of the project.
-     * @return A byte array containing the CSV report.
+     * @param outputStream The stream the CSV report is written to.
      * @throws IOException If an I/O error occurs.
      */
-    public byte[] createStudentIndividualGradesCSVReport(int projectId) throws IOException {
-        CustomLogger.info("Creating student grades report for project with id " + projectId);
-
+    @Transactional(readOnly = true)
+    public void writeStudentIndividualGradesCSVReport(int projectId, OutputStream outputStream) throws IOException {
         CustomLogger.info("Creating student grades report for project with id " + projectId);
 
-        // Fetch student details and grades
-        List<Student> students = studentRepository.findAllByProject(projectId);
         List<GradeType> notImportedGradeTypes = gradeRepository.findAllUnimportedGradeTypesByProjectId(projectId);
-        CustomLogger.info("Found " + students.size() + " students and " + notImportedGradeTypes.size() + " grade types");
-
-        int gradeTypesCount = notImportedGradeTypes.size();
+        Map<Integer, Integer> columnByGradeTypeId = new HashMap<>();
         int studentFieldsSize = 3;
+        int columnsCount = studentFieldsSize + notImportedGradeTypes.size();
 
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-             OutputStreamWriter writer = new OutputStreamWriter(byteArrayOutputStream);
-             CSVWriter csvWriter = new CSVWriter(writer)) {
+        CSVWriter csvWriter = new CSVWriter(new OutputStreamWriter(outputStream));
 
-            String[] header = new String[studentFieldsSize + gradeTypesCount];
-            String[] factors = new String[studentFieldsSize + gradeTypesCount];
-            Arrays.fill(header, "");
-            Arrays.fill(factors, "");
+        String[] header = new String[columnsCount];
+        String[] factors = new String[columnsCount];
+        Arrays.fill(header, "");
+        Arrays.fill(factors, "");
 
-            for (int i = 0; i < gradeTypesCount; i++) {
-                header[i + studentFieldsSize] = notImportedGradeTypes.get(i).name();
-                factors[i + studentFieldsSize] = String.valueOf(notImportedGradeTypes.get(i).factor());
-            }
-            csvWriter.writeNext(header);
-            csvWriter.writeNext(factors);
-
-            for (Student student : students) {
-                String[] studentInfo = new String[studentFieldsSize + gradeTypesCount];
-                Arrays.fill(studentInfo, "");
-                studentInfo[0] = student.name();
-                studentInfo[1] = student.gender() == Gender.MAN ? "M" : "F";
-                studentInfo[2] = Boolean.TRUE.equals(student.bachelor()) ? "B" : "";
-
-                for (int i = 0; i < gradeTypesCount; i++) {
-                    GradeType gradeType = notImportedGradeTypes.get(i);
-                    Float grade = getGradeByStudentAndGradeType(student, gradeType);
-                    studentInfo[i + studentFieldsSize] = grade != null ? String.valueOf(grade) : "";
+        for (int i = 0; i < notImportedGradeTypes.size(); i++) {
+            header[i + studentFieldsSize] = notImportedGradeTypes.get(i).name();
+            factors[i + studentFieldsSize] = String.valueOf(notImportedGradeTypes.get(i).factor());
+            columnByGradeTypeId.put(notImportedGradeTypes.get(i).id(), i + studentFieldsSize);
+        }
+        csvWriter.writeNext(header);
+        csvWriter.writeNext(factors);
+
+        try (Stream<Object[]> cells = gradeRepository.streamGradesByProject(projectId, false)) {
+            Integer currentStudentId = null;
+            String[] studentInfo = null;
+            for (Iterator<Object[]> iterator = cells.iterator(); iterator.hasNext(); ) {
+                // [studentId, name, gender, bachelor, gradeTypeId, value], ordered by student
+                Object[] cell = iterator.next();
+                if (!cell[0].equals(currentStudentId)) {
+                    if (studentInfo != null) csvWriter.writeNext(studentInfo);
+                    currentStudentId = (Integer) cell[0];
+                    studentInfo = new String[columnsCount];
+                    Arrays.fill(studentInfo, "");
+                    studentInfo[0] = (String) cell[1];
+                    studentInfo[1] = cell[2] == Gender.MAN ? "M" : "F";
+                    studentInfo[2] = Boolean.TRUE.equals(cell[3]) ? "B" : "";
+                }
+                Integer column = columnByGradeTypeId.get((Integer) cell[4]);
+                if (column != null && cell[5] != null && studentInfo[column].isEmpty()) {
+                    studentInfo[column] = String.valueOf(cell[5]);
                 }
-                csvWriter.writeNext(studentInfo);
             }
-
-            writer.flush();
-
-            return byteArrayOutputStream.toByteArray();
+            if (studentInfo != null) csvWriter.writeNext(studentInfo);
         }
+
+        csvWriter.flush();
     }
 
     public Map<String, Double> getTeamGrades(Integer teamId, Integer sprintId) {
@@ -0,0 +1,109 @@
+package fr.eseo.tauri.service;
+
+import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.model.ImportJob;
+import fr.eseo.tauri.model.enumeration.ImportJobStatus;
+import fr.eseo.tauri.util.CustomLogger;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous student imports.
+ * The uploads return a job immediately, the import runs on the bounded import executor.
+ */
+@Service
+@RequiredArgsConstructor
+public class ImportJobService {
+
+    // The finished jobs are forgotten after this duration
+    private static final Duration RETENTION = Duration.ofHours(1);
+
+    private final StudentImportService studentImportService;
+    private final TaskExecutor importExecutor;
+    private final TeamGenerationService teamGenerationService;
+
+    private final Map<Integer, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /**
+     * Submit the import of a CSV file of students.
+     * @param content the content of the CSV file
+     * @param projectId the id of the project
+     * @return the pending job
+     * @throws org.springframework.core.task.TaskRejectedException if too many imports are already waiting
+     */
+    public ImportJob submit(byte[] content, Integer projectId) {
+        evictFinishedJobs();
+        ImportJob job = new ImportJob(nextId.getAndIncrement(), projectId);
+        job.content(content);
+        jobs.put(job.id(), job);
+        try {
+            importExecutor.execute(() -> run(job));
+        } catch (RuntimeException e) {
+            jobs.remove(job.id());
+            throw e;
+        }
+        return job;
+    }
+
+    public ImportJob getJob(Integer jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null) throw new ResourceNotFoundException("import job", jobId);
+        return job;
+    }
+
+    /**
+     * Resume a failed job after its last committed chunk.
+     * @param jobId the id of the job
+     * @return the pending job
+     * @throws org.springframework.core.task.TaskRejectedException if too many imports are already waiting, the job stays failed
+     */
+    public ImportJob resume(Integer jobId) {
+        ImportJob job = getJob(jobId);
+        if (job.status() != ImportJobStatus.FAILED) {
+            throw new IllegalArgumentException("Only a failed import job can be resumed");
+        }
+        String error = job.error();
+        Instant finishedAt = job.finishedAt();
+        job.restart();
+        try {
+            importExecutor.execute(() -> run(job));
+        } catch (RuntimeException e) {
+            job.error(error);
+            job.finishedAt(finishedAt);
+            job.status(ImportJobStatus.FAILED);
+            throw e;
+        }
+        return job;
+    }
+
+    void run(ImportJob job) {
+        job.status(ImportJobStatus.RUNNING);
+        if (job.startedAt() == null) job.startedAt(Instant.now());
+        try {
+            studentImportService.importStudents(job);
+            job.content(null);
+            job.status(ImportJobStatus.COMPLETED);
+        } catch (Exception e) {
+            CustomLogger.error("Import job " + job.id() + " failed after line " + job.committedLines() + ": " + e.getMessage());
+            job.error(e.getMessage());
+            job.status(ImportJobStatus.FAILED);
+        } finally {
+            teamGenerationService.invalidateSnapshots();
+            job.finishedAt(Instant.now());
+        }
+    }
+
+    private void evictFinishedJobs() {
+        Instant limit = Instant.now().minus(RETENTION);
+        jobs.values().removeIf(job -> job.finishedAt() != null && job.finishedAt().isBefore(limit));
+    }
+
+}
@@ -1,10 +1,19 @@
 package fr.eseo.tauri.service;
 
 import fr.eseo.tauri.model.Notification;
+import fr.eseo.tauri.model.NotificationBroadcast;
+import fr.eseo.tauri.model.NotificationItem;
+import fr.eseo.tauri.model.User;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.repository.NotificationBroadcastRepository;
 import fr.eseo.tauri.repository.NotificationRepository;
+import fr.eseo.tauri.util.CustomLogger;
+import fr.eseo.tauri.util.VersionedCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -12,8 +21,17 @@ import java.util.List;
 @RequiredArgsConstructor
 public class NotificationService {
 
+	public static final int DEFAULT_PAGE_SIZE = 20;
+	public static final int MAX_PAGE_SIZE = 100;
+
 	private final NotificationRepository notificationRepository;
 	private final UserService userService;
+	private final NotificationStreamService notificationStreamService;
+	private final NotificationBroadcastRepository notificationBroadcastRepository;
+	private final TaskExecutor notificationExecutor;
+
+	// Unread notifications count by user, loaded on first read then invalidated by the writes of this service
+	private final VersionedCache<Integer, Long> uncheckedCounts = new VersionedCache<>();
 
 	/**
 	 * Get a notification by its id
@@ -41,6 +59,36 @@ public class NotificationService {
 		return notificationRepository.findByUser(userId);
 	}
 
+	/**
+	 * Get a page of the notifications of a user, the newest first
+	 * @param userId the id of the user who receive the notifications (userTo)
+	 * @param beforeId the id of the last notification of the previous page, null for the first page
+	 * @param size the size of the page, capped to MAX_PAGE_SIZE
+	 * @return the notifications
+	 */
+	public List<NotificationItem> getNotificationPageByUser(Integer userId, Integer beforeId, Integer size) {
+		int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+		return notificationRepository.findPageByUser(userId, beforeId, PageRequest.of(0, pageSize));
+	}
+
+	/**
+	 * Count the unread notifications of a user
+	 * @param userId the id of the user who receive the notifications (userTo)
+	 * @return the number of unchecked notifications
+	 */
+	public long countUncheckedNotifications(Integer userId) {
+		return uncheckedCounts.get(userId, notificationRepository::countUncheckedByUser);
+	}
+
+	/**
+	 * Check all the notifications of a user
+	 * @param userId the id of the user who receive the notifications (userTo)
+	 */
+	public void checkAllNotifications(Integer userId) {
+		notificationRepository.checkAllByUser(userId);
+		uncheckedCounts.invalidate(userId);
+	}
+
 	/**
 	 * Create a notification
 	 * @param notification the notification to create
@@ -50,6 +98,56 @@ public class NotificationService {
 		notification.userTo(userService.getUserById(notification.userToId()));
 
 		notificationRepository.save(notification);
+		if (!Boolean.TRUE.equals(notification.checked())) invalidateUncheckedCount(notification.userTo());
+		notificationStreamService.publish(notification);
+	}
+
+	/**
+	 * Send one notification to every user matching the filters of a broadcast.
+	 * The notifications are written with one batch on the notification executor, this method returns immediately.
+	 * @param broadcast the notification and the filters of its recipients
+	 * @throws org.springframework.core.task.TaskRejectedException if too many notification tasks are already waiting
+	 */
+	public void broadcastNotification(NotificationBroadcast broadcast) {
+		if (broadcast.projectId() == null && broadcast.roleType() == null && broadcast.teamId() == null) {
+			throw new IllegalArgumentException("A project, a role type or a team is required to broadcast a notification");
+		}
+		User userFrom = userService.getUserById(broadcast.userFromId());
+		notificationExecutor.execute(() -> {
+			try {
+				deliverBroadcast(broadcast, userFrom);
+			} catch (RuntimeException e) {
+				CustomLogger.error("The broadcast of a notification failed", e);
+			}
+		});
+	}
+
+	private void deliverBroadcast(NotificationBroadcast broadcast, User userFrom) {
+		List<Integer> recipientIds = notificationBroadcastRepository.findRecipientIds(broadcast.projectId(), broadcast.roleType(), broadcast.teamId());
+		if (recipientIds.isEmpty()) return;
+		List<Integer> ids = notificationBroadcastRepository.insertNotifications(recipientIds, broadcast.message(), broadcast.type(), userFrom.id());
+		for (int i = 0; i < recipientIds.size(); i++) {
+			Notification notification = new Notification();
+			notification.id(ids.get(i));
+			notification.message(broadcast.message());
+			notification.type(broadcast.type());
+			notification.userTo(new User().id(recipientIds.get(i)));
+			notification.userFrom(userFrom);
+			invalidateUncheckedCount(notification.userTo());
+			notificationStreamService.publish(notification);
+		}
+		CustomLogger.info(String.format("Broadcast a notification to %d users.", recipientIds.size()));
+	}
+
+	/**
+	 * Open the notification stream of a user
+	 * @param userId the id of the user who receive the notifications (userTo)
+	 * @param lastEventId the id of the last notification received by the client, null for a new stream
+	 * @return the stream
+	 */
+	public SseEmitter subscribe(Integer userId, Integer lastEventId) {
+		userService.getUserById(userId);
+		return notificationStreamService.subscribe(userId, lastEventId);
 	}
 
 	/**
@@ -59,6 +157,7 @@ public class NotificationService {
 	 */
 	public void updateNotification(Integer id, Notification updatedNotification) {
 		var notification = getNotificationById(id);
+		User previousUserTo = notification.userTo();
 
 		if (updatedNotification.message() != null) notification.message(updatedNotification.message());
 		if (updatedNotification.checked() != null) notification.checked(updatedNotification.checked());
@@ -66,6 +165,8 @@ public class NotificationService {
 		if (updatedNotification.userFromId() != null) notification.userFrom(userService.getUserById(updatedNotification.userFromId()));
 
 		notificationRepository.save(notification);
+		invalidateUncheckedCount(previousUserTo);
+		invalidateUncheckedCount(notification.userTo());
 	}
 
 
@@ -77,6 +178,7 @@ public class NotificationService {
 		var notification = getNotificationById(id);
 		notification.checked(!notification.checked());
 		notificationRepository.save(notification);
+		invalidateUncheckedCount(notification.userTo());
 	}
 
 	/**
@@ -84,8 +186,9 @@ public class NotificationService {
 	 * @param id the id of the notification
 	 */
 	public void deleteNotificationById(Integer id) {
-		getNotificationById(id);
+		var notification = getNotificationById(id);
 		notificationRepository.deleteById(id);
+		if (!Boolean.TRUE.equals(notification.checked())) invalidateUncheckedCount(notification.userTo());
 	}
 
 	/**
@@ -93,6 +196,14 @@ public class NotificationService {
 	 */
 	public void deleteAllNotifications() {
 		notificationRepository.deleteAll();
+		uncheckedCounts.invalidateAll();
+	}
+
+	/**
+	 * Drop the cached count, called after the database write so a count loaded during the write is not kept.
+	 */
+	private void invalidateUncheckedCount(User userTo) {
+		if (userTo != null) uncheckedCounts.invalidate(userTo.id());
 	}
 
 }
\ No newline at end of file
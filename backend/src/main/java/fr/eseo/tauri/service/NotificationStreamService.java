@@ -0,0 +1,187 @@
+package fr.eseo.tauri.service;
+
+import fr.eseo.tauri.model.Notification;
+import fr.eseo.tauri.model.NotificationItem;
+import fr.eseo.tauri.repository.NotificationRepository;
+import fr.eseo.tauri.util.CustomLogger;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Push delivery of the notifications over Server-Sent Events.
+ * Every stream has its own bounded buffer, drained on the notification executor: the publisher never waits for a client,
+ * and a client which can not keep up is disconnected. The replayed notifications do not count in the bound of the buffer. The event id is the notification id, so a client resumes
+ * from its Last-Event-ID when it reconnects.
+ */
+@Service
+@RequiredArgsConstructor
+public class NotificationStreamService {
+
+    public static final int BUFFER_SIZE = 64;
+    public static final int REPLAY_LIMIT = 100;
+    public static final String EVENT_NAME = "notification";
+    private static final Duration TIMEOUT = Duration.ofMinutes(30);
+
+    private final NotificationRepository notificationRepository;
+    private final TaskExecutor notificationExecutor;
+
+    private final Map<Integer, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Open a notification stream for a user.
+     * @param userId the id of the user
+     * @param lastEventId the id of the last notification received by the client, null for a new stream
+     * @return the stream, sending the notifications missed since the last event id first
+     */
+    public SseEmitter subscribe(Integer userId, Integer lastEventId) {
+        SseEmitter emitter = new SseEmitter(TIMEOUT.toMillis());
+        Subscriber subscriber = new Subscriber(userId, emitter);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        // Subscribe before loading the missed notifications, so none is published in between
+        subscribers.compute(userId, (id, userSubscribers) -> {
+            Set<Subscriber> result = userSubscribers != null ? userSubscribers : ConcurrentHashMap.newKeySet();
+            result.add(subscriber);
+            return result;
+        });
+        List<Notification> missed = lastEventId == null ? List.of()
+                : notificationRepository.findByUserAfter(userId, lastEventId, PageRequest.of(0, REPLAY_LIMIT));
+        subscriber.start(missed);
+        return emitter;
+    }
+
+    /**
+     * Send a notification to the open streams of its recipient.
+     * @param notification the saved notification
+     */
+    public void publish(Notification notification) {
+        if (notification.userTo() == null) return;
+        Set<Subscriber> userSubscribers = subscribers.get(notification.userTo().id());
+        if (userSubscribers == null) return;
+        for (Subscriber subscriber : userSubscribers) {
+            subscriber.offer(notification);
+        }
+    }
+
+    public int countSubscribers(Integer userId) {
+        Set<Subscriber> userSubscribers = subscribers.get(userId);
+        return userSubscribers == null ? 0 : userSubscribers.size();
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.userId, (id, userSubscribers) -> {
+            userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+    }
+
+    /**
+     * An open stream and its pending notifications.
+     * At most one drain task runs at a time, so the events are sent in order. A closed stream is completed by its
+     * drain task when one is running, the publisher never waiting for a send in progress.
+     */
+    private final class Subscriber {
+
+        private final Integer userId;
+        private final SseEmitter emitter;
+        private final Deque<Notification> buffer = new ArrayDeque<>();
+        // Replayed notifications still at the head of the buffer, not counted in its bound
+        private int replayed;
+        private boolean started;
+        private boolean draining;
+        private boolean closed;
+
+        private Subscriber(Integer userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        /**
+         * Put the missed notifications before the ones published since the subscription, then start sending.
+         * @param missed the missed notifications, the newest first
+         */
+        synchronized void start(List<Notification> missed) {
+            Integer firstPublishedId = buffer.isEmpty() ? null : buffer.peekFirst().id();
+            for (Notification notification : missed) {
+                if (firstPublishedId == null || notification.id() < firstPublishedId) {
+                    buffer.addFirst(notification);
+                    replayed++;
+                }
+            }
+            started = true;
+            scheduleDrain();
+        }
+
+        synchronized void offer(Notification notification) {
+            if (closed) return;
+            if (buffer.size() - replayed >= BUFFER_SIZE) {
+                CustomLogger.info(String.format("The notification stream of the user %d is too slow, it is closed.", userId));
+                close();
+                return;
+            }
+            buffer.addLast(notification);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (!started || draining || closed || buffer.isEmpty()) return;
+            draining = true;
+            try {
+                notificationExecutor.execute(this::drain);
+            } catch (TaskRejectedException e) {
+                draining = false;
+                close();
+            }
+        }
+
+        private void drain() {
+            Notification notification;
+            while ((notification = poll()) != null) {
+                try {
+                    emitter.send(SseEmitter.event().id(String.valueOf(notification.id())).name(EVENT_NAME).data(NotificationItem.from(notification)));
+                } catch (IOException | IllegalStateException e) {
+                    synchronized (this) {
+                        closed = true;
+                        draining = false;
+                    }
+                    unsubscribe(this);
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+            boolean completed;
+            synchronized (this) {
+                completed = closed;
+            }
+            if (completed) emitter.complete();
+        }
+
+        private synchronized Notification poll() {
+            Notification notification = closed ? null : buffer.pollFirst();
+            if (notification == null) draining = false;
+            else if (replayed > 0) replayed--;
+            return notification;
+        }
+
+        private void close() {
+            closed = true;
+            buffer.clear();
+            replayed = 0;
+            unsubscribe(this);
+            if (!draining) emitter.complete();
+        }
+
+    }
+
+}
@@ -2,17 +2,26 @@ package fr.eseo.tauri.service;
 
 import fr.eseo.tauri.model.Permission;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.model.enumeration.PermissionType;
 import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.PermissionRepository;
+import fr.eseo.tauri.security.RoleVersions;
+import fr.eseo.tauri.util.VersionedCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
 public class PermissionService {
     private final PermissionRepository permissionRepository;
+    private final RoleVersions roleVersions;
+
+    private static final String MATRIX = "matrix";
+
+    // The permissions of every role, loaded from the permissions table and reloaded after its changes
+    private final VersionedCache<String, Map<RoleType, EnumSet<PermissionType>>> matrix = new VersionedCache<>();
 
     public Permission getPermissionById(Integer id) {
         return permissionRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("permission", id));
@@ -26,8 +35,76 @@ public class PermissionService {
         return permissionRepository.findByRole(roleType);
     }
 
+    /**
+     * Check if one of the roles has a permission, without database access once the matrix is loaded.
+     */
+    public boolean hasPermission(Collection<RoleType> roles, PermissionType permissionType) {
+        Map<RoleType, EnumSet<PermissionType>> permissions = getPermissionMatrix();
+        for (RoleType role : roles) {
+            EnumSet<PermissionType> rolePermissions = permissions.get(role);
+            if (rolePermissions != null && rolePermissions.contains(permissionType)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The union of the permissions of the roles.
+     */
+    public EnumSet<PermissionType> getPermissionsByRoles(Collection<RoleType> roles) {
+        Map<RoleType, EnumSet<PermissionType>> permissions = getPermissionMatrix();
+        EnumSet<PermissionType> result = EnumSet.noneOf(PermissionType.class);
+        for (RoleType role : roles) {
+            EnumSet<PermissionType> rolePermissions = permissions.get(role);
+            if (rolePermissions != null) result.addAll(rolePermissions);
+        }
+        return result;
+    }
+
+    /**
+     * A bitmap of permissions, the bit n being set for the permission type of ordinal n.
+     * @return the bytes of the bitmap, little-endian, encoded in base64
+     */
+    public static String toBitmap(Set<PermissionType> permissions) {
+        BitSet bitmap = new BitSet(PermissionType.values().length);
+        for (PermissionType permission : permissions) {
+            bitmap.set(permission.ordinal());
+        }
+        return Base64.getEncoder().encodeToString(bitmap.toByteArray());
+    }
+
+    /**
+     * The permissions of a bitmap built by {@link #toBitmap}, the bits of unknown ordinals being ignored.
+     */
+    public static EnumSet<PermissionType> fromBitmap(String bitmap) {
+        BitSet bits = BitSet.valueOf(Base64.getDecoder().decode(bitmap));
+        PermissionType[] types = PermissionType.values();
+        EnumSet<PermissionType> permissions = EnumSet.noneOf(PermissionType.class);
+        for (int i = bits.nextSetBit(0); i >= 0 && i < types.length; i = bits.nextSetBit(i + 1)) {
+            permissions.add(types[i]);
+        }
+        return permissions;
+    }
+
+    private Map<RoleType, EnumSet<PermissionType>> getPermissionMatrix() {
+        return matrix.get(MATRIX, key -> {
+            Map<RoleType, EnumSet<PermissionType>> loaded = new EnumMap<>(RoleType.class);
+            for (Permission permission : permissionRepository.findAll()) {
+                if (permission.role() == null || permission.type() == null) continue;
+                loaded.computeIfAbsent(permission.role(), role -> EnumSet.noneOf(PermissionType.class)).add(permission.type());
+            }
+            return loaded;
+        });
+    }
+
+    private void invalidateMatrix() {
+        matrix.invalidateAll();
+        // The permissions carried by the access tokens are outdated
+        roleVersions.bumpAll();
+    }
+
     public void createPermission(Permission permission) {
         permissionRepository.save(permission);
+        invalidateMatrix();
     }
 
     public void updatePermission(Integer id, Permission updatedPermission) {
@@ -37,15 +114,18 @@ public class PermissionService {
         if (updatedPermission.role() != null) permission.role(updatedPermission.role());
 
         permissionRepository.save(permission);
+        invalidateMatrix();
     }
 
     public void deletePermission(Integer id) {
         getPermissionById(id);
         permissionRepository.deleteById(id);
+        invalidateMatrix();
     }
 
     public void deleteAllPermissions() {
         permissionRepository.deleteAll();
+        invalidateMatrix();
     }
 
 }
\ No newline at end of file
@@ -4,16 +4,23 @@ import fr.eseo.tauri.model.PresentationOrder;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.Student;
 import fr.eseo.tauri.repository.PresentationOrderRepository;
+import fr.eseo.tauri.repository.SprintProvisioningRepository;
+import fr.eseo.tauri.util.ListUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class PresentationOrderService {
 
     private final PresentationOrderRepository presentationOrderRepository;
+    private final SprintProvisioningRepository sprintProvisioningRepository;
 
     public PresentationOrder getPresentationOrderById(Integer id) {
         return presentationOrderRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("presentationOrder", id));
@@ -48,21 +55,39 @@ public class PresentationOrderService {
         return presentationOrderRepository.findByTeamIdAndSprintId(teamId, sprintId);
     }
 
+    /**
+     * Reorder the students of a team for a sprint, the first student of the list presenting first.
+     * All the positions are written with one batch.
+     * @param students the students of the team in their new order
+     */
+    @Transactional
     public void updatePresentationOrderByTeamIdAndSprintId(Integer teamId, Integer sprintId, List<Student> students) {
-        var orders = getPresentationOrderByTeamIdAndSprintId(teamId, sprintId);
-		for (var order : orders) {
-			Integer newValue = null;
-			for (int j = 0; j < students.size(); j++) {
-				if (students.get(j).id().equals(order.student().id())) {
-					newValue = j + 1;
-					break;
-				}
-			}
-			if (newValue != null) {
-                order.value(newValue);
-				presentationOrderRepository.save(order);
-			}
-		}
+        List<Integer[]> positions = new ArrayList<>();
+        addPositions(positions, teamId, sprintId, ListUtil.map(students, Student::id));
+        if (!positions.isEmpty()) sprintProvisioningRepository.updatePresentationOrders(positions);
     }
 
-}
\ No newline at end of file
+    /**
+     * Publish the running order of every team of a sprint at once, with one batch.
+     * @param sprintId the id of the sprint
+     * @param studentIdsByTeamId the ids of the students of each team in their presentation order
+     * @return the number of updated presentation orders
+     */
+    @Transactional
+    public int publishPresentationOrders(Integer sprintId, Map<Integer, List<Integer>> studentIdsByTeamId) {
+        List<Integer[]> positions = new ArrayList<>();
+        studentIdsByTeamId.forEach((teamId, studentIds) -> addPositions(positions, teamId, sprintId, studentIds));
+        if (positions.isEmpty()) return 0;
+        return sprintProvisioningRepository.updatePresentationOrders(positions);
+    }
+
+    private static void addPositions(List<Integer[]> positions, Integer teamId, Integer sprintId, List<Integer> studentIds) {
+        // The first position of a student wins if they are submitted twice
+        Map<Integer, Integer> positionsByStudentId = new LinkedHashMap<>();
+        for (int i = 0; i < studentIds.size(); i++) {
+            positionsByStudentId.putIfAbsent(studentIds.get(i), i + 1);
+        }
+        positionsByStudentId.forEach((studentId, position) -> positions.add(new Integer[]{studentId, sprintId, position, teamId}));
+    }
+
+}
@@ -6,6 +6,7 @@ import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.enumeration.GradeTypeName;
 import fr.eseo.tauri.repository.GradeTypeRepository;
 import fr.eseo.tauri.repository.ProjectRepository;
+import fr.eseo.tauri.util.VersionedCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -18,6 +19,11 @@ public class ProjectService {
     private final ProjectRepository projectRepository;
     private final GradeTypeRepository gradeTypeRepository;
 
+    private static final String ACTUAL_PROJECT = "actual";
+
+    // The id of the actual project, 0 when there is none, read at every login and reset by the project changes
+    private final VersionedCache<String, Integer> actualProjectId = new VersionedCache<>();
+
     public Project getProjectById(Integer id) {
         return projectRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("project", id));
     }
@@ -31,6 +37,18 @@ public class ProjectService {
                 .orElseThrow(() -> new ResourceNotFoundException("actual project", 0));
     }
 
+    /**
+     * The id of the actual project, without database access once loaded.
+     * @return the id, 0 when there is no actual project
+     */
+    public Integer getActualProjectId() {
+        return actualProjectId.get(ACTUAL_PROJECT, key -> projectRepository.findFirstByActualTrue().map(Project::id).orElse(0));
+    }
+
+    private void invalidateActualProject() {
+        actualProjectId.invalidateAll();
+    }
+
     public void setActualProject(Integer idNewProject) {
         Project project = projectRepository.findById(idNewProject)
                 .orElseThrow(() -> new ResourceNotFoundException("project", idNewProject));
@@ -40,10 +58,12 @@ public class ProjectService {
         });
         project.actual(true);
         projectRepository.save(project);
+        invalidateActualProject();
     }
 
     public void createProject(Project project) {
         projectRepository.save(project);
+        invalidateActualProject();
 
         GradeTypeName[] gradeTypeNames = GradeTypeName.values();
         for(GradeTypeName gradeTypeName : gradeTypeNames) {
@@ -76,9 +96,11 @@ public class ProjectService {
     public void deleteProjectById(Integer id) {
         getProjectById(id);
         projectRepository.deleteById(id);
+        invalidateActualProject();
     }
 
     public void deleteAllProjects() {
         projectRepository.deleteAll();
+        invalidateActualProject();
     }
 }
\ No newline at end of file
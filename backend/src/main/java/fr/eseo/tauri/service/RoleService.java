@@ -34,6 +34,7 @@ public class RoleService {
 	public void createRole(Role role) {
 		if(role.userId() != null) role.user(userService.getUserById(role.userId()));
 		roleRepository.save(role);
+		if (role.user() != null) userService.invalidateRoles(role.user().id());
 	}
 
 	public void createRoles(String email, RoleType[] roles, Integer projectId) {
@@ -42,6 +43,7 @@ public class RoleService {
 		for (RoleType roleType : roles) {
 			if(roleType == RoleType.OPTION_STUDENT) {
                 userRepository.findByEmail(email).ifPresent(userRepository::delete);
+                userService.invalidateUsers();
                 createStudentRoleAndGrades(email, projectId, roleType);
 			} else {
 				Role role = new Role();
@@ -51,6 +53,8 @@ public class RoleService {
 				roleRepository.save(role);
 			}
 		}
+		// A new student has no roles cached nor token yet, only the existing user is outdated
+		if (user != null) userService.invalidateRoles(user.id());
 	}
 
 	public void createStudentRoleAndGrades(String email, Integer projectId, RoleType roleType){
@@ -87,20 +91,25 @@ public class RoleService {
 
 	public void updateRole(Integer id, Role updatedRole) {
 		Role role = getRoleById(id);
+		User previousUser = role.user();
 
 		if (updatedRole.type() != null) role.type(updatedRole.type());
 		if (updatedRole.userId() != null) role.user(userService.getUserById(updatedRole.userId()));
 
 		roleRepository.save(role);
+		if (previousUser != null) userService.invalidateRoles(previousUser.id());
+		if (role.user() != null) userService.invalidateRoles(role.user().id());
 	}
 
 	public void deleteRoleById(Integer id) {
-		getRoleById(id);
+		Role role = getRoleById(id);
 		roleRepository.deleteById(id);
+		if (role.user() != null) userService.invalidateRoles(role.user().id());
 	}
 
 	public void deleteAllRoles() {
 		roleRepository.deleteAll();
+		userService.invalidateAllRoles();
 	}
 
 	/**
@@ -115,8 +124,7 @@ public class RoleService {
 	}
 
 	public Boolean hasPermission(RoleType roleType, PermissionType permissionType) {
-		var permissions = permissionService.getAllPermissionsByRole(roleType);
-		return ListUtil.map(permissions, Permission::type).contains(permissionType);
+		return permissionService.hasPermission(List.of(roleType), permissionType);
 	}
 
 }
\ No newline at end of file
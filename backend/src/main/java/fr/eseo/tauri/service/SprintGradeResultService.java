@@ -0,0 +1,204 @@
+package fr.eseo.tauri.service;
+
+import fr.eseo.tauri.model.*;
+import fr.eseo.tauri.repository.SprintGradeResultRepository;
+import fr.eseo.tauri.repository.SprintRepository;
+import fr.eseo.tauri.repository.TeamRepository;
+import fr.eseo.tauri.repository.TeamSprintGradeResultRepository;
+import fr.eseo.tauri.util.CustomLogger;
+import fr.eseo.tauri.util.ListUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Materialized sprint grades.
+ * The sprint grades of a team are recomputed when one of its grades or bonuses is written,
+ * so the reads are single row lookups instead of a full computation.
+ */
+@Service
+@RequiredArgsConstructor
+public class SprintGradeResultService {
+
+    private static final String GRADES_SEPARATOR = ";";
+
+    private final SprintGradeResultRepository sprintGradeResultRepository;
+    private final TeamSprintGradeResultRepository teamSprintGradeResultRepository;
+    private final SprintGradeService sprintGradeService;
+    private final TeamRepository teamRepository;
+    private final SprintRepository sprintRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Get the sprint grades of the members of a team, materializing them on the first read.
+     * @param teamId the id of the team
+     * @param sprintId the id of the sprint
+     * @return the sprint grades, in the same order as the team members, or [-1] if the team is empty
+     */
+    public List<Double> getTeamSprintGrades(Integer teamId, Integer sprintId) {
+        TeamSprintGradeResult result = teamSprintGradeResultRepository.findByTeamAndSprint(teamId, sprintId);
+        if (result == null) {
+            result = refresh(teamId, sprintId);
+        }
+        if (Boolean.FALSE.equals(result.computed())) {
+            return sprintGradeService.getSprintGrades(teamId, sprintId);
+        }
+        return ListUtil.map(Arrays.asList(result.sprintGrades().split(GRADES_SEPARATOR)), Double::parseDouble);
+    }
+
+    /**
+     * Get the sprint grade of a student (not rounded), materializing the grades of the team on the first read.
+     * A grade that cannot be materialized is computed live, the team is only refreshed when it has no materialized result.
+     * @param studentId the id of the student
+     * @param teamId the id of the team of the student
+     * @param sprintId the id of the sprint
+     * @return the sprint grade
+     */
+    public Double getStudentSprintGrade(Integer studentId, Integer teamId, Integer sprintId) {
+        Optional<Double> sprintGrade = findStudentSprintGrade(studentId, sprintId);
+        if (sprintGrade.isEmpty() && teamSprintGradeResultRepository.findByTeamAndSprint(teamId, sprintId) == null) {
+            refresh(teamId, sprintId);
+            sprintGrade = findStudentSprintGrade(studentId, sprintId);
+        }
+        return sprintGrade.orElseGet(() -> sprintGradeService.getStudentSprintGrade(studentId, teamId, sprintId));
+    }
+
+    /**
+     * Find the materialized sprint grade of a student.
+     * @param studentId the id of the student
+     * @param sprintId the id of the sprint
+     * @return the sprint grade, empty if it is not materialized
+     */
+    public Optional<Double> findStudentSprintGrade(Integer studentId, Integer sprintId) {
+        return Optional.ofNullable(sprintGradeResultRepository.findStudentSprintGrade(studentId, sprintId));
+    }
+
+    /**
+     * Recompute the materialized sprint grades of the team and sprint of a grade.
+     * @param grade the created, updated or deleted grade
+     */
+    public void refresh(Grade grade) {
+        if (grade.sprint() == null) return;
+        Team team = grade.team() != null ? grade.team() : grade.student() != null ? grade.student().team() : null;
+        if (team != null) refresh(team.id(), grade.sprint().id());
+    }
+
+    /**
+     * Recompute the materialized sprint grades of the team and sprint of a bonus.
+     * @param bonus the updated or deleted bonus
+     */
+    public void refresh(Bonus bonus) {
+        if (bonus.sprint() == null || bonus.student() == null || bonus.student().team() == null) return;
+        refresh(bonus.student().team().id(), bonus.sprint().id());
+    }
+
+    /**
+     * Recompute the materialized sprint grades of a team for a sprint, in one transaction.
+     * The transaction is opened with the template as this method is also called from this class.
+     * @param teamId the id of the team
+     * @param sprintId the id of the sprint
+     * @return the materialized team result
+     */
+    public TeamSprintGradeResult refresh(Integer teamId, Integer sprintId) {
+        return transactionTemplate.execute(status -> materialize(sprintGradeService.load(List.of(teamId), sprintId), teamId, sprintId));
+    }
+
+    /**
+     * Drop the materialized sprint grades of a team, they are recomputed on the next read.
+     * @param teamId the id of the team
+     */
+    @Transactional
+    public void invalidateTeam(Integer teamId) {
+        sprintGradeResultRepository.deleteAllByTeam(teamId);
+        teamSprintGradeResultRepository.deleteAllByTeam(teamId);
+    }
+
+    /**
+     * Drop the materialized sprint grades of a sprint.
+     * @param sprintId the id of the sprint
+     */
+    @Transactional
+    public void invalidateSprint(Integer sprintId) {
+        sprintGradeResultRepository.deleteAllBySprint(sprintId);
+        teamSprintGradeResultRepository.deleteAllBySprint(sprintId);
+    }
+
+    /**
+     * Drop the materialized sprint grades of a project, they are recomputed on the next read.
+     * @param projectId the id of the project
+     */
+    @Transactional
+    public void invalidateProject(Integer projectId) {
+        sprintGradeResultRepository.deleteAllByProject(projectId);
+        teamSprintGradeResultRepository.deleteAllByProject(projectId);
+    }
+
+    /**
+     * Rebuild the materialized sprint grades of a project from scratch.
+     * @param projectId the id of the project
+     * @return the number of materialized team results that were out of date
+     */
+    @Transactional
+    public int rebuild(Integer projectId) {
+        Map<String, String> previousGrades = new HashMap<>();
+        for (TeamSprintGradeResult result : teamSprintGradeResultRepository.findAllByProject(projectId)) {
+            previousGrades.put(key(result.team().id(), result.sprint().id()), result.sprintGrades());
+        }
+        invalidateProject(projectId);
+
+        List<Integer> teamIds = ListUtil.map(teamRepository.findAllByProject(projectId), Team::id);
+        int staleResults = 0;
+        for (Sprint sprint : sprintRepository.findAllByProject(projectId)) {
+            SprintGradeService.SprintGrades sprintGrades = sprintGradeService.load(teamIds, sprint.id());
+            for (Integer teamId : teamIds) {
+                String key = key(teamId, sprint.id());
+                TeamSprintGradeResult result = materialize(sprintGrades, teamId, sprint.id());
+                if (previousGrades.containsKey(key) && !Objects.equals(previousGrades.get(key), result.sprintGrades())) {
+                    staleResults++;
+                }
+            }
+        }
+        CustomLogger.info("Rebuilt sprint grade results for project " + projectId + ", " + staleResults + " were out of date.");
+        return staleResults;
+    }
+
+    private TeamSprintGradeResult materialize(SprintGradeService.SprintGrades sprintGrades, Integer teamId, Integer sprintId) {
+        List<Double> teamSprintGrades = sprintGrades.hasSprintGrades(teamId) ? finiteGrades(sprintGrades.sprintGrades(teamId)) : null;
+        boolean computed = teamSprintGrades != null;
+
+        sprintGradeResultRepository.deleteAllByTeamAndSprint(teamId, sprintId);
+        List<Student> students = sprintGrades.students(teamId);
+        for (int i = 0; i < students.size(); i++) {
+            Integer studentId = students.get(i).id();
+            Double studentSprintGrade = sprintGrades.hasStudentSprintGrade(studentId, teamId) ? finiteGrade(sprintGrades.studentSprintGrade(studentId, teamId)) : null;
+            sprintGradeResultRepository.upsert(studentId, sprintId, teamId, computed ? teamSprintGrades.get(i) : null, studentSprintGrade);
+        }
+
+        String grades = computed ? String.join(GRADES_SEPARATOR, ListUtil.map(teamSprintGrades, Object::toString)) : null;
+        teamSprintGradeResultRepository.upsert(teamId, sprintId, grades, computed);
+
+        TeamSprintGradeResult result = new TeamSprintGradeResult();
+        result.sprintGrades(grades);
+        result.computed(computed);
+        return result;
+    }
+
+    /**
+     * Grades that cannot be computed (missing grades) are not materialized, the reads then fall back to the live computation.
+     */
+    private static List<Double> finiteGrades(List<Double> grades) {
+        return grades != null && grades.stream().allMatch(grade -> grade != null && Double.isFinite(grade)) ? grades : null;
+    }
+
+    private static Double finiteGrade(Double grade) {
+        return grade != null && Double.isFinite(grade) ? grade : null;
+    }
+
+    private static String key(Integer teamId, Integer sprintId) {
+        return teamId + "-" + sprintId;
+    }
+
+}
@@ -0,0 +1,267 @@
+package fr.eseo.tauri.service;
+
+import fr.eseo.tauri.model.GradeType;
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.enumeration.GradeTypeName;
+import fr.eseo.tauri.repository.BonusRepository;
+import fr.eseo.tauri.repository.GradeRepository;
+import fr.eseo.tauri.repository.GradeTypeRepository;
+import fr.eseo.tauri.repository.StudentRepository;
+import fr.eseo.tauri.util.ListUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Sprint grade engine.
+ * Every grade and bonus needed for a set of teams is loaded with a fixed number of grouped queries,
+ * then the team / individual / sprint grades are computed in memory.
+ */
+@Service
+@RequiredArgsConstructor
+public class SprintGradeService {
+
+    private static final double TEAM_GRADE_WEIGHT = 0.7;
+    private static final double INDIVIDUAL_GRADE_WEIGHT = 0.3;
+    private static final double MAX_GRADE = 20.0;
+
+    private final GradeRepository gradeRepository;
+    private final GradeTypeRepository gradeTypeRepository;
+    private final BonusRepository bonusRepository;
+    private final StudentRepository studentRepository;
+
+    /**
+     * Get the total grade given by the teachers to a team for a sprint.
+     * @param teamId the id of the team
+     * @param sprintId the id of the sprint
+     * @return the average of the teacher graded team grade types
+     */
+    public Double getTeamTotalGrade(Integer teamId, Integer sprintId) {
+        return load(List.of(teamId), sprintId).teamTotalGrade(teamId);
+    }
+
+    /**
+     * Get the individual total grade of every member of a team for a sprint.
+     * @param teamId the id of the team
+     * @param sprintId the id of the sprint
+     * @return the individual total grades, in the same order as the team members
+     */
+    public List<Double> getIndividualTotalGrades(Integer teamId, Integer sprintId) {
+        return load(List.of(teamId), sprintId).individualTotalGrades(teamId);
+    }
+
+    /**
+     * Get the sprint grade of every member of a team.
+     * @param teamId the id of the team
+     * @param sprintId the id of the sprint
+     * @return the sprint grades, in the same order as the team members, or [-1] if the team is empty
+     */
+    public List<Double> getSprintGrades(Integer teamId, Integer sprintId) {
+        return load(List.of(teamId), sprintId).sprintGrades(teamId);
+    }
+
+    /**
+     * Get the sprint grades of the members of several teams at once.
+     * @param teamIds the ids of the teams
+     * @param sprintId the id of the sprint
+     * @return the sprint grades of each team, indexed by team id and ordered like the given ids
+     */
+    public Map<Integer, List<Double>> getSprintGradesByTeam(List<Integer> teamIds, Integer sprintId) {
+        SprintGrades sprintGrades = load(teamIds, sprintId);
+        Map<Integer, List<Double>> gradesByTeam = new LinkedHashMap<>();
+        for (Integer teamId : teamIds) {
+            gradesByTeam.put(teamId, sprintGrades.sprintGrades(teamId));
+        }
+        return gradesByTeam;
+    }
+
+    /**
+     * Get the individual total grade of a student (not rounded).
+     * @param studentId the id of the student
+     * @param teamId the id of the team of the student
+     * @param sprintId the id of the sprint
+     * @return the individual total grade
+     */
+    public Double getStudentIndividualTotalGrade(Integer studentId, Integer teamId, Integer sprintId) {
+        return load(List.of(teamId), sprintId).studentIndividualTotalGrade(studentId, teamId);
+    }
+
+    /**
+     * Get the sprint grade of a student (not rounded).
+     * @param studentId the id of the student
+     * @param teamId the id of the team of the student
+     * @param sprintId the id of the sprint
+     * @return the sprint grade
+     */
+    public Double getStudentSprintGrade(Integer studentId, Integer teamId, Integer sprintId) {
+        return load(List.of(teamId), sprintId).studentSprintGrade(studentId, teamId);
+    }
+
+    /**
+     * Load the grades, bonuses and members of the given teams for a sprint.
+     * @param teamIds the ids of the teams
+     * @param sprintId the id of the sprint
+     * @return the loaded sprint grades
+     */
+    public SprintGrades load(List<Integer> teamIds, Integer sprintId) {
+        List<String> teacherGradedTeamGradeTypes = ListUtil.map(gradeTypeRepository.findTeacherGradedTeamGradeTypes(), GradeType::name);
+        if (teamIds.isEmpty()) {
+            return new SprintGrades(teacherGradedTeamGradeTypes, Map.of(), Map.of(), Map.of(), Map.of());
+        }
+
+        Map<Integer, List<Student>> studentsByTeam = new HashMap<>();
+        for (Student student : studentRepository.findByTeams(teamIds)) {
+            studentsByTeam.computeIfAbsent(student.team().id(), id -> new ArrayList<>()).add(student);
+        }
+
+        Map<Integer, Map<String, Double>> teamAverages = new HashMap<>();
+        for (Object[] row : gradeRepository.findAveragesByGradeTypeForTeams(teamIds, sprintId)) {
+            teamAverages.computeIfAbsent((Integer) row[0], id -> new HashMap<>()).put((String) row[1], (Double) row[2]);
+        }
+
+        Map<Integer, Double> individualAverages = new HashMap<>();
+        for (Object[] row : gradeRepository.findAveragesByGradeTypeForTeamsStudents(teamIds, sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())) {
+            individualAverages.put((Integer) row[0], (Double) row[1]);
+        }
+
+        Map<Integer, Double> bonusTotals = new HashMap<>();
+        for (Object[] row : bonusRepository.sumBonusesByTeams(teamIds, sprintId)) {
+            bonusTotals.put((Integer) row[0], ((Number) row[1]).doubleValue());
+        }
+
+        return new SprintGrades(teacherGradedTeamGradeTypes, studentsByTeam, teamAverages, individualAverages, bonusTotals);
+    }
+
+    /**
+     * Compute the sprint grade of a student : 70% team grade (with bonuses, capped at 20) and 30% individual grade.
+     * @param teamGrade the total grade of the team
+     * @param bonus the sum of the bonuses of the student
+     * @param individualGrade the individual total grade of the student
+     * @return the sprint grade
+     */
+    public static double sprintGrade(double teamGrade, double bonus, double individualGrade) {
+        return TEAM_GRADE_WEIGHT * (Math.min(teamGrade + bonus, MAX_GRADE)) + INDIVIDUAL_GRADE_WEIGHT * individualGrade;
+    }
+
+    /**
+     * Round a grade to two decimals.
+     * @param result the grade to round
+     * @return the rounded grade
+     */
+    public static Double formattedResult(Double result) {
+        return Double.parseDouble(String.format("%.2f", result).replace(',', '.'));
+    }
+
+    /**
+     * Grades and bonuses of a set of teams for one sprint, held in memory.
+     */
+    public static class SprintGrades {
+
+        private final List<String> teacherGradedTeamGradeTypes;
+        private final Map<Integer, List<Student>> studentsByTeam;
+        private final Map<Integer, Map<String, Double>> teamAverages;
+        private final Map<Integer, Double> individualAverages;
+        private final Map<Integer, Double> bonusTotals;
+
+        SprintGrades(List<String> teacherGradedTeamGradeTypes, Map<Integer, List<Student>> studentsByTeam, Map<Integer, Map<String, Double>> teamAverages, Map<Integer, Double> individualAverages, Map<Integer, Double> bonusTotals) {
+            this.teacherGradedTeamGradeTypes = teacherGradedTeamGradeTypes;
+            this.studentsByTeam = studentsByTeam;
+            this.teamAverages = teamAverages;
+            this.individualAverages = individualAverages;
+            this.bonusTotals = bonusTotals;
+        }
+
+        public List<Student> students(Integer teamId) {
+            return studentsByTeam.getOrDefault(teamId, List.of());
+        }
+
+        public Double teamAverage(Integer teamId, String gradeTypeName) {
+            return teamAverages.getOrDefault(teamId, Map.of()).get(gradeTypeName);
+        }
+
+        public Double individualAverage(Integer studentId) {
+            return individualAverages.get(studentId);
+        }
+
+        public double bonusTotal(Integer studentId) {
+            return bonusTotals.getOrDefault(studentId, 0.0);
+        }
+
+        public Double teamTotalGrade(Integer teamId) {
+            List<Double> teamGrades = new ArrayList<>();
+            for (String gradeTypeName : teacherGradedTeamGradeTypes) {
+                Double average = teamAverage(teamId, gradeTypeName);
+                if (average != null) {
+                    teamGrades.add(average);
+                }
+            }
+            return formattedResult(teamGrades.stream().mapToDouble(Double::doubleValue).sum() / teamGrades.size());
+        }
+
+        public List<Double> individualTotalGrades(Integer teamId) {
+            Double studentGradedTeamGrade = teamAverage(teamId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName());
+            List<Double> individualGrades = new ArrayList<>();
+
+            for (Student student : students(teamId)) {
+                Double individualGrade = individualAverage(student.id());
+                double result;
+                if (studentGradedTeamGrade != null && individualGrade != null) {
+                    result = (2 * individualGrade + studentGradedTeamGrade) / 3;
+                } else if (studentGradedTeamGrade == null) {
+                    result = individualGrade;
+                } else {
+                    result = studentGradedTeamGrade;
+                }
+                individualGrades.add(formattedResult(result));
+            }
+            return individualGrades;
+        }
+
+        public Double studentIndividualTotalGrade(Integer studentId, Integer teamId) {
+            Double studentGradedTeamGrade = teamAverage(teamId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName());
+            Double individualGrade = individualAverage(studentId);
+            return (2 * individualGrade + studentGradedTeamGrade) / 3;
+        }
+
+        /**
+         * Check that the sprint grades of a team can be computed: every member has an individual grade or the team
+         * has a global performance grade.
+         */
+        public boolean hasSprintGrades(Integer teamId) {
+            if (teamAverage(teamId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName()) != null) return true;
+            for (Student student : students(teamId)) {
+                if (individualAverage(student.id()) == null) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Check that the sprint grade of a student can be computed: the student has an individual grade and the team
+         * a global performance grade.
+         */
+        public boolean hasStudentSprintGrade(Integer studentId, Integer teamId) {
+            return individualAverage(studentId) != null && teamAverage(teamId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName()) != null;
+        }
+
+        public Double studentSprintGrade(Integer studentId, Integer teamId) {
+            return sprintGrade(teamTotalGrade(teamId), bonusTotal(studentId), studentIndividualTotalGrade(studentId, teamId));
+        }
+
+        public List<Double> sprintGrades(Integer teamId) {
+            List<Student> students = students(teamId);
+            if (students.isEmpty()) {
+                return Collections.singletonList(-1.0);
+            }
+
+            double teamGrade = teamTotalGrade(teamId);
+            List<Double> individualGrades = individualTotalGrades(teamId);
+            List<Double> sprintGrades = new ArrayList<>();
+            for (int i = 0; i < students.size(); i++) {
+                sprintGrades.add(formattedResult(sprintGrade(teamGrade, bonusTotal(students.get(i).id()), individualGrades.get(i))));
+            }
+            return sprintGrades;
+        }
+    }
+
+}
@@ -1,23 +1,31 @@
 package fr.eseo.tauri.service;
 
-import fr.eseo.tauri.model.Bonus;
-import fr.eseo.tauri.model.PresentationOrder;
+import fr.eseo.tauri.model.Project;
 import fr.eseo.tauri.model.Sprint;
 import fr.eseo.tauri.model.Student;
 import fr.eseo.tauri.model.Comment;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.repository.BonusRepository;
 import fr.eseo.tauri.repository.CommentRepository;
+import fr.eseo.tauri.repository.GradeRepository;
+import fr.eseo.tauri.repository.PresentationOrderRepository;
+import fr.eseo.tauri.repository.SprintProvisioningRepository;
 import fr.eseo.tauri.repository.SprintRepository;
 import fr.eseo.tauri.util.CustomLogger;
+import fr.eseo.tauri.util.ListUtil;
+import fr.eseo.tauri.util.VersionedCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
@@ -27,12 +35,19 @@ public class SprintService {
     private final ProjectService projectService;
     @Lazy
     private final StudentService studentService;
-    private final PresentationOrderService presentationOrderService;
-    private final BonusService bonusService;
     private final CommentRepository commentRepository;
+    private final PresentationOrderRepository presentationOrderRepository;
+    private final BonusRepository bonusRepository;
+    private final GradeRepository gradeRepository;
+    private final SprintProvisioningRepository sprintProvisioningRepository;
+    private final SprintGradeResultService sprintGradeResultService;
+    private final TransactionTemplate transactionTemplate;
     @Lazy
     private final TeamService teamService;
 
+    // Calendar of the sprint dates of each project, dropped whenever a sprint changes
+    private final VersionedCache<Integer, SprintCalendar> calendars = new VersionedCache<>();
+
     public Sprint getSprintById(Integer id) {
 
         return sprintRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("sprint", id));
@@ -46,25 +61,68 @@ public class SprintService {
         CustomLogger.info("Creating sprint " + sprintId);
 
         sprint.project(projectService.getProjectById(sprint.projectId()));
-        sprintRepository.save(sprint);
-		List<Student> students = studentService.getAllStudentsByProject(sprint.projectId());
-        if(!students.isEmpty()) {
-            var teamsIndexes = new HashMap<Integer, Integer>();
-            for (var team : teamService.getAllTeamsByProject(sprint.projectId())) {
-                teamsIndexes.put(team.id(), 0);
+        transactionTemplate.executeWithoutResult(status -> {
+            sprintRepository.save(sprint);
+            provisionSprints(sprint.projectId(), List.of(sprint));
+        });
+        invalidateCalendars();
+    }
+
+    /**
+     * Create all the sprints of a project at once, with the presentation orders and bonuses of every student.
+     * The sprints without order are numbered after the existing sprints, in the given order.
+     * @param sprints the sprints to create
+     * @param projectId the id of the project
+     * @return the created sprints
+     */
+    public List<Sprint> createSprints(List<Sprint> sprints, Integer projectId) {
+        if (sprints.isEmpty()) {
+            throw new IllegalArgumentException("At least one sprint is required");
+        }
+        for (Sprint sprint : sprints) {
+            if (sprint.startDate() == null || sprint.endDate() == null || sprint.endType() == null) {
+                throw new IllegalArgumentException("The startDate, endDate and endType fields are required");
+            }
+            if (sprint.endDate().isBefore(sprint.startDate())) {
+                throw new IllegalArgumentException("The endDate of a sprint must not be before its startDate");
+            }
+        }
+
+        Project project = projectService.getProjectById(projectId);
+        transactionTemplate.executeWithoutResult(status -> {
+            int nextOrder = sprintRepository.findAllByProject(projectId).stream().mapToInt(Sprint::sprintOrder).max().orElse(0) + 1;
+            for (Sprint sprint : sprints) {
+                sprint.project(project);
+                sprint.projectId(projectId);
+                if (sprint.sprintOrder() == null) sprint.sprintOrder(nextOrder++);
             }
-            for (Student student : students) {
-				var presentationOrder = new PresentationOrder(sprint, student);
-				var value = teamsIndexes.get(student.team().id());
-				presentationOrder.value(value);
-				teamsIndexes.put(student.team().id(), value + 1);
-				presentationOrderService.createPresentationOrder(presentationOrder);
-                Bonus limitedBonus = new Bonus((float) 0, true, sprint, student);
-                Bonus unlimitedBonus = new Bonus((float) 0, false, sprint, student);
-                bonusService.createBonus(limitedBonus);
-                bonusService.createBonus(unlimitedBonus);
+            sprintRepository.saveAll(sprints);
+            provisionSprints(projectId, sprints);
+        });
+        invalidateCalendars();
+        CustomLogger.info("Created " + sprints.size() + " sprints for the project " + projectId);
+        return sprints;
+    }
+
+    /**
+     * Write the presentation orders and the bonuses of every student of the project for new sprints, with batches.
+     * The presentation orders follow the order of the students in their team.
+     */
+    private void provisionSprints(Integer projectId, List<Sprint> sprints) {
+        List<Student> students = studentService.getAllStudentsByProject(projectId);
+        if (students.isEmpty()) return;
+
+        List<Integer> sprintIds = ListUtil.map(sprints, Sprint::id);
+        Map<Integer, Integer> teamsIndexes = new HashMap<>();
+        List<Integer[]> presentationOrders = new ArrayList<>();
+        for (Student student : students) {
+            Integer value = student.team() != null ? teamsIndexes.merge(student.team().id(), 1, Integer::sum) - 1 : null;
+            for (Integer sprintId : sprintIds) {
+                presentationOrders.add(new Integer[]{student.id(), sprintId, value});
             }
         }
+        sprintProvisioningRepository.insertPresentationOrders(presentationOrders);
+        sprintProvisioningRepository.insertBonuses(ListUtil.map(students, Student::id), sprintIds);
     }
 
     public void updateSprint(Integer id, Sprint updatedSprint) {
@@ -77,53 +135,64 @@ public class SprintService {
         if (updatedSprint.projectId() != null) sprint.project(projectService.getProjectById(updatedSprint.projectId()));
 
         sprintRepository.save(sprint);
+        invalidateCalendars();
     }
 
+    /**
+     * Delete a sprint with its presentation orders, bonuses, grades and comments, then renumber the later sprints
+     * of its project, in one transaction and with set-based statements.
+     * @param id the id of the sprint
+     */
     public void deleteSprint(Integer id) {
-        var deletedSprint = getSprintById(id);
-        sprintRepository.deleteById(id);
-
-        var sprints = sprintRepository.findAllByProject(id);
-        for (var sprint : sprints) {
-            if (sprint.sprintOrder() > deletedSprint.sprintOrder()) {
-                sprint.sprintOrder(sprint.sprintOrder() - 1);
-                sprintRepository.save(sprint);
-            }
-        }
+        transactionTemplate.executeWithoutResult(status -> {
+            Sprint deletedSprint = getSprintById(id);
+            presentationOrderRepository.deleteAllBySprint(id);
+            bonusRepository.deleteAllBySprint(id);
+            gradeRepository.deleteAllBySprint(id);
+            commentRepository.deleteAllBySprint(id);
+            sprintGradeResultService.invalidateSprint(id);
+            sprintRepository.deleteById(id);
+
+            Integer projectId = deletedSprint.project().id();
+            int renumbered = sprintRepository.offsetOrdersAfter(projectId, deletedSprint.sprintOrder());
+            if (renumbered > 0) sprintRepository.shiftOffsetOrders(projectId);
+        });
+        invalidateCalendars();
     }
 
     public void deleteAllSprintsByProject(Integer projectId) {
         sprintRepository.deleteAllByProject(projectId);
+        invalidateCalendars();
     }
 
+    /**
+     * Get the sprint in progress of a project, or the sprint ending first when no sprint is in progress.
+     * The sprint is found in the calendar of the project, then loaded by its id so its project is never stale.
+     * @return the current sprint, null if the project has no sprint
+     */
     public Sprint getCurrentSprint(Integer projectId) {
-        LocalDate today = LocalDate.now();
-        List<Sprint> sprints = sprintRepository.findAllByProject(projectId);
-
-        Sprint currentSprint = null;
-        Sprint closestSprint = null;
-        long closestDays = Long.MAX_VALUE;
-
-        for (Sprint sprint : sprints) {
-            if (!sprint.startDate().isAfter(today) && !sprint.endDate().isBefore(today)) {
-                currentSprint = sprint;
-                break;
-            }
+        Integer currentSprintId = getCurrentSprintId(projectId);
+        return currentSprintId != null ? sprintRepository.findById(currentSprintId).orElse(null) : null;
+    }
 
-            long daysToEndDate = ChronoUnit.DAYS.between(today, sprint.endDate());
-            if (daysToEndDate < closestDays) {
-                closestDays = daysToEndDate;
-                closestSprint = sprint;
-            }
-        }
+    /**
+     * Get the id of the current sprint of a project.
+     * The sprint dates are read from the calendar of the project, loaded once until a sprint changes.
+     * @return the id of the current sprint, null if the project has no sprint
+     */
+    public Integer getCurrentSprintId(Integer projectId) {
+        SprintCalendar calendar = calendars.get(projectId, id -> new SprintCalendar(sprintRepository.findAllByProject(id)));
+        return calendar.current(LocalDate.now());
+    }
 
-        return currentSprint != null ? currentSprint : closestSprint;
+    private void invalidateCalendars() {
+        calendars.invalidateAll();
     }
 
     public List<Comment> getTeamStudentsComments(Integer sprintId, Integer authorId, Integer teamId){
 
         List<Comment> studentsComments = new ArrayList<>();
-        List<Student> students = teamService.getStudentsByTeamId(teamId, true);
+        List<Student> students = teamService.getStudentsByTeamIdAndSprintId(teamId, sprintId);
 
         for(Student student : students){
             studentsComments.addAll(commentRepository.findAllByTeamAndSprintAndAuthor(student.id(), sprintId, authorId));
@@ -131,4 +200,50 @@ public class SprintService {
 
         return studentsComments;
     }
-}
\ No newline at end of file
+
+    /**
+     * The ids and dates of the sprints of a project indexed by start date, the entities are not kept.
+     * The sprint of the last requested day is kept, so it is only looked up again when the day changes.
+     */
+    static final class SprintCalendar {
+
+        private final NavigableMap<LocalDate, SprintDates> sprintsByStartDate = new TreeMap<>();
+        // Returned when no sprint is in progress
+        private final SprintDates firstEndingSprint;
+        private volatile ResolvedDay resolvedDay;
+
+        SprintCalendar(List<Sprint> sprints) {
+            SprintDates firstEnding = null;
+            for (Sprint sprint : sprints) {
+                SprintDates dates = new SprintDates(sprint.id(), sprint.startDate(), sprint.endDate());
+                sprintsByStartDate.putIfAbsent(dates.startDate(), dates);
+                if (firstEnding == null || dates.endDate().isBefore(firstEnding.endDate())) firstEnding = dates;
+            }
+            firstEndingSprint = firstEnding;
+        }
+
+        Integer current(LocalDate day) {
+            ResolvedDay resolved = resolvedDay;
+            if (resolved == null || !resolved.day().equals(day)) {
+                SprintDates sprint = find(day);
+                resolved = new ResolvedDay(day, sprint != null ? sprint.id() : null);
+                resolvedDay = resolved;
+            }
+            return resolved.sprintId();
+        }
+
+        private SprintDates find(LocalDate day) {
+            Map.Entry<LocalDate, SprintDates> lastStarted = sprintsByStartDate.floorEntry(day);
+            if (lastStarted != null && !lastStarted.getValue().endDate().isBefore(day)) {
+                return lastStarted.getValue();
+            }
+            return firstEndingSprint;
+        }
+
+        private record SprintDates(Integer id, LocalDate startDate, LocalDate endDate) {
+        }
+
+        private record ResolvedDay(LocalDate day, Integer sprintId) {
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package fr.eseo.tauri.service;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import fr.eseo.tauri.model.GradeType;
+import fr.eseo.tauri.model.ImportJob;
+import fr.eseo.tauri.model.Project;
+import fr.eseo.tauri.model.Sprint;
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import fr.eseo.tauri.repository.SprintProvisioningRepository;
+import fr.eseo.tauri.repository.SprintRepository;
+import fr.eseo.tauri.repository.StudentImportRepository;
+import fr.eseo.tauri.util.CustomLogger;
+import fr.eseo.tauri.util.ListUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.*;
+
+import static fr.eseo.tauri.service.StudentService.hasNonEmptyValue;
+
+/**
+ * Student CSV import.
+ * The file is read once: the grade types are created from the two header lines, then the students are
+ * written by chunks, each chunk being committed in its own transaction with JDBC batches.
+ * The progress is recorded in the import job, so a failed import can resume after its last committed chunk.
+ */
+@Service
+@RequiredArgsConstructor
+public class StudentImportService {
+
+    public static final int CHUNK_SIZE = 100;
+    private static final int GRADES_START_INDEX = 4;
+
+    private final ProjectService projectService;
+    private final GradeTypeService gradeTypeService;
+    private final SprintRepository sprintRepository;
+    private final StudentImportRepository studentImportRepository;
+    private final SprintProvisioningRepository sprintProvisioningRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Import the students of the CSV file of a job, with their grades.
+     * The invalid or already existing students are rejected, the other rows are still imported.
+     * A resumed job skips the lines that were already committed.
+     * @param job the import job, holding the content of the CSV file
+     */
+    public void importStudents(ImportJob job) throws IOException, CsvValidationException {
+        Integer projectId = job.projectId();
+        Project project = projectService.getProjectById(projectId);
+        List<Integer> sprintIds = ListUtil.map(sprintRepository.findAllByProject(projectId), Sprint::id);
+
+        List<String> coefficients = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int startingCoefficients = 1;
+
+        List<ImportedStudent> chunk = new ArrayList<>();
+        Set<String> emails = new HashSet<>();
+        int lineBrowsed = 0;
+        int lastRowLine = job.committedLines();
+        boolean namesStarted = false;
+
+        CSVReader reader = new CSVReader(new InputStreamReader(new ByteArrayInputStream(job.content())));
+        String[] nextLine;
+        while ((nextLine = reader.readNext()) != null) {
+            lineBrowsed++;
+            if (job.gradeTypes() == null && lineBrowsed == 1) {
+                startingCoefficients = gradeTypeService.processLineForCoefficients(nextLine, coefficients);
+            } else if (job.gradeTypes() == null && lineBrowsed == 2) {
+                gradeTypeService.processLineForNames(nextLine, names, startingCoefficients);
+                job.gradeTypes(gradeTypeService.generateImportedGradeTypes(coefficients, names));
+            }
+
+            if (!namesStarted && hasNonEmptyValue(nextLine, 1)) {
+                namesStarted = true;
+            }
+            if (namesStarted && !hasNonEmptyValue(nextLine, 1)) {
+                break;
+            }
+            if (!namesStarted || lineBrowsed <= job.committedLines()) {
+                continue;
+            }
+
+            job.processRow();
+            lastRowLine = lineBrowsed;
+            try {
+                Student student = StudentService.studentFromData(nextLine[1], nextLine[2], nextLine.length > 3 ? nextLine[3] : "", project);
+                if (!emails.add(student.email())) {
+                    job.reject(lineBrowsed, "The student " + student.email() + " is already in the file");
+                } else {
+                    String[] grades = Arrays.copyOfRange(nextLine, Math.min(GRADES_START_INDEX, nextLine.length), nextLine.length);
+                    chunk.add(new ImportedStudent(lineBrowsed, student, grades));
+                }
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                job.reject(lineBrowsed, e.getMessage());
+            }
+
+            if (chunk.size() == CHUNK_SIZE && job.gradeTypes() != null) {
+                job.commit(lineBrowsed, persist(job, chunk, projectId, sprintIds));
+                chunk.clear();
+            }
+        }
+
+        if (job.gradeTypes() == null) {
+            job.gradeTypes(gradeTypeService.generateImportedGradeTypes(coefficients, names));
+        }
+        if (!chunk.isEmpty()) {
+            job.commit(lastRowLine, persist(job, chunk, projectId, sprintIds));
+        }
+
+        CustomLogger.info(String.format("Import job %d: imported %d students, rejected %d rows.", job.id(), job.importedStudents(), job.rejectedRows().size()));
+    }
+
+    /**
+     * Write a chunk of students, their role, grades, bonuses and presentation orders in one transaction.
+     * The students whose email is already used are rejected.
+     * @return the number of written students
+     */
+    int persist(ImportJob job, List<ImportedStudent> chunk, Integer projectId, List<Integer> sprintIds) {
+        List<ImportedStudent> newStudents = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            newStudents.clear();
+            Map<String, Integer> existingUsers = studentImportRepository.findUserIdsByEmails(ListUtil.map(chunk, importedStudent -> importedStudent.student().email()));
+            for (ImportedStudent importedStudent : chunk) {
+                if (existingUsers.containsKey(importedStudent.student().email())) {
+                    job.reject(importedStudent.line(), "A user with the email " + importedStudent.student().email() + " already exists");
+                } else {
+                    newStudents.add(importedStudent);
+                }
+            }
+            if (newStudents.isEmpty()) return;
+
+            List<Student> students = ListUtil.map(newStudents, ImportedStudent::student);
+            studentImportRepository.insertUsers(students);
+            Map<String, Integer> userIds = studentImportRepository.findUserIdsByEmails(ListUtil.map(students, Student::email));
+            for (Student student : students) {
+                student.id(userIds.get(student.email()));
+            }
+            studentImportRepository.insertStudents(students, projectId);
+
+            List<Integer> studentIds = ListUtil.map(students, Student::id);
+            studentImportRepository.insertRoles(studentIds, RoleType.OPTION_STUDENT);
+            studentImportRepository.insertGrades(grades(newStudents, job.gradeTypes()));
+            if (!sprintIds.isEmpty()) {
+                sprintProvisioningRepository.insertBonuses(studentIds, sprintIds);
+                sprintProvisioningRepository.insertPresentationOrders(studentIds, sprintIds);
+            }
+        });
+        return newStudents.size();
+    }
+
+    /**
+     * The grades of a chunk, the n-th grade column of a student being the grade of the n-th imported grade type.
+     * The cells that are not numbers are ignored.
+     * @return rows of [value, studentId, gradeTypeId]
+     */
+    private static List<Object[]> grades(List<ImportedStudent> chunk, List<GradeType> gradeTypes) {
+        List<Object[]> grades = new ArrayList<>();
+        for (ImportedStudent importedStudent : chunk) {
+            String[] cells = importedStudent.grades();
+            for (int j = 0; j < cells.length && j < gradeTypes.size(); j++) {
+                if (cells[j].trim().isEmpty()) continue;
+                try {
+                    grades.add(new Object[]{Float.parseFloat(cells[j].trim()), importedStudent.student().id(), gradeTypes.get(j).id()});
+                } catch (NumberFormatException ignored) {
+                    // If the grade is not a number, it is ignored
+                }
+            }
+        }
+        return grades;
+    }
+
+    record ImportedStudent(int line, Student student, String[] grades) {
+    }
+
+}
@@ -1,8 +1,6 @@
 package fr.eseo.tauri.service;
 
-import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
-import com.opencsv.exceptions.CsvValidationException;
 import fr.eseo.tauri.exception.EmptyResourceException;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.*;
@@ -17,10 +15,12 @@ import fr.eseo.tauri.util.CustomLogger;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
 import java.util.*;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -40,11 +40,10 @@ public class StudentService {
     private final GradeRepository gradeRepository;
     private final UserService userService;
     private final CommentRepository commentRepository;
-
-    public static final String MAP_KEY_NAMES = "names";
-    public static final String MAP_KEY_GENDERS = "genders";
-    public static final String MAP_KEY_BACHELORS = "bachelors";
-    public static final String MAP_KEY_GRADES = "grades";
+    private final SprintGradeService sprintGradeService;
+    private final SprintGradeResultService sprintGradeResultService;
+    private final ImportJobService importJobService;
+    private final TeamGenerationService teamGenerationService;
 
     public Student getStudentById(Integer id) {
         return studentRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("student", id));
@@ -62,6 +61,7 @@ public class StudentService {
             student.email(nameParts[1].toLowerCase() + "." + nameParts[0].toLowerCase() + "@reseau.eseo.fr");
         }
         studentRepository.save(student);
+        teamGenerationService.invalidateSnapshots();
 
         Role role = new Role();
         role.user(student);
@@ -95,14 +95,25 @@ public class StudentService {
         if (updatedStudent.bachelor() != null) student.bachelor(updatedStudent.bachelor());
         if (updatedStudent.teamRole() != null) student.teamRole(updatedStudent.teamRole());
         if (updatedStudent.projectId() != null) student.project(projectService.getProjectById(updatedStudent.projectId()));
+        Team previousTeam = student.team();
         if (updatedStudent.teamId() != null) student.team(teamService.getTeamById(updatedStudent.teamId()));
 
         studentRepository.save(student);
+        teamGenerationService.invalidateSnapshots();
+
+        if (student.team() != null && (previousTeam == null || !previousTeam.id().equals(student.team().id()))) {
+            if (previousTeam != null) sprintGradeResultService.invalidateTeam(previousTeam.id());
+            sprintGradeResultService.invalidateTeam(student.team().id());
+        }
     }
 
     public void deleteStudent(Integer id) {
-        getStudentById(id);
+        Student student = getStudentById(id);
         studentRepository.deleteById(id);
+        userService.invalidateUsers();
+        userService.invalidateRoles(id);
+        teamGenerationService.invalidateSnapshots();
+        if (student.team() != null) sprintGradeResultService.invalidateTeam(student.team().id());
     }
 
     public void deleteAllStudentsByProject(Integer projectId) {
@@ -112,51 +123,7 @@ public class StudentService {
         }
         gradeTypeService.deleteAllImportedGradeTypes();
         teamService.deleteAllTeamsByProject(projectId);
-    }
-
-
-    /**
-     * <b>HELPER METHOD</b>
-     * This method is used to extract student data from a CSV file.
-     * The data includes the student's name, gender, bachelor status, and grades.
-     *
-     * @param inputStream The input stream of the CSV file.
-     * @return A map containing lists of names, genders, bachelor statuses, and grades.
-     */
-    public Map<String, Object> extractNamesGenderBachelorAndGrades(InputStream inputStream) throws CsvValidationException, IOException {
-        Map<String, Object> result = new HashMap<>();
-        List<String> names = new ArrayList<>();
-        List<String> genders = new ArrayList<>();
-        List<String> bachelors = new ArrayList<>();
-        List<List<String>> grades = new ArrayList<>();
-
-        boolean namesStarted = false;
-
-        CSVReader reader = new CSVReader(new InputStreamReader(inputStream));
-        String[] nextLine;
-        while ((nextLine = reader.readNext()) != null) {
-            if (!namesStarted && hasNonEmptyValue(nextLine, 1)) {
-                namesStarted = true;
-            }
-            if (namesStarted && !names.isEmpty() && !hasNonEmptyValue(nextLine, 1)) {
-                break;
-            }
-            if (namesStarted && hasNonEmptyValue(nextLine, 1)) {
-                names.add(nextLine[1]);
-                genders.add(nextLine[2]);
-                bachelors.add(nextLine.length > 3 ? nextLine[3] : "");
-                grades.add(Arrays.asList(Arrays.copyOfRange(nextLine, 4, nextLine.length)));
-            }
-        }
-
-        CustomLogger.info("Successfully extracted student data (names, genders, bachelors and grades ) from the CSV file.");
-
-        result.put(MAP_KEY_NAMES, names);
-        result.put(MAP_KEY_GENDERS, genders);
-        result.put(MAP_KEY_BACHELORS, bachelors);
-        result.put(MAP_KEY_GRADES, grades);
-
-        return result;
+        teamGenerationService.invalidateSnapshots();
     }
 
 
@@ -185,27 +152,47 @@ public class StudentService {
      * @throws IllegalArgumentException if the name or gender is null or empty, or if the bachelor status is null
      */
     public Student createStudentFromData(String name, String gender, String bachelor, Integer projectId) {
-        if (name == null || name.trim().isEmpty()) {
-            throw new IllegalArgumentException("Name cannot be null or empty");
-        }
-        if (gender == null || gender.trim().isEmpty()) {
-            throw new IllegalArgumentException("Gender cannot be null or empty");
-        }
-        if (bachelor == null) {
-            throw new IllegalArgumentException("Bachelor status cannot be null");
-        }
+        validateStudentData(name, gender, bachelor);
+        return studentFromData(name, gender, bachelor, projectService.getProjectById(projectId));
+    }
+
+    /**
+     * <b>HELPER  METHOD</b>
+     * This method is used to create a Student object of an already loaded project.
+     *
+     * @param name the name of the student
+     * @param gender the gender of the student
+     * @param bachelor the bachelor status of the student
+     * @param project the project of the student
+     * @return the created Student object
+     * @throws IllegalArgumentException if the name or gender is null or empty, or if the bachelor status is null
+     */
+    public static Student studentFromData(String name, String gender, String bachelor, Project project) {
+        validateStudentData(name, gender, bachelor);
 
         Student student = new Student();
         student.name(name);
         student.gender(gender.equals("M") ? Gender.MAN : Gender.WOMAN);
         student.bachelor(!bachelor.isEmpty());
-        student.project(projectService.getProjectById(projectId));
+        student.project(project);
         student.privateKey("privateKey");
         String[] nameParts = name.split(" "); // Divise le nom en deux parties basées sur l'espace
         student.email(nameParts[1].toLowerCase() + "." + nameParts[0].toLowerCase() + "@reseau.eseo.fr");
         return student;
     }
 
+    private static void validateStudentData(String name, String gender, String bachelor) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Name cannot be null or empty");
+        }
+        if (gender == null || gender.trim().isEmpty()) {
+            throw new IllegalArgumentException("Gender cannot be null or empty");
+        }
+        if (bachelor == null) {
+            throw new IllegalArgumentException("Bachelor status cannot be null");
+        }
+    }
+
     /**
      * This method is used to populate the database with student data from a CSV file.
      * The CSV file is expected to contain the following data for each student:
@@ -215,70 +202,48 @@ public class StudentService {
      * - Grades
      * - Coefficients
      * - Ratings
+     * The import runs asynchronously, its progress is reported by the returned job.
      * @param file The CSV file containing the student data.
+     * @return the import job
      */
-    @SuppressWarnings("unchecked")
-    public void populateDatabaseFromCSV(MultipartFile file, Integer projectId) throws IOException, CsvValidationException {
+    public ImportJob populateDatabaseFromCSV(MultipartFile file, Integer projectId) throws IOException {
         if (file.isEmpty()) {
             CustomLogger.info("Uploaded file is empty");
             throw new EmptyResourceException("uploaded file");
         }
 
-        List<GradeType> gradeTypes = gradeTypeService.createGradeTypesFromCSV(file.getInputStream());
-        CustomLogger.info("Successfully created GradeType objects from the CSV file.");
-        Map<String, Object> extractedData = extractNamesGenderBachelorAndGrades(file.getInputStream());
-
-        List<String> names = (List<String>) extractedData.get(MAP_KEY_NAMES);
-        List<String> genders = (List<String>) extractedData.get(MAP_KEY_GENDERS);
-        List<String> bachelors = (List<String>) extractedData.get(MAP_KEY_BACHELORS);
-        List<List<String>> grades = (List<List<String>>) extractedData.get(MAP_KEY_GRADES);
-
-        for (int i = 0; i < names.size(); i++) {
-            Student student = createStudentFromData(names.get(i), genders.get(i), bachelors.get(i), projectId);
-            createStudent(student);
-            for (int j = 0; j < grades.get(i).size(); j++) {
-
-                if(!grades.get(i).get(j).trim().isEmpty()) {
-                    try {
-                        Grade grade = new Grade();
-                        grade.value(Float.parseFloat(grades.get(i).get(j).trim()));
-                        grade.student(student);
-                        grade.gradeType(gradeTypes.get(j));
-                        gradeService.createGrade(grade);
-                    } catch (NumberFormatException ignored) {
-                        // Do nothing // If the grade is not a number, it is ignored
-                    }
-                }
-            }
-        }
-        CustomLogger.info(String.format("Successfully populated database with %d students and their associated grades contained in the CSV file.", names.size()));
+        ImportJob job = importJobService.submit(file.getBytes(), projectId);
+        CustomLogger.info(String.format("Submitted the import job %d of the CSV file of students.", job.id()));
+        return job;
     }
 
     /**
-     * This method is used to create a CSV file containing student data.
+     * This method is used to stream a CSV file containing student data.
      * The CSV file includes the following data for each student:
      * - Name
      * - Gender
      * - Bachelor status
      * - Grades
+     * The grades are read by one ordered query and the summary counts are computed during the same pass.
      *
-     * @return A byte array representing the CSV file.
-     * @throws RuntimeException if an IOException occurs while creating the CSV file.
+     * @param projectId The ID of the project.
+     * @param outputStream The stream the CSV file is written to.
+     * @throws IOException if an I/O error occurs while writing the CSV file.
      */
-    public byte[] createStudentsCSV(Integer projectId) throws IOException {
+    @Transactional(readOnly = true)
+    public void writeStudentsCSV(Integer projectId, OutputStream outputStream) throws IOException {
         CustomLogger.info("Downloading students CSV");
 
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        OutputStreamWriter writer = new OutputStreamWriter(byteArrayOutputStream);
         List<GradeType> importedGrades = gradeTypeService.getAllImportedGradeTypes(projectId);
-        List<Student> students = getAllStudentsByProject(projectId);
-
-        CSVWriter csvWriter = new CSVWriter(writer);
+        CSVWriter csvWriter = new CSVWriter(new OutputStreamWriter(outputStream));
         writeHeaders(csvWriter, importedGrades);
-        writeStudentData(csvWriter, students, importedGrades);
-        writeSummaryData(csvWriter, importedGrades.size());
-        writer.flush();
-        return byteArrayOutputStream.toByteArray();
+
+        StudentCounts studentCounts;
+        try (Stream<Object[]> studentGrades = gradeRepository.streamGradesByProject(projectId, true)) {
+            studentCounts = writeStudentData(csvWriter, studentGrades, importedGrades);
+        }
+        writeSummaryData(csvWriter, importedGrades.size(), studentCounts);
+        csvWriter.flush();
     }
 
     /**
@@ -310,26 +275,39 @@ public class StudentService {
      * This method is used to write student data to the CSV file.
      *
      * @param csvWriter The CSVWriter object that is used to write to the CSV file.
-     * @param students  The list of students whose data is to be written to the CSV file.
+     * @param studentGrades The rows [studentId, name, gender, bachelor, gradeTypeId, value] of the students, ordered by student.
      * @param importedGradeTypes The list of imported grade types.
+     * @return The counts of the written students.
      */
-    public void writeStudentData(CSVWriter csvWriter, List<Student> students, List<GradeType> importedGradeTypes) {
-        int studentIndex = 1;
-        for (Student student : students) {
-            String[] studentInfo = new String[importedGradeTypes.size() + 4];
-            Arrays.fill(studentInfo, "");
-            studentInfo[0] = String.valueOf(studentIndex++);
-            studentInfo[1] = student.name();
-            studentInfo[2] = student.gender().toString().equals("MAN") ? "M" : "F";
-            studentInfo[3] = Boolean.TRUE.equals(student.bachelor()) ? "B" : "";
-
-            int gradeIndex = 4;
-            for (GradeType gradeType : importedGradeTypes) {
-                Float grade = gradeService.getGradeByStudentAndGradeType(student, gradeType);
-                studentInfo[gradeIndex++] = grade != null ? String.valueOf(grade) : "";
+    public StudentCounts writeStudentData(CSVWriter csvWriter, Stream<Object[]> studentGrades, List<GradeType> importedGradeTypes) {
+        Map<Integer, Integer> columnByGradeTypeId = new HashMap<>();
+        for (int i = 0; i < importedGradeTypes.size(); i++) {
+            columnByGradeTypeId.put(importedGradeTypes.get(i).id(), i + 4);
+        }
+
+        StudentCounts studentCounts = new StudentCounts();
+        Integer currentStudentId = null;
+        String[] studentInfo = null;
+        for (Iterator<Object[]> iterator = studentGrades.iterator(); iterator.hasNext(); ) {
+            Object[] row = iterator.next();
+            if (!row[0].equals(currentStudentId)) {
+                if (studentInfo != null) csvWriter.writeNext(studentInfo);
+                currentStudentId = (Integer) row[0];
+                studentCounts.add(row[2] == Gender.WOMAN, Boolean.TRUE.equals(row[3]));
+                studentInfo = new String[importedGradeTypes.size() + 4];
+                Arrays.fill(studentInfo, "");
+                studentInfo[0] = String.valueOf(studentCounts.total());
+                studentInfo[1] = (String) row[1];
+                studentInfo[2] = row[2] == Gender.MAN ? "M" : "F";
+                studentInfo[3] = Boolean.TRUE.equals(row[3]) ? "B" : "";
+            }
+            Integer column = columnByGradeTypeId.get((Integer) row[4]);
+            if (column != null && row[5] != null && studentInfo[column].isEmpty()) {
+                studentInfo[column] = String.valueOf(row[5]);
             }
-            csvWriter.writeNext(studentInfo);
         }
+        if (studentInfo != null) csvWriter.writeNext(studentInfo);
+        return studentCounts;
     }
 
     /**
@@ -337,15 +315,16 @@ public class StudentService {
      *  This method is used to write summary data to the CSV file.
      * @param csvWriter The CSVWriter object that is used to write to the CSV file.
      * @param numberOfGrades The number of imported grade types.
+     * @param studentCounts The counts of the students of the project.
      */
-    public void writeSummaryData(CSVWriter csvWriter, int numberOfGrades) {
+    public void writeSummaryData(CSVWriter csvWriter, int numberOfGrades, StudentCounts studentCounts) {
         writeEmptyRows(csvWriter, 4, numberOfGrades + 4);
-        writeCountRow(csvWriter, "Nombre F", studentRepository.countWomen(), numberOfGrades + 4);
-        writeCountRow(csvWriter, "Nombre M", studentRepository.countTotal() - studentRepository.countWomen(), numberOfGrades + 4);
+        writeCountRow(csvWriter, "Nombre F", studentCounts.women(), numberOfGrades + 4);
+        writeCountRow(csvWriter, "Nombre M", studentCounts.total() - studentCounts.women(), numberOfGrades + 4);
         String[] row = new String[numberOfGrades + 4];
         Arrays.fill(row, "");
         row[1] = "Nombre B";
-        row[3] = String.valueOf(studentRepository.countBachelor());
+        row[3] = String.valueOf(studentCounts.bachelors());
         csvWriter.writeNext(row);
     }
 
@@ -394,22 +373,16 @@ public class StudentService {
 
     public Double getIndividualTotalGrade(Integer id, Integer sprintId) {
         Integer teamId = userService.getTeamByMemberId(id, getStudentById(id).projectId()).id();
-
-        Double studentGradedTeamGrade = gradeRepository.findAverageByGradeTypeForTeam(teamId, sprintId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName());
-
-        Double individualGrade = gradeRepository.findAverageByGradeTypeForStudent(id, sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName());
-
-        return (2*individualGrade + studentGradedTeamGrade)/3;
+        return sprintGradeService.getStudentIndividualTotalGrade(id, teamId, sprintId);
     }
 
     public Double getSprintGrade(Integer studentId, Integer sprintId) {
-        Integer teamId = userService.getTeamByMemberId(studentId, getStudentById(studentId).projectId()).id();
-
-        double teamGrade = teamService.getTeamTotalGrade(teamId, sprintId);
-
-        List<Bonus> studentBonuses = getStudentBonuses(studentId, sprintId);
+        Student student = getStudentById(studentId);
+        Optional<Double> sprintGrade = sprintGradeResultService.findStudentSprintGrade(studentId, sprintId);
+        if (sprintGrade.isPresent()) return sprintGrade.get();
 
-        return 0.7*(Math.min(teamGrade + studentBonuses.stream().mapToDouble(Bonus::value).sum(), 20.0)) + 0.3*(getIndividualTotalGrade(studentId, sprintId));
+        Integer teamId = userService.getTeamByMemberId(studentId, student.projectId()).id();
+        return sprintGradeResultService.getStudentSprintGrade(studentId, teamId, sprintId);
     }
 
     public Grade getGradeByTypeAndAuthor(Integer id, Integer gradeTypeId, Integer authorId, Integer sprintId) {
@@ -420,4 +393,32 @@ public class StudentService {
         return commentRepository.findAllByStudentIdAndSprintId(studentId, sprintId);
     }
 
+    /**
+     * Counts of the students written in the CSV file, used for the summary rows.
+     */
+    public static class StudentCounts {
+
+        private int total;
+        private int women;
+        private int bachelors;
+
+        public void add(boolean woman, boolean bachelor) {
+            total++;
+            if (woman) women++;
+            if (bachelor) bachelors++;
+        }
+
+        public int total() {
+            return total;
+        }
+
+        public int women() {
+            return women;
+        }
+
+        public int bachelors() {
+            return bachelors;
+        }
+    }
+
 }
@@ -0,0 +1,566 @@
+package fr.eseo.tauri.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import fr.eseo.tauri.exception.ResourceConflictException;
+import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.model.*;
+import fr.eseo.tauri.model.enumeration.Gender;
+import fr.eseo.tauri.repository.RoleRepository;
+import fr.eseo.tauri.repository.StudentRepository;
+import fr.eseo.tauri.repository.TeamAssignmentRepository;
+import fr.eseo.tauri.util.CustomLogger;
+import fr.eseo.tauri.util.ListUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Team generation engine.
+ * The teams are composed in memory from one load of the students and their imported average,
+ * then the assignments and the team member roles are written with a handful of statements.
+ */
+@Service
+@RequiredArgsConstructor
+public class TeamGenerationService {
+
+    public static final String TEAM_NAME_PREFIX = "Équipe ";
+    // Added to the objective for every missing woman and every team without bachelor
+    private static final double VIOLATION_PENALTY = 1000;
+    // Longest optimization a request can ask for, in milliseconds
+    private static final int MAX_TIME_BUDGET = 30_000;
+    // A local search restarts from a perturbed best solution after this many iterations without improvement
+    private static final int RESTART_AFTER = 5_000;
+    // The previews are computed from a snapshot of the students, reloaded after this duration
+    private static final Duration SNAPSHOT_TTL = Duration.ofMinutes(5);
+    // Only the latest previews are kept
+    private static final int MAX_PREVIEWS = 50;
+
+    private static final Comparator<TeamDraft> BY_SIZE_AND_TOTAL = Comparator.comparingInt(TeamDraft::size)
+            .thenComparingDouble(TeamDraft::total)
+            .thenComparingInt(TeamDraft::index);
+
+    private final StudentRepository studentRepository;
+    private final RoleRepository roleRepository;
+    private final TeamAssignmentRepository teamAssignmentRepository;
+    private final UserService userService;
+
+    private final ForkJoinPool searchPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    // One permit by thread of the search pool, an optimization only submits the searches it has a free thread for
+    private final Semaphore freeSearchThreads = new Semaphore(searchPool.getParallelism());
+    private final Map<Integer, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<Integer, TeamPreview> previews = Collections.synchronizedMap(new LinkedHashMap<Integer, TeamPreview>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, TeamPreview> eldest) {
+            return size() > MAX_PREVIEWS;
+        }
+    });
+    private final AtomicInteger nextPreviewId = new AtomicInteger(1);
+    // Incremented by every invalidation, the snapshots and the previews older than it are stale
+    private final AtomicLong snapshotVersion = new AtomicLong();
+
+    /**
+     * Stop the local search threads when the context is closed, the running searches are interrupted.
+     */
+    @PreDestroy
+    public void shutdown() {
+        searchPool.shutdownNow();
+    }
+
+    /**
+     * Load the students of a project with their imported average.
+     * The students without average get the mean of the known averages, so they do not unbalance the teams.
+     * @param projectId the id of the project
+     * @return the students with their average
+     */
+    public List<RankedStudent> loadStudents(Integer projectId) {
+        Map<Integer, Student> students = new LinkedHashMap<>();
+        Map<Integer, Double> averages = new HashMap<>();
+        for (Object[] row : studentRepository.findAllWithImportedAverageByProject(projectId)) {
+            Student student = (Student) row[0];
+            students.putIfAbsent(student.id(), student);
+            if (row[1] != null) averages.putIfAbsent(student.id(), ((Number) row[1]).doubleValue());
+        }
+
+        double meanAverage = averages.values().stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        List<RankedStudent> rankedStudents = new ArrayList<>();
+        for (Student student : students.values()) {
+            rankedStudents.add(new RankedStudent(student, averages.getOrDefault(student.id(), meanAverage)));
+        }
+        return rankedStudents;
+    }
+
+    /**
+     * Get the students of a project with their imported average from the snapshot, loading it when it is missing or too old.
+     * @param projectId the id of the project
+     * @return the snapshot, with the version to give to the preview composed from it
+     */
+    public Snapshot snapshot(Integer projectId) {
+        Snapshot snapshot = snapshots.get(projectId);
+        if (snapshot == null || snapshot.version() != snapshotVersion.get() || snapshot.loadedAt().plus(SNAPSHOT_TTL).isBefore(Instant.now())) {
+            // The version is read before the load, a snapshot loaded during an invalidation is stale
+            long version = snapshotVersion.get();
+            snapshot = new Snapshot(loadStudents(projectId), Instant.now(), version);
+            snapshots.put(projectId, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drop the snapshots of the students, after the students or their averages changed.
+     * The previews composed from the dropped snapshots can no longer be committed.
+     */
+    public void invalidateSnapshots() {
+        snapshotVersion.incrementAndGet();
+        snapshots.clear();
+    }
+
+    /**
+     * Compose the teams with the greedy composition, then improve it with the local search when a time budget is given.
+     * @param students the students with their average
+     * @param nbTeams the number of teams
+     * @param womenPerTeam the number of women each team must have
+     * @param autoWomenRatio true to spread the women evenly instead of filling the quota
+     * @param timeBudget the duration of the local search in milliseconds, null or 0 to keep the greedy composition
+     * @return the composition and its objective score
+     */
+    public Composition composeTeams(List<RankedStudent> students, int nbTeams, int womenPerTeam, boolean autoWomenRatio, Integer timeBudget) {
+        List<TeamDraft> teams = compose(students, nbTeams, autoWomenRatio ? 0 : womenPerTeam);
+        int targetWomen = womenPerTeam;
+        if (autoWomenRatio) {
+            targetWomen = nbTeams == 0 ? 0 : (int) students.stream().filter(RankedStudent::woman).count() / nbTeams;
+        }
+
+        if (timeBudget == null || timeBudget <= 0 || nbTeams < 2) {
+            return Composition.of(teams, score(teams, targetWomen), 0, 0);
+        }
+        return optimize(teams, targetWomen, Math.min(timeBudget, MAX_TIME_BUDGET));
+    }
+
+    /**
+     * Compose balanced teams.
+     * The women quota is filled first, then every team gets a bachelor when possible, then the remaining
+     * students are given from the best average to the lowest to the smallest team with the lowest total.
+     * @param students the students with their average
+     * @param nbTeams the number of teams
+     * @param womenPerTeam the number of women each team must have, 0 to only spread them evenly
+     * @return the composed teams
+     */
+    public static List<TeamDraft> compose(List<RankedStudent> students, int nbTeams, int womenPerTeam) {
+        List<TeamDraft> teams = new ArrayList<>();
+        for (int i = 0; i < nbTeams; i++) {
+            teams.add(new TeamDraft(i));
+        }
+
+        List<RankedStudent> sortedStudents = new ArrayList<>(students);
+        sortedStudents.sort(Comparator.comparingDouble(RankedStudent::average).reversed());
+        Set<RankedStudent> placed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        List<RankedStudent> women = sortedStudents.stream().filter(RankedStudent::woman).toList();
+        if (womenPerTeam > 0) {
+            distribute(women, placed, teams, team -> team.women() < womenPerTeam,
+                    Comparator.comparingInt(TeamDraft::women).thenComparing(BY_SIZE_AND_TOTAL));
+        }
+        distribute(sortedStudents.stream().filter(RankedStudent::bachelor).toList(), placed, teams,
+                team -> team.bachelors() == 0, BY_SIZE_AND_TOTAL);
+        distribute(women, placed, teams, team -> true,
+                Comparator.comparingInt(TeamDraft::women).thenComparing(BY_SIZE_AND_TOTAL));
+        distribute(sortedStudents, placed, teams, team -> true, BY_SIZE_AND_TOTAL);
+        return teams;
+    }
+
+    /**
+     * Give each candidate that is not placed yet to the team at the top of the heap, while the team accepts students.
+     */
+    private static void distribute(List<RankedStudent> candidates, Set<RankedStudent> placed, List<TeamDraft> teams,
+                                   Predicate<TeamDraft> accepts, Comparator<TeamDraft> priority) {
+        PriorityQueue<TeamDraft> heap = new PriorityQueue<>(priority);
+        for (TeamDraft team : teams) {
+            if (accepts.test(team)) heap.add(team);
+        }
+        for (RankedStudent candidate : candidates) {
+            if (heap.isEmpty()) return;
+            if (placed.contains(candidate)) continue;
+
+            TeamDraft team = heap.poll();
+            team.add(candidate);
+            placed.add(candidate);
+            if (accepts.test(team)) heap.add(team);
+        }
+    }
+
+    /**
+     * Objective of a composition, to minimise: the variance of the team averages,
+     * plus a penalty for every missing woman and every team without bachelor.
+     * @param teams the composed teams
+     * @param womenPerTeam the number of women each team should have
+     * @return the score, lower is better
+     */
+    public static double score(List<TeamDraft> teams, int womenPerTeam) {
+        if (teams.isEmpty()) return 0;
+        double mean = teams.stream().mapToDouble(TeamDraft::average).average().orElse(0);
+        double variance = 0;
+        int violations = 0;
+        for (TeamDraft team : teams) {
+            variance += (team.average() - mean) * (team.average() - mean);
+            violations += Math.max(0, womenPerTeam - team.women());
+            if (team.bachelors() == 0) violations++;
+        }
+        return variance / teams.size() + VIOLATION_PENALTY * violations;
+    }
+
+    /**
+     * Improve a composition with parallel local searches until the time budget is spent.
+     * Each search moves or swaps students between two teams and keeps the changes that lower the score,
+     * the first one starts from the given composition and the others from random perturbations of it.
+     * The optimizations running at the same time share the search pool: each one takes the threads left free by the others,
+     * and one that finds no free thread runs a single search on its own thread, so it never waits for the others to end.
+     * @param start the composition to improve
+     * @param womenPerTeam the number of women each team should have
+     * @param timeBudget the duration of the search in milliseconds
+     * @return the best composition found
+     */
+    Composition optimize(List<TeamDraft> start, int womenPerTeam, long timeBudget) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudget);
+        int threads = 0;
+        while (threads < searchPool.getParallelism() && freeSearchThreads.tryAcquire()) {
+            threads++;
+        }
+
+        List<LocalSearch> searches = new ArrayList<>();
+        List<Future<LocalSearch>> futures = new ArrayList<>();
+        try {
+            if (threads == 0) {
+                searches.add(new LocalSearch(start, womenPerTeam, new Random(), false).run(deadline));
+            } else {
+                for (int i = 0; i < threads; i++) {
+                    LocalSearch search = new LocalSearch(start, womenPerTeam, new Random(), i > 0);
+                    futures.add(searchPool.submit(() -> search.run(deadline)));
+                }
+                for (Future<LocalSearch> future : futures) {
+                    searches.add(join(future));
+                }
+            }
+        } finally {
+            // Only the searches left by a failure are still running
+            futures.forEach(future -> future.cancel(true));
+            freeSearchThreads.release(threads);
+        }
+
+        LocalSearch best = null;
+        long iterations = 0;
+        int restarts = 0;
+        for (LocalSearch search : searches) {
+            iterations += search.iterations;
+            restarts += search.restarts;
+            if (best == null || search.bestScore < best.bestScore) best = search;
+        }
+        CustomLogger.info("Team optimization: " + iterations + " iterations on " + searches.size() + " threads, score " + best.bestScore);
+        return Composition.of(best.best, best.bestScore, iterations, restarts);
+    }
+
+    private static LocalSearch join(Future<LocalSearch> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The team optimization has been interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The team optimization has failed", e.getCause());
+        }
+    }
+
+    /**
+     * Keep a composition as a preview, with the criteria of each team.
+     * @param projectId the id of the project
+     * @param projectDetails the number of teams and of women per team
+     * @param autoWomenRatio true if the women are only spread evenly
+     * @param composition the composed teams
+     * @param snapshotVersion the version of the snapshot the composition was composed from
+     * @return the preview
+     */
+    public TeamPreview savePreview(Integer projectId, Project projectDetails, boolean autoWomenRatio, Composition composition, long snapshotVersion) {
+        List<TeamPreview.PreviewTeam> teams = new ArrayList<>();
+        List<List<Integer>> studentIds = new ArrayList<>();
+        for (TeamDraft draft : composition.teams()) {
+            boolean validWomen = autoWomenRatio || draft.women() >= projectDetails.nbWomen();
+            Criteria criteria = new Criteria(draft.women(), draft.bachelors(), validWomen, draft.bachelors() >= 1);
+            List<TeamPreview.PreviewMember> members = ListUtil.map(draft.members(),
+                    member -> new TeamPreview.PreviewMember(member.student().id(), member.student().name(), member.average()));
+            teams.add(new TeamPreview.PreviewTeam(TEAM_NAME_PREFIX + (draft.index() + 1), draft.average(), criteria, members));
+            studentIds.add(ListUtil.map(draft.members(), member -> member.student().id()));
+        }
+
+        TeamPreview preview = new TeamPreview(nextPreviewId.getAndIncrement(), projectId, projectDetails.nbTeams(), projectDetails.nbWomen(),
+                autoWomenRatio, composition.score(), composition.averageSpread(), teams, studentIds, projectDetails, snapshotVersion);
+        previews.put(preview.id(), preview);
+        return preview;
+    }
+
+    public TeamPreview getPreview(Integer previewId) {
+        TeamPreview preview = previews.get(previewId);
+        if (preview == null) throw new ResourceNotFoundException("team preview", previewId);
+        return preview;
+    }
+
+    /**
+     * Get a preview that can still be committed.
+     * @param previewId the id of the preview
+     * @return the preview
+     * @throws ResourceConflictException if the students changed since the preview was composed
+     */
+    public TeamPreview getCurrentPreview(Integer previewId) {
+        TeamPreview preview = getPreview(previewId);
+        if (preview.snapshotVersion() != snapshotVersion.get()) {
+            previews.remove(previewId);
+            throw new ResourceConflictException("team preview", previewId, "is outdated, the students changed since it was composed");
+        }
+        return preview;
+    }
+
+    public void removePreview(Integer previewId) {
+        previews.remove(previewId);
+    }
+
+    /**
+     * Write the composition of the teams: the team of every student with one batch, then their team member role.
+     * @param projectId the id of the project
+     * @param teams the created teams, in the same order as the drafts
+     * @param drafts the composed teams
+     */
+    public void persist(Integer projectId, List<Team> teams, List<TeamDraft> drafts) {
+        List<List<Integer>> studentIds = new ArrayList<>();
+        for (TeamDraft draft : drafts) {
+            studentIds.add(ListUtil.map(draft.members(), member -> member.student().id()));
+        }
+        persistAssignments(projectId, teams, studentIds);
+    }
+
+    /**
+     * Write the team of every student with one batch, then their team member role.
+     * @param projectId the id of the project
+     * @param teams the created teams
+     * @param studentIds the student ids of each team, in the same order as the teams
+     */
+    public void persistAssignments(Integer projectId, List<Team> teams, List<List<Integer>> studentIds) {
+        Map<Integer, Integer> teamIdsByStudentId = new HashMap<>();
+        for (int i = 0; i < studentIds.size(); i++) {
+            for (Integer studentId : studentIds.get(i)) {
+                teamIdsByStudentId.put(studentId, teams.get(i).id());
+            }
+        }
+
+        teamAssignmentRepository.assignTeams(teamIdsByStudentId);
+        roleRepository.deleteAllTeamMembersByProject(projectId);
+        roleRepository.insertTeamMembersByProject(projectId);
+        // The team member roles of every student of the project were rewritten
+        userService.invalidateRoles(studentRepository.findIdsByProject(projectId));
+        CustomLogger.info("Assigned " + teamIdsByStudentId.size() + " students to " + teams.size() + " teams.");
+    }
+
+    /**
+     * A composition of teams, with its objective score and the average grade gap between the best and the worst team.
+     */
+    public record Composition(@JsonIgnore List<TeamDraft> teams, double score, double averageSpread, long iterations, int restarts) {
+
+        static Composition of(List<TeamDraft> teams, double score, long iterations, int restarts) {
+            DoubleSummaryStatistics averages = teams.stream().mapToDouble(TeamDraft::average).summaryStatistics();
+            double averageSpread = teams.isEmpty() ? 0 : averages.getMax() - averages.getMin();
+            return new Composition(teams, score, averageSpread, iterations, restarts);
+        }
+
+    }
+
+    public record Snapshot(List<RankedStudent> students, Instant loadedAt, long version) {
+    }
+
+    public record RankedStudent(Student student, double average) {
+
+        public boolean woman() {
+            return student.gender() == Gender.WOMAN;
+        }
+
+        public boolean bachelor() {
+            return Boolean.TRUE.equals(student.bachelor());
+        }
+
+    }
+
+    /**
+     * A team being composed, with the running totals used to balance the teams.
+     */
+    public static class TeamDraft {
+
+        private final int index;
+        private final List<RankedStudent> members = new ArrayList<>();
+        private double total;
+        private int women;
+        private int bachelors;
+
+        public TeamDraft(int index) {
+            this.index = index;
+        }
+
+        public void add(RankedStudent student) {
+            members.add(student);
+            total += student.average();
+            if (student.woman()) women++;
+            if (student.bachelor()) bachelors++;
+        }
+
+        public void remove(RankedStudent student) {
+            for (int i = 0; i < members.size(); i++) {
+                if (members.get(i) == student) {
+                    members.remove(i);
+                    total -= student.average();
+                    if (student.woman()) women--;
+                    if (student.bachelor()) bachelors--;
+                    return;
+                }
+            }
+        }
+
+        public TeamDraft copy() {
+            TeamDraft copy = new TeamDraft(index);
+            members.forEach(copy::add);
+            return copy;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public List<RankedStudent> members() {
+            return members;
+        }
+
+        public int size() {
+            return members.size();
+        }
+
+        public double total() {
+            return total;
+        }
+
+        public double average() {
+            return members.isEmpty() ? 0 : total / members.size();
+        }
+
+        public int women() {
+            return women;
+        }
+
+        public int bachelors() {
+            return bachelors;
+        }
+
+    }
+
+    /**
+     * One local search: moves a student to a smaller team or swaps two students, and keeps the changes that lower the score.
+     */
+    private static final class LocalSearch {
+
+        private final List<TeamDraft> start;
+        private final int womenPerTeam;
+        private final Random random;
+        private final boolean perturbFirst;
+        private List<TeamDraft> best;
+        private double bestScore;
+        private long iterations;
+        private int restarts;
+
+        private LocalSearch(List<TeamDraft> start, int womenPerTeam, Random random, boolean perturbFirst) {
+            this.start = start;
+            this.womenPerTeam = womenPerTeam;
+            this.random = random;
+            this.perturbFirst = perturbFirst;
+        }
+
+        private LocalSearch run(long deadline) {
+            List<TeamDraft> current = copy(start);
+            if (perturbFirst) perturb(current);
+            double currentScore = score(current, womenPerTeam);
+            best = copy(current);
+            bestScore = currentScore;
+
+            int iterationsWithoutImprovement = 0;
+            while (System.nanoTime() < deadline) {
+                iterations++;
+                double neighbourScore = tryNeighbour(current, currentScore);
+                if (neighbourScore < currentScore) {
+                    currentScore = neighbourScore;
+                    iterationsWithoutImprovement = 0;
+                    if (currentScore < bestScore) {
+                        best = copy(current);
+                        bestScore = currentScore;
+                    }
+                } else if (++iterationsWithoutImprovement >= RESTART_AFTER) {
+                    current = copy(best);
+                    perturb(current);
+                    currentScore = score(current, womenPerTeam);
+                    iterationsWithoutImprovement = 0;
+                    restarts++;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Apply a random move or swap if it lowers the score.
+         * @return the score of the teams after the call
+         */
+        private double tryNeighbour(List<TeamDraft> teams, double currentScore) {
+            TeamDraft from = teams.get(random.nextInt(teams.size()));
+            TeamDraft to = teams.get(random.nextInt(teams.size()));
+            if (from == to || from.size() == 0) return currentScore;
+
+            RankedStudent moved = from.members().get(random.nextInt(from.size()));
+            boolean move = from.size() > to.size() && (to.size() == 0 || random.nextBoolean());
+            RankedStudent swapped = move ? null : to.members().get(random.nextInt(to.size()));
+            if (!move && to.size() == 0) return currentScore;
+
+            exchange(from, to, moved, swapped);
+            double neighbourScore = score(teams, womenPerTeam);
+            if (neighbourScore < currentScore) return neighbourScore;
+            exchange(to, from, moved, swapped);
+            return currentScore;
+        }
+
+        private void perturb(List<TeamDraft> teams) {
+            for (int i = 0; i < Math.max(1, teams.size() / 2); i++) {
+                TeamDraft first = teams.get(random.nextInt(teams.size()));
+                TeamDraft second = teams.get(random.nextInt(teams.size()));
+                if (first == second || first.size() == 0 || second.size() == 0) continue;
+                exchange(first, second, first.members().get(random.nextInt(first.size())), second.members().get(random.nextInt(second.size())));
+            }
+        }
+
+        /**
+         * Move a student from a team to another, and the swapped student the other way when there is one.
+         */
+        private static void exchange(TeamDraft from, TeamDraft to, RankedStudent moved, RankedStudent swapped) {
+            from.remove(moved);
+            to.add(moved);
+            if (swapped != null) {
+                to.remove(swapped);
+                from.add(swapped);
+            }
+        }
+
+        private static List<TeamDraft> copy(List<TeamDraft> teams) {
+            List<TeamDraft> copy = new ArrayList<>();
+            teams.forEach(team -> copy.add(team.copy()));
+            return copy;
+        }
+
+    }
+
+}
@@ -1,21 +1,20 @@
 package fr.eseo.tauri.service;
 
 import fr.eseo.tauri.model.*;
-import fr.eseo.tauri.model.enumeration.Gender;
-import fr.eseo.tauri.model.enumeration.GradeTypeName;
-import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.*;
 import fr.eseo.tauri.util.CustomLogger;
+import fr.eseo.tauri.util.ListUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.repository.TeamRepository;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -25,15 +24,13 @@ public class TeamService {
     private final UserService userService;
     private final ProjectService projectService;
     private final StudentRepository studentRepository;
-    private final RoleRepository roleRepository;
     private final CommentRepository commentRepository;
-    private final GradeRepository gradeRepository;
-    private final GradeTypeRepository gradeTypeRepository;
-    private final PresentationOrderService presentationOrderService;
+    private final SprintGradeService sprintGradeService;
+    private final SprintGradeResultService sprintGradeResultService;
+    private final TeamGenerationService teamGenerationService;
+    private final TransactionTemplate transactionTemplate;
     @Lazy
     private final SprintService sprintService;
-    @Lazy
-    private final StudentService studentService;
 
     public Team getTeamById(Integer id) {
         return teamRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("team", id));
@@ -66,7 +63,7 @@ public class TeamService {
         // Create the teams
         for (int i = 0; i < nbTeams; i++) {
             Team team = new Team(project);
-            team.name("Équipe " + (i + 1));
+            team.name(TeamGenerationService.TEAM_NAME_PREFIX + (i + 1));
             this.teamRepository.save(team);
             teams.add(team);
         }
@@ -110,19 +107,28 @@ public class TeamService {
         return teamRepository.countBachelorInTeam(id);
     }
 
+    /**
+     * Get the students of a team.
+     * @param ordered true to order them by their presentation order of the current sprint
+     */
     public List<Student> getStudentsByTeamId(Integer id, Boolean ordered) {
         Team team = getTeamById(id);
         if(Boolean.TRUE.equals(ordered)) {
-            Sprint currentSprint = sprintService.getCurrentSprint(team.project().id());
-            var students = studentRepository.findByTeam(id);
-            if(currentSprint != null){
-                var presentationOrder = presentationOrderService.getPresentationOrderByTeamIdAndSprintId(id, currentSprint.id());
-                students.sort(Comparator.comparingInt(presentationOrder::indexOf));
+            Integer currentSprintId = sprintService.getCurrentSprintId(team.project().id());
+            if(currentSprintId != null){
+                return studentRepository.findByTeamOrderedByPresentation(id, currentSprintId);
             }
         }
         return studentRepository.findByTeam(id);
     }
 
+    /**
+     * Get the students of a team ordered by their presentation order of a sprint, with one query.
+     */
+    public List<Student> getStudentsByTeamIdAndSprintId(Integer id, Integer sprintId) {
+        return studentRepository.findByTeamOrderedByPresentation(id, sprintId);
+    }
+
     public Double getTeamAvgGrade(Integer id) {
         Team team = getTeamById(id);
         return teamRepository.findAvgGradeByTeam(team);
@@ -130,136 +136,100 @@ public class TeamService {
 
     public Criteria getCriteriaByTeamId(Integer id, Integer projectId) {
         getTeamById(id);
-        boolean validateWoman = getNbWomenByTeamId(id) >= projectService.getProjectById(projectId).nbWomen();
-        boolean validateBachelor = getNbBachelorByTeamId(id) >= 1;
-        return new Criteria(getNbWomenByTeamId(id), getNbBachelorByTeamId(id), validateWoman, validateBachelor);
+        Integer nbWomen = teamRepository.countWomenInTeam(id);
+        Integer nbBachelors = teamRepository.countBachelorInTeam(id);
+        return criteria(nbWomen, nbBachelors, projectService.getProjectById(projectId).nbWomen());
     }
 
     /**
-     * Auto generate teams with students according to the given number of teams and the number of women per team.
-     * FUTURE :  create teams with the same average grade
+     * Get the criteria of every team of a project, counted with one grouped query.
+     * @param projectId the id of the project
+     * @return the criteria by team id, ordered by team id
      */
-    public void generateTeams(Integer projectId, Project projectDetails, boolean autoWomenRatio) {
-        CustomLogger.info("TeamService.createTeams : Creating Teams");
-
-        List<Student> women = this.studentRepository.findByGenderAndProjectId(Gender.WOMAN, projectId);
-        List<Student> men = this.studentRepository.findByGenderOrderByBachelorAndImportedAvgDesc(Gender.MAN, projectId);
-        int nbStudent = men.size() + women.size();
-        Integer nbTeams = projectDetails.nbTeams();
-        Integer womenPerTeam = projectDetails.nbWomen();
-
-        // Check if the number of students is enough to create the teams
-        if (nbStudent < nbTeams * womenPerTeam - 1) {
-            CustomLogger.error("TeamService.generateTeams : Not enough students to create the teams");
-            throw new IllegalArgumentException("Not enough students to create the teams");
+    public Map<Integer, Criteria> getCriteriaByProject(Integer projectId) {
+        Integer requiredWomen = projectService.getProjectById(projectId).nbWomen();
+        Map<Integer, Criteria> criteria = new LinkedHashMap<>();
+        for (Object[] row : teamRepository.countCriteriaByProject(projectId)) {
+            criteria.put((Integer) row[0], criteria(((Number) row[1]).intValue(), ((Number) row[2]).intValue(), requiredWomen));
         }
-        projectService.updateProject(projectId, projectDetails);
-        List<Team> teams = this.createTeams(projectId, nbTeams);
-        this.fillTeams(teams, women, men, womenPerTeam, autoWomenRatio, projectId);
+        return criteria;
+    }
+
+    private static Criteria criteria(Integer nbWomen, Integer nbBachelors, Integer requiredWomen) {
+        return new Criteria(nbWomen, nbBachelors, nbWomen >= requiredWomen, nbBachelors >= 1);
     }
 
     /**
-     * Assign teams to the students.
-     * @param teams the list of empty teams to fill
-     * @param women the list of women students
-     * @param men the list of men students
-     * @param womenPerTeam the number of women per team
+     * Auto generate teams with students according to the given number of teams and the number of women per team.
+     * The teams are composed in memory with balanced average grades, then written with batches in one transaction.
+     * @param timeBudget the duration of the optimization in milliseconds, null to keep the greedy composition
+     * @return the composition of the teams and its objective score
      */
-    public void fillTeams(List<Team> teams, List<Student> women, List<Student> men, Integer womenPerTeam, boolean autoWomenRatio, Integer projectId) {
-        int nbTeams = teams.size();
-
-        List<Team> sortedTeams = teams;
-        int index = 0;
-
-        if (!autoWomenRatio && womenPerTeam != 0) {
-            assignWomenPerTeam(teams, women, men, womenPerTeam);
+    public TeamGenerationService.Composition generateTeams(Integer projectId, Project projectDetails, boolean autoWomenRatio, Integer timeBudget) {
+        CustomLogger.info("TeamService.createTeams : Creating Teams");
 
-            // re-order the teams by average grade
-            sortedTeams = this.teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId);
+        List<TeamGenerationService.RankedStudent> students = teamGenerationService.loadStudents(projectId);
+        checkEnoughStudents(students, projectDetails);
+
+        // The composition is computed before the transaction, the optimization can take the whole time budget
+        TeamGenerationService.Composition composition = teamGenerationService.composeTeams(students, projectDetails.nbTeams(), projectDetails.nbWomen(), autoWomenRatio, timeBudget);
+        transactionTemplate.executeWithoutResult(status -> {
+            projectService.updateProject(projectId, projectDetails);
+            List<Team> teams = this.createTeams(projectId, projectDetails.nbTeams());
+            this.fillTeams(teams, composition, projectId);
+        });
+        return composition;
+    }
 
-            // find the next index
-            index = nbTeams * womenPerTeam;
-        }
+    /**
+     * Compose teams without writing anything, from a snapshot of the students of the project.
+     * @param timeBudget the duration of the optimization in milliseconds, null to keep the greedy composition
+     * @return the preview, which can be committed with its id
+     */
+    public TeamPreview previewTeams(Integer projectId, Project projectDetails, boolean autoWomenRatio, Integer timeBudget) {
+        TeamGenerationService.Snapshot snapshot = teamGenerationService.snapshot(projectId);
+        checkEnoughStudents(snapshot.students(), projectDetails);
 
-        // Assign the remaining students evenly to the teams
-        assignStudentsEvenly(women, men, projectId, index, sortedTeams);
-        CustomLogger.info("Teams have been filled with students");
+        TeamGenerationService.Composition composition = teamGenerationService.composeTeams(snapshot.students(), projectDetails.nbTeams(), projectDetails.nbWomen(), autoWomenRatio, timeBudget);
+        // The preview keeps the version of its snapshot, the students can change while the composition is optimized
+        return teamGenerationService.savePreview(projectId, projectDetails, autoWomenRatio, composition, snapshot.version());
     }
 
     /**
-     * Assign "womenPerTeam" women to the teams first then even the teams with men if needed
-     * @param teams the list of teams
-     * @param women the list of female students
-     * @param men   the list of male students
-     * @param womenPerTeam  the number of women to assign to every team
+     * Write the teams of a preview in one transaction, replacing the existing teams of the project.
+     * @param previewId the id of the preview
+     * @throws fr.eseo.tauri.exception.ResourceConflictException if the students changed since the preview was composed
      */
-    public void assignWomenPerTeam(List<Team> teams, List<Student> women, List<Student> men, Integer womenPerTeam) {
-        int nbTeams = teams.size();
-        int nbWomen = women.size();
-        int nbStudents = nbWomen + men.size();
+    public void commitPreview(Integer previewId) {
+        TeamPreview preview = teamGenerationService.getCurrentPreview(previewId);
+        Integer projectId = preview.projectId();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            projectService.updateProject(projectId, preview.projectDetails());
+            List<Team> teams = this.createTeams(projectId, preview.nbTeams());
+            teamGenerationService.persistAssignments(projectId, teams, preview.studentIds());
+        });
+        teamGenerationService.removePreview(previewId);
+        CustomLogger.info("The team preview " + previewId + " has been committed");
+    }
 
-        int index;
-        for (int i = 0; i < nbTeams; i++) {
-            for (int j = 0; j < womenPerTeam; j++) {
-                Student student;
-                Role role = new Role();
-                role.type(RoleType.TEAM_MEMBER);
-                index = i * womenPerTeam + j;
-
-                if (index < nbWomen) {
-                    student = women.get(index);
-                    student.team(teams.get(i));
-                    role.user(student);
-                    this.roleRepository.save(role);
-                    this.studentRepository.save(student);
-                } else if (index < nbStudents) {
-                    student = men.get(index - nbWomen);
-                    student.team(teams.get(i));
-                    role.user(student);
-                    this.roleRepository.save(role);
-                    this.studentRepository.save(student);
-                }
-            }
+    private static void checkEnoughStudents(List<TeamGenerationService.RankedStudent> students, Project projectDetails) {
+        // Check if the number of students is enough to create the teams
+        if (students.size() < projectDetails.nbTeams() * projectDetails.nbWomen() - 1) {
+            CustomLogger.error("TeamService.generateTeams : Not enough students to create the teams");
+            throw new IllegalArgumentException("Not enough students to create the teams");
         }
     }
 
     /**
-     * Assign the remaining students evenly to the teams
-     * @param women the list of female students
-     * @param men   the list of male students
-     * @param projectId the ID of the project
-     * @param index the index of the first student to assign
-     * @param sortedTeams the list of teams sorted by average grade
+     * Assign teams to the students.
+     * @param teams the list of empty teams to fill
+     * @param composition the composition of the teams, in the same order
+     * @param projectId the id of the project
      */
-    public void assignStudentsEvenly(List<Student> women, List<Student> men, Integer projectId, int index, List<Team> sortedTeams) {
-        int nbTeams = sortedTeams.size();
-        int nbWomen = women.size();
-        int nbStudent = nbWomen + men.size();
-
-        for (int i = index; i < nbStudent; i++) {
-            if (((i - index) % nbTeams == 0) && i != 0) {
-                sortedTeams = this.teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId);
-            }
-
-            CustomLogger.info("Sorted teams : " + sortedTeams);
-
-            Student student;
-            Role role = new Role();
-            role.type(RoleType.TEAM_MEMBER);
-
-            if (i < nbWomen) {
-                student = women.get(i);
-                student.team(sortedTeams.get((i - index)% nbTeams));
-            }else{
-                student = men.get(i - nbWomen);
-                student.team(sortedTeams.get((i - index)% nbTeams));
-            }
-
-            role.user(student);
-            CustomLogger.info("studentEND : " + student);
-            this.roleRepository.save(role);
-            this.studentRepository.save(student);
-        }
+    public void fillTeams(List<Team> teams, TeamGenerationService.Composition composition, Integer projectId) {
+        teamGenerationService.persist(projectId, teams, composition.teams());
+        CustomLogger.info("Teams have been filled with students, score " + composition.score());
     }
 
     public List<Comment> getFeedbacksByTeamAndSprint(Integer teamId, Integer sprintId) {
@@ -267,76 +237,36 @@ public class TeamService {
     }
 
     public Double getTeamTotalGrade(Integer teamId, Integer sprintId) {
-        List<GradeType> teacherGradedTeamGradeTypes = gradeTypeRepository.findTeacherGradedTeamGradeTypes();
-        List<Double> teamGrades = new ArrayList<>();
-
-        for (GradeType gradeType : teacherGradedTeamGradeTypes) {
-            Double average = gradeRepository.findAverageByGradeTypeForTeam(teamId, sprintId, gradeType.name());
-            if (average != null) {
-                teamGrades.add(average);
-            }
-
-        }
-
-        return formattedResult(teamGrades.stream().mapToDouble(Double::doubleValue).sum() / teamGrades.size());
-
+        return sprintGradeService.getTeamTotalGrade(teamId, sprintId);
     }
 
     public List<Double> getIndividualTotalGrades(Integer id, Integer sprintId) {
-
-        List<Student> students = getStudentsByTeamId(id, false);
-        List<Double> individualGrades = new ArrayList<>();
-
-        for(Student student : students){
-            Double studentGradedTeamGrade = gradeRepository.findAverageByGradeTypeForTeam(id, sprintId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName());
-            Double individualGrade = gradeRepository.findAverageByGradeTypeForStudent(student.id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName());
-            double result;
-            if(studentGradedTeamGrade != null && individualGrade != null){
-                result = (2*individualGrade + studentGradedTeamGrade)/3;
-            }
-            else if(studentGradedTeamGrade == null){
-                result = individualGrade;
-            } else {
-                result = studentGradedTeamGrade;
-            }
-            individualGrades.add(formattedResult(result));
-
-        }
-        return individualGrades;
+        getTeamById(id);
+        return sprintGradeService.getIndividualTotalGrades(id, sprintId);
     }
 
     public List<Double> getSprintGrades(Integer id, Integer sprintId) {
-        double teamGrade = getTeamTotalGrade(id, sprintId);
-
-        List<Student> students = getStudentsByTeamId(id, false);
-        List<Double> sprintGrades = new ArrayList<>();
-
-        for(int i = 0; i < students.size(); i++){
-            List<Bonus> studentBonuses = studentService.getStudentBonuses(students.get(i).id(), sprintId);
-            double result = 0.7*(Math.min(teamGrade + studentBonuses.stream().mapToDouble(Bonus::value).sum(), 20.0)) + 0.3*(getIndividualTotalGrades(id, sprintId)).get(i);
-            sprintGrades.add(formattedResult(result));
-        }
-        if (sprintGrades.isEmpty()) {
-            return Collections.singletonList(-1.0);
-        }
-        return sprintGrades;
+        getTeamById(id);
+        return sprintGradeResultService.getTeamSprintGrades(id, sprintId);
     }
 
+    /**
+     * Get the average sprint grade of every team, all teams being loaded at once by the sprint grade engine.
+     * @param sprintId the id of the sprint
+     * @return the average sprint grade of each team
+     */
     public List<Double> getAverageSprintGrades(Integer sprintId){
-        List<Team> teams = teamRepository.findAll();
+        List<Integer> teamIds = ListUtil.map(teamRepository.findAll(), Team::id);
+        Map<Integer, List<Double>> sprintGradesByTeam = sprintGradeService.getSprintGradesByTeam(teamIds, sprintId);
         List<Double> averageSprintGrades = new ArrayList<>();
-        for(Team team : teams){
-            List<Double> sprintGrades = getSprintGrades(team.id(), sprintId);
+        for(Integer teamId : teamIds){
+            List<Double> sprintGrades = sprintGradesByTeam.get(teamId);
             double average = sprintGrades.stream().mapToDouble(Double::doubleValue).sum() / sprintGrades.size();
-            averageSprintGrades.add(formattedResult(average));
+            averageSprintGrades.add(SprintGradeService.formattedResult(average));
         }
         return averageSprintGrades;
     }
 
-    private Double formattedResult(Double result) {
-        return Double.parseDouble(String.format("%.2f", result).replace(',', '.'));
-    }
-
     public List<Comment> getIndividualCommentsByTeamIdAndSprintId(int teamId, int sprintId) {
         return this.commentRepository.findIndividualCommentsByTeamIdAndSprintId(teamId, sprintId);
     }
@@ -8,12 +8,14 @@ import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.RoleRepository;
 import fr.eseo.tauri.repository.TeamRepository;
 import fr.eseo.tauri.repository.UserRepository;
+import fr.eseo.tauri.security.RoleVersions;
+import fr.eseo.tauri.security.TokenPrincipal;
 import fr.eseo.tauri.util.CustomLogger;
+import fr.eseo.tauri.util.VersionedCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
@@ -23,8 +25,12 @@ public class UserService {
 	private final TeamRepository teamRepository;
 	private final RoleRepository roleRepository;
 	private final PermissionService permissionService;
+	private final RoleVersions roleVersions;
 
-
+	// The roles of the users, invalidated by the role changes
+	private final VersionedCache<Integer, Set<RoleType>> userRoles = new VersionedCache<>();
+	// The users by email, read at every login and invalidated by the user changes
+	private final VersionedCache<String, User> usersByEmail = new VersionedCache<>();
 
 	public List<User> getAllUsers() {
 		return userRepository.findAll();
@@ -34,6 +40,17 @@ public class UserService {
 		return userRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("user", id));
 	}
 
+	/**
+	 * Find a user by its email, from the cache once loaded. The unknown emails are not cached.
+	 */
+	public Optional<User> findUserByEmail(String email) {
+		return Optional.ofNullable(usersByEmail.get(email, key -> userRepository.findByEmail(key).orElse(null)));
+	}
+
+	public void invalidateUsers() {
+		usersByEmail.invalidateAll();
+	}
+
 	public User createUser(User user) throws IllegalArgumentException {
 		User userCheck = userRepository.findByEmail(user.email()).orElse(null);
 		if (userCheck != null) {
@@ -51,6 +68,7 @@ public class UserService {
 		if (updatedUser.privateKey() != null) user.privateKey(updatedUser.privateKey());
 
 		userRepository.save(user);
+		invalidateUsers();
 	}
 
 	public void deleteUserById(Integer id) {
@@ -64,15 +82,58 @@ public class UserService {
 		}
 
 		userRepository.deleteById(id);
+		invalidateUsers();
+		invalidateRoles(id);
 	}
 
 	public void deleteAllUsers() {
 		userRepository.deleteAll();
+		invalidateUsers();
+		invalidateAllRoles();
 	}
 
 	public List<RoleType> getRolesByUserId(Integer id) {
-		User user = getUserById(id);
-		return roleRepository.findByUser(user);
+		return new ArrayList<>(getRoleSetByUserId(id));
+	}
+
+	private Set<RoleType> getRoleSetByUserId(Integer id) {
+		TokenPrincipal principal = currentPrincipal(id);
+		if (principal != null) return principal.roles();
+
+		return userRoles.get(id, userId -> {
+			EnumSet<RoleType> loaded = EnumSet.noneOf(RoleType.class);
+			loaded.addAll(roleRepository.findByUser(getUserById(userId)));
+			return Collections.unmodifiableSet(loaded);
+		});
+	}
+
+	/**
+	 * The principal of the current request when it is the user and its token carries the current roles,
+	 * so the roles and permissions of the user are read from the token, without database access.
+	 */
+	private TokenPrincipal currentPrincipal(Integer id) {
+		TokenPrincipal principal = TokenPrincipal.current();
+		if (principal == null || !principal.id().equals(id) || principal.roleVersion() < roleVersions.current(id)) return null;
+		return principal;
+	}
+
+	public void invalidateRoles(Integer userId) {
+		userRoles.invalidate(userId);
+		roleVersions.bump(userId);
+	}
+
+	/**
+	 * Invalidate the roles of several users, their access tokens being refreshed while the other users keep theirs.
+	 */
+	public void invalidateRoles(Collection<Integer> userIds) {
+		for (Integer userId : userIds) {
+			invalidateRoles(userId);
+		}
+	}
+
+	public void invalidateAllRoles() {
+		userRoles.invalidateAll();
+		roleVersions.bumpAll();
 	}
 
 	public Team getTeamByMemberId(Integer userId, Integer projectId) {
@@ -90,25 +151,26 @@ public class UserService {
 	}
 
 	public List<PermissionType> getPermissionsByUser(Integer id) {
-		var user = getUserById(id);
-		var roles = roleRepository.findByUser(user);
-
-		List<PermissionType> permissions = new ArrayList<>();
-
-		for (var role : roles) {
-			var permissionsRoles = permissionService.getAllPermissionsByRole(role);
-			for (var permission : permissionsRoles) {
-				if (!permissions.contains(permission.type())) permissions.add(permission.type());
-			}
-		}
+		return new ArrayList<>(getPermissionSetByUserId(id));
+	}
 
-		return permissions;
+	/**
+	 * The permissions of a user as a bitmap, see {@link PermissionService#toBitmap}
+	 */
+	public String getPermissionBitmapByUser(Integer id) {
+		return PermissionService.toBitmap(getPermissionSetByUserId(id));
 	}
 
 	public Boolean hasPermission(Integer id, PermissionType permission) {
-		var permissions = getPermissionsByUser(id);
+		TokenPrincipal principal = currentPrincipal(id);
+		if (principal != null) return principal.permissions().contains(permission);
+		return permissionService.hasPermission(getRoleSetByUserId(id), permission);
+	}
 
-		return permissions.contains(permission);
+	private Set<PermissionType> getPermissionSetByUserId(Integer id) {
+		TokenPrincipal principal = currentPrincipal(id);
+		if (principal != null) return principal.permissions();
+		return permissionService.getPermissionsByRoles(getRoleSetByUserId(id));
 	}
 
 	public User getUserByName(String name){
@@ -41,4 +41,29 @@ public class ValidationBonusService {
 
     }
 
+    /**
+     * Get the validations of the limited bonuses of a team with one query.
+     * @param sprintId the id of the sprint, null for every sprint
+     */
+    public List<ValidationBonus> getValidationBonusesByTeam(Integer teamId, Integer sprintId) {
+        return validationBonusRepository.findAllByTeamAndSprint(teamId, sprintId);
+    }
+
+    /**
+     * Drop the validations of the limited bonuses of a team for a sprint with one statement.
+     * @return the number of dropped validations
+     */
+    public int deleteValidationBonusesByTeam(Integer teamId, Integer sprintId) {
+        return validationBonusRepository.deleteAllByTeamAndSprint(teamId, sprintId);
+    }
+
+    /**
+     * Validate the limited bonuses of a team for a sprint in the name of a user, with one statement.
+     * @return the number of created validations
+     */
+    public int createValidationBonusesByTeam(Integer teamId, Integer sprintId, Integer authorId) {
+        userService.getUserById(authorId);
+        return validationBonusRepository.insertAllByTeamAndSprint(teamId, sprintId, authorId);
+    }
+
 }
\ No newline at end of file
@@ -1,14 +1,15 @@
 package fr.eseo.tauri.service;
 
 import fr.eseo.tauri.model.Flag;
-import fr.eseo.tauri.model.Student;
 import fr.eseo.tauri.model.ValidationFlag;
+import fr.eseo.tauri.model.ValidationSummary;
 import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.ValidationFlagRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -16,7 +17,6 @@ public class ValidationFlagService {
 
     private final ValidationFlagRepository validationFlagRepository;
     private final UserService userService;
-    private final TeamService teamService;
 
     public ValidationFlag getValidationFlagByAuthorId(Integer flagId, Integer authorId) {
         return validationFlagRepository.findByAuthorIdAndFlagId(flagId, authorId);
@@ -26,17 +26,14 @@ public class ValidationFlagService {
         return validationFlagRepository.findAllByFlag(flagId);
     }
 
+    public ValidationSummary getValidationSummary(Integer flagId) {
+        return validationFlagRepository.summarizeByFlag(flagId);
+    }
+
     public void createValidationFlags(Flag flag) {
         if(userService.getRolesByUserId(flag.author().id()).contains(RoleType.OPTION_STUDENT)){
-            List<Student> students = teamService.getStudentsByTeamId(flag.firstStudent().team().id(), false);
-            students.addAll(teamService.getStudentsByTeamId(flag.secondStudent().team().id(), false));
-            for(Student student: students){
-                ValidationFlag validationFlag = new ValidationFlag();
-                validationFlag.flag(flag);
-                validationFlag.confirmed(null);
-                validationFlag.author(student);
-                validationFlagRepository.save(validationFlag);
-            }
+            List<Integer> teamIds = Stream.of(flag.firstStudent().team().id(), flag.secondStudent().team().id()).distinct().toList();
+            validationFlagRepository.insertAllByTeams(flag.id(), teamIds);
         }
     }
 
@@ -22,6 +22,14 @@ public class CustomLogger {
         CustomLogger.logger = logger;
     }
 
+    /**
+     * Log a debug message
+     * @param message the message to log
+     */
+    public static void debug(String message) {
+        logger.debug(message);
+    }
+
     /**
      * Log an info message
      * @param message the message to log
@@ -0,0 +1,54 @@
+package fr.eseo.tauri.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A cache of values loaded on first read and invalidated by the writes, after their database change.
+ * The cached values are never adjusted in place, a value loaded after the change would already include it.
+ * Every invalidation increments a version, a value loaded while the version changed is returned but not kept,
+ * so a write running during a load never leaves an outdated value in the cache.
+ * The reads of a cached value take no lock.
+ * @param <K> the type of the keys, a null key is never cached
+ * @param <V> the type of the values, a null value is never cached
+ */
+public class VersionedCache<K, V> {
+
+	private final Map<K, V> values = new ConcurrentHashMap<>();
+	private long version;
+
+	/**
+	 * Get the value of a key, loading it when it is not cached.
+	 * @param key the key
+	 * @param loader loads the value of the key, outside the lock
+	 * @return the cached or loaded value
+	 */
+	public V get(K key, Function<K, V> loader) {
+		if (key == null) return loader.apply(null);
+		V value = values.get(key);
+		if (value != null) return value;
+
+		long loadVersion;
+		synchronized (this) {
+			loadVersion = version;
+		}
+		V loaded = loader.apply(key);
+		if (loaded == null) return null;
+		synchronized (this) {
+			if (version == loadVersion) values.put(key, loaded);
+		}
+		return loaded;
+	}
+
+	public synchronized void invalidate(K key) {
+		if (key != null) values.remove(key);
+		version++;
+	}
+
+	public synchronized void invalidateAll() {
+		values.clear();
+		version++;
+	}
+
+}
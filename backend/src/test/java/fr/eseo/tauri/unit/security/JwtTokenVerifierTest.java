@@ -0,0 +1,146 @@
+package fr.eseo.tauri.unit.security;
+
+import fr.eseo.tauri.model.User;
+import fr.eseo.tauri.model.enumeration.PermissionType;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import fr.eseo.tauri.security.JwtTokenUtil;
+import fr.eseo.tauri.security.JwtTokenVerifier;
+import fr.eseo.tauri.security.TokenPrincipal;
+import fr.eseo.tauri.service.PermissionService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Nested
+class JwtTokenVerifierTest {
+
+    private static final String SECRET = "dGF1cmktdGVzdC1zZWNyZXQta2V5LWZvci10aGUtdG9rZW4tdmVyaWZpZXI=";
+    private static final String OTHER_SECRET = "YW5vdGhlci1zZWNyZXQta2V5LXRoYXQtc2lnbnMtZm9yZ2VkLXRva2Vucw==";
+
+    private JwtTokenUtil jwtTokenUtil;
+    private JwtTokenVerifier jwtTokenVerifier;
+
+    @BeforeEach
+    void init() {
+        jwtTokenUtil = new JwtTokenUtil();
+        ReflectionTestUtils.setField(jwtTokenUtil, "secretKey", SECRET);
+        ReflectionTestUtils.setField(jwtTokenUtil, "issuer", "TAURI");
+        ReflectionTestUtils.setField(jwtTokenUtil, "accessExpireDuration", 900_000L);
+        ReflectionTestUtils.setField(jwtTokenUtil, "expireDuration", 86_400_000L);
+
+        jwtTokenVerifier = new JwtTokenVerifier();
+        ReflectionTestUtils.setField(jwtTokenVerifier, "secretKey", SECRET);
+    }
+
+    private static TokenPrincipal principal(Integer id) {
+        return new TokenPrincipal(id, "user" + id + "@reseau.eseo.fr", Set.of(RoleType.SUPERVISING_STAFF),
+                EnumSet.of(PermissionType.IMPORT), 3);
+    }
+
+    private static String accessToken(Integer id, String secret, Instant expiration) {
+        return Jwts.builder()
+                .setSubject("user" + id + "@reseau.eseo.fr")
+                .claim(JwtTokenUtil.CLAIM_TYPE, JwtTokenUtil.TYPE_ACCESS)
+                .claim(JwtTokenUtil.CLAIM_USER_ID, id)
+                .claim(JwtTokenUtil.CLAIM_ROLES, List.of(RoleType.SUPERVISING_STAFF.name()))
+                .claim(JwtTokenUtil.CLAIM_PERMISSIONS, PermissionService.toBitmap(EnumSet.of(PermissionType.IMPORT)))
+                .claim(JwtTokenUtil.CLAIM_ROLE_VERSION, 3L)
+                .setExpiration(Date.from(expiration))
+                .signWith(SignatureAlgorithm.HS256, secret)
+                .compact();
+    }
+
+    @Test
+    void verifyShouldReadThePrincipalFromTheClaims() {
+        TokenPrincipal principal = principal(1);
+
+        TokenPrincipal result = jwtTokenVerifier.verify(jwtTokenUtil.generateAccessToken(principal));
+
+        assertEquals(principal, result);
+    }
+
+    @Test
+    void verifyShouldServeTheNextRequestsFromTheCache() {
+        String token = jwtTokenUtil.generateAccessToken(principal(1));
+
+        TokenPrincipal first = jwtTokenVerifier.verify(token);
+        TokenPrincipal second = jwtTokenVerifier.verify(token);
+        TokenPrincipal third = jwtTokenVerifier.verify(token);
+
+        assertNotNull(first);
+        assertSame(first, second);
+        assertSame(first, third);
+        assertEquals(new JwtTokenVerifier.Stats(2, 1, 1), jwtTokenVerifier.stats());
+    }
+
+    @Test
+    void verifyShouldCountAMissForEveryNewToken() {
+        jwtTokenVerifier.verify(jwtTokenUtil.generateAccessToken(principal(1)));
+        jwtTokenVerifier.verify(jwtTokenUtil.generateAccessToken(principal(2)));
+
+        assertEquals(new JwtTokenVerifier.Stats(0, 2, 2), jwtTokenVerifier.stats());
+    }
+
+    @Test
+    void verifyShouldRejectAndNotCacheATokenWithABadSignature() {
+        String token = accessToken(1, OTHER_SECRET, Instant.now().plusSeconds(900));
+
+        assertNull(jwtTokenVerifier.verify(token));
+        assertNull(jwtTokenVerifier.verify(token));
+
+        assertEquals(new JwtTokenVerifier.Stats(0, 2, 0), jwtTokenVerifier.stats());
+    }
+
+    @Test
+    void verifyShouldRejectARefreshToken() {
+        String token = jwtTokenUtil.generateRefreshToken(new User().id(1).email("user1@reseau.eseo.fr"));
+
+        assertNull(jwtTokenVerifier.verify(token));
+        assertEquals(0, jwtTokenVerifier.stats().size());
+    }
+
+    @Test
+    void verifyShouldRejectACachedTokenOnceItExpired() throws InterruptedException {
+        // The parser is loaded first, so the short-lived token is verified before it expires
+        jwtTokenVerifier.verify(accessToken(2, SECRET, Instant.now().plusSeconds(900)));
+        // The expiration of a token is stored in seconds, it is at most three seconds away
+        Instant expiration = Instant.now().plusSeconds(3);
+        String token = accessToken(1, SECRET, expiration);
+        assertNotNull(jwtTokenVerifier.verify(token));
+        assertEquals(2, jwtTokenVerifier.stats().size());
+
+        Thread.sleep(expiration.toEpochMilli() - System.currentTimeMillis() + 100);
+
+        assertNull(jwtTokenVerifier.verify(token));
+        assertEquals(1, jwtTokenVerifier.stats().size());
+    }
+
+    @Test
+    void verifyShouldEvictTheCacheWhenItIsFull() {
+        Instant expiration = Instant.now().plusSeconds(900);
+        for (int i = 0; i < JwtTokenVerifier.MAX_ENTRIES; i++) {
+            jwtTokenVerifier.verify(accessToken(i, SECRET, expiration));
+        }
+        assertEquals(JwtTokenVerifier.MAX_ENTRIES, jwtTokenVerifier.stats().size());
+
+        String token = accessToken(JwtTokenVerifier.MAX_ENTRIES, SECRET, expiration);
+        assertNotNull(jwtTokenVerifier.verify(token));
+
+        // No token was expired, so the whole cache is dropped before the new token is kept
+        assertEquals(1, jwtTokenVerifier.stats().size());
+        jwtTokenVerifier.verify(token);
+        assertEquals(1, jwtTokenVerifier.stats().hits());
+    }
+
+}
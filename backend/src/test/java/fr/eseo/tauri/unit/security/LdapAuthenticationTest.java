@@ -0,0 +1,105 @@
+package fr.eseo.tauri.unit.security;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.sdk.LDAPException;
+import fr.eseo.tauri.security.ApplicationSecurity;
+import fr.eseo.tauri.security.BoundedAuthenticationManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.LdapShaPasswordEncoder;
+import org.springframework.security.ldap.DefaultSpringSecurityContextSource;
+import org.springframework.security.ldap.userdetails.LdapUserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Logins through the directory beans of ApplicationSecurity, against an in-memory directory.
+ */
+@Nested
+class LdapAuthenticationTest {
+
+    private static final String BASE_DN = "dc=nath,dc=eseo,dc=fr";
+    private static final String MANAGER_DN = "cn=admin," + BASE_DN;
+    private static final String MANAGER_PASSWORD = "network!";
+    private static final String EMAIL = "john.doe@reseau.eseo.fr";
+    private static final String PASSWORD = "s3cret";
+
+    private InMemoryDirectoryServer directory;
+    private AuthenticationManager authenticationManager;
+
+    @BeforeEach
+    void init() throws LDAPException {
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(BASE_DN);
+        config.addAdditionalBindCredentials(MANAGER_DN, MANAGER_PASSWORD);
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", 0));
+        directory = new InMemoryDirectoryServer(config);
+        directory.add("dn: " + BASE_DN, "objectClass: top", "objectClass: domain", "dc: nath");
+        directory.add("dn: uid=jdoe," + BASE_DN, "objectClass: top", "objectClass: person", "objectClass: organizationalPerson",
+                "objectClass: inetOrgPerson", "uid: jdoe", "cn: John Doe", "sn: Doe", "mail: " + EMAIL,
+                "userPassword: " + new LdapShaPasswordEncoder().encode(PASSWORD));
+        directory.startListening();
+
+        ApplicationSecurity applicationSecurity = new ApplicationSecurity(null, null);
+        ReflectionTestUtils.setField(applicationSecurity, "ldapUrl", "ldap://localhost:" + directory.getListenPort() + "/");
+        ReflectionTestUtils.setField(applicationSecurity, "ldapBaseDn", BASE_DN);
+        ReflectionTestUtils.setField(applicationSecurity, "ldapUserSearchFilter", "(mail={0})");
+        ReflectionTestUtils.setField(applicationSecurity, "ldapUsername", MANAGER_DN);
+        ReflectionTestUtils.setField(applicationSecurity, "ldapPassword", MANAGER_PASSWORD);
+        ReflectionTestUtils.setField(applicationSecurity, "ldapMaxConcurrentAuthentications", 2);
+        ReflectionTestUtils.setField(applicationSecurity, "ldapAcquireTimeout", 5000L);
+        ReflectionTestUtils.setField(applicationSecurity, "ldapPoolIdleTimeout", 300000L);
+
+        DefaultSpringSecurityContextSource contextSource = applicationSecurity.ldapContextSource();
+        contextSource.afterPropertiesSet();
+        authenticationManager = applicationSecurity.authenticationManager(contextSource);
+    }
+
+    @AfterEach
+    void shutDown() {
+        directory.shutDown(true);
+    }
+
+    @Test
+    void authenticationManagerShouldBeBounded() {
+        assertInstanceOf(BoundedAuthenticationManager.class, authenticationManager);
+    }
+
+    @Test
+    void loginShouldAuthenticateTheUserFoundByItsEmail() {
+        Authentication result = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(EMAIL, PASSWORD));
+
+        assertTrue(result.isAuthenticated());
+        assertEquals("uid=jdoe," + BASE_DN, ((LdapUserDetails) result.getPrincipal()).getDn());
+    }
+
+    @Test
+    void loginShouldReuseThePooledConnections() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(EMAIL, PASSWORD)).isAuthenticated());
+        }
+    }
+
+    @Test
+    void loginShouldRejectAWrongPassword() {
+        UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken(EMAIL, "wrong");
+
+        assertThrows(BadCredentialsException.class, () -> authenticationManager.authenticate(token));
+    }
+
+    @Test
+    void loginShouldRejectAnUnknownEmail() {
+        UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken("jane.doe@reseau.eseo.fr", PASSWORD);
+
+        assertThrows(BadCredentialsException.class, () -> authenticationManager.authenticate(token));
+    }
+
+}
@@ -1,26 +1,37 @@
 package fr.eseo.tauri.unit.service;
 
 
-import fr.eseo.tauri.model.Project;
 import fr.eseo.tauri.model.User;
-import fr.eseo.tauri.repository.ProjectRepository;
-import fr.eseo.tauri.repository.UserRepository;
+import fr.eseo.tauri.model.enumeration.PermissionType;
+import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.security.AuthResponse;
+import fr.eseo.tauri.security.BoundedAuthenticationManager;
 import fr.eseo.tauri.security.JwtTokenUtil;
+import fr.eseo.tauri.security.RoleVersions;
+import fr.eseo.tauri.security.TokenPrincipal;
 import fr.eseo.tauri.service.AuthService;
+import fr.eseo.tauri.service.PermissionService;
+import fr.eseo.tauri.service.ProjectService;
+import fr.eseo.tauri.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -36,13 +47,19 @@ class AuthServiceTest {
     AuthenticationManager authenticationManager;
 
     @Mock
-    UserRepository userRepository;
+    ProjectService projectService;
 
     @Mock
-    ProjectRepository projectRepository;
+    JwtTokenUtil jwtTokenUtil;
 
     @Mock
-    JwtTokenUtil jwtTokenUtil;
+    UserService userService;
+
+    @Mock
+    PermissionService permissionService;
+
+    @Mock
+    RoleVersions roleVersions;
 
     @BeforeEach
     public void setup() {
@@ -82,15 +99,13 @@ class AuthServiceTest {
         Authentication authentication = mock(Authentication.class);
         User user = new User();
         user.email(email);
-        Project project = new Project();
-        project.id(1);
         authService.prodProperty("true");
 
         when(authenticationManager.authenticate(any())).thenReturn(authentication);
-        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
-        when(jwtTokenUtil.generateAccessToken(user)).thenReturn("accessToken");
-        when(projectRepository.findFirstByActualTrue()).thenReturn(Optional.of(project));
-        when(userRepository.findByEmail(email)).thenReturn(null);
+        when(userService.findUserByEmail(email)).thenReturn(Optional.of(user));
+        when(jwtTokenUtil.generateAccessToken(any(TokenPrincipal.class))).thenReturn("accessToken");
+        when(projectService.getActualProjectId()).thenReturn(1);
+        when(userService.findUserByEmail(email)).thenReturn(null);
 
         assertThrows(SecurityException.class, () -> authService.login(email, password));
     }
@@ -103,12 +118,10 @@ class AuthServiceTest {
         String password = "password";
         User user = new User();
         user.email(email);
-        Project project = new Project();
-        project.id(1);
 
-        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
-        when(jwtTokenUtil.generateAccessToken(user)).thenReturn("accessToken");
-        when(projectRepository.findFirstByActualTrue()).thenReturn(Optional.of(project));
+        when(userService.findUserByEmail(email)).thenReturn(Optional.of(user));
+        when(jwtTokenUtil.generateAccessToken(any(TokenPrincipal.class))).thenReturn("accessToken");
+        when(projectService.getActualProjectId()).thenReturn(1);
 
         AuthResponse authResponse = authService.login(email, password);
 
@@ -122,7 +135,7 @@ class AuthServiceTest {
         String email = "john.doe@example.com";
         String password = "wrongpassword";
 
-        when(userRepository.findByEmail(email)).thenReturn(Optional.empty());
+        when(userService.findUserByEmail(email)).thenReturn(Optional.empty());
 
         assertThrows(SecurityException.class, () -> authService.login(email, password));
     }
@@ -157,7 +170,7 @@ class AuthServiceTest {
         when(authenticationManager.authenticate(any())).thenReturn(authentication);
         when(userDetails.getUsername()).thenReturn(email);
         when(authentication.getPrincipal()).thenReturn(userDetails);
-        when(userRepository.findByEmail(email)).thenReturn(Optional.empty());
+        when(userService.findUserByEmail(email)).thenReturn(Optional.empty());
         authService.prodProperty("true");
 
         assertThrows(SecurityException.class, () -> authService.login(email, password));
@@ -168,7 +181,7 @@ class AuthServiceTest {
         String email = "john.doe@example.com";
         String password = "password";
 
-        when(userRepository.findByEmail(email)).thenReturn(Optional.empty());
+        when(userService.findUserByEmail(email)).thenReturn(Optional.empty());
         authService.prodProperty("false");
 
         assertThrows(SecurityException.class, () -> authService.login(email, password));
@@ -180,12 +193,10 @@ class AuthServiceTest {
         String password = "password";
         User user = new User();
         user.email(email);
-        Project project = new Project();
-        project.id(1);
 
-        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
-        when(jwtTokenUtil.generateAccessToken(user)).thenReturn("accessToken");
-        when(projectRepository.findFirstByActualTrue()).thenReturn(Optional.of(project));
+        when(userService.findUserByEmail(email)).thenReturn(Optional.of(user));
+        when(jwtTokenUtil.generateAccessToken(any(TokenPrincipal.class))).thenReturn("accessToken");
+        when(projectService.getActualProjectId()).thenReturn(1);
         authService.prodProperty("false");
 
         AuthResponse authResponse = authService.login(email, password);
@@ -202,29 +213,106 @@ class AuthServiceTest {
         String password = "password";
         authService.prodProperty("false");
 
-        // Mocking the user to be returned by the userRepository
+        // Mocking the user to be returned by the userService
         User mockUser = mock(User.class);
-        when(userRepository.findByEmail(email)).thenReturn(Optional.of(mockUser));
+        when(userService.findUserByEmail(email)).thenReturn(Optional.of(mockUser));
 
         // Mocking the JWT token generation
         String mockToken = "mockToken";
-        when(jwtTokenUtil.generateAccessToken(mockUser)).thenReturn(mockToken);
+        when(jwtTokenUtil.generateAccessToken(any(TokenPrincipal.class))).thenReturn(mockToken);
 
-        // Mocking the project repository behavior
-        Project mockProject = mock(Project.class);
-        when(mockProject.id()).thenReturn(1);
-        when(projectRepository.findFirstByActualTrue()).thenReturn(Optional.of(mockProject));
+        // Mocking the project service behavior
+        when(projectService.getActualProjectId()).thenReturn(1);
 
         // Call the login method
         AuthResponse response = authService.login(email, password);
 
         // Verify the interactions and the expected response
-        verify(userRepository).findByEmail(email);
-        verify(jwtTokenUtil).generateAccessToken(mockUser);
-        verify(projectRepository).findFirstByActualTrue();
+        verify(userService).findUserByEmail(email);
+        verify(jwtTokenUtil).generateAccessToken(any(TokenPrincipal.class));
+        verify(projectService).getActualProjectId();
 
         assertNotNull(response);
     }
 
+    @Test
+    void loginShouldPutTheRolesPermissionsAndRoleVersionInTheAccessToken() {
+        String email = "john.doe@example.com";
+        User user = new User().id(1);
+        user.email(email);
+        authService.prodProperty("false");
+
+        when(userService.findUserByEmail(email)).thenReturn(Optional.of(user));
+        when(roleVersions.current(1)).thenReturn(42L);
+        when(userService.getRolesByUserId(1)).thenReturn(List.of(RoleType.TEAM_MEMBER));
+        when(permissionService.getPermissionsByRoles(EnumSet.of(RoleType.TEAM_MEMBER))).thenReturn(EnumSet.of(PermissionType.VIEW_OWN_TEAM));
+        when(jwtTokenUtil.generateAccessToken(any(TokenPrincipal.class))).thenReturn("accessToken");
+        when(jwtTokenUtil.generateRefreshToken(user)).thenReturn("refreshToken");
+        when(projectService.getActualProjectId()).thenReturn(0);
+
+        AuthResponse response = authService.login(email, "password");
+
+        ArgumentCaptor<TokenPrincipal> principal = ArgumentCaptor.forClass(TokenPrincipal.class);
+        verify(jwtTokenUtil).generateAccessToken(principal.capture());
+        assertEquals(new TokenPrincipal(1, email, EnumSet.of(RoleType.TEAM_MEMBER), EnumSet.of(PermissionType.VIEW_OWN_TEAM), 42L), principal.getValue());
+        assertEquals("accessToken", response.accessToken());
+        assertEquals("refreshToken", response.refreshToken());
+        assertEquals(0, response.idProject());
+    }
+
+    @Test
+    void refreshShouldGenerateNewTokensWhenTheRefreshTokenIsValid() {
+        User user = new User().id(1);
+        when(jwtTokenUtil.verifyRefreshToken("refreshToken")).thenReturn(1);
+        when(userService.getUserById(1)).thenReturn(user);
+        when(userService.getRolesByUserId(1)).thenReturn(List.of());
+        when(permissionService.getPermissionsByRoles(any())).thenReturn(EnumSet.noneOf(PermissionType.class));
+        when(jwtTokenUtil.generateAccessToken(any(TokenPrincipal.class))).thenReturn("newAccessToken");
+        when(jwtTokenUtil.generateRefreshToken(user)).thenReturn("newRefreshToken");
+        when(projectService.getActualProjectId()).thenReturn(0);
+
+        AuthResponse response = authService.refresh("refreshToken");
+
+        assertEquals(1, response.id());
+        assertEquals("newAccessToken", response.accessToken());
+        assertEquals("newRefreshToken", response.refreshToken());
+    }
+
+    @Test
+    void refreshShouldThrowSecurityExceptionWhenTheRefreshTokenIsInvalid() {
+        when(jwtTokenUtil.verifyRefreshToken("accessToken")).thenReturn(null);
+
+        assertThrows(SecurityException.class, () -> authService.refresh("accessToken"));
+        assertThrows(SecurityException.class, () -> authService.refresh(null));
+        verify(userService, never()).getUserById(any());
+    }
+
+    @Test
+    void loginShouldReportABusyDirectoryWhenTooManyAuthenticationsAreRunning() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Authentication authentication = mock(Authentication.class);
+        UserDetails userDetails = mock(UserDetails.class);
+        when(userDetails.getUsername()).thenReturn("john.doe@example.com");
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(authenticationManager.authenticate(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return authentication;
+        });
+        when(userService.findUserByEmail("john.doe@example.com")).thenReturn(Optional.of(new User().id(1)));
+        when(projectService.getActualProjectId()).thenReturn(1);
+        AuthService boundedAuthService = new AuthService(jwtTokenUtil, new BoundedAuthenticationManager(authenticationManager, 1, 10),
+                userService, projectService, permissionService, roleVersions);
+        boundedAuthService.prodProperty("true");
+
+        CompletableFuture<AuthResponse> firstLogin = CompletableFuture.supplyAsync(() -> boundedAuthService.login("john.doe@example.com", "password"));
+        started.await();
+
+        assertThrows(AuthenticationServiceException.class, () -> boundedAuthService.login("jane.doe@example.com", "password"));
+        release.countDown();
+        assertEquals(1, firstLogin.get().id());
+        verify(authenticationManager, times(1)).authenticate(any());
+    }
 
-}
\ No newline at end of file
+}
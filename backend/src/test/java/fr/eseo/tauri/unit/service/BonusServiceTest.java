@@ -3,7 +3,6 @@ package fr.eseo.tauri.unit.service;
 import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.repository.BonusRepository;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
-import fr.eseo.tauri.repository.StudentRepository;
 import fr.eseo.tauri.repository.TeamRepository;
 import fr.eseo.tauri.service.*;
 import org.junit.jupiter.api.BeforeEach;
@@ -31,15 +30,15 @@ class BonusServiceTest {
     @InjectMocks
     BonusService bonusService;
 
-    @Mock
-    StudentRepository studentRepository;
-
     @Mock
     TeamRepository teamRepository;
 
     @Mock
     BonusRepository bonusRepository;
 
+    @Mock
+    SprintGradeResultService sprintGradeResultService;
+
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
@@ -137,6 +136,7 @@ class BonusServiceTest {
         bonusService.deleteBonus(id);
 
         verify(bonusRepository, times(1)).deleteById(id);
+        verify(sprintGradeResultService, times(1)).refresh(bonus);
     }
 
     @Test
@@ -152,29 +152,27 @@ class BonusServiceTest {
     @Test
     void getValidationBonusesByTeamShouldReturnEmptyListWhenNoStudentsExist() {
         Integer teamId = 1;
-        Team team = new Team().id(1);
-        User leader = new User().id(1);
-        team.leader(leader);
 
-        when(teamRepository.findLeaderByTeamId(teamId)).thenReturn(leader);
-        when(studentRepository.findByTeam(teamId)).thenReturn(Collections.emptyList());
+        when(validationBonusService.getValidationBonusesByTeam(teamId, null)).thenReturn(Collections.emptyList());
 
-        List<ValidationBonus> result = bonusService.getValidationBonusesByTeam(teamId);
+        List<ValidationBonus> result = bonusService.getValidationBonusesByTeam(teamId, null);
 
         assertTrue(result.isEmpty());
     }
 
     @Test
-    void setValidationBonusesByTeamShouldNotCreateValidationBonusesWhenNoStudentsExist() {
+    void setValidationBonusesByTeamShouldValidateTheBonusesOfTheTeamWithOneStatement() {
         Integer teamId = 1;
         Integer sprintId = 1;
         Integer userId = 1;
 
-        when(studentRepository.findByTeam(teamId)).thenReturn(Collections.emptyList());
+        when(validationBonusService.createValidationBonusesByTeam(teamId, sprintId, userId)).thenReturn(3);
 
         bonusService.setValidationBonusesByTeam(teamId, sprintId, userId);
 
+        verify(validationBonusService, times(1)).createValidationBonusesByTeam(teamId, sprintId, userId);
         verify(validationBonusService, never()).createValidationBonus(any());
+        verify(bonusRepository, never()).findStudentBonus(anyInt(), anyBoolean(), anyInt());
     }
 
     @Test
@@ -220,44 +218,19 @@ class BonusServiceTest {
     @Test
     void getValidationBonusesByTeamShouldReturnBonusesWhenStudentsAndLeaderExist() {
         Integer teamId = 1;
-        Student student1 = new Student();
-        student1.id(1);
-        Student student2 = new Student();
-        student2.id(2);
-        List<Student> students = Arrays.asList(student1, student2);
-
-        User leader = new User().id(3);
+        Integer sprintId = 2;
         ValidationBonus bonus1 = new ValidationBonus().bonusId(1);
         ValidationBonus bonus2 = new ValidationBonus().bonusId(2);
         ValidationBonus leaderBonus = new ValidationBonus().bonusId(3);
 
-        when(studentRepository.findByTeam(teamId)).thenReturn(students);
-        when(validationBonusService.getValidationByAuthorId(1)).thenReturn(Collections.singletonList(bonus1));
-        when(validationBonusService.getValidationByAuthorId(2)).thenReturn(Collections.singletonList(bonus2));
-        when(teamRepository.findLeaderByTeamId(teamId)).thenReturn(leader);
-        when(validationBonusService.getValidationByAuthorId(3)).thenReturn(Collections.singletonList(leaderBonus));
+        when(validationBonusService.getValidationBonusesByTeam(teamId, sprintId)).thenReturn(List.of(bonus1, bonus2, leaderBonus));
 
-        List<ValidationBonus> result = bonusService.getValidationBonusesByTeam(teamId);
+        List<ValidationBonus> result = bonusService.getValidationBonusesByTeam(teamId, sprintId);
 
         assertTrue(result.contains(bonus1));
         assertTrue(result.contains(bonus2));
         assertTrue(result.contains(leaderBonus));
-    }
-
-    @Test
-    void getValidationBonusesByTeamShouldReturnOnlyLeaderBonusWhenNoStudentsExist() {
-        Integer teamId = 1;
-        User leader = new User().id(1);
-        ValidationBonus leaderBonus = new ValidationBonus().bonusId(1);
-
-        when(studentRepository.findByTeam(teamId)).thenReturn(Collections.emptyList());
-        when(teamRepository.findLeaderByTeamId(teamId)).thenReturn(leader);
-        when(validationBonusService.getValidationByAuthorId(1)).thenReturn(Collections.singletonList(leaderBonus));
-
-        List<ValidationBonus> result = bonusService.getValidationBonusesByTeam(teamId);
-
-        assertEquals(1, result.size());
-        assertTrue(result.contains(leaderBonus));
+        verify(validationBonusService, never()).getValidationByAuthorId(anyInt());
     }
 
     @Test
@@ -317,18 +290,6 @@ class BonusServiceTest {
         });
     }
 
-    @Test
-    void testSetValidationBonusesByTeam_NoStudents() {
-        // Setup
-        when(studentRepository.findByTeam(anyInt())).thenReturn(Collections.emptyList());
-
-        // Exercise
-        bonusService.setValidationBonusesByTeam(1, 1, 1);
-
-        // Verify
-        verify(validationBonusService, never()).createValidationBonus(any());
-    }
-
     @Test
     void testUpdateBonusWithinRange() {
         // Mock Bonus object with value within range [-4, 4]
@@ -346,6 +307,7 @@ class BonusServiceTest {
 
         mockBonus.author(mockUser);
         mockBonus.student(mockStudent);
+        mockBonus.sprint(new Sprint().id(4));
 
         Team mockTeam = new Team();
         mockTeam.id(1);
@@ -354,11 +316,11 @@ class BonusServiceTest {
         // Mock dependencies
         when(bonusRepository.findById(any(Integer.class))).thenReturn(java.util.Optional.of(mockBonus));
         when(teamRepository.findTeamByStudentId(any(Integer.class))).thenReturn(mockTeam);
-        when(teamRepository.findLeaderByTeamId(any(Integer.class))).thenReturn(mockUser);
-        when(validationBonusService.getValidationByAuthorId(any(Integer.class))).thenReturn(new ArrayList<>());
 
         // Call method
         assertDoesNotThrow(() -> bonusService.updateBonus(1, mockBonus));
+        verify(validationBonusService, times(1)).deleteValidationBonusesByTeam(1, 4);
+        verify(validationBonusService, never()).deleteAllValidationBonuses(anyInt());
     }
 
     @Test
@@ -377,6 +339,7 @@ class BonusServiceTest {
 
         mockBonus.author(mockUser);
         mockBonus.student(mockStudent);
+        mockBonus.sprint(new Sprint().id(4));
 
         Team mockTeam = new Team();
         mockTeam.id(1);
@@ -385,8 +348,6 @@ class BonusServiceTest {
         // Mock dependencies
         when(bonusRepository.findById(any(Integer.class))).thenReturn(java.util.Optional.of(mockBonus));
         when(teamRepository.findTeamByStudentId(any(Integer.class))).thenReturn(mockTeam);
-        when(teamRepository.findLeaderByTeamId(any(Integer.class))).thenReturn(mockUser);
-        when(validationBonusService.getValidationByAuthorId(any(Integer.class))).thenReturn(new ArrayList<>());
 
         // Call method with updated author and comment
         Bonus updatedBonus = new Bonus();
@@ -400,31 +361,4 @@ class BonusServiceTest {
         verify(bonusRepository, times(1)).save(mockBonus);
     }
 
-    @Test
-    void testSetValidationBonusesByTeam() {
-        // Mock data
-        Integer teamId = 1;
-        Integer sprintId = 1;
-        Integer userId = 1;
-
-        // Mock students
-        List<Student> students = new ArrayList<>();
-        Student student1 = new Student();
-        student1.id(1);
-        students.add(student1);
-
-        when(studentRepository.findByTeam(any(Integer.class))).thenReturn(students);
-
-        // Mock bonus
-        Bonus bonus = new Bonus();
-        bonus.id(1);
-        when(bonusRepository.findStudentBonus(any(Integer.class), anyBoolean(), any(Integer.class))).thenReturn(bonus);
-
-        // Call method
-        bonusService.setValidationBonusesByTeam(teamId, sprintId, userId);
-
-        // Verify that createValidationBonus method is called for each student
-        verify(validationBonusService, times(1)).createValidationBonus(any(ValidationBonus.class));
-    }
-
 }
@@ -96,6 +96,14 @@ class FlagServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> flagService.updateFlag(1, updatedFlag));
     }
 
+    @Test
+    void getValidationSummaryShouldThrowExceptionWhenFlagNotFound() {
+        when(flagRepository.findById(anyInt())).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> flagService.getValidationSummary(1));
+        verify(validationFlagService, never()).getValidationSummary(anyInt());
+    }
+
     @Test
     void deleteFlagShouldDeleteFlagWhenAuthorized() {
         Flag flag = new Flag();
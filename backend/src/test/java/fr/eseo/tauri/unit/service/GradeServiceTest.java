@@ -20,6 +20,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.stream.Stream;
@@ -57,6 +58,12 @@ class GradeServiceTest {
     @Mock
     private GradeTypeRepository gradeTypeRepository;
 
+    @Mock
+    private SprintGradeResultService sprintGradeResultService;
+
+    @Mock
+    private TeamGenerationService teamGenerationService;
+
     @InjectMocks
     private GradeService gradeService;
 
@@ -122,6 +129,7 @@ class GradeServiceTest {
         gradeService.createGrade(grade);
 
         verify(gradeRepository, times(1)).save(any(Grade.class));
+        verify(sprintGradeResultService, times(1)).refresh(grade);
     }
 
     @Test
@@ -143,6 +151,39 @@ class GradeServiceTest {
         gradeService.createGrade(grade);
 
         verify(gradeRepository, times(1)).save(any(Grade.class));
+        verify(teamGenerationService, never()).invalidateSnapshots();
+    }
+
+    @Test
+    void createGradeShouldInvalidateTheStudentSnapshotsWhenTheGradeIsTheImportedAverage() {
+        Grade grade = new Grade();
+        grade.studentId(1);
+        GradeType gradeType = new GradeType();
+        gradeType.forGroup(false);
+        gradeType.name(GradeTypeName.AVERAGE.displayName());
+        grade.gradeType(gradeType);
+
+        when(studentService.getStudentById(anyInt())).thenReturn(new Student());
+
+        gradeService.createGrade(grade);
+
+        verify(teamGenerationService, times(1)).invalidateSnapshots();
+    }
+
+    @Test
+    void updateGradeShouldInvalidateTheStudentSnapshotsWhenTheGradeIsTheImportedAverage() {
+        GradeType gradeType = new GradeType();
+        gradeType.name(GradeTypeName.AVERAGE.displayName());
+        Grade grade = new Grade().student(new Student());
+        grade.gradeType(gradeType);
+        Grade updatedGrade = new Grade();
+        updatedGrade.value(12f);
+
+        when(gradeRepository.findById(anyInt())).thenReturn(Optional.of(grade));
+
+        gradeService.updateGrade(1, updatedGrade);
+
+        verify(teamGenerationService, times(1)).invalidateSnapshots();
     }
 
     @Test
@@ -152,6 +193,7 @@ class GradeServiceTest {
         gradeService.deleteGrade(1);
 
         verify(gradeRepository, times(1)).deleteById(anyInt());
+        verify(sprintGradeResultService, times(1)).refresh(any(Grade.class));
     }
 
     @Test
@@ -166,6 +208,7 @@ class GradeServiceTest {
         gradeService.deleteAllGradesByProject(1);
 
         verify(gradeRepository, times(1)).deleteAllByProject(anyInt());
+        verify(sprintGradeResultService, times(1)).invalidateProject(1);
     }
 
     @Test
@@ -214,55 +257,79 @@ class GradeServiceTest {
     }
 
     @Test
-    void createStudentIndividualGradesCSVReportShouldGenerateCorrectReportWhenAuthorized() throws IOException {
+    void writeStudentIndividualGradesCSVReportShouldGenerateCorrectReportWhenAuthorized() throws IOException {
         int projectId = 1;
-        Student student = new Student();
-        student.name("John Doe");
-        student.gender(Gender.MAN);
-        student.bachelor(true);
         GradeType gradeType = new GradeType();
+        gradeType.id(1);
         gradeType.name("Test Grade");
         gradeType.factor(1f);
-        List<Student> students = Collections.singletonList(student);
-        List<GradeType> gradeTypes = Collections.singletonList(gradeType);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 
-        when(studentRepository.findAllByProject(projectId)).thenReturn(students);
-        when(gradeRepository.findAllUnimportedGradeTypesByProjectId(projectId)).thenReturn(gradeTypes);
-        when(gradeService.getGradeByStudentAndGradeType(student, gradeType)).thenReturn(90f);
+        when(gradeRepository.findAllUnimportedGradeTypesByProjectId(projectId)).thenReturn(List.of(gradeType));
+        when(gradeRepository.streamGradesByProject(projectId, false)).thenReturn(Stream.<Object[]>of(
+                new Object[]{1, "John Doe", Gender.MAN, true, 1, 90f}));
 
-        byte[] result = gradeService.createStudentIndividualGradesCSVReport(projectId);
+        gradeService.writeStudentIndividualGradesCSVReport(projectId, outputStream);
 
         String expectedCsv = """
                 "","","","Test Grade"
                 "","","","1.0"
                 "John Doe","M","B","90.0"
                 """;
-        String actualCsv = new String(result);
+        String actualCsv = outputStream.toString();
 
         assertEquals(expectedCsv, actualCsv);
+        verify(gradeRepository, never()).findValueByStudentAndGradeType(any(), any());
     }
 
     @Test
-    void createStudentIndividualGradesCSVReportShouldHandleNoGrades() throws IOException {
+    void writeStudentIndividualGradesCSVReportShouldPivotTheGradesOfEachStudent() throws IOException {
         int projectId = 1;
-        Student student = new Student();
-        student.name("John Doe");
-        student.gender(Gender.MAN);
-        student.bachelor(true);
-        List<Student> students = Collections.singletonList(student);
-        List<GradeType> gradeTypes = Collections.emptyList();
+        GradeType gradeType1 = new GradeType();
+        gradeType1.id(1);
+        gradeType1.name("Grade 1");
+        gradeType1.factor(1f);
+        GradeType gradeType2 = new GradeType();
+        gradeType2.id(2);
+        gradeType2.name("Grade 2");
+        gradeType2.factor(2f);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 
-        when(studentRepository.findAllByProject(projectId)).thenReturn(students);
-        when(gradeRepository.findAllUnimportedGradeTypesByProjectId(projectId)).thenReturn(gradeTypes);
+        when(gradeRepository.findAllUnimportedGradeTypesByProjectId(projectId)).thenReturn(List.of(gradeType1, gradeType2));
+        when(gradeRepository.streamGradesByProject(projectId, false)).thenReturn(Stream.of(
+                new Object[]{1, "John Doe", Gender.MAN, false, 2, 12f},
+                new Object[]{1, "John Doe", Gender.MAN, false, 1, 10f},
+                new Object[]{2, "Jane Doe", Gender.WOMAN, false, null, null}));
 
-        byte[] result = gradeService.createStudentIndividualGradesCSVReport(projectId);
+        gradeService.writeStudentIndividualGradesCSVReport(projectId, outputStream);
+
+        String expectedCsv = """
+                "","","","Grade 1","Grade 2"
+                "","","","1.0","2.0"
+                "John Doe","M","","10.0","12.0"
+                "Jane Doe","F","","",""
+                """;
+
+        assertEquals(expectedCsv, outputStream.toString());
+    }
+
+    @Test
+    void writeStudentIndividualGradesCSVReportShouldHandleNoGrades() throws IOException {
+        int projectId = 1;
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        when(gradeRepository.findAllUnimportedGradeTypesByProjectId(projectId)).thenReturn(Collections.emptyList());
+        when(gradeRepository.streamGradesByProject(projectId, false)).thenReturn(Stream.<Object[]>of(
+                new Object[]{1, "John Doe", Gender.MAN, true, null, null}));
+
+        gradeService.writeStudentIndividualGradesCSVReport(projectId, outputStream);
 
         String expectedCsv = """
                 "","",""
                 "","",""
                 "John Doe","M","B"
                 """;
-        String actualCsv = new String(result);
+        String actualCsv = outputStream.toString();
 
         assertEquals(expectedCsv, actualCsv);
     }
@@ -773,38 +840,13 @@ class GradeServiceTest {
     @Test
     void testUpdateImportedMean() {
         Integer projectId = 1;
+        when(gradeRepository.updateImportedMeansByProject(projectId)).thenReturn(2);
 
-        // Mock students
-        Student student1 = mock(Student.class);
-        Student student2 = mock(Student.class);
-        when(student1.id()).thenReturn(1);
-        when(student2.id()).thenReturn(2);
-        when(student1.bachelor()).thenReturn(false);
-        when(student2.bachelor()).thenReturn(true); // Bachelor student to be skipped
-        when(studentRepository.findAllByProject(projectId)).thenReturn(List.of(student1, student2));
-
-        // Mock grades
-        Grade grade1 = mock(Grade.class);
-        Grade grade2 = mock(Grade.class);
-        GradeType gradeType1 = mock(GradeType.class);
-        GradeType gradeType2 = mock(GradeType.class);
-        when(grade1.student()).thenReturn(student1);
-        when(grade2.student()).thenReturn(student2);
-        when(grade1.gradeType()).thenReturn(gradeType1);
-        when(grade2.gradeType()).thenReturn(gradeType2);
-        when(gradeType1.imported()).thenReturn(true);
-        when(gradeType1.name()).thenReturn(GradeTypeName.AVERAGE.displayName());
-        when(gradeType2.imported()).thenReturn(true);
-        when(gradeType2.name()).thenReturn("OtherGrade");
-        when(gradeRepository.findAll()).thenReturn(List.of(grade1, grade2));
-
-        // Call the method to test
         gradeService.updateImportedMean(projectId);
 
-        // Verify methods were called
-        verify(studentRepository).findAllByProject(projectId);
-        verify(gradeRepository).findAll();
-
+        verify(gradeRepository, times(1)).updateImportedMeansByProject(projectId);
+        verify(gradeRepository, never()).findAll();
+        verify(gradeRepository, never()).updateImportedMeanByStudentId(anyFloat(), anyInt());
     }
 
     @Test
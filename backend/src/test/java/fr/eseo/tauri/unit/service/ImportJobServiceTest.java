@@ -0,0 +1,108 @@
+package fr.eseo.tauri.unit.service;
+
+import com.opencsv.exceptions.CsvValidationException;
+import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.model.ImportJob;
+import fr.eseo.tauri.model.enumeration.ImportJobStatus;
+import fr.eseo.tauri.service.ImportJobService;
+import fr.eseo.tauri.service.StudentImportService;
+import fr.eseo.tauri.service.TeamGenerationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@Nested
+class ImportJobServiceTest {
+
+    @Mock
+    private StudentImportService studentImportService;
+
+    @Mock
+    private TaskExecutor importExecutor;
+
+    @Mock
+    private TeamGenerationService teamGenerationService;
+
+    @InjectMocks
+    private ImportJobService importJobService;
+
+    @BeforeEach
+    void init_mocks() {
+        MockitoAnnotations.openMocks(this);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(importExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    void submitShouldRunTheImportOnTheExecutor() throws IOException, CsvValidationException {
+        ImportJob job = importJobService.submit("content".getBytes(), 1);
+
+        assertEquals(ImportJobStatus.COMPLETED, job.status());
+        assertNotNull(job.finishedAt());
+        assertNull(job.content());
+        assertSame(job, importJobService.getJob(job.id()));
+        verify(studentImportService, times(1)).importStudents(job);
+        verify(teamGenerationService, times(1)).invalidateSnapshots();
+    }
+
+    @Test
+    void submitShouldForgetTheJobWhenTheExecutorIsFull() {
+        doThrow(new TaskRejectedException("Queue full")).when(importExecutor).execute(any(Runnable.class));
+
+        assertThrows(TaskRejectedException.class, () -> importJobService.submit("content".getBytes(), 1));
+        assertThrows(ResourceNotFoundException.class, () -> importJobService.getJob(1));
+    }
+
+    @Test
+    void failedJobShouldKeepItsContentAndBeResumable() throws IOException, CsvValidationException {
+        doThrow(new IllegalStateException("Connection lost")).doNothing().when(studentImportService).importStudents(any(ImportJob.class));
+
+        ImportJob job = importJobService.submit("content".getBytes(), 1);
+
+        assertEquals(ImportJobStatus.FAILED, job.status());
+        assertEquals("Connection lost", job.error());
+        assertNotNull(job.content());
+
+        importJobService.resume(job.id());
+
+        assertEquals(ImportJobStatus.COMPLETED, job.status());
+        assertNull(job.error());
+        verify(studentImportService, times(2)).importStudents(job);
+    }
+
+    @Test
+    void resumeShouldKeepTheJobFailedWhenTheExecutorIsFull() throws IOException, CsvValidationException {
+        doThrow(new IllegalStateException("Connection lost")).when(studentImportService).importStudents(any(ImportJob.class));
+        ImportJob job = importJobService.submit("content".getBytes(), 1);
+        Integer jobId = job.id();
+        doThrow(new TaskRejectedException("Queue full")).when(importExecutor).execute(any(Runnable.class));
+
+        assertThrows(TaskRejectedException.class, () -> importJobService.resume(jobId));
+
+        assertEquals(ImportJobStatus.FAILED, job.status());
+        assertEquals("Connection lost", job.error());
+        assertNotNull(job.finishedAt());
+        assertNotNull(job.content());
+    }
+
+    @Test
+    void resumeShouldThrowExceptionWhenTheJobHasNotFailed() {
+        ImportJob job = importJobService.submit("content".getBytes(), 1);
+        Integer jobId = job.id();
+
+        assertThrows(IllegalArgumentException.class, () -> importJobService.resume(jobId));
+    }
+
+}
@@ -2,9 +2,13 @@ package fr.eseo.tauri.unit.service;
 
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.Notification;
+import fr.eseo.tauri.model.NotificationBroadcast;
 import fr.eseo.tauri.model.User;
+import fr.eseo.tauri.model.enumeration.NotificationType;
+import fr.eseo.tauri.repository.NotificationBroadcastRepository;
 import fr.eseo.tauri.repository.NotificationRepository;
 import fr.eseo.tauri.service.NotificationService;
+import fr.eseo.tauri.service.NotificationStreamService;
 import fr.eseo.tauri.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
@@ -12,6 +16,8 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -29,6 +35,15 @@ class NotificationServiceTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private NotificationStreamService notificationStreamService;
+
+    @Mock
+    private NotificationBroadcastRepository notificationBroadcastRepository;
+
+    @Mock
+    private TaskExecutor notificationExecutor;
+
     @InjectMocks
     private NotificationService notificationService;
 
@@ -91,6 +106,104 @@ class NotificationServiceTest {
         notificationService.createNotification(notification);
 
         verify(notificationRepository, times(1)).save(notification);
+        verify(notificationStreamService, times(1)).publish(notification);
+    }
+
+    @Test
+    void subscribeShouldThrowResourceNotFoundExceptionWhenUserDoesNotExist() {
+        when(userService.getUserById(1)).thenThrow(new ResourceNotFoundException("user", 1));
+
+        assertThrows(ResourceNotFoundException.class, () -> notificationService.subscribe(1, null));
+        verify(notificationStreamService, never()).subscribe(anyInt(), any());
+    }
+
+    @Test
+    void getNotificationPageByUserShouldCapThePageSize() {
+        notificationService.getNotificationPageByUser(1, 10, 500);
+        notificationService.getNotificationPageByUser(1, null, null);
+
+        verify(notificationRepository, times(1)).findPageByUser(1, 10, PageRequest.of(0, NotificationService.MAX_PAGE_SIZE));
+        verify(notificationRepository, times(1)).findPageByUser(1, null, PageRequest.of(0, NotificationService.DEFAULT_PAGE_SIZE));
+    }
+
+    @Test
+    void countUncheckedNotificationsShouldBeCachedUntilAWrite() {
+        User user = new User().id(2);
+        Notification existingNotification = new Notification();
+        existingNotification.id(1);
+        existingNotification.userTo(user);
+        Notification notification = new Notification();
+        notification.userFromId(1);
+        notification.userToId(2);
+        when(notificationRepository.countUncheckedByUser(2)).thenReturn(3L, 4L, 3L);
+        when(notificationRepository.findById(1)).thenReturn(Optional.of(existingNotification));
+        when(userService.getUserById(anyInt())).thenReturn(user);
+
+        assertEquals(3L, notificationService.countUncheckedNotifications(2));
+        assertEquals(3L, notificationService.countUncheckedNotifications(2));
+        notificationService.createNotification(notification);
+        assertEquals(4L, notificationService.countUncheckedNotifications(2));
+        notificationService.changeCheckedNotification(1);
+        assertEquals(3L, notificationService.countUncheckedNotifications(2));
+
+        verify(notificationRepository, times(3)).countUncheckedByUser(2);
+    }
+
+    @Test
+    void countUncheckedNotificationsShouldNotCountTwiceANotificationCreatedDuringTheLoad() {
+        User user = new User().id(2);
+        Notification notification = new Notification();
+        notification.userFromId(1);
+        notification.userToId(2);
+        when(userService.getUserById(anyInt())).thenReturn(user);
+        when(notificationRepository.countUncheckedByUser(2)).thenReturn(4L);
+        // Another request loads the count between the insert of the notification and the cache write
+        when(notificationRepository.save(notification)).thenAnswer(invocation -> {
+            assertEquals(4L, notificationService.countUncheckedNotifications(2));
+            return notification;
+        });
+
+        notificationService.createNotification(notification);
+
+        assertEquals(4L, notificationService.countUncheckedNotifications(2));
+    }
+
+    @Test
+    void checkAllNotificationsShouldUpdateOnceAndReloadTheCount() {
+        when(notificationRepository.countUncheckedByUser(2)).thenReturn(3L, 0L);
+
+        assertEquals(3L, notificationService.countUncheckedNotifications(2));
+        notificationService.checkAllNotifications(2);
+
+        assertEquals(0L, notificationService.countUncheckedNotifications(2));
+        verify(notificationRepository, times(1)).checkAllByUser(2);
+        verify(notificationRepository, never()).save(any(Notification.class));
+    }
+
+    @Test
+    void broadcastNotificationShouldThrowExceptionWithoutRecipients() {
+        NotificationBroadcast broadcast = new NotificationBroadcast().message("Teams published").type(NotificationType.CREATE_TEAMS).userFromId(1);
+
+        assertThrows(IllegalArgumentException.class, () -> notificationService.broadcastNotification(broadcast));
+        verify(notificationExecutor, never()).execute(any());
+    }
+
+    @Test
+    void broadcastNotificationShouldInsertTheNotificationsWithOneBatchInTheBackground() {
+        NotificationBroadcast broadcast = new NotificationBroadcast().message("Teams published").type(NotificationType.CREATE_TEAMS).userFromId(1).projectId(3);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(notificationExecutor).execute(any());
+        when(userService.getUserById(1)).thenReturn(new User().id(1));
+        when(notificationBroadcastRepository.findRecipientIds(3, null, null)).thenReturn(List.of(5, 6));
+        when(notificationBroadcastRepository.insertNotifications(List.of(5, 6), "Teams published", NotificationType.CREATE_TEAMS, 1)).thenReturn(List.of(10, 11));
+
+        notificationService.broadcastNotification(broadcast);
+
+        verify(notificationBroadcastRepository, times(1)).insertNotifications(List.of(5, 6), "Teams published", NotificationType.CREATE_TEAMS, 1);
+        verify(notificationStreamService, times(2)).publish(any(Notification.class));
+        verify(notificationRepository, never()).save(any(Notification.class));
     }
 
     @Test
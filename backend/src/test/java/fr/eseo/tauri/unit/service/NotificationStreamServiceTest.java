@@ -0,0 +1,110 @@
+package fr.eseo.tauri.unit.service;
+
+import fr.eseo.tauri.model.Notification;
+import fr.eseo.tauri.model.User;
+import fr.eseo.tauri.repository.NotificationRepository;
+import fr.eseo.tauri.service.NotificationStreamService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@Nested
+class NotificationStreamServiceTest {
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    @Mock
+    private TaskExecutor notificationExecutor;
+
+    @InjectMocks
+    private NotificationStreamService notificationStreamService;
+
+    @BeforeEach
+    void init_mocks() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private static Notification notification(Integer id, Integer userToId) {
+        Notification notification = new Notification();
+        notification.id(id);
+        notification.userTo(new User().id(userToId));
+        return notification;
+    }
+
+    @Test
+    void subscribeShouldReplayTheNotificationsMissedSinceTheLastEventId() {
+        when(notificationRepository.findByUserAfter(1, 5, PageRequest.of(0, NotificationStreamService.REPLAY_LIMIT)))
+                .thenReturn(List.of(notification(7, 1), notification(6, 1)));
+
+        assertNotNull(notificationStreamService.subscribe(1, 5));
+
+        assertEquals(1, notificationStreamService.countSubscribers(1));
+        verify(notificationExecutor, times(1)).execute(any());
+    }
+
+    @Test
+    void subscribeShouldNotReplayWithoutLastEventId() {
+        notificationStreamService.subscribe(1, null);
+
+        verify(notificationRepository, never()).findByUserAfter(any(), any(), any());
+        verify(notificationExecutor, never()).execute(any());
+    }
+
+    @Test
+    void publishShouldOnlyReachTheStreamsOfTheRecipient() {
+        notificationStreamService.subscribe(1, null);
+
+        notificationStreamService.publish(notification(1, 2));
+        verify(notificationExecutor, never()).execute(any());
+
+        notificationStreamService.publish(notification(2, 1));
+        verify(notificationExecutor, times(1)).execute(any());
+    }
+
+    @Test
+    void publishShouldCloseTheStreamsWhichCanNotKeepUp() {
+        // The drain task never runs, like with a client which stopped reading
+        notificationStreamService.subscribe(1, null);
+        notificationStreamService.subscribe(2, null);
+
+        for (int i = 0; i <= NotificationStreamService.BUFFER_SIZE; i++) {
+            notificationStreamService.publish(notification(i, 1));
+        }
+
+        assertEquals(0, notificationStreamService.countSubscribers(1));
+        assertEquals(1, notificationStreamService.countSubscribers(2));
+    }
+
+    @Test
+    void replayShouldNotCountInTheBufferOfTheStream() {
+        // A full replay, larger than the buffer, that the client has not read yet
+        List<Notification> missed = new ArrayList<>();
+        for (int i = NotificationStreamService.REPLAY_LIMIT; i > 0; i--) {
+            missed.add(notification(i, 1));
+        }
+        when(notificationRepository.findByUserAfter(1, 0, PageRequest.of(0, NotificationStreamService.REPLAY_LIMIT))).thenReturn(missed);
+        notificationStreamService.subscribe(1, 0);
+
+        for (int i = 1; i < NotificationStreamService.BUFFER_SIZE; i++) {
+            notificationStreamService.publish(notification(NotificationStreamService.REPLAY_LIMIT + i, 1));
+        }
+        assertEquals(1, notificationStreamService.countSubscribers(1));
+
+        notificationStreamService.publish(notification(NotificationStreamService.REPLAY_LIMIT + NotificationStreamService.BUFFER_SIZE, 1));
+        notificationStreamService.publish(notification(NotificationStreamService.REPLAY_LIMIT + NotificationStreamService.BUFFER_SIZE + 1, 1));
+        assertEquals(0, notificationStreamService.countSubscribers(1));
+    }
+
+}
@@ -5,6 +5,7 @@ import fr.eseo.tauri.model.Permission;
 import fr.eseo.tauri.model.enumeration.PermissionType;
 import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.PermissionRepository;
+import fr.eseo.tauri.security.RoleVersions;
 import fr.eseo.tauri.service.PermissionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
@@ -15,6 +16,7 @@ import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +29,9 @@ class PermissionsServiceTest {
     @Mock
     private PermissionRepository permissionRepository;
 
+    @Mock
+    private RoleVersions roleVersions;
+
     @InjectMocks
     private PermissionService permissionService;
 
@@ -122,6 +127,40 @@ class PermissionsServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> permissionService.deletePermission(id));
     }
 
+    private static Permission permission(RoleType role, PermissionType type) {
+        Permission permission = new Permission();
+        permission.role(role);
+        permission.type(type);
+        return permission;
+    }
+
+    @Test
+    void hasPermissionShouldLoadTheMatrixOnceUntilThePermissionsChange() {
+        when(permissionRepository.findAll()).thenReturn(List.of(
+                permission(RoleType.PROJECT_LEADER, PermissionType.MANAGE_PROJECT),
+                permission(RoleType.TEAM_MEMBER, PermissionType.VIEW_OWN_TEAM)));
+
+        assertTrue(permissionService.hasPermission(List.of(RoleType.PROJECT_LEADER), PermissionType.MANAGE_PROJECT));
+        assertFalse(permissionService.hasPermission(List.of(RoleType.TEAM_MEMBER), PermissionType.MANAGE_PROJECT));
+        assertEquals(EnumSet.of(PermissionType.MANAGE_PROJECT, PermissionType.VIEW_OWN_TEAM),
+                permissionService.getPermissionsByRoles(List.of(RoleType.PROJECT_LEADER, RoleType.TEAM_MEMBER, RoleType.JURY_MEMBER)));
+        verify(permissionRepository, times(1)).findAll();
+
+        permissionService.createPermission(permission(RoleType.TEAM_MEMBER, PermissionType.MANAGE_PROJECT));
+        permissionService.hasPermission(List.of(RoleType.TEAM_MEMBER), PermissionType.MANAGE_PROJECT);
+
+        verify(permissionRepository, times(2)).findAll();
+        verify(roleVersions, times(1)).bumpAll();
+    }
+
+    @Test
+    void fromBitmapShouldReturnThePermissionsOfToBitmap() {
+        EnumSet<PermissionType> permissions = EnumSet.of(PermissionType.values()[0], PermissionType.MANAGE_PROJECT, PermissionType.values()[PermissionType.values().length - 1]);
+
+        assertEquals(permissions, PermissionService.fromBitmap(PermissionService.toBitmap(permissions)));
+        assertEquals(EnumSet.noneOf(PermissionType.class), PermissionService.fromBitmap(PermissionService.toBitmap(EnumSet.noneOf(PermissionType.class))));
+    }
+
     @Test
     void deleteAllPermissionsShouldDeleteAllPermissionsWhenAuthorized() {
         permissionService.deleteAllPermissions();
@@ -4,17 +4,21 @@ import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.PresentationOrder;
 import fr.eseo.tauri.model.Student;
 import fr.eseo.tauri.repository.PresentationOrderRepository;
+import fr.eseo.tauri.repository.SprintProvisioningRepository;
 import fr.eseo.tauri.service.PresentationOrderService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,6 +30,8 @@ class PresentationOrderServiceTest {
     @Mock
     private PresentationOrderRepository presentationOrderRepository;
 
+    @Mock
+    private SprintProvisioningRepository sprintProvisioningRepository;
 
     @InjectMocks
     private PresentationOrderService presentationOrderService;
@@ -163,43 +169,49 @@ class PresentationOrderServiceTest {
     }
 
     @Test
-    void updatePresentationOrderByTeamIdAndSprintIdShouldUpdateOrderValuesWhenMatchingStudentsExist() {
+    @SuppressWarnings("unchecked")
+    void updatePresentationOrderByTeamIdAndSprintIdShouldWriteThePositionsWithOneBatch() {
         Integer teamId = 1;
-        Integer sprintId = 1;
-        Student student = new Student();
-        student.id(1);
-        PresentationOrder order = new PresentationOrder();
-        order.student(student);
-        List<PresentationOrder> orders = Collections.singletonList(order);
-        List<Student> students = Collections.singletonList(student);
-
-        when(presentationOrderService.getPresentationOrderByTeamIdAndSprintId(teamId, sprintId)).thenReturn(orders);
+        Integer sprintId = 2;
+        Student student1 = new Student();
+        student1.id(10);
+        Student student2 = new Student();
+        student2.id(20);
 
-        presentationOrderService.updatePresentationOrderByTeamIdAndSprintId(teamId, sprintId, students);
+        presentationOrderService.updatePresentationOrderByTeamIdAndSprintId(teamId, sprintId, List.of(student2, student1));
 
-        assertEquals(1, order.value());
-        verify(presentationOrderRepository, times(1)).save(order);
+        ArgumentCaptor<List<Integer[]>> positions = ArgumentCaptor.forClass(List.class);
+        verify(sprintProvisioningRepository, times(1)).updatePresentationOrders(positions.capture());
+        assertEquals(2, positions.getValue().size());
+        assertArrayEquals(new Integer[]{20, 2, 1, 1}, positions.getValue().get(0));
+        assertArrayEquals(new Integer[]{10, 2, 2, 1}, positions.getValue().get(1));
+        verify(presentationOrderRepository, never()).save(any(PresentationOrder.class));
     }
 
     @Test
-    void updatePresentationOrderByTeamIdAndSprintIdShouldNotUpdateOrderValuesWhenNoMatchingStudentsExist() {
-        Integer teamId = 1;
-        Integer sprintId = 1;
-        Student student1 = new Student();
-        student1.id(1);
-        Student student2 = new Student();
-        student2.id(2);
-        PresentationOrder order = new PresentationOrder();
-        order.student(student1);
-        List<PresentationOrder> orders = Collections.singletonList(order);
-        List<Student> students = Collections.singletonList(student2);
+    void updatePresentationOrderByTeamIdAndSprintIdShouldNotWriteAnythingWithoutStudents() {
+        presentationOrderService.updatePresentationOrderByTeamIdAndSprintId(1, 1, Collections.emptyList());
 
-        when(presentationOrderService.getPresentationOrderByTeamIdAndSprintId(teamId, sprintId)).thenReturn(orders);
-
-        presentationOrderService.updatePresentationOrderByTeamIdAndSprintId(teamId, sprintId, students);
+        verify(sprintProvisioningRepository, never()).updatePresentationOrders(anyList());
+    }
 
-        assertNull(order.value());
-        verify(presentationOrderRepository, times(0)).save(order);
+    @Test
+    @SuppressWarnings("unchecked")
+    void publishPresentationOrdersShouldWriteTheOrdersOfEveryTeamWithOneBatch() {
+        Map<Integer, List<Integer>> studentIdsByTeamId = new LinkedHashMap<>();
+        studentIdsByTeamId.put(1, List.of(10, 11));
+        studentIdsByTeamId.put(2, List.of(20));
+
+        when(sprintProvisioningRepository.updatePresentationOrders(anyList())).thenReturn(3);
+
+        int result = presentationOrderService.publishPresentationOrders(5, studentIdsByTeamId);
+
+        assertEquals(3, result);
+        ArgumentCaptor<List<Integer[]>> positions = ArgumentCaptor.forClass(List.class);
+        verify(sprintProvisioningRepository, times(1)).updatePresentationOrders(positions.capture());
+        assertEquals(3, positions.getValue().size());
+        assertArrayEquals(new Integer[]{11, 5, 2, 1}, positions.getValue().get(1));
+        assertArrayEquals(new Integer[]{20, 5, 1, 2}, positions.getValue().get(2));
     }
 
 }
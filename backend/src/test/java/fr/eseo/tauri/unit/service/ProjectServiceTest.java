@@ -126,6 +126,23 @@ class ProjectServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> projectService.getActualProject());
     }
 
+    @Test
+    void getActualProjectIdShouldLoadTheIdOnceUntilTheActualProjectChanges() {
+        Project project = new Project();
+        project.id(2);
+        when(projectRepository.findFirstByActualTrue()).thenReturn(Optional.empty()).thenReturn(Optional.of(project));
+        when(projectRepository.findById(2)).thenReturn(Optional.of(project));
+
+        assertEquals(0, projectService.getActualProjectId());
+        assertEquals(0, projectService.getActualProjectId());
+        verify(projectRepository, times(1)).findFirstByActualTrue();
+
+        projectService.setActualProject(2);
+
+        assertEquals(2, projectService.getActualProjectId());
+        verify(projectRepository, times(3)).findFirstByActualTrue();
+    }
+
     @Test
     void setActualProjectShouldSetWhenIdExists() {
         Project project = new Project();
@@ -133,9 +133,7 @@ class RoleServiceTest {
     void hasPermissionShouldReturnFalseWhenPermissionDoesNotExist() {
         RoleType roleType = RoleType.OPTION_LEADER;
         PermissionType permissionType = PermissionType.ADD_GRADE_COMMENT;
-        List<Permission> permissions = List.of(new Permission());
-
-        when(permissionService.getAllPermissionsByRole(roleType)).thenReturn(permissions);
+        when(permissionService.hasPermission(List.of(roleType), permissionType)).thenReturn(false);
 
         Boolean result = roleService.hasPermission(roleType, permissionType);
 
@@ -150,6 +148,7 @@ class RoleServiceTest {
         Integer projectId = 1;
 
         User user = new User();
+        user.id(3);
         user.email(email);
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
@@ -157,6 +156,8 @@ class RoleServiceTest {
         roleService.createRoles(email, roles, projectId);
 
         verify(roleRepository, times(1)).save(any(Role.class));
+        verify(userService, times(1)).invalidateRoles(3);
+        verify(userService, never()).invalidateAllRoles();
     }
 
     @Test
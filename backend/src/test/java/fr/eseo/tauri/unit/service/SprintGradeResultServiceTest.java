@@ -0,0 +1,241 @@
+package fr.eseo.tauri.unit.service;
+
+import fr.eseo.tauri.model.*;
+import fr.eseo.tauri.repository.SprintGradeResultRepository;
+import fr.eseo.tauri.repository.SprintRepository;
+import fr.eseo.tauri.repository.TeamRepository;
+import fr.eseo.tauri.repository.TeamSprintGradeResultRepository;
+import fr.eseo.tauri.service.SprintGradeResultService;
+import fr.eseo.tauri.service.SprintGradeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.stubbing.Answer;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@Nested
+class SprintGradeResultServiceTest {
+
+    @Mock
+    private SprintGradeResultRepository sprintGradeResultRepository;
+
+    @Mock
+    private TeamSprintGradeResultRepository teamSprintGradeResultRepository;
+
+    @Mock
+    private SprintGradeService sprintGradeService;
+
+    @Mock
+    private TeamRepository teamRepository;
+
+    @Mock
+    private SprintRepository sprintRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private SprintGradeResultService sprintGradeResultService;
+
+    private final AtomicBoolean inTransaction = new AtomicBoolean();
+
+    @BeforeEach
+    void init_mocks() {
+        MockitoAnnotations.openMocks(this);
+        doAnswer(invocation -> {
+            inTransaction.set(true);
+            try {
+                return ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null);
+            } finally {
+                inTransaction.set(false);
+            }
+        }).when(transactionTemplate).execute(any());
+    }
+
+    private static TeamSprintGradeResult teamResult(Integer teamId, Integer sprintId, String sprintGrades, Boolean computed) {
+        TeamSprintGradeResult result = new TeamSprintGradeResult();
+        result.team(new Team().id(teamId));
+        result.sprint(new Sprint().id(sprintId));
+        result.sprintGrades(sprintGrades);
+        result.computed(computed);
+        return result;
+    }
+
+    private SprintGradeService.SprintGrades loadedSprintGrades(List<Integer> teamIds, Integer sprintId) {
+        SprintGradeService.SprintGrades sprintGrades = mock(SprintGradeService.SprintGrades.class);
+        when(sprintGradeService.load(teamIds, sprintId)).thenReturn(sprintGrades);
+        return sprintGrades;
+    }
+
+    @Test
+    void getTeamSprintGradesShouldReturnTheMaterializedGradesWithoutComputingThem() {
+        when(teamSprintGradeResultRepository.findByTeamAndSprint(1, 1)).thenReturn(teamResult(1, 1, "14.9;20.0", true));
+
+        List<Double> result = sprintGradeResultService.getTeamSprintGrades(1, 1);
+
+        assertEquals(List.of(14.9, 20.0), result);
+        verify(sprintGradeService, never()).load(anyList(), anyInt());
+    }
+
+    @Test
+    void getTeamSprintGradesShouldMaterializeTheGradesOnTheFirstRead() {
+        SprintGradeService.SprintGrades sprintGrades = loadedSprintGrades(List.of(1), 1);
+        when(sprintGrades.students(1)).thenReturn(List.of((Student) new Student().id(10), (Student) new Student().id(11)));
+        when(sprintGrades.hasSprintGrades(1)).thenReturn(true);
+        when(sprintGrades.hasStudentSprintGrade(anyInt(), eq(1))).thenReturn(true);
+        when(sprintGrades.sprintGrades(1)).thenReturn(List.of(14.9, 20.0));
+        when(sprintGrades.studentSprintGrade(10, 1)).thenReturn(14.9);
+        when(sprintGrades.studentSprintGrade(11, 1)).thenReturn(20.0);
+
+        List<Double> result = sprintGradeResultService.getTeamSprintGrades(1, 1);
+
+        assertEquals(List.of(14.9, 20.0), result);
+        verify(sprintGradeResultRepository, times(1)).deleteAllByTeamAndSprint(1, 1);
+        verify(sprintGradeResultRepository, times(1)).upsert(10, 1, 1, 14.9, 14.9);
+        verify(sprintGradeResultRepository, times(1)).upsert(11, 1, 1, 20.0, 20.0);
+        verify(teamSprintGradeResultRepository, times(1)).upsert(1, 1, "14.9;20.0", true);
+    }
+
+    @Test
+    void getTeamSprintGradesShouldFallBackToTheLiveComputationWhenTheGradesCannotBeMaterialized() {
+        when(teamSprintGradeResultRepository.findByTeamAndSprint(1, 1)).thenReturn(teamResult(1, 1, null, false));
+        when(sprintGradeService.getSprintGrades(1, 1)).thenReturn(List.of(Double.NaN));
+
+        List<Double> result = sprintGradeResultService.getTeamSprintGrades(1, 1);
+
+        assertEquals(List.of(Double.NaN), result);
+        verify(sprintGradeService, times(1)).getSprintGrades(1, 1);
+    }
+
+    @Test
+    void refreshShouldNotMaterializeGradesThatCannotBeComputed() {
+        SprintGradeService.SprintGrades sprintGrades = loadedSprintGrades(List.of(1), 1);
+        when(sprintGrades.students(1)).thenReturn(List.of((Student) new Student().id(10)));
+        when(sprintGrades.hasSprintGrades(1)).thenReturn(false);
+        when(sprintGrades.hasStudentSprintGrade(10, 1)).thenReturn(false);
+
+        TeamSprintGradeResult result = sprintGradeResultService.refresh(1, 1);
+
+        assertFalse(result.computed());
+        verify(sprintGrades, never()).sprintGrades(anyInt());
+        verify(sprintGrades, never()).studentSprintGrade(anyInt(), anyInt());
+        verify(sprintGradeResultRepository, times(1)).upsert(10, 1, 1, null, null);
+        verify(teamSprintGradeResultRepository, times(1)).upsert(1, 1, null, false);
+    }
+
+    @Test
+    void refreshShouldIgnoreGradesWithoutSprint() {
+        Grade grade = new Grade().team(new Team().id(1));
+
+        sprintGradeResultService.refresh(grade);
+
+        verify(sprintGradeService, never()).load(anyList(), anyInt());
+    }
+
+    @Test
+    void refreshShouldRecomputeTheTeamOfAStudentGrade() {
+        Grade grade = new Grade().sprint(new Sprint().id(2)).student(new Student().team(new Team().id(1)));
+        SprintGradeService.SprintGrades sprintGrades = loadedSprintGrades(List.of(1), 2);
+        when(sprintGrades.students(1)).thenReturn(List.of());
+        when(sprintGrades.hasSprintGrades(1)).thenReturn(true);
+        when(sprintGrades.sprintGrades(1)).thenReturn(List.of(-1.0));
+
+        sprintGradeResultService.refresh(grade);
+
+        verify(teamSprintGradeResultRepository, times(1)).upsert(1, 2, "-1.0", true);
+    }
+
+    @Test
+    void getStudentSprintGradeShouldReturnTheMaterializedGrade() {
+        when(sprintGradeResultRepository.findStudentSprintGrade(10, 1)).thenReturn(15.25);
+
+        Double result = sprintGradeResultService.getStudentSprintGrade(10, 1, 1);
+
+        assertEquals(15.25, result);
+        verify(sprintGradeService, never()).load(anyList(), anyInt());
+    }
+
+    @Test
+    void getStudentSprintGradeShouldNotRefreshATeamWhoseGradeCannotBeMaterialized() {
+        when(sprintGradeResultRepository.findStudentSprintGrade(10, 1)).thenReturn(null);
+        when(teamSprintGradeResultRepository.findByTeamAndSprint(1, 1)).thenReturn(teamResult(1, 1, null, false));
+        when(sprintGradeService.getStudentSprintGrade(10, 1, 1)).thenReturn(Double.NaN);
+
+        Double result = sprintGradeResultService.getStudentSprintGrade(10, 1, 1);
+
+        assertEquals(Double.NaN, result);
+        verify(sprintGradeService, never()).load(anyList(), anyInt());
+        verify(sprintGradeResultRepository, never()).deleteAllByTeamAndSprint(anyInt(), anyInt());
+    }
+
+    @Test
+    void getStudentSprintGradeShouldMaterializeTheTeamWhenItHasNoResult() {
+        SprintGradeService.SprintGrades sprintGrades = loadedSprintGrades(List.of(1), 1);
+        when(sprintGrades.students(1)).thenReturn(List.of((Student) new Student().id(10)));
+        when(sprintGrades.hasSprintGrades(1)).thenReturn(true);
+        when(sprintGrades.hasStudentSprintGrade(10, 1)).thenReturn(true);
+        when(sprintGrades.sprintGrades(1)).thenReturn(List.of(12.0));
+        when(sprintGrades.studentSprintGrade(10, 1)).thenReturn(12.0);
+        when(sprintGradeResultRepository.findStudentSprintGrade(10, 1)).thenReturn(null, 12.0);
+
+        Double result = sprintGradeResultService.getStudentSprintGrade(10, 1, 1);
+
+        assertEquals(12.0, result);
+        verify(teamSprintGradeResultRepository, times(1)).upsert(1, 1, "12.0", true);
+        verify(sprintGradeService, never()).getStudentSprintGrade(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void refreshShouldWriteTheResultsOfATeamInOneTransaction() {
+        SprintGradeService.SprintGrades sprintGrades = loadedSprintGrades(List.of(1), 1);
+        when(sprintGrades.students(1)).thenReturn(List.of((Student) new Student().id(10)));
+        when(sprintGrades.hasSprintGrades(1)).thenReturn(true);
+        when(sprintGrades.hasStudentSprintGrade(10, 1)).thenReturn(true);
+        when(sprintGrades.sprintGrades(1)).thenReturn(List.of(12.0));
+        when(sprintGrades.studentSprintGrade(10, 1)).thenReturn(12.0);
+        AtomicBoolean writtenOutsideTransaction = new AtomicBoolean();
+        Answer<Void> write = invocation -> {
+            if (!inTransaction.get()) writtenOutsideTransaction.set(true);
+            return null;
+        };
+        doAnswer(write).when(sprintGradeResultRepository).deleteAllByTeamAndSprint(anyInt(), anyInt());
+        doAnswer(write).when(sprintGradeResultRepository).upsert(anyInt(), anyInt(), anyInt(), any(), any());
+        doAnswer(write).when(teamSprintGradeResultRepository).upsert(anyInt(), anyInt(), any(), any());
+
+        sprintGradeResultService.refresh(new Grade().sprint(new Sprint().id(1)).team(new Team().id(1)));
+
+        verify(transactionTemplate, times(1)).execute(any());
+        verify(teamSprintGradeResultRepository, times(1)).upsert(1, 1, "12.0", true);
+        assertFalse(writtenOutsideTransaction.get());
+    }
+
+    @Test
+    void rebuildShouldCountTheResultsThatWereOutOfDate() {
+        when(teamSprintGradeResultRepository.findAllByProject(1)).thenReturn(List.of(teamResult(1, 1, "10.0", true), teamResult(2, 1, "12.0", true)));
+        when(teamRepository.findAllByProject(1)).thenReturn(List.of(new Team().id(1), new Team().id(2)));
+        when(sprintRepository.findAllByProject(1)).thenReturn(List.of(new Sprint().id(1)));
+        SprintGradeService.SprintGrades sprintGrades = loadedSprintGrades(List.of(1, 2), 1);
+        when(sprintGrades.students(anyInt())).thenReturn(List.of());
+        when(sprintGrades.hasSprintGrades(anyInt())).thenReturn(true);
+        when(sprintGrades.sprintGrades(1)).thenReturn(List.of(10.0));
+        when(sprintGrades.sprintGrades(2)).thenReturn(List.of(13.0));
+
+        int result = sprintGradeResultService.rebuild(1);
+
+        assertEquals(1, result);
+        verify(sprintGradeResultRepository, times(1)).deleteAllByProject(1);
+        verify(teamSprintGradeResultRepository, times(1)).deleteAllByProject(1);
+        verify(sprintGradeService, times(1)).load(List.of(1, 2), 1);
+    }
+
+}
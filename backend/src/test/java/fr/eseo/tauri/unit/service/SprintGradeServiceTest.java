@@ -0,0 +1,213 @@
+package fr.eseo.tauri.unit.service;
+
+import fr.eseo.tauri.model.GradeType;
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.Team;
+import fr.eseo.tauri.model.enumeration.GradeTypeName;
+import fr.eseo.tauri.repository.BonusRepository;
+import fr.eseo.tauri.repository.GradeRepository;
+import fr.eseo.tauri.repository.GradeTypeRepository;
+import fr.eseo.tauri.repository.StudentRepository;
+import fr.eseo.tauri.service.SprintGradeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@Nested
+class SprintGradeServiceTest {
+
+    private static final String GLOBAL_TEAM_PERFORMANCE = GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName();
+    private static final String INDIVIDUAL_PERFORMANCE = GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName();
+
+    @Mock
+    private GradeRepository gradeRepository;
+
+    @Mock
+    private GradeTypeRepository gradeTypeRepository;
+
+    @Mock
+    private BonusRepository bonusRepository;
+
+    @Mock
+    private StudentRepository studentRepository;
+
+    @InjectMocks
+    private SprintGradeService sprintGradeService;
+
+    @BeforeEach
+    void init_mocks() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(Arrays.asList(rows));
+    }
+
+    private static GradeType gradeType(String name) {
+        GradeType gradeType = new GradeType();
+        gradeType.name(name);
+        return gradeType;
+    }
+
+    private static Student student(Integer id, Team team) {
+        Student student = new Student();
+        student.id(id);
+        student.team(team);
+        return student;
+    }
+
+    @Test
+    void getTeamTotalGradeShouldReturnAverageOfTeacherGradedGradeTypes() {
+        Integer teamId = 1;
+        Integer sprintId = 1;
+
+        when(gradeTypeRepository.findTeacherGradedTeamGradeTypes()).thenReturn(List.of(gradeType("Solution Technique"), gradeType("Gestion de projet")));
+        when(gradeRepository.findAveragesByGradeTypeForTeams(List.of(teamId), sprintId)).thenReturn(rows(
+                new Object[]{teamId, "Solution Technique", 80.0},
+                new Object[]{teamId, "Gestion de projet", 90.0},
+                new Object[]{teamId, GLOBAL_TEAM_PERFORMANCE, 10.0}));
+
+        Double result = sprintGradeService.getTeamTotalGrade(teamId, sprintId);
+
+        assertEquals(85.0, result);
+    }
+
+    @Test
+    void getIndividualTotalGradesShouldReturnCorrectGradesWhenBothTeamAndIndividualGradesExist() {
+        Integer teamId = 1;
+        Integer sprintId = 1;
+        Team team = new Team().id(teamId);
+
+        when(studentRepository.findByTeams(List.of(teamId))).thenReturn(List.of(student(1, team), student(2, team)));
+        when(gradeRepository.findAveragesByGradeTypeForTeams(List.of(teamId), sprintId)).thenReturn(rows(new Object[]{teamId, GLOBAL_TEAM_PERFORMANCE, 15.0}));
+        when(gradeRepository.findAveragesByGradeTypeForTeamsStudents(List.of(teamId), sprintId, INDIVIDUAL_PERFORMANCE)).thenReturn(rows(new Object[]{1, 16.0}, new Object[]{2, 17.0}));
+
+        List<Double> result = sprintGradeService.getIndividualTotalGrades(teamId, sprintId);
+
+        assertEquals(2, result.size());
+        assertEquals(15.67, result.get(0));
+        assertEquals(16.33, result.get(1));
+    }
+
+    @Test
+    void getIndividualTotalGradesShouldReturnTeamGradesWhenIndividualGradesDoNotExist() {
+        Integer teamId = 1;
+        Integer sprintId = 1;
+        Team team = new Team().id(teamId);
+
+        when(studentRepository.findByTeams(List.of(teamId))).thenReturn(List.of(student(1, team), student(2, team)));
+        when(gradeRepository.findAveragesByGradeTypeForTeams(List.of(teamId), sprintId)).thenReturn(rows(new Object[]{teamId, GLOBAL_TEAM_PERFORMANCE, 15.0}));
+
+        List<Double> result = sprintGradeService.getIndividualTotalGrades(teamId, sprintId);
+
+        assertEquals(List.of(15.0, 15.0), result);
+    }
+
+    @Test
+    void getIndividualTotalGradesShouldReturnIndividualGradesWhenTeamGradesDoNotExist() {
+        Integer teamId = 1;
+        Integer sprintId = 1;
+        Team team = new Team().id(teamId);
+
+        when(studentRepository.findByTeams(List.of(teamId))).thenReturn(List.of(student(1, team), student(2, team)));
+        when(gradeRepository.findAveragesByGradeTypeForTeamsStudents(List.of(teamId), sprintId, INDIVIDUAL_PERFORMANCE)).thenReturn(rows(new Object[]{1, 16.0}, new Object[]{2, 17.0}));
+
+        List<Double> result = sprintGradeService.getIndividualTotalGrades(teamId, sprintId);
+
+        assertEquals(List.of(16.0, 17.0), result);
+    }
+
+    @Test
+    void getSprintGradesShouldReturnNegativeOneWhenTeamHasNoStudents() {
+        when(studentRepository.findByTeams(List.of(1))).thenReturn(Collections.emptyList());
+
+        List<Double> result = sprintGradeService.getSprintGrades(1, 1);
+
+        assertEquals(List.of(-1.0), result);
+    }
+
+    @Test
+    void getSprintGradesShouldCombineTeamGradeBonusesAndIndividualGrades() {
+        Integer teamId = 1;
+        Integer sprintId = 1;
+        Team team = new Team().id(teamId);
+
+        when(gradeTypeRepository.findTeacherGradedTeamGradeTypes()).thenReturn(List.of(gradeType("Solution Technique")));
+        when(studentRepository.findByTeams(List.of(teamId))).thenReturn(List.of(student(1, team), student(2, team)));
+        when(gradeRepository.findAveragesByGradeTypeForTeams(List.of(teamId), sprintId)).thenReturn(rows(new Object[]{teamId, "Solution Technique", 15.0}));
+        when(gradeRepository.findAveragesByGradeTypeForTeamsStudents(List.of(teamId), sprintId, INDIVIDUAL_PERFORMANCE)).thenReturn(rows(new Object[]{1, 10.0}, new Object[]{2, 20.0}));
+        when(bonusRepository.sumBonusesByTeams(List.of(teamId), sprintId)).thenReturn(rows(new Object[]{1, 2.0}, new Object[]{2, 8.0}));
+
+        List<Double> result = sprintGradeService.getSprintGrades(teamId, sprintId);
+
+        // 0.7 * min(15 + 2, 20) + 0.3 * 10 and 0.7 * min(15 + 8, 20) + 0.3 * 20
+        assertEquals(List.of(14.9, 20.0), result);
+    }
+
+    @Test
+    void getSprintGradesByTeamShouldLoadAllTeamsWithAFixedNumberOfQueries() {
+        Integer sprintId = 1;
+        Team team1 = new Team().id(1);
+        Team team2 = new Team().id(2);
+        List<Integer> teamIds = List.of(1, 2);
+
+        when(gradeTypeRepository.findTeacherGradedTeamGradeTypes()).thenReturn(List.of(gradeType("Solution Technique")));
+        when(studentRepository.findByTeams(teamIds)).thenReturn(List.of(student(1, team1), student(2, team2)));
+        when(gradeRepository.findAveragesByGradeTypeForTeams(teamIds, sprintId)).thenReturn(rows(
+                new Object[]{1, "Solution Technique", 10.0},
+                new Object[]{2, "Solution Technique", 20.0}));
+        when(gradeRepository.findAveragesByGradeTypeForTeamsStudents(teamIds, sprintId, INDIVIDUAL_PERFORMANCE)).thenReturn(rows(new Object[]{1, 10.0}, new Object[]{2, 20.0}));
+
+        Map<Integer, List<Double>> result = sprintGradeService.getSprintGradesByTeam(teamIds, sprintId);
+
+        assertEquals(List.of(10.0), result.get(1));
+        assertEquals(List.of(20.0), result.get(2));
+        verify(studentRepository, times(1)).findByTeams(teamIds);
+        verify(gradeRepository, times(1)).findAveragesByGradeTypeForTeams(teamIds, sprintId);
+        verify(gradeRepository, times(1)).findAveragesByGradeTypeForTeamsStudents(teamIds, sprintId, INDIVIDUAL_PERFORMANCE);
+        verify(bonusRepository, times(1)).sumBonusesByTeams(teamIds, sprintId);
+    }
+
+    @Test
+    void getStudentSprintGradeShouldNotRoundTheResult() {
+        Integer teamId = 1;
+        Integer sprintId = 1;
+
+        when(gradeTypeRepository.findTeacherGradedTeamGradeTypes()).thenReturn(List.of(gradeType("Solution Technique")));
+        when(gradeRepository.findAveragesByGradeTypeForTeams(List.of(teamId), sprintId)).thenReturn(rows(
+                new Object[]{teamId, "Solution Technique", 20.0},
+                new Object[]{teamId, GLOBAL_TEAM_PERFORMANCE, 10.0}));
+        when(gradeRepository.findAveragesByGradeTypeForTeamsStudents(List.of(teamId), sprintId, INDIVIDUAL_PERFORMANCE)).thenReturn(rows(new Object[]{1, 20.0}));
+
+        Double result = sprintGradeService.getStudentSprintGrade(1, teamId, sprintId);
+
+        assertEquals(0.7 * 20.0 + 0.3 * ((2 * 20.0 + 10.0) / 3), result);
+    }
+
+    @Test
+    void sprintGradesShouldReportTheGradesThatCannotBeComputed() {
+        Integer sprintId = 1;
+        Team team1 = new Team().id(1);
+        Team team2 = new Team().id(2);
+
+        when(studentRepository.findByTeams(List.of(1, 2))).thenReturn(List.of(student(1, team1), student(2, team1), student(3, team2)));
+        when(gradeRepository.findAveragesByGradeTypeForTeams(List.of(1, 2), sprintId)).thenReturn(rows(new Object[]{2, GLOBAL_TEAM_PERFORMANCE, 15.0}));
+        when(gradeRepository.findAveragesByGradeTypeForTeamsStudents(List.of(1, 2), sprintId, INDIVIDUAL_PERFORMANCE)).thenReturn(rows(new Object[]{1, 16.0}, new Object[]{3, 12.0}));
+
+        SprintGradeService.SprintGrades sprintGrades = sprintGradeService.load(List.of(1, 2), sprintId);
+
+        assertFalse(sprintGrades.hasSprintGrades(1));
+        assertFalse(sprintGrades.hasStudentSprintGrade(1, 1));
+        assertTrue(sprintGrades.hasSprintGrades(2));
+        assertTrue(sprintGrades.hasStudentSprintGrade(3, 2));
+    }
+
+}
@@ -3,21 +3,25 @@ package fr.eseo.tauri.unit.service;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.model.enumeration.SprintEndType;
-import fr.eseo.tauri.repository.CommentRepository;
-import fr.eseo.tauri.repository.SprintRepository;
+import fr.eseo.tauri.repository.*;
 import fr.eseo.tauri.service.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -35,23 +39,40 @@ class SprintServiceTest {
     private StudentService studentService;
 
     @Mock
-    private PresentationOrderService presentationOrderService;
+    private TeamService teamService;
 
     @Mock
-    private BonusService bonusService;
+    private CommentRepository commentRepository;
 
     @Mock
-    private TeamService teamService;
+    private PresentationOrderRepository presentationOrderRepository;
 
     @Mock
-    private CommentRepository commentRepository;
+    private BonusRepository bonusRepository;
+
+    @Mock
+    private GradeRepository gradeRepository;
+
+    @Mock
+    private SprintProvisioningRepository sprintProvisioningRepository;
+
+    @Mock
+    private SprintGradeResultService sprintGradeResultService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
 
     @InjectMocks
     private SprintService sprintService;
 
     @BeforeEach
+    @SuppressWarnings("unchecked")
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
     }
 
     @Test
@@ -103,12 +124,19 @@ class SprintServiceTest {
     void deleteSprintShouldDeleteSprintWhenAuthorizedAndSprintExists() {
         Integer id = 1;
         Sprint sprint = new Sprint();
+        sprint.project(new Project().id(1));
+        sprint.sprintOrder(1);
 
         when(sprintRepository.findById(id)).thenReturn(Optional.of(sprint));
 
         sprintService.deleteSprint(id);
 
         verify(sprintRepository, times(1)).deleteById(id);
+        verify(presentationOrderRepository, times(1)).deleteAllBySprint(id);
+        verify(bonusRepository, times(1)).deleteAllBySprint(id);
+        verify(gradeRepository, times(1)).deleteAllBySprint(id);
+        verify(commentRepository, times(1)).deleteAllBySprint(id);
+        verify(sprintGradeResultService, times(1)).invalidateSprint(id);
     }
 
     @Test
@@ -155,6 +183,7 @@ class SprintServiceTest {
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     void createSprintTest() {
         int sprintId = 1;
         Sprint sprint = new Sprint();
@@ -176,20 +205,70 @@ class SprintServiceTest {
         team2.id(2);
         student2.team(team2);
 
-        List<Student> students = List.of(student1, student2);
-        List<Team> teams = List.of(team1, team2);
+        Student student3 = new Student();
+        student3.id(3);
+        student3.team(team1);
+
+        List<Student> students = List.of(student1, student2, student3);
 
         when(projectService.getProjectById(sprint.projectId())).thenReturn(project);
         when(studentService.getAllStudentsByProject(sprint.projectId())).thenReturn(students);
-        when(teamService.getAllTeamsByProject(sprint.projectId())).thenReturn(teams);
 
         sprintService.createSprint(sprint, sprintId);
 
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
         verify(sprintRepository, times(1)).save(sprint);
-        verify(presentationOrderService, times(2)).createPresentationOrder(any(PresentationOrder.class));
-        verify(bonusService, times(4)).createBonus(any(Bonus.class));
+        ArgumentCaptor<List<Integer[]>> presentationOrders = ArgumentCaptor.forClass(List.class);
+        verify(sprintProvisioningRepository, times(1)).insertPresentationOrders(presentationOrders.capture());
+        assertEquals(3, presentationOrders.getValue().size());
+        assertArrayEquals(new Integer[]{1, 1, 0}, presentationOrders.getValue().get(0));
+        assertArrayEquals(new Integer[]{2, 1, 0}, presentationOrders.getValue().get(1));
+        assertArrayEquals(new Integer[]{3, 1, 1}, presentationOrders.getValue().get(2));
+        verify(sprintProvisioningRepository, times(1)).insertBonuses(List.of(1, 2, 3), List.of(1));
         verify(studentService, times(1)).getAllStudentsByProject(sprint.projectId());
-        verify(teamService, times(1)).getAllTeamsByProject(sprint.projectId());
+    }
+
+    @Test
+    void createSprintsShouldNumberTheSprintsAndProvisionThemWithOneBatch() {
+        Project project = new Project();
+        project.id(1);
+        Sprint existingSprint = new Sprint();
+        existingSprint.sprintOrder(2);
+        List<Sprint> sprints = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Sprint sprint = new Sprint().id(10 + i);
+            sprint.startDate(LocalDate.now().plusWeeks(i));
+            sprint.endDate(LocalDate.now().plusWeeks(i).plusDays(5));
+            sprint.endType(SprintEndType.NORMAL_SPRINT);
+            sprints.add(sprint);
+        }
+        Student student = new Student();
+        student.id(1);
+
+        when(projectService.getProjectById(1)).thenReturn(project);
+        when(sprintRepository.findAllByProject(1)).thenReturn(List.of(existingSprint));
+        when(studentService.getAllStudentsByProject(1)).thenReturn(List.of(student));
+
+        List<Sprint> result = sprintService.createSprints(sprints, 1);
+
+        assertEquals(3, result.get(0).sprintOrder());
+        assertEquals(4, result.get(1).sprintOrder());
+        assertSame(project, result.get(1).project());
+        verify(sprintRepository, times(1)).saveAll(sprints);
+        verify(sprintProvisioningRepository, times(1)).insertPresentationOrders(anyList());
+        verify(sprintProvisioningRepository, times(1)).insertBonuses(List.of(1), List.of(10, 11));
+    }
+
+    @Test
+    void createSprintsShouldRejectASprintEndingBeforeItStarts() {
+        Sprint sprint = new Sprint();
+        sprint.startDate(LocalDate.now());
+        sprint.endDate(LocalDate.now().minusDays(1));
+        sprint.endType(SprintEndType.NORMAL_SPRINT);
+        List<Sprint> sprints = List.of(sprint);
+
+        assertThrows(IllegalArgumentException.class, () -> sprintService.createSprints(sprints, 1));
+        verify(sprintRepository, never()).saveAll(anyList());
     }
 
     @Test
@@ -283,12 +362,13 @@ class SprintServiceTest {
     @Test
     void getCurrentSprintShouldReturnCurrentSprintWhenSprintIsInProgress() {
         Integer projectId = 1;
-        Sprint sprint1 = new Sprint();
+        Sprint sprint1 = new Sprint().id(1);
         sprint1.startDate(LocalDate.now().minusDays(1));
         sprint1.endDate(LocalDate.now().plusDays(1));
         List<Sprint> sprints = Collections.singletonList(sprint1);
 
         when(sprintRepository.findAllByProject(projectId)).thenReturn(sprints);
+        when(sprintRepository.findById(1)).thenReturn(Optional.of(sprint1));
 
         Sprint result = sprintService.getCurrentSprint(projectId);
 
@@ -298,21 +378,63 @@ class SprintServiceTest {
     @Test
     void getCurrentSprintShouldReturnClosestSprintWhenNoSprintIsInProgress() {
         Integer projectId = 1;
-        Sprint sprint1 = new Sprint();
+        Sprint sprint1 = new Sprint().id(1);
         sprint1.startDate(LocalDate.now().plusDays(1));
         sprint1.endDate(LocalDate.now().plusDays(3));
-        Sprint sprint2 = new Sprint();
+        Sprint sprint2 = new Sprint().id(2);
         sprint2.startDate(LocalDate.now().plusDays(2));
         sprint2.endDate(LocalDate.now().plusDays(4));
         List<Sprint> sprints = Arrays.asList(sprint1, sprint2);
 
         when(sprintRepository.findAllByProject(projectId)).thenReturn(sprints);
+        when(sprintRepository.findById(1)).thenReturn(Optional.of(sprint1));
 
         Sprint result = sprintService.getCurrentSprint(projectId);
 
         assertEquals(sprint1, result);
     }
 
+    @Test
+    void getCurrentSprintShouldFindTheSprintInProgressFromTheCachedCalendar() {
+        Integer projectId = 1;
+        Sprint pastSprint = new Sprint().id(1);
+        pastSprint.startDate(LocalDate.now().minusDays(10));
+        pastSprint.endDate(LocalDate.now().minusDays(5));
+        Sprint currentSprint = new Sprint().id(2);
+        currentSprint.startDate(LocalDate.now().minusDays(4));
+        currentSprint.endDate(LocalDate.now());
+        Sprint nextSprint = new Sprint().id(3);
+        nextSprint.startDate(LocalDate.now().plusDays(1));
+        nextSprint.endDate(LocalDate.now().plusDays(5));
+
+        when(sprintRepository.findAllByProject(projectId)).thenReturn(List.of(pastSprint, currentSprint, nextSprint));
+        when(sprintRepository.findById(2)).thenReturn(Optional.of(currentSprint));
+
+        assertSame(currentSprint, sprintService.getCurrentSprint(projectId));
+        assertSame(currentSprint, sprintService.getCurrentSprint(projectId));
+        verify(sprintRepository, times(1)).findAllByProject(projectId);
+    }
+
+    @Test
+    void getCurrentSprintShouldLoadTheSprintWithItsCurrentProject() {
+        Integer projectId = 1;
+        Sprint cachedSprint = new Sprint().id(2);
+        cachedSprint.project(new Project().id(projectId).name("Before"));
+        cachedSprint.startDate(LocalDate.now().minusDays(1));
+        cachedSprint.endDate(LocalDate.now().plusDays(1));
+        Sprint loadedSprint = new Sprint().id(2);
+        loadedSprint.project(new Project().id(projectId).name("After"));
+
+        when(sprintRepository.findAllByProject(projectId)).thenReturn(List.of(cachedSprint));
+        when(sprintRepository.findById(2)).thenReturn(Optional.of(cachedSprint), Optional.of(loadedSprint));
+
+        sprintService.getCurrentSprint(projectId);
+        Sprint result = sprintService.getCurrentSprint(projectId);
+
+        assertEquals("After", result.project().name());
+        verify(sprintRepository, times(1)).findAllByProject(projectId);
+    }
+
     @Test
     void getCurrentSprintShouldReturnNullWhenNoSprintsExist() {
         Integer projectId = 1;
@@ -326,22 +448,57 @@ class SprintServiceTest {
     }
 
     @Test
-    void deleteSprintShouldDeleteSprintAndReorderWhenSprintOrderIsGreater() {
+    void getCurrentSprintIdShouldResolveTheCurrentSprintOnceUntilTheSprintsChange() {
+        Integer projectId = 1;
+        Sprint sprint = new Sprint().id(5);
+        sprint.startDate(LocalDate.now().minusDays(1));
+        sprint.endDate(LocalDate.now().plusDays(1));
+
+        when(sprintRepository.findAllByProject(projectId)).thenReturn(List.of(sprint));
+        when(sprintRepository.findById(5)).thenReturn(Optional.of(sprint));
+
+        assertEquals(5, sprintService.getCurrentSprintId(projectId));
+        assertEquals(5, sprintService.getCurrentSprintId(projectId));
+        verify(sprintRepository, times(1)).findAllByProject(projectId);
+
+        sprintService.updateSprint(5, new Sprint());
+        assertEquals(5, sprintService.getCurrentSprintId(projectId));
+        verify(sprintRepository, times(2)).findAllByProject(projectId);
+    }
+
+    @Test
+    void deleteSprintShouldRenumberTheLaterSprintsOfItsProjectWithTwoUpdates() {
         Integer id = 1;
         Sprint deletedSprint = new Sprint();
+        deletedSprint.project(new Project().id(5));
         deletedSprint.sprintOrder(2);
-        Sprint remainingSprint = new Sprint();
-        remainingSprint.sprintOrder(3);
-        List<Sprint> sprints = Collections.singletonList(remainingSprint);
 
         when(sprintRepository.findById(id)).thenReturn(Optional.of(deletedSprint));
-        when(sprintRepository.findAllByProject(id)).thenReturn(sprints);
+        when(sprintRepository.offsetOrdersAfter(5, 2)).thenReturn(3);
+
+        sprintService.deleteSprint(id);
+
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+        verify(sprintRepository, times(1)).offsetOrdersAfter(5, 2);
+        verify(sprintRepository, times(1)).shiftOffsetOrders(5);
+        verify(sprintRepository, never()).findAllByProject(anyInt());
+        verify(sprintRepository, never()).save(any(Sprint.class));
+    }
+
+    @Test
+    void deleteSprintShouldNotShiftTheOrdersOfTheLastSprint() {
+        Integer id = 1;
+        Sprint deletedSprint = new Sprint();
+        deletedSprint.project(new Project().id(5));
+        deletedSprint.sprintOrder(4);
+
+        when(sprintRepository.findById(id)).thenReturn(Optional.of(deletedSprint));
+        when(sprintRepository.offsetOrdersAfter(5, 4)).thenReturn(0);
 
         sprintService.deleteSprint(id);
 
         verify(sprintRepository, times(1)).deleteById(id);
-        assertEquals(2, remainingSprint.sprintOrder());
-        verify(sprintRepository, times(1)).save(remainingSprint);
+        verify(sprintRepository, never()).shiftOffsetOrders(anyInt());
     }
 
     @Test
@@ -354,7 +511,7 @@ class SprintServiceTest {
         Comment comment = new Comment();
         List<Comment> expectedComments = Collections.singletonList(comment);
 
-        when(teamService.getStudentsByTeamId(teamId, true)).thenReturn(Collections.singletonList(student));
+        when(teamService.getStudentsByTeamIdAndSprintId(teamId, sprintId)).thenReturn(Collections.singletonList(student));
         when(commentRepository.findAllByTeamAndSprintAndAuthor(student.id(), sprintId, authorId)).thenReturn(expectedComments);
 
         List<Comment> result = sprintService.getTeamStudentsComments(sprintId, authorId, teamId);
@@ -368,7 +525,7 @@ class SprintServiceTest {
         Integer authorId = 1;
         Integer teamId = 1;
 
-        when(teamService.getStudentsByTeamId(teamId, true)).thenReturn(Collections.emptyList());
+        when(teamService.getStudentsByTeamIdAndSprintId(teamId, sprintId)).thenReturn(Collections.emptyList());
 
         List<Comment> result = sprintService.getTeamStudentsComments(sprintId, authorId, teamId);
 
@@ -383,7 +540,7 @@ class SprintServiceTest {
         Student student = new Student();
         student.id(1);
 
-        when(teamService.getStudentsByTeamId(teamId, true)).thenReturn(Collections.singletonList(student));
+        when(teamService.getStudentsByTeamIdAndSprintId(teamId, sprintId)).thenReturn(Collections.singletonList(student));
         when(commentRepository.findAllByTeamAndSprintAndAuthor(student.id(), sprintId, authorId)).thenReturn(Collections.emptyList());
 
         List<Comment> result = sprintService.getTeamStudentsComments(sprintId, authorId, teamId);
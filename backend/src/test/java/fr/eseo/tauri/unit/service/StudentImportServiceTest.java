@@ -0,0 +1,206 @@
+package fr.eseo.tauri.unit.service;
+
+import com.opencsv.exceptions.CsvValidationException;
+import fr.eseo.tauri.model.GradeType;
+import fr.eseo.tauri.model.ImportJob;
+import fr.eseo.tauri.model.Project;
+import fr.eseo.tauri.model.Sprint;
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.enumeration.Gender;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import fr.eseo.tauri.repository.SprintProvisioningRepository;
+import fr.eseo.tauri.repository.SprintRepository;
+import fr.eseo.tauri.repository.StudentImportRepository;
+import fr.eseo.tauri.service.GradeTypeService;
+import fr.eseo.tauri.service.ProjectService;
+import fr.eseo.tauri.service.StudentImportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@Nested
+class StudentImportServiceTest {
+
+    @Mock
+    private ProjectService projectService;
+
+    @Mock
+    private GradeTypeService gradeTypeService;
+
+    @Mock
+    private SprintRepository sprintRepository;
+
+    @Mock
+    private StudentImportRepository studentImportRepository;
+
+    @Mock
+    private SprintProvisioningRepository sprintProvisioningRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private StudentImportService studentImportService;
+
+    // Emails of the users written by the import, the fake database of the tests
+    private final Set<String> insertedEmails = new HashSet<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void init_mocks() {
+        MockitoAnnotations.openMocks(this);
+        insertedEmails.clear();
+        doAnswer(invocation -> {
+            Set<String> committedEmails = new HashSet<>(insertedEmails);
+            try {
+                ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            } catch (RuntimeException e) {
+                insertedEmails.retainAll(committedEmails);
+                throw e;
+            }
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        doAnswer(invocation -> {
+            List<Student> students = invocation.getArgument(0);
+            students.forEach(student -> insertedEmails.add(student.email()));
+            return null;
+        }).when(studentImportRepository).insertUsers(anyList());
+        when(studentImportRepository.findUserIdsByEmails(anyList())).thenAnswer(invocation -> {
+            Map<String, Integer> userIds = new HashMap<>();
+            List<String> emails = invocation.getArgument(0);
+            for (int i = 0; i < emails.size(); i++) {
+                if (insertedEmails.contains(emails.get(i))) userIds.put(emails.get(i), i + 1);
+            }
+            return userIds;
+        });
+    }
+
+    private static GradeType gradeType(Integer id) {
+        GradeType gradeType = new GradeType();
+        gradeType.id(id);
+        return gradeType;
+    }
+
+    private static ImportJob job(String content) {
+        ImportJob job = new ImportJob(1, 1);
+        job.content(content.getBytes());
+        return job;
+    }
+
+    private static String students(int count) {
+        StringBuilder content = new StringBuilder(",,,,1\n,,,,Grade\n");
+        for (int i = 0; i < count; i++) {
+            content.append(i).append(",Doe John").append(i).append(",M,,10\n");
+        }
+        return content.toString();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importStudentsShouldReadTheFileOnceAndWriteTheStudentsWithBatches() throws IOException, CsvValidationException {
+        Project project = new Project();
+        when(projectService.getProjectById(1)).thenReturn(project);
+        when(sprintRepository.findAllByProject(1)).thenReturn(List.of(new Sprint().id(10)));
+        when(gradeTypeService.generateImportedGradeTypes(anyList(), anyList())).thenReturn(List.of(gradeType(100), gradeType(101)));
+        ImportJob job = job("""
+                ,,,,,2
+                ,,,,,Grade
+                1,Doe John,M,B,12,15.5
+                2,Smith Jane,F,,,abc
+                ,,,,,
+                3,Ignored Student,M,,,
+                """);
+
+        studentImportService.importStudents(job);
+
+        assertEquals(2, job.importedStudents());
+        assertEquals(2, job.processedRows());
+        assertEquals(4, job.committedLines());
+        verify(projectService, times(1)).getProjectById(1);
+        verify(gradeTypeService, times(1)).generateImportedGradeTypes(anyList(), anyList());
+
+        ArgumentCaptor<List<Student>> students = ArgumentCaptor.forClass(List.class);
+        verify(studentImportRepository, times(1)).insertUsers(students.capture());
+        assertEquals(2, students.getValue().size());
+        assertEquals("john.doe@reseau.eseo.fr", students.getValue().get(0).email());
+        assertEquals(Gender.WOMAN, students.getValue().get(1).gender());
+        assertSame(project, students.getValue().get(0).project());
+
+        verify(studentImportRepository, times(1)).insertStudents(anyList(), eq(1));
+        verify(studentImportRepository, times(1)).insertRoles(List.of(1, 2), RoleType.OPTION_STUDENT);
+        ArgumentCaptor<List<Object[]>> grades = ArgumentCaptor.forClass(List.class);
+        verify(studentImportRepository, times(1)).insertGrades(grades.capture());
+        assertEquals(2, grades.getValue().size());
+        assertArrayEquals(new Object[]{12f, 1, 100}, grades.getValue().get(0));
+        assertArrayEquals(new Object[]{15.5f, 1, 101}, grades.getValue().get(1));
+        verify(sprintProvisioningRepository, times(1)).insertBonuses(List.of(1, 2), List.of(10));
+        verify(sprintProvisioningRepository, times(1)).insertPresentationOrders(List.of(1, 2), List.of(10));
+    }
+
+    @Test
+    void importStudentsShouldCommitByChunks() throws IOException, CsvValidationException {
+        when(sprintRepository.findAllByProject(1)).thenReturn(List.of());
+        when(gradeTypeService.generateImportedGradeTypes(anyList(), anyList())).thenReturn(List.of(gradeType(100)));
+        int studentsCount = StudentImportService.CHUNK_SIZE + 1;
+        ImportJob job = job(students(studentsCount));
+
+        studentImportService.importStudents(job);
+
+        assertEquals(studentsCount, job.importedStudents());
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+        verify(sprintProvisioningRepository, never()).insertBonuses(anyList(), anyList());
+    }
+
+    @Test
+    void importStudentsShouldRejectTheInvalidRowsAndImportTheOthers() throws IOException, CsvValidationException {
+        when(gradeTypeService.generateImportedGradeTypes(anyList(), anyList())).thenReturn(List.of(gradeType(100)));
+        insertedEmails.add("jack.doe@reseau.eseo.fr");
+        ImportJob job = job("""
+                ,,,,1
+                ,,,,Grade
+                1,Doe John,,,10
+                2,Smith Jane,F,,10
+                3,Smith Jane,F,,12
+                4,Doe Jack,M,,10
+                """);
+
+        studentImportService.importStudents(job);
+
+        assertEquals(1, job.importedStudents());
+        assertEquals(4, job.processedRows());
+        assertEquals(List.of(3, 5, 6), job.rejectedRows().stream().map(ImportJob.RejectedRow::line).sorted().toList());
+        verify(studentImportRepository, times(1)).insertUsers(anyList());
+    }
+
+    @Test
+    void importStudentsShouldResumeAfterTheLastCommittedChunk() throws IOException, CsvValidationException {
+        when(gradeTypeService.generateImportedGradeTypes(anyList(), anyList())).thenReturn(List.of(gradeType(100)));
+        ImportJob job = job(students(StudentImportService.CHUNK_SIZE + 1));
+        doNothing().doThrow(new IllegalStateException("Connection lost")).doNothing().when(studentImportRepository).insertStudents(anyList(), anyInt());
+
+        assertThrows(IllegalStateException.class, () -> studentImportService.importStudents(job));
+        assertEquals(StudentImportService.CHUNK_SIZE, job.importedStudents());
+
+        job.restart();
+        studentImportService.importStudents(job);
+
+        assertEquals(StudentImportService.CHUNK_SIZE + 1, job.importedStudents());
+        assertEquals(StudentImportService.CHUNK_SIZE + 1, job.processedRows());
+        verify(gradeTypeService, times(1)).generateImportedGradeTypes(anyList(), anyList());
+        verify(studentImportRepository, times(3)).insertStudents(anyList(), anyInt());
+    }
+
+}
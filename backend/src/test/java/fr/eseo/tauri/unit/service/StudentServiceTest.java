@@ -1,7 +1,6 @@
 package fr.eseo.tauri.unit.service;
 
 import com.opencsv.CSVWriter;
-import com.opencsv.exceptions.CsvValidationException;
 import fr.eseo.tauri.exception.EmptyResourceException;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.*;
@@ -23,9 +22,8 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.StringWriter;
 import java.util.*;
 import java.util.stream.Stream;
@@ -75,6 +73,18 @@ class StudentServiceTest {
     @Mock
     private CommentRepository commentRepository;
 
+    @Mock
+    private SprintGradeService sprintGradeService;
+
+    @Mock
+    private SprintGradeResultService sprintGradeResultService;
+
+    @Mock
+    private ImportJobService importJobService;
+
+    @Mock
+    private TeamGenerationService teamGenerationService;
+
     @InjectMocks
     private StudentService studentService;
 
@@ -133,59 +143,6 @@ class StudentServiceTest {
         verify(roleService, times(1)).createRole(any(Role.class));
     }
 
-    @Test
-    void extractNamesGenderBachelorAndGradesShouldReturnCorrectData() throws IOException, CsvValidationException {
-        String csvContent = "1,John Doe,M,B,15,14,13\n2,Jane Doe,F,B,12,13,14";
-        InputStream inputStream = new ByteArrayInputStream(csvContent.getBytes());
-
-        Map<String, Object> result = studentService.extractNamesGenderBachelorAndGrades(inputStream);
-
-        List<String> names = (List<String>) result.get(StudentService.MAP_KEY_NAMES);
-        List<String> genders = (List<String>) result.get(StudentService.MAP_KEY_GENDERS);
-        List<String> bachelors = (List<String>) result.get(StudentService.MAP_KEY_BACHELORS);
-        List<List<String>> grades = (List<List<String>>) result.get(StudentService.MAP_KEY_GRADES);
-
-        assertEquals(Arrays.asList("John Doe", "Jane Doe"), names);
-        assertEquals(Arrays.asList("M", "F"), genders);
-        assertEquals(Arrays.asList("B", "B"), bachelors);
-        assertEquals(Arrays.asList(Arrays.asList("15", "14", "13"), Arrays.asList("12", "13", "14")), grades);
-    }
-
-    @Test
-    void extractNamesGenderBachelorAndGradesShouldHandleEmptyInputStream() throws IOException, CsvValidationException {
-        InputStream inputStream = new ByteArrayInputStream("".getBytes());
-
-        Map<String, Object> result = studentService.extractNamesGenderBachelorAndGrades(inputStream);
-
-        List<String> names = (List<String>) result.get(StudentService.MAP_KEY_NAMES);
-        List<String> genders = (List<String>) result.get(StudentService.MAP_KEY_GENDERS);
-        List<String> bachelors = (List<String>) result.get(StudentService.MAP_KEY_BACHELORS);
-        List<List<String>> grades = (List<List<String>>) result.get(StudentService.MAP_KEY_GRADES);
-
-        assertTrue(names.isEmpty());
-        assertTrue(genders.isEmpty());
-        assertTrue(bachelors.isEmpty());
-        assertTrue(grades.isEmpty());
-    }
-
-    @Test
-    void extractNamesGenderBachelorAndGradesShouldHandleInputStreamWithMissingData() throws IOException, CsvValidationException {
-        String csvContent = "1,John Doe,M,,15,14,13\n2,Jane Doe,,B,12,13,14";
-        InputStream inputStream = new ByteArrayInputStream(csvContent.getBytes());
-
-        Map<String, Object> result = studentService.extractNamesGenderBachelorAndGrades(inputStream);
-
-        List<String> names = (List<String>) result.get(StudentService.MAP_KEY_NAMES);
-        List<String> genders = (List<String>) result.get(StudentService.MAP_KEY_GENDERS);
-        List<String> bachelors = (List<String>) result.get(StudentService.MAP_KEY_BACHELORS);
-        List<List<String>> grades = (List<List<String>>) result.get(StudentService.MAP_KEY_GRADES);
-
-        assertEquals(Arrays.asList("John Doe", "Jane Doe"), names);
-        assertEquals(Arrays.asList("M", ""), genders);
-        assertEquals(Arrays.asList("", "B"), bachelors);
-        assertEquals(Arrays.asList(Arrays.asList("15", "14", "13"), Arrays.asList("12", "13", "14")), grades);
-    }
-
     @Test
     void hasNonEmptyValueReturnsTrueWhenIndexContainsNonEmptyValue() {
         String[] line = {"test", "example"};
@@ -289,22 +246,20 @@ class StudentServiceTest {
         StringWriter stringWriter = new StringWriter();
         CSVWriter csvWriter = new CSVWriter(stringWriter);
 
-        Student student = new Student();
-        student.name("John Doe");
-        student.gender(Gender.MAN);
-        student.bachelor(true);
-
         GradeType gradeType = new GradeType();
+        gradeType.id(1);
         gradeType.name("GradeType1");
 
-        when(gradeService.getGradeByStudentAndGradeType(student, gradeType)).thenReturn(15.0f);
-
-        studentService.writeStudentData(csvWriter, List.of(student), List.of(gradeType));
+        StudentService.StudentCounts result = studentService.writeStudentData(csvWriter, Stream.<Object[]>of(
+                new Object[]{1, "John Doe", Gender.MAN, true, 1, 15.0f}), List.of(gradeType));
 
         String expectedCsv = "\"1\",\"John Doe\",\"M\",\"B\",\"15.0\"\n";
         String actualCsv = stringWriter.toString();
 
         assertEquals(expectedCsv, actualCsv);
+        assertEquals(1, result.total());
+        assertEquals(1, result.bachelors());
+        verify(gradeService, never()).getGradeByStudentAndGradeType(any(), any());
     }
 
     @Test
@@ -312,31 +267,28 @@ class StudentServiceTest {
         StringWriter stringWriter = new StringWriter();
         CSVWriter csvWriter = new CSVWriter(stringWriter);
 
-        Student student1 = new Student();
-        student1.name("John Doe");
-        student1.gender(Gender.MAN);
-        student1.bachelor(true);
-
-        Student student2 = new Student();
-        student2.name("Jane Doe");
-        student2.gender(Gender.WOMAN);
-        student2.bachelor(false);
-
-        GradeType gradeType = new GradeType();
-        gradeType.name("GradeType1");
-
-        when(gradeService.getGradeByStudentAndGradeType(student1, gradeType)).thenReturn(15.0f);
-        when(gradeService.getGradeByStudentAndGradeType(student2, gradeType)).thenReturn(14.0f);
+        GradeType gradeType1 = new GradeType();
+        gradeType1.id(1);
+        gradeType1.name("GradeType1");
+        GradeType gradeType2 = new GradeType();
+        gradeType2.id(2);
+        gradeType2.name("GradeType2");
 
-        studentService.writeStudentData(csvWriter, Arrays.asList(student1, student2), List.of(gradeType));
+        StudentService.StudentCounts result = studentService.writeStudentData(csvWriter, Stream.of(
+                new Object[]{1, "John Doe", Gender.MAN, true, 2, 12.0f},
+                new Object[]{1, "John Doe", Gender.MAN, true, 1, 15.0f},
+                new Object[]{2, "Jane Doe", Gender.WOMAN, false, 1, 14.0f}), List.of(gradeType1, gradeType2));
 
         String expectedCsv = """
-                "1","John Doe","M","B","15.0"
-                "2","Jane Doe","F","","14.0"
+                "1","John Doe","M","B","15.0","12.0"
+                "2","Jane Doe","F","","14.0",""
                 """;
         String actualCsv = stringWriter.toString();
 
         assertEquals(expectedCsv, actualCsv);
+        assertEquals(2, result.total());
+        assertEquals(1, result.women());
+        assertEquals(1, result.bachelors());
     }
 
     @Test
@@ -344,17 +296,12 @@ class StudentServiceTest {
         StringWriter stringWriter = new StringWriter();
         CSVWriter csvWriter = new CSVWriter(stringWriter);
 
-        Student student = new Student();
-        student.name("John Doe");
-        student.gender(Gender.MAN);
-        student.bachelor(true);
-
         GradeType gradeType = new GradeType();
+        gradeType.id(1);
         gradeType.name("GradeType1");
 
-        when(gradeService.getGradeByStudentAndGradeType(student, gradeType)).thenReturn(null);
-
-        studentService.writeStudentData(csvWriter, List.of(student), List.of(gradeType));
+        studentService.writeStudentData(csvWriter, Stream.<Object[]>of(
+                new Object[]{1, "John Doe", Gender.MAN, true, null, null}), List.of(gradeType));
 
         String expectedCsv = "\"1\",\"John Doe\",\"M\",\"B\",\"\"\n";
         String actualCsv = stringWriter.toString();
@@ -367,11 +314,12 @@ class StudentServiceTest {
         StringWriter stringWriter = new StringWriter();
         CSVWriter csvWriter = new CSVWriter(stringWriter);
 
-        when(studentRepository.countWomen()).thenReturn(5);
-        when(studentRepository.countTotal()).thenReturn(10);
-        when(studentRepository.countBachelor()).thenReturn(3);
+        StudentService.StudentCounts studentCounts = new StudentService.StudentCounts();
+        for (int i = 0; i < 10; i++) {
+            studentCounts.add(i < 5, i < 3);
+        }
 
-        studentService.writeSummaryData(csvWriter, 2);
+        studentService.writeSummaryData(csvWriter, 2, studentCounts);
 
         String expectedCsv = """
                 "","","","","",""
@@ -392,11 +340,7 @@ class StudentServiceTest {
         StringWriter stringWriter = new StringWriter();
         CSVWriter csvWriter = new CSVWriter(stringWriter);
 
-        when(studentRepository.countWomen()).thenReturn(0);
-        when(studentRepository.countTotal()).thenReturn(0);
-        when(studentRepository.countBachelor()).thenReturn(0);
-
-        studentService.writeSummaryData(csvWriter, 0);
+        studentService.writeSummaryData(csvWriter, 0, new StudentService.StudentCounts());
 
         String expectedCsv = """
                 "","","",""
@@ -571,6 +515,7 @@ class StudentServiceTest {
 
         assertEquals(team, existingStudent.team());
         verify(studentRepository, times(1)).save(existingStudent);
+        verify(sprintGradeResultService, times(1)).invalidateTeam(2);
     }
 
     @Test
@@ -593,6 +538,20 @@ class StudentServiceTest {
         studentService.deleteStudent(id);
 
         verify(studentRepository, times(1)).deleteById(id);
+        verify(userService, times(1)).invalidateRoles(id);
+    }
+
+    @Test
+    void deleteStudentShouldInvalidateTheSprintGradesOfItsTeam() {
+        Integer id = 1;
+        Student existingStudent = new Student();
+        existingStudent.team(new Team().id(3));
+
+        when(studentRepository.findById(id)).thenReturn(Optional.of(existingStudent));
+
+        studentService.deleteStudent(id);
+
+        verify(sprintGradeResultService, times(1)).invalidateTeam(3);
     }
 
     @Test
@@ -637,20 +596,18 @@ class StudentServiceTest {
     }
 
     @Test
-    void createStudentsCSVShouldReturnByteArrayWhenStudentsExist() throws IOException {
+    void writeStudentsCSVShouldStreamTheStudentsOfTheProject() throws IOException {
         Integer projectId = 1;
-        Student student = new Student();
-        student.projectId(projectId);
-        student.gender(Gender.MAN);
-        List<Student> students = Collections.singletonList(student);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 
         when(gradeTypeService.getAllImportedGradeTypes(projectId)).thenReturn(Collections.emptyList());
-        when(studentService.getAllStudentsByProject(projectId)).thenReturn(students);
+        when(gradeRepository.streamGradesByProject(projectId, true)).thenReturn(Stream.<Object[]>of(
+                new Object[]{1, null, Gender.MAN, false, null, null}));
 
-        byte[] result = studentService.createStudentsCSV(projectId);
+        studentService.writeStudentsCSV(projectId, outputStream);
 
-        assertNotNull(result);
-        assertEquals(157, result.length);
+        assertEquals(157, outputStream.size());
+        verify(gradeRepository, times(1)).streamGradesByProject(projectId, true);
     }
 
     @Test
@@ -661,9 +618,8 @@ class StudentServiceTest {
         Double expectedGrade = 16.666666666666668;
 
         when(studentRepository.findById(id)).thenReturn(Optional.of(new Student().projectId(1)));
-        when(userService.getTeamByMemberId(id, studentService.getStudentById(id).projectId())).thenReturn(new Team().id(teamId));
-        when(gradeRepository.findAverageByGradeTypeForTeam(teamId, sprintId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName())).thenReturn(10.0);
-        when(gradeRepository.findAverageByGradeTypeForStudent(id, sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(20.0);
+        when(userService.getTeamByMemberId(id, 1)).thenReturn(new Team().id(teamId));
+        when(sprintGradeService.getStudentIndividualTotalGrade(id, teamId, sprintId)).thenReturn(expectedGrade);
 
         Double result = studentService.getIndividualTotalGrade(id, sprintId);
 
@@ -671,57 +627,38 @@ class StudentServiceTest {
     }
 
     @Test
-    void getSprintGradeShouldReturnCorrectGradeWhenBonusesAndGradesExist() {
+    void getSprintGradeShouldReturnTheSprintGradeOfTheStudentTeam() {
         Integer studentId = 1;
         Integer sprintId = 1;
-        Integer teamId = 1;
+        Integer teamId = 2;
         Double expectedGrade = 17.0;
 
         when(studentRepository.findById(studentId)).thenReturn(Optional.of(new Student().projectId(1)));
-        when(userService.getTeamByMemberId(studentId, studentService.getStudentById(studentId).projectId())).thenReturn(new Team().id(teamId));
-        when(teamService.getTeamTotalGrade(teamId, sprintId)).thenReturn(20.0);
-        when(studentService.getStudentBonuses(studentId, sprintId)).thenReturn(Arrays.asList(new Bonus().value(2.0F), new Bonus().value(3.0F)));
-        when(studentService.getIndividualTotalGrade(studentId, sprintId)).thenReturn(15.0);
+        when(userService.getTeamByMemberId(studentId, 1)).thenReturn(new Team().id(teamId));
+        when(sprintGradeResultService.getStudentSprintGrade(studentId, teamId, sprintId)).thenReturn(expectedGrade);
 
         Double result = studentService.getSprintGrade(studentId, sprintId);
 
         assertEquals(expectedGrade, result);
+        verify(sprintGradeResultService, times(1)).getStudentSprintGrade(studentId, teamId, sprintId);
     }
 
     @Test
-    void getSprintGradeShouldReturnCorrectGradeWhenNoBonusesExist() {
-        Integer studentId = 1;
-        Integer sprintId = 1;
-        Integer teamId = 1;
-        Double expectedGrade = 17.0;
-
-        when(studentRepository.findById(studentId)).thenReturn(Optional.of(new Student().projectId(1)));
-        when(userService.getTeamByMemberId(studentId, studentService.getStudentById(studentId).projectId())).thenReturn(new Team().id(teamId));
-        when(teamService.getTeamTotalGrade(teamId, sprintId)).thenReturn(20.0);
-        when(studentService.getStudentBonuses(studentId, sprintId)).thenReturn(Collections.emptyList());
-        when(studentService.getIndividualTotalGrade(studentId, sprintId)).thenReturn(15.0);
+    void getSprintGradeShouldReturnTheMaterializedGradeWithoutLookingUpTheTeam() {
+        when(studentRepository.findById(1)).thenReturn(Optional.of(new Student().projectId(1)));
+        when(sprintGradeResultService.findStudentSprintGrade(1, 1)).thenReturn(Optional.of(15.0));
 
-        Double result = studentService.getSprintGrade(studentId, sprintId);
+        Double result = studentService.getSprintGrade(1, 1);
 
-        assertEquals(expectedGrade, result);
+        assertEquals(15.0, result);
+        verify(userService, never()).getTeamByMemberId(anyInt(), anyInt());
     }
 
     @Test
-    void getSprintGradeShouldReturnCorrectGradeWhenTeamGradeExceedsTwentyWithBonuses() {
-        Integer studentId = 1;
-        Integer sprintId = 1;
-        Integer teamId = 1;
-        Double expectedGrade = 17.0;
-
-        when(studentRepository.findById(studentId)).thenReturn(Optional.of(new Student().projectId(1)));
-        when(userService.getTeamByMemberId(studentId, studentService.getStudentById(studentId).projectId())).thenReturn(new Team().id(teamId));
-        when(teamService.getTeamTotalGrade(teamId, sprintId)).thenReturn(25.0);
-        when(studentService.getStudentBonuses(studentId, sprintId)).thenReturn(Arrays.asList(new Bonus().value(2.0F), new Bonus().value(3.0F)));
-        when(studentService.getIndividualTotalGrade(studentId, sprintId)).thenReturn(15.0);
-
-        Double result = studentService.getSprintGrade(studentId, sprintId);
+    void getSprintGradeShouldThrowResourceNotFoundExceptionWhenStudentDoesNotExist() {
+        when(studentRepository.findById(anyInt())).thenReturn(Optional.empty());
 
-        assertEquals(expectedGrade, result);
+        assertThrows(ResourceNotFoundException.class, () -> studentService.getSprintGrade(1, 1));
     }
 
     @Test
@@ -882,92 +819,20 @@ class StudentServiceTest {
     }
 
     @Test
-    void testPopulateDatabaseFromCSV_Success() throws IOException, CsvValidationException {
-        String csvContent = "John Doe,M,B,15.5,16.0\nJane Smith,F,,18.0,17.5";
-        InputStream inputStream = new ByteArrayInputStream(csvContent.getBytes());
-
-        MultipartFile mockFile = mock(MultipartFile.class);
-        when(mockFile.isEmpty()).thenReturn(false);
-        when(mockFile.getInputStream()).thenReturn(inputStream);
-
-        GradeType gradeType1 = new GradeType();
-        GradeType gradeType2 = new GradeType();
-        List<GradeType> gradeTypes = Arrays.asList(gradeType1, gradeType2);
-
-        when(gradeTypeService.createGradeTypesFromCSV(any(InputStream.class))).thenReturn(gradeTypes);
-
-        Map<String, Object> extractedData = new HashMap<>();
-        extractedData.put(StudentService.MAP_KEY_NAMES, Arrays.asList("John Doe", "Jane Smith"));
-        extractedData.put(StudentService.MAP_KEY_GENDERS, Arrays.asList("M", "F"));
-        extractedData.put(StudentService.MAP_KEY_BACHELORS, Arrays.asList("B", ""));
-        extractedData.put(StudentService.MAP_KEY_GRADES, Arrays.asList(
-                Arrays.asList("15.5", "16.0"),
-                Arrays.asList("18.0", "17.5")
-        ));
-
-        // Use spy to stub methods on the studentService instance
-        StudentService spyStudentService = spy(studentService);
-        doReturn(extractedData).when(spyStudentService).extractNamesGenderBachelorAndGrades(any(InputStream.class));
-
-        Student student1 = new Student();
-        Student student2 = new Student();
-
-        doReturn(student1).when(spyStudentService).createStudentFromData("John Doe", "M", "B", 1);
-        doReturn(student2).when(spyStudentService).createStudentFromData("Jane Smith", "F", "", 1);
-
-        spyStudentService.populateDatabaseFromCSV(mockFile, 1);
-
-        verify(gradeTypeService, times(1)).createGradeTypesFromCSV(any(InputStream.class));
-        verify(spyStudentService, times(1)).extractNamesGenderBachelorAndGrades(any(InputStream.class));
-        verify(spyStudentService, times(2)).createStudent(student1);
-        verify(spyStudentService, times(2)).createStudent(student2);
-
-        verify(gradeService, times(4)).createGrade(any(Grade.class)); // 4 grades in total
-    }
-
-    @Test
-    void testPopulateDatabaseFromCSV_GradeParsingError() throws IOException, CsvValidationException {
-        String csvContent = "John Doe,M,B,15.5,abc\nJane Smith,F,,18.0,17.5";
-        InputStream inputStream = new ByteArrayInputStream(csvContent.getBytes());
+    void populateDatabaseFromCSVShouldSubmitAnImportJob() throws IOException {
+        byte[] content = ",,,,1\n,,,,Grade\n1,John Doe,M,B,15.5".getBytes();
+        ImportJob job = new ImportJob(1, 1);
 
         MultipartFile mockFile = mock(MultipartFile.class);
         when(mockFile.isEmpty()).thenReturn(false);
-        when(mockFile.getInputStream()).thenReturn(inputStream);
-
-        GradeType gradeType1 = new GradeType();
-        GradeType gradeType2 = new GradeType();
-        List<GradeType> gradeTypes = Arrays.asList(gradeType1, gradeType2);
-
-        when(gradeTypeService.createGradeTypesFromCSV(any(InputStream.class))).thenReturn(gradeTypes);
-
-        Map<String, Object> extractedData = new HashMap<>();
-        extractedData.put(StudentService.MAP_KEY_NAMES, Arrays.asList("John Doe", "Jane Smith"));
-        extractedData.put(StudentService.MAP_KEY_GENDERS, Arrays.asList("M", "F"));
-        extractedData.put(StudentService.MAP_KEY_BACHELORS, Arrays.asList("B", ""));
-        extractedData.put(StudentService.MAP_KEY_GRADES, Arrays.asList(
-                Arrays.asList("15.5", "abc"),
-                Arrays.asList("18.0", "17.5")
-        ));
-
-        // Use spy to stub methods on the studentService instance
-        StudentService spyStudentService = spy(studentService);
-        doReturn(extractedData).when(spyStudentService).extractNamesGenderBachelorAndGrades(any(InputStream.class));
-
-        Student student1 = new Student();
-        Student student2 = new Student();
-
-        doReturn(student1).when(spyStudentService).createStudentFromData("John Doe", "M", "B", 1);
-        doReturn(student2).when(spyStudentService).createStudentFromData("Jane Smith", "F", "", 1);
-
-        spyStudentService.populateDatabaseFromCSV(mockFile, 1);
+        when(mockFile.getBytes()).thenReturn(content);
+        when(importJobService.submit(content, 1)).thenReturn(job);
 
-        verify(gradeTypeService, times(1)).createGradeTypesFromCSV(any(InputStream.class));
-        verify(spyStudentService, times(1)).extractNamesGenderBachelorAndGrades(any(InputStream.class));
-        verify(spyStudentService, times(2)).createStudent(student1);
-        verify(spyStudentService, times(2)).createStudent(student2);
+        ImportJob result = studentService.populateDatabaseFromCSV(mockFile, 1);
 
-        // Ensure createGrade is called only for valid grades
-        verify(gradeService, times(3)).createGrade(any(Grade.class)); // 3 valid grades in total
+        assertEquals(job, result);
+        verify(importJobService, times(1)).submit(content, 1);
+        verify(gradeService, never()).createGrade(any(Grade.class));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,289 @@
+package fr.eseo.tauri.unit.service;
+
+import fr.eseo.tauri.exception.ResourceConflictException;
+import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.model.*;
+import fr.eseo.tauri.model.enumeration.Gender;
+import fr.eseo.tauri.repository.RoleRepository;
+import fr.eseo.tauri.repository.StudentRepository;
+import fr.eseo.tauri.repository.TeamAssignmentRepository;
+import fr.eseo.tauri.service.TeamGenerationService;
+import fr.eseo.tauri.service.TeamGenerationService.RankedStudent;
+import fr.eseo.tauri.service.TeamGenerationService.TeamDraft;
+import fr.eseo.tauri.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@Nested
+class TeamGenerationServiceTest {
+
+    @Mock
+    private StudentRepository studentRepository;
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @Mock
+    private TeamAssignmentRepository teamAssignmentRepository;
+
+    @Mock
+    private UserService userService;
+
+    @InjectMocks
+    private TeamGenerationService teamGenerationService;
+
+    @BeforeEach
+    void init_mocks() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private static Student student(Integer id, Gender gender, boolean bachelor) {
+        return (Student) new Student().gender(gender).bachelor(bachelor).id(id);
+    }
+
+    private static RankedStudent rankedStudent(Integer id, Gender gender, boolean bachelor, double average) {
+        return new RankedStudent(student(id, gender, bachelor), average);
+    }
+
+    @Test
+    void loadStudentsShouldGiveTheMeanAverageToTheStudentsWithoutAverage() {
+        Student student1 = student(1, Gender.MAN, false);
+        Student student2 = student(2, Gender.WOMAN, false);
+        Student student3 = student(3, Gender.MAN, false);
+        when(studentRepository.findAllWithImportedAverageByProject(1)).thenReturn(List.of(
+                new Object[]{student1, 10f}, new Object[]{student2, 14f}, new Object[]{student3, null}));
+
+        List<RankedStudent> result = teamGenerationService.loadStudents(1);
+
+        assertEquals(3, result.size());
+        assertEquals(10.0, result.get(0).average());
+        assertEquals(14.0, result.get(1).average());
+        assertEquals(12.0, result.get(2).average());
+    }
+
+    @Test
+    void composeShouldFillTheWomenQuotaAndGiveABachelorToEveryTeam() {
+        List<RankedStudent> students = new ArrayList<>();
+        for (int i = 0; i < 4; i++) students.add(rankedStudent(i, Gender.WOMAN, false, 10 + i));
+        students.add(rankedStudent(4, Gender.MAN, true, 8));
+        students.add(rankedStudent(5, Gender.MAN, true, 9));
+        for (int i = 6; i < 12; i++) students.add(rankedStudent(i, Gender.MAN, false, i));
+
+        List<TeamDraft> result = TeamGenerationService.compose(students, 2, 2);
+
+        assertEquals(2, result.size());
+        for (TeamDraft team : result) {
+            assertEquals(6, team.size());
+            assertEquals(2, team.women());
+            assertEquals(1, team.bachelors());
+        }
+    }
+
+    @Test
+    void composeShouldBalanceTheTeamAverages() {
+        List<RankedStudent> students = new ArrayList<>();
+        double[] averages = {20, 18, 16, 14, 12, 10, 8, 6, 4};
+        for (int i = 0; i < averages.length; i++) students.add(rankedStudent(i, Gender.MAN, false, averages[i]));
+
+        List<TeamDraft> result = TeamGenerationService.compose(students, 3, 0);
+
+        double best = result.stream().mapToDouble(TeamDraft::average).max().orElseThrow();
+        double worst = result.stream().mapToDouble(TeamDraft::average).min().orElseThrow();
+        assertTrue(best - worst <= 2, "The team averages should be close, got " + best + " and " + worst);
+        result.forEach(team -> assertEquals(3, team.size()));
+    }
+
+    @Test
+    void composeShouldSpreadTheWomenEvenlyWithoutQuota() {
+        List<RankedStudent> students = new ArrayList<>();
+        for (int i = 0; i < 3; i++) students.add(rankedStudent(i, Gender.WOMAN, false, 15));
+        for (int i = 3; i < 9; i++) students.add(rankedStudent(i, Gender.MAN, false, 12));
+
+        List<TeamDraft> result = TeamGenerationService.compose(students, 3, 0);
+
+        result.forEach(team -> assertEquals(1, team.women()));
+    }
+
+    @Test
+    void persistShouldAssignTheTeamsWithOneBatchAndRecreateTheTeamMemberRoles() {
+        List<TeamDraft> drafts = TeamGenerationService.compose(List.of(rankedStudent(1, Gender.MAN, false, 10), rankedStudent(2, Gender.MAN, false, 12)), 2, 0);
+        List<Team> teams = List.of(new Team().id(10), new Team().id(20));
+        when(studentRepository.findIdsByProject(1)).thenReturn(List.of(1, 2));
+
+        teamGenerationService.persist(1, teams, drafts);
+
+        verify(teamAssignmentRepository, times(1)).assignTeams(Map.of(2, 10, 1, 20));
+        verify(roleRepository, times(1)).deleteAllTeamMembersByProject(1);
+        verify(roleRepository, times(1)).insertTeamMembersByProject(1);
+        verify(userService, times(1)).invalidateRoles(List.of(1, 2));
+        verify(userService, never()).invalidateAllRoles();
+        verify(studentRepository, never()).save(any(Student.class));
+    }
+
+    @Test
+    void scoreShouldPenalizeTheMissingWomenAndBachelors() {
+        TeamDraft first = new TeamDraft(0);
+        first.add(rankedStudent(1, Gender.WOMAN, true, 12));
+        TeamDraft second = new TeamDraft(1);
+        second.add(rankedStudent(2, Gender.MAN, false, 10));
+
+        double result = TeamGenerationService.score(List.of(first, second), 1);
+
+        assertEquals(1 + 2000, result);
+    }
+
+    @Test
+    void composeTeamsShouldKeepTheGreedyCompositionWithoutTimeBudget() {
+        List<RankedStudent> students = List.of(rankedStudent(1, Gender.MAN, true, 10), rankedStudent(2, Gender.MAN, true, 12));
+
+        TeamGenerationService.Composition result = teamGenerationService.composeTeams(students, 2, 0, false, null);
+
+        assertEquals(0, result.iterations());
+        assertEquals(2, result.averageSpread());
+        assertEquals(TeamGenerationService.score(result.teams(), 0), result.score());
+    }
+
+    @Test
+    void composeTeamsShouldNotWorsenTheGreedyCompositionWithTheLocalSearch() {
+        List<RankedStudent> students = new ArrayList<>();
+        double[] averages = {19, 17.5, 15, 14.5, 12, 11, 9.5, 8, 7, 6.5, 5, 3};
+        for (int i = 0; i < averages.length; i++) {
+            students.add(rankedStudent(i, i % 3 == 0 ? Gender.WOMAN : Gender.MAN, i % 4 == 0, averages[i]));
+        }
+        double greedyScore = teamGenerationService.composeTeams(students, 3, 1, false, null).score();
+
+        TeamGenerationService.Composition result = teamGenerationService.composeTeams(students, 3, 1, false, 50);
+
+        assertTrue(result.iterations() > 0);
+        assertTrue(result.score() <= greedyScore);
+        assertEquals(TeamGenerationService.score(result.teams(), 1), result.score(), 1e-9);
+        for (TeamDraft team : result.teams()) {
+            assertEquals(4, team.size());
+            assertTrue(team.women() >= 1);
+            assertEquals(1, team.bachelors());
+        }
+    }
+
+    @Test
+    void snapshotShouldLoadTheStudentsOnceUntilItIsInvalidated() {
+        when(studentRepository.findAllWithImportedAverageByProject(1)).thenReturn(List.<Object[]>of(new Object[]{student(1, Gender.MAN, false), 10f}));
+
+        teamGenerationService.snapshot(1);
+        List<RankedStudent> result = teamGenerationService.snapshot(1).students();
+        teamGenerationService.invalidateSnapshots();
+        teamGenerationService.snapshot(1);
+
+        assertEquals(1, result.size());
+        verify(studentRepository, times(2)).findAllWithImportedAverageByProject(1);
+    }
+
+    @Test
+    void savePreviewShouldComputeTheCriteriaOfEveryTeam() {
+        List<RankedStudent> students = List.of(rankedStudent(1, Gender.WOMAN, true, 14), rankedStudent(2, Gender.MAN, false, 10));
+        TeamGenerationService.Composition composition = teamGenerationService.composeTeams(students, 2, 1, false, null);
+        Project projectDetails = new Project();
+        projectDetails.nbTeams(2);
+        projectDetails.nbWomen(1);
+
+        TeamPreview result = teamGenerationService.savePreview(1, projectDetails, false, composition, 0);
+
+        assertSame(result, teamGenerationService.getPreview(result.id()));
+        assertEquals(2, result.teams().size());
+        assertEquals("Équipe 1", result.teams().get(0).name());
+        assertEquals(new Criteria(1, 1, true, true), result.teams().get(0).criteria());
+        assertEquals(new Criteria(0, 0, false, false), result.teams().get(1).criteria());
+        assertEquals(List.of(List.of(1), List.of(2)), result.studentIds());
+
+        teamGenerationService.removePreview(result.id());
+        Integer previewId = result.id();
+        assertThrows(ResourceNotFoundException.class, () -> teamGenerationService.getPreview(previewId));
+    }
+
+    @Test
+    void previewShouldBeOutdatedOnceTheSnapshotsAreInvalidated() {
+        when(studentRepository.findAllWithImportedAverageByProject(1)).thenReturn(List.<Object[]>of(new Object[]{student(1, Gender.WOMAN, true), 14f}));
+        Project projectDetails = new Project();
+        projectDetails.nbTeams(1);
+        projectDetails.nbWomen(1);
+
+        TeamGenerationService.Snapshot snapshot = teamGenerationService.snapshot(1);
+        TeamPreview current = teamGenerationService.savePreview(1, projectDetails, false, teamGenerationService.composeTeams(snapshot.students(), 1, 1, false, null), snapshot.version());
+        assertSame(current, teamGenerationService.getCurrentPreview(current.id()));
+
+        teamGenerationService.invalidateSnapshots();
+        Integer previewId = current.id();
+        assertThrows(ResourceConflictException.class, () -> teamGenerationService.getCurrentPreview(previewId));
+        assertThrows(ResourceNotFoundException.class, () -> teamGenerationService.getPreview(previewId));
+
+        snapshot = teamGenerationService.snapshot(1);
+        TeamPreview recomposed = teamGenerationService.savePreview(1, projectDetails, false, teamGenerationService.composeTeams(snapshot.students(), 1, 1, false, null), snapshot.version());
+        assertSame(recomposed, teamGenerationService.getCurrentPreview(recomposed.id()));
+    }
+
+    @Test
+    void previewShouldBeOutdatedWhenTheSnapshotIsReloadedDuringItsComposition() {
+        when(studentRepository.findAllWithImportedAverageByProject(1)).thenReturn(List.<Object[]>of(new Object[]{student(1, Gender.WOMAN, true), 14f}));
+        Project projectDetails = new Project();
+        projectDetails.nbTeams(1);
+        projectDetails.nbWomen(1);
+
+        TeamGenerationService.Snapshot snapshot = teamGenerationService.snapshot(1);
+        TeamGenerationService.Composition composition = teamGenerationService.composeTeams(snapshot.students(), 1, 1, false, null);
+        // Another request reloads the snapshot after the students changed, while this composition is optimized
+        teamGenerationService.invalidateSnapshots();
+        teamGenerationService.snapshot(1);
+        TeamPreview preview = teamGenerationService.savePreview(1, projectDetails, false, composition, snapshot.version());
+
+        Integer previewId = preview.id();
+        assertThrows(ResourceConflictException.class, () -> teamGenerationService.getCurrentPreview(previewId));
+    }
+
+    @Test
+    void composeTeamsShouldNotWaitForTheOptimizationsAlreadyRunning() throws Exception {
+        List<RankedStudent> students = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            students.add(rankedStudent(i, i % 3 == 0 ? Gender.WOMAN : Gender.MAN, i % 4 == 0, 8 + i));
+        }
+        ExecutorService requests = Executors.newSingleThreadExecutor();
+        try {
+            Future<TeamGenerationService.Composition> running = requests.submit(() -> teamGenerationService.composeTeams(students, 3, 1, false, 3000));
+            Thread.sleep(200);
+
+            long startedAt = System.nanoTime();
+            TeamGenerationService.Composition result = teamGenerationService.composeTeams(students, 3, 1, false, 200);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+            assertTrue(elapsed < 2000, "waited " + elapsed + " ms for the running optimization");
+            assertTrue(result.iterations() > 0);
+            assertTrue(running.get().iterations() > 0);
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    @Test
+    void shutdownShouldStopTheSearchPool() {
+        List<RankedStudent> students = List.of(rankedStudent(1, Gender.WOMAN, true, 14), rankedStudent(2, Gender.MAN, false, 10));
+
+        teamGenerationService.shutdown();
+
+        assertThrows(RejectedExecutionException.class, () -> teamGenerationService.composeTeams(students, 2, 0, true, 100));
+    }
+
+}
@@ -1,9 +1,9 @@
 package fr.eseo.tauri.unit.service;
 
+import fr.eseo.tauri.exception.ResourceConflictException;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.model.enumeration.Gender;
-import fr.eseo.tauri.model.enumeration.GradeTypeName;
 import fr.eseo.tauri.repository.*;
 import fr.eseo.tauri.service.*;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,8 +12,12 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -34,30 +38,35 @@ class TeamServiceTest {
     private CommentRepository commentRepository;
 
     @Mock
-    private GradeTypeRepository gradeTypeRepository;
+    private RoleRepository roleRepository;
 
     @Mock
-    private GradeRepository gradeRepository;
+    private SprintService sprintService;
 
     @Mock
-    private RoleRepository roleRepository;
+    private SprintGradeService sprintGradeService;
 
     @Mock
-    private SprintService sprintService;
+    private SprintGradeResultService sprintGradeResultService;
 
     @Mock
-    private PresentationOrderService presentationOrderService;
+    private TeamGenerationService teamGenerationService;
 
     @Mock
-    private StudentService studentService;
+    private TransactionTemplate transactionTemplate;
 
     @InjectMocks
     private TeamService teamService;
 
     @BeforeEach
+    @SuppressWarnings("unchecked")
     void init_mocks() {
         MockitoAnnotations.openMocks(this);
         teamService = spy(teamService);
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
     }
 
     @Test
@@ -236,6 +245,24 @@ class TeamServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> teamService.getCriteriaByTeamId(id, projectId));
     }
 
+    @Test
+    void getCriteriaByProjectShouldCountEveryTeamWithOneQuery() {
+        Project project = new Project();
+        project.nbWomen(1);
+
+        when(projectService.getProjectById(1)).thenReturn(project);
+        when(teamRepository.countCriteriaByProject(1)).thenReturn(List.of(new Object[]{10, 2L, 1L}, new Object[]{20, 0L, 0L}));
+
+        Map<Integer, Criteria> result = teamService.getCriteriaByProject(1);
+
+        assertEquals(List.of(10, 20), List.copyOf(result.keySet()));
+        assertEquals(new Criteria(2, 1, true, true), result.get(10));
+        assertEquals(new Criteria(0, 0, false, false), result.get(20));
+        verify(projectService, times(1)).getProjectById(1);
+        verify(teamRepository, never()).findById(anyInt());
+        verify(teamRepository, never()).countWomenInTeam(anyInt());
+    }
+
     @Test
     void getFeedbacksByTeamAndSprintShouldReturnCommentsWhenAuthorizedAndTeamExists() {
         Integer teamId = 1;
@@ -264,19 +291,15 @@ class TeamServiceTest {
     }
 
     @Test
-    void getTeamTotalGradeShouldReturnAverageWhenAuthorizedAndTeamExists() {
+    void getTeamTotalGradeShouldReturnTheSprintGradeEngineResult() {
         Integer teamId = 1;
         Integer sprintId = 1;
-        Double expectedAvg = 90.0;
-        List<GradeType> gradeTypes = Arrays.asList(new GradeType(), new GradeType());
 
-        when(gradeTypeRepository.findTeacherGradedTeamGradeTypes()).thenReturn(gradeTypes);
-        when(gradeRepository.findAverageByGradeTypeForTeam(teamId, sprintId, gradeTypes.get(0).name())).thenReturn(80.0);
-        when(gradeRepository.findAverageByGradeTypeForTeam(teamId, sprintId, gradeTypes.get(1).name())).thenReturn(90.0);
+        when(sprintGradeService.getTeamTotalGrade(teamId, sprintId)).thenReturn(85.0);
 
         Double actualAvg = teamService.getTeamTotalGrade(teamId, sprintId);
 
-        assertEquals(expectedAvg, actualAvg);
+        assertEquals(85.0, actualAvg);
     }
 
 
@@ -377,27 +400,22 @@ class TeamServiceTest {
         Integer sprintId = 1;
         Team team = new Team();
         team.id(1);
-        Project project = new Project();
-        project.id(1);
-        team.project(project);
         Team team2 = new Team();
-        team2.project(project);
         team2.id(2);
         List<Team> teams = Arrays.asList(team, team2);
-        List<Double> sprintGradesTeam1 = Arrays.asList(15.0, 16.0, 17.0);
-        List<Double> sprintGradesTeam2 = Arrays.asList(18.0, 19.0, 20.0);
+        Map<Integer, List<Double>> sprintGrades = new LinkedHashMap<>();
+        sprintGrades.put(1, Arrays.asList(15.0, 16.0, 17.0));
+        sprintGrades.put(2, Arrays.asList(18.0, 19.0, 20.0));
 
-        when(teamRepository.findById(1)).thenReturn(Optional.of(team));
-        when(teamRepository.findById(2)).thenReturn(Optional.of(team2));
         when(teamRepository.findAll()).thenReturn(teams);
-        when(teamService.getSprintGrades(teams.get(0).id(), sprintId)).thenReturn(sprintGradesTeam1);
-        when(teamService.getSprintGrades(teams.get(1).id(), sprintId)).thenReturn(sprintGradesTeam2);
+        when(sprintGradeService.getSprintGradesByTeam(List.of(1, 2), sprintId)).thenReturn(sprintGrades);
 
         List<Double> result = teamService.getAverageSprintGrades(sprintId);
 
         assertEquals(2, result.size());
         assertEquals(16.0, result.get(0));
         assertEquals(19.0, result.get(1));
+        verify(sprintGradeService, times(1)).getSprintGradesByTeam(anyList(), eq(sprintId));
     }
 
     @Test
@@ -417,15 +435,10 @@ class TeamServiceTest {
         Integer sprintId = 1;
         Team team = new Team();
         team.id(1);
-        Project project = new Project();
-        project.id(1);
-        team.project(project);
         List<Team> teams = Collections.singletonList(team);
-        List<Double> sprintGradesTeam1 = Collections.singletonList(-1.0);
 
-        when(teamRepository.findById(1)).thenReturn(Optional.of(team));
         when(teamRepository.findAll()).thenReturn(teams);
-        when(teamService.getSprintGrades(teams.get(0).id(), sprintId)).thenReturn(sprintGradesTeam1);
+        when(sprintGradeService.getSprintGradesByTeam(List.of(1), sprintId)).thenReturn(Map.of(1, Collections.singletonList(-1.0)));
 
         List<Double> result = teamService.getAverageSprintGrades(sprintId);
 
@@ -434,244 +447,33 @@ class TeamServiceTest {
     }
 
     @Test
-    void getIndividualTotalGradesShouldReturnCorrectGradesWhenBothTeamAndIndividualGradesExist() {
-        Integer id = 1;
-        Integer sprintId = 1;
-        Student student1 = new Student();
-        student1.id(1);
-        Student student2 = new Student();
-        student2.id(2);
-        Team team = new Team();
-        team.id(1);
-        List<Student> students = Arrays.asList(student1, student2);
-        Double teamGrade = 15.0;
-        Double individualGrade1 = 16.0;
-        Double individualGrade2 = 17.0;
-
-        when(teamRepository.findById(1)).thenReturn(Optional.of(team));
-        when(studentRepository.findByTeam(id)).thenReturn(students);
-        when(gradeRepository.findAverageByGradeTypeForTeam(id, sprintId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName())).thenReturn(teamGrade);
-        when(gradeRepository.findAverageByGradeTypeForStudent(students.get(0).id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(individualGrade1);
-        when(gradeRepository.findAverageByGradeTypeForStudent(students.get(1).id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(individualGrade2);
-
-        List<Double> result = teamService.getIndividualTotalGrades(id, sprintId);
-
-        assertEquals(2, result.size());
-        assertEquals(15.67, result.get(0));
-        assertEquals(16.33, result.get(1));
-    }
-
-    @Test
-    void getIndividualTotalGradesShouldReturnTeamGradesWhenIndividualGradesDoNotExist() {
-        Integer id = 1;
-        Integer sprintId = 1;
-        Student student1 = new Student();
-        student1.id(1);
-        Student student2 = new Student();
-        student2.id(2);
-        Team team = new Team();
-        team.id(1);
-        List<Student> students = Arrays.asList(student1, student2);
-        Double teamGrade = 15.0;
-
-        when(teamRepository.findById(1)).thenReturn(Optional.of(team));
-        when(studentRepository.findByTeam(id)).thenReturn(students);
-        when(gradeRepository.findAverageByGradeTypeForTeam(id, sprintId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName())).thenReturn(teamGrade);
-        when(gradeRepository.findAverageByGradeTypeForStudent(students.get(0).id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(null);
-        when(gradeRepository.findAverageByGradeTypeForStudent(students.get(1).id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(null);
-
-        List<Double> result = teamService.getIndividualTotalGrades(id, sprintId);
-
-        assertEquals(2, result.size());
-        assertEquals(teamGrade, result.get(0));
-        assertEquals(teamGrade, result.get(1));
-    }
-
-    @Test
-    void getIndividualTotalGradesShouldReturnIndividualGradesWhenTeamGradesDoNotExist() {
+    void getIndividualTotalGradesShouldReturnTheSprintGradeEngineResult() {
         Integer id = 1;
         Integer sprintId = 1;
-        Student student1 = new Student();
-        student1.id(1);
-        Student student2 = new Student();
-        student2.id(2);
-        Team team = new Team();
-        team.id(1);
-        List<Student> students = Arrays.asList(student1, student2);
-        Double individualGrade1 = 16.0;
-        Double individualGrade2 = 17.0;
+        List<Double> individualGrades = Arrays.asList(15.67, 16.33);
 
-        when(teamRepository.findById(1)).thenReturn(Optional.of(team));
-        when(studentRepository.findByTeam(id)).thenReturn(students);
-        when(gradeRepository.findAverageByGradeTypeForTeam(id, sprintId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName())).thenReturn(null);
-        when(gradeRepository.findAverageByGradeTypeForStudent(students.get(0).id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(individualGrade1);
-        when(gradeRepository.findAverageByGradeTypeForStudent(students.get(1).id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(individualGrade2);
+        when(teamRepository.findById(id)).thenReturn(Optional.of(new Team()));
+        when(sprintGradeService.getIndividualTotalGrades(id, sprintId)).thenReturn(individualGrades);
 
         List<Double> result = teamService.getIndividualTotalGrades(id, sprintId);
 
-        assertEquals(2, result.size());
-        assertEquals(individualGrade1, result.get(0));
-        assertEquals(individualGrade2, result.get(1));
-    }
-
-    @Test
-    void assignWomenPerTeamShouldAssignWomenAndMenToTeams() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Arrays.asList(new Student(), new Student());
-        Integer womenPerTeam = 1;
-
-        teamService.assignWomenPerTeam(teams, women, men, womenPerTeam);
-
-        verify(roleRepository, times(2)).save(any(Role.class));
-        verify(studentRepository, times(2)).save(any(Student.class));
-    }
-
-    @Test
-    void assignWomenPerTeamShouldAssignOnlyWomenToTeamsWhenNoMen() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Collections.emptyList();
-        Integer womenPerTeam = 1;
-
-        teamService.assignWomenPerTeam(teams, women, men, womenPerTeam);
-
-        verify(roleRepository, times(2)).save(any(Role.class));
-        verify(studentRepository, times(2)).save(any(Student.class));
-    }
-
-    @Test
-    void assignWomenPerTeamShouldNotAssignAnyStudentWhenNoTeams() {
-        List<Team> teams = Collections.emptyList();
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Arrays.asList(new Student(), new Student());
-        Integer womenPerTeam = 1;
-
-        teamService.assignWomenPerTeam(teams, women, men, womenPerTeam);
-
-        verify(roleRepository, times(0)).save(any(Role.class));
-        verify(studentRepository, times(0)).save(any(Student.class));
-    }
-
-    @Test
-    void assignWomenPerTeamShouldNotAssignAnyStudentWhenNoStudents() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Collections.emptyList();
-        List<Student> men = Collections.emptyList();
-        Integer womenPerTeam = 1;
-
-        teamService.assignWomenPerTeam(teams, women, men, womenPerTeam);
-
-        verify(roleRepository, times(0)).save(any(Role.class));
-        verify(studentRepository, times(0)).save(any(Student.class));
-    }
-
-    @Test
-    void assignStudentsEvenlyShouldAssignStudentsToTeams() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Arrays.asList(new Student(), new Student());
-        Integer projectId = 1;
-        int index = 0;
-
-        when(teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId)).thenReturn(teams);
-
-        teamService.assignStudentsEvenly(women, men, projectId, index, teams);
-
-        verify(roleRepository, times(4)).save(any(Role.class));
-        verify(studentRepository, times(4)).save(any(Student.class));
-    }
-
-    @Test
-    void assignStudentsEvenlyShouldAssignOnlyWomenToTeamsWhenNoMen() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Collections.emptyList();
-        Integer projectId = 1;
-        int index = 0;
-
-        when(teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId)).thenReturn(teams);
-
-        teamService.assignStudentsEvenly(women, men, projectId, index, teams);
-
-        verify(roleRepository, times(2)).save(any(Role.class));
-        verify(studentRepository, times(2)).save(any(Student.class));
-    }
-
-    @Test
-    void assignStudentsEvenlyShouldNotAssignAnyStudentWhenNoStudents() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Collections.emptyList();
-        List<Student> men = Collections.emptyList();
-        Integer projectId = 1;
-        int index = 0;
-
-        teamService.assignStudentsEvenly(women, men, projectId, index, teams);
-
-        verify(roleRepository, times(0)).save(any(Role.class));
-        verify(studentRepository, times(0)).save(any(Student.class));
-    }
-
-    @Test
-    void fillTeamsShouldAssignStudentsToTeams() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Arrays.asList(new Student(), new Student());
-        Integer womenPerTeam = 1;
-        Integer projectId = 1;
-
-        when(teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId)).thenReturn(teams);
-
-        teamService.fillTeams(teams, women, men, womenPerTeam, false, projectId);
-
-        verify(roleRepository, times(4)).save(any(Role.class));
-        verify(studentRepository, times(4)).save(any(Student.class));
+        assertEquals(individualGrades, result);
     }
 
-    @Test
-    void fillTeamsShouldAssignOnlyWomenToTeamsWhenNoMen() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Collections.emptyList();
-        Integer womenPerTeam = 1;
-        Integer projectId = 1;
-
-        when(teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId)).thenReturn(teams);
-
-        teamService.fillTeams(teams, women, men, womenPerTeam, false, projectId);
-
-        verify(roleRepository, times(2)).save(any(Role.class));
-        verify(studentRepository, times(2)).save(any(Student.class));
-    }
-
-    @Test
-    void fillTeamsShouldNotAssignAnyStudentWhenNoStudents() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Collections.emptyList();
-        List<Student> men = Collections.emptyList();
-        Integer womenPerTeam = 1;
-        Integer projectId = 1;
-
-        teamService.fillTeams(teams, women, men, womenPerTeam, false, projectId);
-
-        verify(roleRepository, times(0)).save(any(Role.class));
-        verify(studentRepository, times(0)).save(any(Student.class));
+    private static TeamGenerationService.RankedStudent rankedStudent(Integer id, Gender gender, double average) {
+        return new TeamGenerationService.RankedStudent((Student) new Student().gender(gender).id(id), average);
     }
 
     @Test
-    void fillTeamsShouldAssignStudentsEvenlyWhenAutoWomenRatioIsTrue() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Arrays.asList(new Student(), new Student());
-        Integer womenPerTeam = 1;
-        Integer projectId = 1;
-
-        when(teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId)).thenReturn(teams);
+    void fillTeamsShouldPersistTheComposedTeams() {
+        List<Team> teams = Arrays.asList(new Team().id(1), new Team().id(2));
+        List<TeamGenerationService.TeamDraft> drafts = List.of(new TeamGenerationService.TeamDraft(0), new TeamGenerationService.TeamDraft(1));
+        TeamGenerationService.Composition composition = new TeamGenerationService.Composition(drafts, 0.5, 1.0, 0, 0);
 
-        teamService.fillTeams(teams, women, men, womenPerTeam, true, projectId);
+        teamService.fillTeams(teams, composition, 1);
 
-        verify(roleRepository, times(4)).save(any(Role.class));
-        verify(studentRepository, times(4)).save(any(Student.class));
+        verify(teamGenerationService, times(1)).persist(1, teams, drafts);
+        verifyNoInteractions(roleRepository);
     }
 
     @Test
@@ -682,13 +484,13 @@ class TeamServiceTest {
         projectDetails.nbWomen(2);
         boolean autoWomenRatio = false;
 
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Arrays.asList(new Student(), new Student());
+        List<TeamGenerationService.RankedStudent> students = List.of(rankedStudent(1, Gender.WOMAN, 10), rankedStudent(2, Gender.WOMAN, 10),
+                rankedStudent(3, Gender.MAN, 10), rankedStudent(4, Gender.MAN, 10));
 
-        when(studentRepository.findByGenderAndProjectId(Gender.WOMAN, projectId)).thenReturn(women);
-        when(studentRepository.findByGenderOrderByBachelorAndImportedAvgDesc(Gender.MAN, projectId)).thenReturn(men);
+        when(teamGenerationService.loadStudents(projectId)).thenReturn(students);
 
-        assertThrows(IllegalArgumentException.class, () -> teamService.generateTeams(projectId, projectDetails, autoWomenRatio));
+        assertThrows(IllegalArgumentException.class, () -> teamService.generateTeams(projectId, projectDetails, autoWomenRatio, null));
+        verify(teamGenerationService, never()).persist(anyInt(), anyList(), anyList());
     }
 
     @Test
@@ -703,39 +505,24 @@ class TeamServiceTest {
         project.id(projectId);
         team.project(project);
 
-        Sprint currentSprint = new Sprint();
-        currentSprint.id(sprintId);
-
         Student student1 = new Student();
         student1.id(1);
         Student student2 = new Student();
         student2.id(2);
-        List<Student> students = new ArrayList<>(List.of(student1, student2));
-        PresentationOrder presentationOrder1 = new PresentationOrder();
-        presentationOrder1.student(student2);
-        presentationOrder1.value(2);
-
-        PresentationOrder presentationOrder2 = new PresentationOrder();
-        presentationOrder2.student(student1);
-        presentationOrder2.value(1);
-
-        List<PresentationOrder> presentationOrder = new ArrayList<>(List.of(presentationOrder2, presentationOrder1));
+        List<Student> students = List.of(student2, student1);
 
         when(teamRepository.findById(teamId)).thenReturn(java.util.Optional.of(team));
-        when(sprintService.getCurrentSprint(projectId)).thenReturn(currentSprint);
-        when(studentRepository.findByTeam(teamId)).thenReturn(students);
-        when(presentationOrderService.getPresentationOrderByTeamIdAndSprintId(teamId, sprintId)).thenReturn(presentationOrder);
+        when(sprintService.getCurrentSprintId(projectId)).thenReturn(sprintId);
+        when(studentRepository.findByTeamOrderedByPresentation(teamId, sprintId)).thenReturn(students);
 
         List<Student> result = teamService.getStudentsByTeamId(teamId, true);
 
         verify(teamRepository, times(1)).findById(teamId);
-        verify(sprintService, times(1)).getCurrentSprint(projectId);
-        verify(studentRepository, times(2)).findByTeam(teamId);
-        verify(presentationOrderService, times(1)).getPresentationOrderByTeamIdAndSprintId(teamId, sprintId);
+        verify(sprintService, times(1)).getCurrentSprintId(projectId);
+        verify(studentRepository, times(1)).findByTeamOrderedByPresentation(teamId, sprintId);
+        verify(studentRepository, never()).findByTeam(anyInt());
 
-        assertEquals(2, result.size());
-        assertEquals(1, result.get(0).id());
-        assertEquals(2, result.get(1).id());
+        assertEquals(students, result);
     }
 
     @Test
@@ -756,21 +543,31 @@ class TeamServiceTest {
         List<Student> students = new ArrayList<>(List.of(student1, student2));
 
         when(teamRepository.findById(teamId)).thenReturn(java.util.Optional.of(team));
-        when(sprintService.getCurrentSprint(projectId)).thenReturn(null);
+        when(sprintService.getCurrentSprintId(projectId)).thenReturn(null);
         when(studentRepository.findByTeam(teamId)).thenReturn(students);
 
         List<Student> result = teamService.getStudentsByTeamId(teamId, true);
 
         verify(teamRepository, times(1)).findById(teamId);
-        verify(sprintService, times(1)).getCurrentSprint(projectId);
-        verify(studentRepository, times(2)).findByTeam(teamId);
-        verify(presentationOrderService, times(0)).getPresentationOrderByTeamIdAndSprintId(anyInt(), anyInt());
+        verify(sprintService, times(1)).getCurrentSprintId(projectId);
+        verify(studentRepository, times(1)).findByTeam(teamId);
+        verify(studentRepository, never()).findByTeamOrderedByPresentation(anyInt(), anyInt());
 
         assertEquals(2, result.size());
         assertEquals(1, result.get(0).id());
         assertEquals(2, result.get(1).id());
     }
 
+    @Test
+    void getStudentsByTeamIdAndSprintIdShouldReturnTheOrderedRoster() {
+        List<Student> students = List.of(new Student(), new Student());
+
+        when(studentRepository.findByTeamOrderedByPresentation(1, 2)).thenReturn(students);
+
+        assertEquals(students, teamService.getStudentsByTeamIdAndSprintId(1, 2));
+        verify(teamRepository, never()).findById(anyInt());
+    }
+
     @Test
     void testGenerateTeamsWithSufficientStudents() {
         Integer projectId = 1;
@@ -778,75 +575,96 @@ class TeamServiceTest {
         projectDetails.nbTeams(2);
         projectDetails.nbWomen(1);
 
-        List<Student> women = List.of(new Student(), new Student());
-        List<Student> men = List.of(new Student(), new Student(), new Student(), new Student());
+        List<TeamGenerationService.RankedStudent> students = List.of(rankedStudent(1, Gender.WOMAN, 10), rankedStudent(2, Gender.WOMAN, 10),
+                rankedStudent(3, Gender.MAN, 10), rankedStudent(4, Gender.MAN, 10), rankedStudent(5, Gender.MAN, 10), rankedStudent(6, Gender.MAN, 10));
 
-        when(studentRepository.findByGenderAndProjectId(Gender.WOMAN, projectId)).thenReturn(women);
-        when(studentRepository.findByGenderOrderByBachelorAndImportedAvgDesc(Gender.MAN, projectId)).thenReturn(men);
+        when(teamGenerationService.loadStudents(projectId)).thenReturn(students);
+
+        TeamGenerationService.Composition composition = new TeamGenerationService.Composition(List.of(), 0.5, 1.0, 100, 1);
+        when(teamGenerationService.composeTeams(students, 2, 1, false, 50)).thenReturn(composition);
 
         List<Team> createdTeams = List.of(new Team(), new Team());
-        when(teamRepository.save(any(Team.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(teamRepository.findAllOrderByAvgGradeOrderByAsc(anyInt())).thenReturn(createdTeams);
 
         doNothing().when(projectService).updateProject(eq(projectId), any(Project.class));
         doReturn(createdTeams).when(teamService).createTeams(anyInt(), anyInt());
-        doNothing().when(teamService).fillTeams(anyList(), anyList(), anyList(), anyInt(), anyBoolean(), anyInt());
+        doNothing().when(teamService).fillTeams(anyList(), any(TeamGenerationService.Composition.class), anyInt());
 
-        teamService.generateTeams(projectId, projectDetails, false);
+        TeamGenerationService.Composition result = teamService.generateTeams(projectId, projectDetails, false, 50);
 
-        verify(studentRepository, times(1)).findByGenderAndProjectId(Gender.WOMAN, projectId);
-        verify(studentRepository, times(1)).findByGenderOrderByBachelorAndImportedAvgDesc(Gender.MAN, projectId);
+        assertSame(composition, result);
+        verify(teamGenerationService, times(1)).loadStudents(projectId);
         verify(projectService, times(1)).updateProject(projectId, projectDetails);
         verify(teamService, times(1)).createTeams(projectId, projectDetails.nbTeams());
-        verify(teamService, times(1)).fillTeams(createdTeams, women, men, projectDetails.nbWomen(), false, projectId);
+        verify(teamService, times(1)).fillTeams(createdTeams, composition, projectId);
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
     }
 
     @Test
-    void testGetSprintGradesWithStudentsAndBonuses() {
-        int teamId = 1;
-        int sprintId = 1;
+    void previewTeamsShouldComposeFromTheSnapshotWithoutWriting() {
+        Project projectDetails = new Project();
+        projectDetails.nbTeams(2);
+        projectDetails.nbWomen(1);
+        List<TeamGenerationService.RankedStudent> students = List.of(rankedStudent(1, Gender.WOMAN, 10), rankedStudent(2, Gender.WOMAN, 12));
+        TeamGenerationService.Composition composition = new TeamGenerationService.Composition(List.of(), 1.0, 2.0, 0, 0);
+        TeamPreview preview = new TeamPreview(1, 1, 2, 1, false, 1.0, 2.0, List.of(), List.of(), projectDetails, 0);
 
-        double teamGrade = 15.0;
-        when(teamRepository.findAvgGradeByTeam(any(Team.class))).thenReturn(teamGrade);
+        when(teamGenerationService.snapshot(1)).thenReturn(new TeamGenerationService.Snapshot(students, Instant.now(), 3));
+        when(teamGenerationService.composeTeams(students, 2, 1, false, null)).thenReturn(composition);
+        when(teamGenerationService.savePreview(1, projectDetails, false, composition, 3)).thenReturn(preview);
 
-        Team team = new Team();
-        team.id(teamId);
-        when(teamRepository.findById(teamId)).thenReturn(Optional.of(team));
+        TeamPreview result = teamService.previewTeams(1, projectDetails, false, null);
 
-        List<Student> students = List.of(new Student(), new Student());
-        when(studentRepository.findByTeam(teamId)).thenReturn(students);
-        Bonus bonus1 = new Bonus();
-        bonus1.value(5.0F);
-        Bonus bonus2 = new Bonus();
-        bonus2.value(3.0F);
+        assertSame(preview, result);
+        verify(teamGenerationService, never()).loadStudents(anyInt());
+        verifyNoInteractions(transactionTemplate, projectService);
+        verify(teamRepository, never()).save(any(Team.class));
+    }
 
-        List<Bonus> bonuses = List.of(bonus1, bonus2);
-        when(studentService.getStudentBonuses(anyInt(), anyInt())).thenReturn(bonuses);
+    @Test
+    void commitPreviewShouldWriteThePreviewedTeamsInOneTransaction() {
+        Project projectDetails = new Project();
+        projectDetails.nbTeams(2);
+        projectDetails.nbWomen(1);
+        List<List<Integer>> studentIds = List.of(List.of(1), List.of(2));
+        TeamPreview preview = new TeamPreview(3, 1, 2, 1, false, 1.0, 2.0, List.of(), studentIds, projectDetails, 0);
+        List<Team> createdTeams = List.of(new Team().id(10), new Team().id(20));
+
+        when(teamGenerationService.getCurrentPreview(3)).thenReturn(preview);
+        doReturn(createdTeams).when(teamService).createTeams(1, 2);
 
-        List<Double> individualGrades = List.of(14.0, 16.0);
-        doReturn(individualGrades).when(teamService).getIndividualTotalGrades(teamId, sprintId);
+        teamService.commitPreview(3);
+
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+        verify(projectService, times(1)).updateProject(1, projectDetails);
+        verify(teamGenerationService, times(1)).persistAssignments(1, createdTeams, studentIds);
+        verify(teamGenerationService, times(1)).removePreview(3);
+    }
+
+    @Test
+    void commitPreviewShouldRefuseAnOutdatedPreview() {
+        when(teamGenerationService.getCurrentPreview(3)).thenThrow(new ResourceConflictException("team preview", 3, "is outdated"));
 
-        List<Double> sprintGrades = teamService.getSprintGrades(teamId, sprintId);
+        assertThrows(ResourceConflictException.class, () -> teamService.commitPreview(3));
 
-        assertEquals(2, sprintGrades.size());
+        verifyNoInteractions(transactionTemplate, projectService);
+        verify(teamGenerationService, never()).persistAssignments(anyInt(), anyList(), anyList());
     }
 
     @Test
-    void testGetSprintGradesWithoutStudents() {
+    void testGetSprintGradesReturnsTheMaterializedSprintGrades() {
         int teamId = 1;
         int sprintId = 1;
         Team team = new Team();
         team.id(teamId);
+        List<Double> sprintGrades = List.of(14.5, 16.0);
 
-        double teamGrade = 15.0;
-        when(teamRepository.findAvgGradeByTeam(any(Team.class))).thenReturn(teamGrade);
         when(teamRepository.findById(teamId)).thenReturn(Optional.of(team));
-        when(studentRepository.findByTeam(teamId)).thenReturn(Collections.emptyList());
+        when(sprintGradeResultService.getTeamSprintGrades(teamId, sprintId)).thenReturn(sprintGrades);
 
-        List<Double> sprintGrades = teamService.getSprintGrades(teamId, sprintId);
+        List<Double> result = teamService.getSprintGrades(teamId, sprintId);
 
-        assertEquals(1, sprintGrades.size());
-        assertEquals(-1.0, sprintGrades.get(0));
+        assertEquals(sprintGrades, result);
+        verify(sprintGradeResultService, times(1)).getTeamSprintGrades(teamId, sprintId);
     }
 
 }
@@ -1,7 +1,6 @@
 package fr.eseo.tauri.unit.service;
 
 import fr.eseo.tauri.exception.ResourceNotFoundException;
-import fr.eseo.tauri.model.Permission;
 import fr.eseo.tauri.model.Team;
 import fr.eseo.tauri.model.User;
 import fr.eseo.tauri.model.enumeration.PermissionType;
@@ -9,14 +8,19 @@ import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.RoleRepository;
 import fr.eseo.tauri.repository.TeamRepository;
 import fr.eseo.tauri.repository.UserRepository;
+import fr.eseo.tauri.security.RoleVersions;
+import fr.eseo.tauri.security.TokenPrincipal;
 import fr.eseo.tauri.service.PermissionService;
 import fr.eseo.tauri.service.UserService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.util.*;
 
@@ -41,11 +45,23 @@ class UserServiceTest {
     @Mock
     RoleRepository roleRepository;
 
+    @Mock
+    RoleVersions roleVersions;
+
     @BeforeEach
     public void init() {
         MockitoAnnotations.openMocks(this);
     }
 
+    @AfterEach
+    public void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static void authenticate(TokenPrincipal principal) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
     @Test
     void getUserByIdReturnsUserWhenAuthorizedAndUserExists() {
         Integer id = 1;
@@ -236,7 +252,7 @@ class UserServiceTest {
         List<RoleType> roles = Collections.singletonList(RoleType.SUPERVISING_STAFF);
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(userService.getRolesByUserId(userId)).thenReturn(roles);
+        when(roleRepository.findByUser(user)).thenReturn(roles);
         when(teamRepository.findByLeaderId(userId, projectId)).thenReturn(expectedTeam);
 
         Team actualTeam = userService.getTeamByMemberId(userId, projectId);
@@ -253,7 +269,7 @@ class UserServiceTest {
         List<RoleType> roles = Collections.singletonList(RoleType.TEAM_MEMBER);
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(userService.getRolesByUserId(userId)).thenReturn(roles);
+        when(roleRepository.findByUser(user)).thenReturn(roles);
         when(teamRepository.findByStudentId(userId)).thenReturn(expectedTeam);
 
         Team actualTeam = userService.getTeamByMemberId(userId, projectId);
@@ -269,7 +285,7 @@ class UserServiceTest {
         List<RoleType> roles = Collections.emptyList();
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(userService.getRolesByUserId(userId)).thenReturn(roles);
+        when(roleRepository.findByUser(user)).thenReturn(roles);
 
         Team actualTeam = userService.getTeamByMemberId(userId, projectId);
 
@@ -284,7 +300,8 @@ class UserServiceTest {
         List<PermissionType> permissions = Collections.emptyList();
 
         when(userRepository.findById(id)).thenReturn(Optional.of(user));
-        when(userService.getPermissionsByUser(id)).thenReturn(permissions);
+        when(roleRepository.findByUser(user)).thenReturn(List.of(RoleType.TEAM_MEMBER));
+        when(permissionService.hasPermission(Set.of(RoleType.TEAM_MEMBER), permission)).thenReturn(!permissions.isEmpty());
 
         Boolean result = userService.hasPermission(id, permission);
 
@@ -325,8 +342,7 @@ class UserServiceTest {
         PermissionType permission2 = PermissionType.DELETE_PROJECT;
         when(userRepository.findById(userId)).thenReturn(java.util.Optional.of(user));
         when(roleRepository.findByUser(user)).thenReturn(List.of(role1, role2));
-        when(permissionService.getAllPermissionsByRole(role1)).thenReturn(List.of(new Permission().type(permission1)));
-        when(permissionService.getAllPermissionsByRole(role2)).thenReturn(List.of(new Permission().type(permission2)));
+        when(permissionService.getPermissionsByRoles(EnumSet.of(role1, role2))).thenReturn(EnumSet.of(permission1, permission2));
 
         // Act
         List<PermissionType> permissions = userService.getPermissionsByUser(userId);
@@ -336,6 +352,96 @@ class UserServiceTest {
         assertEquals(List.of(permission1, permission2), permissions);
     }
 
+    @Test
+    void getRolesByUserIdShouldLoadTheRolesOnceUntilTheyAreInvalidated() {
+        Integer id = 1;
+        User user = new User().id(id);
+        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        when(roleRepository.findByUser(user)).thenReturn(List.of(RoleType.TEAM_MEMBER));
+        when(permissionService.getPermissionsByRoles(anyCollection())).thenReturn(EnumSet.noneOf(PermissionType.class));
+
+        userService.getRolesByUserId(id);
+        userService.hasPermission(id, PermissionType.MANAGE_PROJECT);
+        userService.getPermissionsByUser(id);
+        userService.invalidateRoles(id);
+        List<RoleType> roles = userService.getRolesByUserId(id);
+
+        assertEquals(List.of(RoleType.TEAM_MEMBER), roles);
+        verify(roleRepository, times(2)).findByUser(user);
+        verify(roleVersions, times(1)).bump(id);
+    }
+
+    @Test
+    void findUserByEmailShouldLoadTheUserOnceUntilTheUsersChange() {
+        String email = "john.doe@example.com";
+        User user = new User().id(1);
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        when(userRepository.findById(1)).thenReturn(Optional.of(user));
+
+        assertEquals(Optional.of(user), userService.findUserByEmail(email));
+        assertEquals(Optional.of(user), userService.findUserByEmail(email));
+        verify(userRepository, times(1)).findByEmail(email);
+
+        userService.updateUser(1, new User());
+        userService.findUserByEmail(email);
+        verify(userRepository, times(2)).findByEmail(email);
+    }
+
+    @Test
+    void findUserByEmailShouldNotCacheTheUnknownEmails() {
+        String email = "john.doe@example.com";
+        when(userRepository.findByEmail(email)).thenReturn(Optional.empty());
+
+        assertTrue(userService.findUserByEmail(email).isEmpty());
+        assertTrue(userService.findUserByEmail(email).isEmpty());
+        verify(userRepository, times(2)).findByEmail(email);
+    }
+
+    @Test
+    void getRolesAndPermissionsShouldReadTheTokenOfTheCurrentUser() {
+        Integer id = 1;
+        when(roleVersions.current(id)).thenReturn(5L);
+        authenticate(new TokenPrincipal(id, "john.doe@example.com", EnumSet.of(RoleType.PROJECT_LEADER), EnumSet.of(PermissionType.MANAGE_PROJECT), 5L));
+
+        assertEquals(List.of(RoleType.PROJECT_LEADER), userService.getRolesByUserId(id));
+        assertEquals(List.of(PermissionType.MANAGE_PROJECT), userService.getPermissionsByUser(id));
+        assertTrue(userService.hasPermission(id, PermissionType.MANAGE_PROJECT));
+        assertFalse(userService.hasPermission(id, PermissionType.DELETE_PROJECT));
+        verifyNoInteractions(userRepository, roleRepository, permissionService);
+    }
+
+    @Test
+    void getRolesByUserIdShouldLoadTheRolesWhenTheTokenIsOutdatedOrOfAnotherUser() {
+        Integer id = 1;
+        User user = new User().id(id);
+        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        when(roleRepository.findByUser(user)).thenReturn(List.of(RoleType.TEAM_MEMBER));
+        when(roleVersions.current(id)).thenReturn(6L);
+        authenticate(new TokenPrincipal(id, "john.doe@example.com", EnumSet.of(RoleType.PROJECT_LEADER), EnumSet.noneOf(PermissionType.class), 5L));
+
+        assertEquals(List.of(RoleType.TEAM_MEMBER), userService.getRolesByUserId(id));
+
+        authenticate(new TokenPrincipal(2, "jane.doe@example.com", EnumSet.of(RoleType.PROJECT_LEADER), EnumSet.noneOf(PermissionType.class), 6L));
+        assertEquals(List.of(RoleType.TEAM_MEMBER), userService.getRolesByUserId(id));
+        verify(roleRepository, times(1)).findByUser(user);
+    }
+
+    @Test
+    void getPermissionBitmapByUserShouldSetTheBitsOfThePermissionOrdinals() {
+        Integer id = 1;
+        User user = new User().id(id);
+        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        when(roleRepository.findByUser(user)).thenReturn(List.of(RoleType.PROJECT_LEADER));
+        when(permissionService.getPermissionsByRoles(EnumSet.of(RoleType.PROJECT_LEADER))).thenReturn(EnumSet.of(PermissionType.MANAGE_PROJECT, PermissionType.DELETE_PROJECT));
+
+        String bitmap = userService.getPermissionBitmapByUser(id);
+
+        BitSet bits = BitSet.valueOf(Base64.getDecoder().decode(bitmap));
+        assertEquals(2, bits.cardinality());
+        assertTrue(bits.get(PermissionType.MANAGE_PROJECT.ordinal()));
+        assertTrue(bits.get(PermissionType.DELETE_PROJECT.ordinal()));
+    }
+
     @Test
     void testCreateUser_UserExists() {
         // Arrange
@@ -362,5 +468,14 @@ class UserServiceTest {
         assertNotNull(createdUser);
         assertEquals(newEmail, createdUser.email());
     }
-}
 
+    @Test
+    void invalidateRolesShouldOnlyOutdateTheTokensOfTheGivenUsers() {
+        userService.invalidateRoles(List.of(1, 2));
+
+        verify(roleVersions, times(1)).bump(1);
+        verify(roleVersions, times(1)).bump(2);
+        verify(roleVersions, never()).bumpAll();
+    }
+
+}
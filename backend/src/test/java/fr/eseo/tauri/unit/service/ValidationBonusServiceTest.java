@@ -109,4 +109,34 @@ class ValidationBonusServiceTest {
 
         assertTrue(result.isEmpty());
     }
+
+    @Test
+    void getValidationBonusesByTeamShouldReadTheValidationsOfTheTeamWithOneQuery() {
+        List<ValidationBonus> validationBonuses = List.of(new ValidationBonus(), new ValidationBonus());
+        when(validationBonusRepository.findAllByTeamAndSprint(1, 2)).thenReturn(validationBonuses);
+
+        List<ValidationBonus> result = validationBonusService.getValidationBonusesByTeam(1, 2);
+
+        assertEquals(validationBonuses, result);
+    }
+
+    @Test
+    void deleteValidationBonusesByTeamShouldDropTheValidationsWithOneStatement() {
+        when(validationBonusRepository.deleteAllByTeamAndSprint(1, 2)).thenReturn(4);
+
+        assertEquals(4, validationBonusService.deleteValidationBonusesByTeam(1, 2));
+        verify(validationBonusRepository, never()).deleteAllByBonusId(anyInt());
+    }
+
+    @Test
+    void createValidationBonusesByTeamShouldInsertTheValidationsWithOneStatement() {
+        when(userService.getUserById(3)).thenReturn(new User().id(3));
+        when(validationBonusRepository.insertAllByTeamAndSprint(1, 2, 3)).thenReturn(5);
+
+        int result = validationBonusService.createValidationBonusesByTeam(1, 2, 3);
+
+        assertEquals(5, result);
+        verify(validationBonusRepository, never()).save(any(ValidationBonus.class));
+    }
+
 }
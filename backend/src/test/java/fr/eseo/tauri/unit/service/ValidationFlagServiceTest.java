@@ -5,7 +5,6 @@ import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.StudentRepository;
 import fr.eseo.tauri.repository.ValidationFlagRepository;
 import fr.eseo.tauri.service.AuthService;
-import fr.eseo.tauri.service.TeamService;
 import fr.eseo.tauri.service.UserService;
 import fr.eseo.tauri.service.ValidationFlagService;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,7 +13,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -33,9 +31,6 @@ class ValidationFlagServiceTest {
     @Mock
     UserService userService;
 
-    @Mock
-    TeamService teamService;
-
     @Mock
     StudentRepository studentRepository;
 
@@ -135,8 +130,7 @@ class ValidationFlagServiceTest {
 
 
         when(userService.getRolesByUserId(flag.author().id())).thenReturn(Collections.singletonList(RoleType.OPTION_STUDENT));
-        when(teamService.getStudentsByTeamId(flag.firstStudent().team().id(), false)).thenReturn(Collections.emptyList());
-        when(teamService.getStudentsByTeamId(flag.secondStudent().team().id(), false)).thenReturn(Collections.emptyList());
+        when(validationFlagRepository.insertAllByTeams(flag.id(), List.of(1, 2))).thenReturn(0);
 
         validationFlagService.createValidationFlags(flag);
 
@@ -163,23 +157,16 @@ class ValidationFlagServiceTest {
         secondStudent.team(team2);
         flag.secondStudent(secondStudent);
 
+        flag.id(3);
         when(userService.getRolesByUserId(1)).thenReturn(List.of(RoleType.OPTION_STUDENT));
-        List<Student> studentsTeam1 = new ArrayList<>();
-        Student student1 = new Student();
-        student1.id(1);
-        studentsTeam1.add(student1);
-        List<Student> studentsTeam2 = new ArrayList<>();
-        Student student2 = new Student();
-        student2.id(2);
-        studentsTeam2.add(student2);
-        when(teamService.getStudentsByTeamId(1, false)).thenReturn(studentsTeam1);
-        when(teamService.getStudentsByTeamId(2, false)).thenReturn(studentsTeam2);
+        when(validationFlagRepository.insertAllByTeams(3, List.of(1, 2))).thenReturn(2);
 
         // Act
         validationFlagService.createValidationFlags(flag);
 
         // Assert
-        verify(validationFlagRepository, times(2)).save(any(ValidationFlag.class));
+        verify(validationFlagRepository, times(1)).insertAllByTeams(3, List.of(1, 2));
+        verify(validationFlagRepository, never()).save(any(ValidationFlag.class));
     }
 
     @Test
@@ -197,6 +184,30 @@ class ValidationFlagServiceTest {
 
         // Assert
         verify(validationFlagRepository, never()).save(any(ValidationFlag.class));
+        verify(validationFlagRepository, never()).insertAllByTeams(any(), anyList());
+    }
+
+    @Test
+    void createValidationFlagsShouldAskASingleTeamOnceWhenBothStudentsAreTeammates() {
+        Team team = new Team().id(1);
+        Flag flag = new Flag().author(new User().id(1));
+        flag.id(3);
+        flag.firstStudent(new Student().team(team)).secondStudent(new Student().team(team));
+        when(userService.getRolesByUserId(1)).thenReturn(List.of(RoleType.OPTION_STUDENT));
+
+        validationFlagService.createValidationFlags(flag);
+
+        verify(validationFlagRepository, times(1)).insertAllByTeams(3, List.of(1));
+    }
+
+    @Test
+    void getValidationSummaryShouldReturnTheCountsOfTheDatabase() {
+        ValidationSummary summary = new ValidationSummary(2L, 1L, 3L);
+        when(validationFlagRepository.summarizeByFlag(1)).thenReturn(summary);
+
+        ValidationSummary result = validationFlagService.getValidationSummary(1);
+
+        assertSame(summary, result);
     }
 
     @Test
@@ -220,8 +231,7 @@ class ValidationFlagServiceTest {
         flag.secondStudent(secondStudent);
 
         when(userService.getRolesByUserId(1)).thenReturn(List.of(RoleType.OPTION_STUDENT));
-        when(teamService.getStudentsByTeamId(1, false)).thenReturn(new ArrayList<>());
-        when(teamService.getStudentsByTeamId(2, false)).thenReturn(new ArrayList<>());
+        when(validationFlagRepository.insertAllByTeams(null, List.of(1, 2))).thenReturn(0);
 
         // Act
         validationFlagService.createValidationFlags(flag);
@@ -0,0 +1,17 @@
+import type { ImportJob, ImportJobStatus } from "@/types/import-job"
+
+export const fakeImportJob = (status: ImportJobStatus = "PENDING"): ImportJob => {
+	return {
+		id: 1,
+		projectId: 1,
+		status,
+		processedRows: status === "PENDING" ? 0 : 3,
+		importedStudents: status === "PENDING" ? 0 : 2,
+		rejectedRows: status === "PENDING" ? [] : [{ line: 4, reason: "Missing name" }],
+		committedLines: status === "PENDING" ? 0 : 4,
+		error: status === "FAILED" ? "Connection lost" : null,
+		startedAt: null,
+		finishedAt: null,
+		throughput: 0
+	}
+}
@@ -1,8 +1,12 @@
 import { type CreateStudent, type Student, type UpdateStudent } from "@/types/student"
 import { StudentSchema } from "@/types/student"
+import { type ImportJob, ImportJobSchema } from "@/types/import-job"
 import { mutateAndValidate, queryAndValidate } from "@/utils/api"
 import { z } from "zod"
 import { Cookies } from "@/utils/cookie"
+import { wait } from "@/utils/time"
+
+const IMPORT_POLLING_INTERVAL = 1000
 
 export const getAllStudents = async(): Promise<Student[]> => {
 	const response = await queryAndValidate({
@@ -45,7 +49,7 @@ export const getStudentsByTeamId = async(teamId: number, ordered: boolean): Prom
 	return response.data
 }
 
-export const importStudentFile = async(file: File): Promise<void> => {
+export const importStudentFile = async(file: File): Promise<ImportJob> => {
 	const formData = new FormData()
 	formData.append("file-upload", file)
 
@@ -54,12 +58,42 @@ export const importStudentFile = async(file: File): Promise<void> => {
 		route: "students/upload",
 		body: formData,
 		bodySchema: z.instanceof(FormData),
-		jsonContent: false
+		jsonContent: false,
+		responseSchema: ImportJobSchema
 	})
 
 	if (response.status === "error") {
 		throw new Error(response.error)
 	}
+
+	return response.data
+}
+
+export const getImportJob = async(jobId: number): Promise<ImportJob> => {
+	const response = await queryAndValidate({
+		route: `imports/${jobId}`,
+		responseSchema: ImportJobSchema
+	})
+
+	if (response.status === "error") {
+		throw new Error(response.error)
+	}
+
+	return response.data
+}
+
+/**
+ * Polls an import job until it is completed or failed.
+ * @param job the job returned by the upload
+ * @returns the finished job
+ */
+export const waitForImportJob = async(job: ImportJob): Promise<ImportJob> => {
+	while (job.status === "PENDING" || job.status === "RUNNING") {
+		await wait(IMPORT_POLLING_INTERVAL)
+		job = await getImportJob(job.id)
+	}
+
+	return job
 }
 
 export const deleteAllStudents = async(): Promise<void> => {
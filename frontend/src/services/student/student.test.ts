@@ -3,6 +3,7 @@ import { getAllStudents,
 	getStudentById,
 	getStudentsByTeamId,
 	importStudentFile,
+	waitForImportJob,
 	deleteAllStudents,
 	updateStudent,
 	downloadStudentFile } from "./student.service"
@@ -13,6 +14,8 @@ import type { UpdateStudent } from "@/types/student"
 import { StudentSchema } from "@/types/student"
 import { Cookies } from "@/utils/cookie"
 import { fakeTeam } from "@/factories/team.factory"
+import { fakeImportJob } from "@/factories/import-job.factory"
+import * as timeUtils from "@/utils/time"
 
 global.fetch = vi.fn()
 vi.spyOn(Cookies, "getProjectId").mockReturnValue(1)
@@ -124,11 +127,12 @@ describe("importStudentFile", () => {
 		const file = new File(["content"], "test.csv", { type: "text/csv" })
 
 		// Setup mock response
-		const mockResponse = fakeResponse200("")
+		const job = fakeImportJob()
+		const mockResponse = fakeResponse200(JSON.stringify(job))
 		vi.mocked(fetch).mockResolvedValueOnce(mockResponse)
 
 		// Call the function
-		await importStudentFile(file)
+		const result = await importStudentFile(file)
 
 		// Assertions
 		expect(apiUtils.mutateAndValidate).toHaveBeenCalledWith({
@@ -136,8 +140,10 @@ describe("importStudentFile", () => {
 			route: "students/upload",
 			body: expect.any(FormData),
 			bodySchema: expect.any(Object),
-			jsonContent: false
+			jsonContent: false,
+			responseSchema: expect.any(Object)
 		})
+		expect(result).toEqual(job)
 	})
 
 	it("should throw an error if the response is an error", async() => {
@@ -156,6 +162,56 @@ describe("importStudentFile", () => {
 	})
 })
 
+describe("waitForImportJob", () => {
+	it("should poll the import job until it is finished", async() => {
+		vi.spyOn(timeUtils, "wait").mockResolvedValue(undefined)
+
+		// Setup mock responses
+		vi.mocked(fetch)
+			.mockResolvedValueOnce(fakeResponse200(JSON.stringify(fakeImportJob("RUNNING"))))
+			.mockResolvedValueOnce(fakeResponse200(JSON.stringify(fakeImportJob("COMPLETED"))))
+
+		// Call the function
+		const job = await waitForImportJob(fakeImportJob())
+
+		// Assertions
+		expect(apiUtils.queryAndValidate).toHaveBeenCalledWith({
+			route: "imports/1",
+			responseSchema: expect.any(Object)
+		})
+		expect(job.status).toBe("COMPLETED")
+		expect(job.importedStudents).toBe(2)
+		expect(job.rejectedRows).toHaveLength(1)
+	})
+
+	it("should return the failed job", async() => {
+		vi.spyOn(timeUtils, "wait").mockResolvedValue(undefined)
+
+		// Setup mock response
+		vi.mocked(fetch).mockResolvedValueOnce(fakeResponse200(JSON.stringify(fakeImportJob("FAILED"))))
+
+		// Call the function
+		const job = await waitForImportJob(fakeImportJob())
+
+		// Assertions
+		expect(job.status).toBe("FAILED")
+		expect(job.error).toBe("Connection lost")
+	})
+
+	it("should throw an error if the job cannot be read", async() => {
+		vi.spyOn(timeUtils, "wait").mockResolvedValue(undefined)
+
+		// Setup mock response
+		vi.mocked(fetch).mockResolvedValueOnce(fakeResponse500("Internal Server Error"))
+
+		// Call the function
+		const promise = waitForImportJob(fakeImportJob())
+
+		// Assertions
+		await expect(promise).rejects.toThrow("Failed to fetch GET imports/1: 500 Internal Server Error")
+	})
+})
+
 describe("deleteAllStudents", () => {
 	it("should call mutateAndValidate with correct arguments", async() => {
 		// Setup mock response
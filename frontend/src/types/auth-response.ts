@@ -3,6 +3,7 @@ import { z } from "zod"
 export const AuthResponseSchema = z.object({
 	id: z.number(),
 	accessToken: z.string(),
+	refreshToken: z.string(),
 	idProject: z.number()
 })
 
@@ -0,0 +1,30 @@
+import { z } from "zod"
+
+export const ImportJobStatusSchema = z.enum([
+	"PENDING",
+	"RUNNING",
+	"COMPLETED",
+	"FAILED"
+])
+export type ImportJobStatus = z.infer<typeof ImportJobStatusSchema>
+
+export const RejectedRowSchema = z.object({
+	line: z.number(),
+	reason: z.string()
+})
+export type RejectedRow = z.infer<typeof RejectedRowSchema>
+
+export const ImportJobSchema = z.object({
+	id: z.number(),
+	projectId: z.number(),
+	status: ImportJobStatusSchema,
+	processedRows: z.number(),
+	importedStudents: z.number(),
+	rejectedRows: RejectedRowSchema.array(),
+	committedLines: z.number(),
+	error: z.string().nullable(),
+	startedAt: z.string().nullable(),
+	finishedAt: z.string().nullable(),
+	throughput: z.number()
+})
+export type ImportJob = z.infer<typeof ImportJobSchema>
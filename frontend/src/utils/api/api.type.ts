@@ -16,7 +16,7 @@ export type QueryAndValidateResponse<T> = {
 	error: string
 }
 
-export type MutateAndValidateRequest<T> = {
+export type MutateAndValidateRequest<T, R = void> = {
 	method: "POST" | "PUT" | "PATCH" | "DELETE"
 	route: string
 	params?: Record<string, string>
@@ -24,10 +24,12 @@ export type MutateAndValidateRequest<T> = {
 	delay?: number
 	bodySchema?: z.ZodType<T>
 	body?: T
+	responseSchema?: z.ZodType<R>
 }
 
-export type MutateAndValidateResponse = {
+export type MutateAndValidateResponse<R = void> = {
 	status: "success"
+	data: R
 } | {
 	status: "error"
 	error: string
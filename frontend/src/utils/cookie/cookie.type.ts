@@ -1 +1 @@
-export type CookieName = "role" | "token" | "user" | "currentProject" | "permissions"
\ No newline at end of file
+export type CookieName = "role" | "token" | "refresh" | "user" | "currentProject" | "permissions"
\ No newline at end of file
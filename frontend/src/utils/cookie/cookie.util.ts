@@ -55,6 +55,9 @@ export const Cookies = {
 	getToken: (): string => getCookie("token"),
 	setToken: (token: string): void => setCookie("token", token),
 
+	getRefreshToken: (): string => getCookie("refresh"),
+	setRefreshToken: (token: string): void => setCookie("refresh", token),
+
 	getProjectId: (): number => getCookie<number>("currentProject"),
 	setProjectId: (id: number): void => setCookie("currentProject", id.toString()),
 
@@ -67,6 +70,7 @@ export const Cookies = {
 	removeAll: (): void => {
 		removeCookie("role")
 		removeCookie("token")
+		removeCookie("refresh")
 		removeCookie("currentProject")
 		removeCookie("user")
 		removeCookie("permissions")